@@ -0,0 +1,564 @@
+package math;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API（jdk.incubator.vector）によるSIMDカーネル
+ * 内積の総和はレーンごとに累積し、最後に1回だけ水平加算する。
+ * 端数の要素は通常のループで処理する。
+ *
+ * コンパイル・実行には --add-modules jdk.incubator.vector が必要なので、src とは別のソースルートに置き、
+ * src のクラスをクラスパスに入れて別にコンパイルする（src は通常の javac でコンパイルできる）。
+ * モジュールがない環境やこのクラスがない場合、{@link Kernels} は {@link ScalarKernels} を使う。
+ */
+final class SimdKernels implements ElementKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    // 単精度は同じレジスタ幅に倍のレーン数が入る
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final int FLOAT_LANES = FLOAT_SPECIES.length();
+
+    // 16ビット形式の展開用（float と同じレーン数の short / int）
+    private static final VectorSpecies<Short> HALF_SPECIES = VectorSpecies.of(short.class,
+            VectorShape.forBitSize(FLOAT_SPECIES.vectorBitSize() / 2));
+    private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int INT_LANES = INT_SPECIES.length();
+
+    // 8ビット整数は128ビット（16要素）ずつ読み、int のベクトル（1本以上）に広げて計算する
+    private static final VectorSpecies<Byte> BYTE_SPECIES = ByteVector.SPECIES_128;
+    private static final int BYTE_LANES = BYTE_SPECIES.length();
+    private static final int INT8_PARTS = Math.max(1, BYTE_LANES / INT_LANES);
+
+    @Override
+    public double dot(double[] a, int aOff, double[] b, int bOff, int length) {
+        int i = 0;
+        double sum = 0.0;
+
+        // 短いベクトルでは水平加算のコストが勝るので通常のループで計算する
+        if (length >= 4 * LANES) {
+            // 2本の累積レジスタで加算の依存関係を分ける
+            DoubleVector acc0 = DoubleVector.zero(SPECIES);
+            DoubleVector acc1 = DoubleVector.zero(SPECIES);
+            int bound = length - length % (2 * LANES);
+            for (; i < bound; i += 2 * LANES) {
+                DoubleVector a0 = DoubleVector.fromArray(SPECIES, a, aOff + i);
+                DoubleVector b0 = DoubleVector.fromArray(SPECIES, b, bOff + i);
+                DoubleVector a1 = DoubleVector.fromArray(SPECIES, a, aOff + i + LANES);
+                DoubleVector b1 = DoubleVector.fromArray(SPECIES, b, bOff + i + LANES);
+                acc0 = acc0.add(a0.mul(b0));
+                acc1 = acc1.add(a1.mul(b1));
+            }
+            sum = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        }
+
+        for (; i < length; i++) {
+            sum += a[aOff + i] * b[bOff + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void add(double[] a, int aOff, double[] b, int bOff, double[] out, int outOff, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOff + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bOff + i);
+            va.add(vb).intoArray(out, outOff + i);
+        }
+        for (; i < length; i++) {
+            out[outOff + i] = a[aOff + i] + b[bOff + i];
+        }
+    }
+
+    @Override
+    public void multiply(double[] a, int aOff, double[] b, int bOff, double[] out, int outOff, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOff + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bOff + i);
+            va.mul(vb).intoArray(out, outOff + i);
+        }
+        for (; i < length; i++) {
+            out[outOff + i] = a[aOff + i] * b[bOff + i];
+        }
+    }
+
+    @Override
+    public void scale(double[] a, int aOff, double scalar, double[] out, int outOff, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            DoubleVector.fromArray(SPECIES, a, aOff + i).mul(scalar).intoArray(out, outOff + i);
+        }
+        for (; i < length; i++) {
+            out[outOff + i] = a[aOff + i] * scalar;
+        }
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOff, double[] y, int yOff, int length) {
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            DoubleVector vx = DoubleVector.fromArray(SPECIES, x, xOff + i);
+            DoubleVector vy = DoubleVector.fromArray(SPECIES, y, yOff + i);
+            vy.add(vx.mul(alpha)).intoArray(y, yOff + i);
+        }
+        for (; i < length; i++) {
+            y[yOff + i] += alpha * x[xOff + i];
+        }
+    }
+
+    @Override
+    public void multiplyAccumulate(double[] a, int aOff, int aStride, int m,
+                                   double[] x, int xOff, int xStride, int inner,
+                                   double[] y, int yOff, int yStride, int length) {
+        int i = 0;
+        for (; i + 4 <= m; i += 4) {
+            multiplyAccumulate4(a, aOff + i * aStride, aStride, x, xOff, xStride, inner,
+                    y, yOff + i * yStride, yStride, length);
+        }
+        for (; i < m; i++) {
+            multiplyAccumulate1(a, aOff + i * aStride, x, xOff, xStride, inner, y, yOff + i * yStride, 0, length);
+        }
+    }
+
+    /**
+     * y の4行分。4行 × 4本（端は2本）のベクトルの積和をレジスタに置き、x のベクトルを4行に使い回す
+     * （各要素の積和の順序はどちらも r の順なので、結果は同じ）
+     */
+    private static void multiplyAccumulate4(double[] a, int aOff, int aStride,
+                                            double[] x, int xOff, int xStride, int inner,
+                                            double[] y, int yOff, int yStride, int length) {
+        int a1 = aOff + aStride, a2 = a1 + aStride, a3 = a2 + aStride;
+        int y1 = yOff + yStride, y2 = y1 + yStride, y3 = y2 + yStride;
+        int j = 0;
+        for (; j + 4 * LANES <= length; j += 4 * LANES) {
+            DoubleVector c00 = DoubleVector.fromArray(SPECIES, y, yOff + j);
+            DoubleVector c10 = DoubleVector.fromArray(SPECIES, y, y1 + j);
+            DoubleVector c20 = DoubleVector.fromArray(SPECIES, y, y2 + j);
+            DoubleVector c30 = DoubleVector.fromArray(SPECIES, y, y3 + j);
+            DoubleVector c01 = DoubleVector.fromArray(SPECIES, y, yOff + j + LANES);
+            DoubleVector c11 = DoubleVector.fromArray(SPECIES, y, y1 + j + LANES);
+            DoubleVector c21 = DoubleVector.fromArray(SPECIES, y, y2 + j + LANES);
+            DoubleVector c31 = DoubleVector.fromArray(SPECIES, y, y3 + j + LANES);
+            DoubleVector c02 = DoubleVector.fromArray(SPECIES, y, yOff + j + 2 * LANES);
+            DoubleVector c12 = DoubleVector.fromArray(SPECIES, y, y1 + j + 2 * LANES);
+            DoubleVector c22 = DoubleVector.fromArray(SPECIES, y, y2 + j + 2 * LANES);
+            DoubleVector c32 = DoubleVector.fromArray(SPECIES, y, y3 + j + 2 * LANES);
+            DoubleVector c03 = DoubleVector.fromArray(SPECIES, y, yOff + j + 3 * LANES);
+            DoubleVector c13 = DoubleVector.fromArray(SPECIES, y, y1 + j + 3 * LANES);
+            DoubleVector c23 = DoubleVector.fromArray(SPECIES, y, y2 + j + 3 * LANES);
+            DoubleVector c33 = DoubleVector.fromArray(SPECIES, y, y3 + j + 3 * LANES);
+            for (int r = 0, xr = xOff + j; r < inner; r++, xr += xStride) {
+                DoubleVector w0 = DoubleVector.broadcast(SPECIES, a[aOff + r]);
+                DoubleVector w1 = DoubleVector.broadcast(SPECIES, a[a1 + r]);
+                DoubleVector w2 = DoubleVector.broadcast(SPECIES, a[a2 + r]);
+                DoubleVector w3 = DoubleVector.broadcast(SPECIES, a[a3 + r]);
+                DoubleVector x0 = DoubleVector.fromArray(SPECIES, x, xr);
+                c00 = c00.add(x0.mul(w0));
+                c10 = c10.add(x0.mul(w1));
+                c20 = c20.add(x0.mul(w2));
+                c30 = c30.add(x0.mul(w3));
+                DoubleVector x1 = DoubleVector.fromArray(SPECIES, x, xr + LANES);
+                c01 = c01.add(x1.mul(w0));
+                c11 = c11.add(x1.mul(w1));
+                c21 = c21.add(x1.mul(w2));
+                c31 = c31.add(x1.mul(w3));
+                DoubleVector x2 = DoubleVector.fromArray(SPECIES, x, xr + 2 * LANES);
+                c02 = c02.add(x2.mul(w0));
+                c12 = c12.add(x2.mul(w1));
+                c22 = c22.add(x2.mul(w2));
+                c32 = c32.add(x2.mul(w3));
+                DoubleVector x3 = DoubleVector.fromArray(SPECIES, x, xr + 3 * LANES);
+                c03 = c03.add(x3.mul(w0));
+                c13 = c13.add(x3.mul(w1));
+                c23 = c23.add(x3.mul(w2));
+                c33 = c33.add(x3.mul(w3));
+            }
+            c00.intoArray(y, yOff + j);
+            c10.intoArray(y, y1 + j);
+            c20.intoArray(y, y2 + j);
+            c30.intoArray(y, y3 + j);
+            c01.intoArray(y, yOff + j + LANES);
+            c11.intoArray(y, y1 + j + LANES);
+            c21.intoArray(y, y2 + j + LANES);
+            c31.intoArray(y, y3 + j + LANES);
+            c02.intoArray(y, yOff + j + 2 * LANES);
+            c12.intoArray(y, y1 + j + 2 * LANES);
+            c22.intoArray(y, y2 + j + 2 * LANES);
+            c32.intoArray(y, y3 + j + 2 * LANES);
+            c03.intoArray(y, yOff + j + 3 * LANES);
+            c13.intoArray(y, y1 + j + 3 * LANES);
+            c23.intoArray(y, y2 + j + 3 * LANES);
+            c33.intoArray(y, y3 + j + 3 * LANES);
+        }
+        for (; j + 2 * LANES <= length; j += 2 * LANES) {
+            DoubleVector c00 = DoubleVector.fromArray(SPECIES, y, yOff + j);
+            DoubleVector c10 = DoubleVector.fromArray(SPECIES, y, y1 + j);
+            DoubleVector c20 = DoubleVector.fromArray(SPECIES, y, y2 + j);
+            DoubleVector c30 = DoubleVector.fromArray(SPECIES, y, y3 + j);
+            DoubleVector c01 = DoubleVector.fromArray(SPECIES, y, yOff + j + LANES);
+            DoubleVector c11 = DoubleVector.fromArray(SPECIES, y, y1 + j + LANES);
+            DoubleVector c21 = DoubleVector.fromArray(SPECIES, y, y2 + j + LANES);
+            DoubleVector c31 = DoubleVector.fromArray(SPECIES, y, y3 + j + LANES);
+            for (int r = 0, xr = xOff + j; r < inner; r++, xr += xStride) {
+                DoubleVector x0 = DoubleVector.fromArray(SPECIES, x, xr);
+                DoubleVector x1 = DoubleVector.fromArray(SPECIES, x, xr + LANES);
+                double w0 = a[aOff + r], w1 = a[a1 + r], w2 = a[a2 + r], w3 = a[a3 + r];
+                c00 = c00.add(x0.mul(w0));
+                c10 = c10.add(x0.mul(w1));
+                c20 = c20.add(x0.mul(w2));
+                c30 = c30.add(x0.mul(w3));
+                c01 = c01.add(x1.mul(w0));
+                c11 = c11.add(x1.mul(w1));
+                c21 = c21.add(x1.mul(w2));
+                c31 = c31.add(x1.mul(w3));
+            }
+            c00.intoArray(y, yOff + j);
+            c10.intoArray(y, y1 + j);
+            c20.intoArray(y, y2 + j);
+            c30.intoArray(y, y3 + j);
+            c01.intoArray(y, yOff + j + LANES);
+            c11.intoArray(y, y1 + j + LANES);
+            c21.intoArray(y, y2 + j + LANES);
+            c31.intoArray(y, y3 + j + LANES);
+        }
+        if (j < length) {
+            multiplyAccumulate1(a, aOff, x, xOff, xStride, inner, y, yOff, j, length);
+            multiplyAccumulate1(a, a1, x, xOff, xStride, inner, y, y1, j, length);
+            multiplyAccumulate1(a, a2, x, xOff, xStride, inner, y, y2, j, length);
+            multiplyAccumulate1(a, a3, x, xOff, xStride, inner, y, y3, j, length);
+        }
+    }
+
+    /**
+     * y の1行の列 [from, length)
+     */
+    private static void multiplyAccumulate1(double[] a, int aOff, double[] x, int xOff, int xStride, int inner,
+                                            double[] y, int yOff, int from, int length) {
+        int j = from;
+        for (; j + LANES <= length; j += LANES) {
+            DoubleVector acc = DoubleVector.fromArray(SPECIES, y, yOff + j);
+            for (int r = 0, xr = xOff + j; r < inner; r++, xr += xStride) {
+                acc = acc.add(DoubleVector.fromArray(SPECIES, x, xr).mul(a[aOff + r]));
+            }
+            acc.intoArray(y, yOff + j);
+        }
+        for (; j < length; j++) {
+            double sum = y[yOff + j];
+            for (int r = 0; r < inner; r++) {
+                sum += a[aOff + r] * x[xOff + r * xStride + j];
+            }
+            y[yOff + j] = sum;
+        }
+    }
+
+    @Override
+    public float dot(float[] a, int aOff, float[] b, int bOff, int length) {
+        int i = 0;
+        float sum = 0.0f;
+
+        if (length >= 4 * FLOAT_LANES) {
+            FloatVector acc0 = FloatVector.zero(FLOAT_SPECIES);
+            FloatVector acc1 = FloatVector.zero(FLOAT_SPECIES);
+            int bound = length - length % (2 * FLOAT_LANES);
+            for (; i < bound; i += 2 * FLOAT_LANES) {
+                FloatVector a0 = FloatVector.fromArray(FLOAT_SPECIES, a, aOff + i);
+                FloatVector b0 = FloatVector.fromArray(FLOAT_SPECIES, b, bOff + i);
+                FloatVector a1 = FloatVector.fromArray(FLOAT_SPECIES, a, aOff + i + FLOAT_LANES);
+                FloatVector b1 = FloatVector.fromArray(FLOAT_SPECIES, b, bOff + i + FLOAT_LANES);
+                acc0 = acc0.add(a0.mul(b0));
+                acc1 = acc1.add(a1.mul(b1));
+            }
+            sum = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        }
+
+        for (; i < length; i++) {
+            sum += a[aOff + i] * b[bOff + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void add(float[] a, int aOff, float[] b, int bOff, float[] out, int outOff, int length) {
+        int i = 0;
+        int bound = FLOAT_SPECIES.loopBound(length);
+        for (; i < bound; i += FLOAT_LANES) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, aOff + i);
+            FloatVector vb = FloatVector.fromArray(FLOAT_SPECIES, b, bOff + i);
+            va.add(vb).intoArray(out, outOff + i);
+        }
+        for (; i < length; i++) {
+            out[outOff + i] = a[aOff + i] + b[bOff + i];
+        }
+    }
+
+    @Override
+    public void multiply(float[] a, int aOff, float[] b, int bOff, float[] out, int outOff, int length) {
+        int i = 0;
+        int bound = FLOAT_SPECIES.loopBound(length);
+        for (; i < bound; i += FLOAT_LANES) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, aOff + i);
+            FloatVector vb = FloatVector.fromArray(FLOAT_SPECIES, b, bOff + i);
+            va.mul(vb).intoArray(out, outOff + i);
+        }
+        for (; i < length; i++) {
+            out[outOff + i] = a[aOff + i] * b[bOff + i];
+        }
+    }
+
+    @Override
+    public void scale(float[] a, int aOff, float scalar, float[] out, int outOff, int length) {
+        int i = 0;
+        int bound = FLOAT_SPECIES.loopBound(length);
+        for (; i < bound; i += FLOAT_LANES) {
+            FloatVector.fromArray(FLOAT_SPECIES, a, aOff + i).mul(scalar).intoArray(out, outOff + i);
+        }
+        for (; i < length; i++) {
+            out[outOff + i] = a[aOff + i] * scalar;
+        }
+    }
+
+    @Override
+    public void axpy(float alpha, float[] x, int xOff, float[] y, int yOff, int length) {
+        int i = 0;
+        int bound = FLOAT_SPECIES.loopBound(length);
+        for (; i < bound; i += FLOAT_LANES) {
+            FloatVector vx = FloatVector.fromArray(FLOAT_SPECIES, x, xOff + i);
+            FloatVector vy = FloatVector.fromArray(FLOAT_SPECIES, y, yOff + i);
+            vy.add(vx.mul(alpha)).intoArray(y, yOff + i);
+        }
+        for (; i < length; i++) {
+            y[yOff + i] += alpha * x[xOff + i];
+        }
+    }
+
+    @Override
+    public void multiplyAccumulate(float[] a, int aOff, int aStride, int m,
+                                   float[] x, int xOff, int xStride, int inner,
+                                   float[] y, int yOff, int yStride, int length) {
+        int i = 0;
+        for (; i + 4 <= m; i += 4) {
+            multiplyAccumulate4(a, aOff + i * aStride, aStride, x, xOff, xStride, inner,
+                    y, yOff + i * yStride, yStride, length);
+        }
+        for (; i < m; i++) {
+            multiplyAccumulate1(a, aOff + i * aStride, x, xOff, xStride, inner, y, yOff + i * yStride, 0, length);
+        }
+    }
+
+    /**
+     * y の4行分（単精度）。4行 × 2本（端は1本）のベクトルの積和をレジスタに置き、x のベクトルを4行に使い回す
+     */
+    private static void multiplyAccumulate4(float[] a, int aOff, int aStride,
+                                            float[] x, int xOff, int xStride, int inner,
+                                            float[] y, int yOff, int yStride, int length) {
+        int a1 = aOff + aStride, a2 = a1 + aStride, a3 = a2 + aStride;
+        int y1 = yOff + yStride, y2 = y1 + yStride, y3 = y2 + yStride;
+        int j = 0;
+        for (; j + 2 * FLOAT_LANES <= length; j += 2 * FLOAT_LANES) {
+            FloatVector c00 = FloatVector.fromArray(FLOAT_SPECIES, y, yOff + j);
+            FloatVector c10 = FloatVector.fromArray(FLOAT_SPECIES, y, y1 + j);
+            FloatVector c20 = FloatVector.fromArray(FLOAT_SPECIES, y, y2 + j);
+            FloatVector c30 = FloatVector.fromArray(FLOAT_SPECIES, y, y3 + j);
+            FloatVector c01 = FloatVector.fromArray(FLOAT_SPECIES, y, yOff + j + FLOAT_LANES);
+            FloatVector c11 = FloatVector.fromArray(FLOAT_SPECIES, y, y1 + j + FLOAT_LANES);
+            FloatVector c21 = FloatVector.fromArray(FLOAT_SPECIES, y, y2 + j + FLOAT_LANES);
+            FloatVector c31 = FloatVector.fromArray(FLOAT_SPECIES, y, y3 + j + FLOAT_LANES);
+            for (int r = 0, xr = xOff + j; r < inner; r++, xr += xStride) {
+                FloatVector x0 = FloatVector.fromArray(FLOAT_SPECIES, x, xr);
+                FloatVector x1 = FloatVector.fromArray(FLOAT_SPECIES, x, xr + FLOAT_LANES);
+                float w0 = a[aOff + r], w1 = a[a1 + r], w2 = a[a2 + r], w3 = a[a3 + r];
+                c00 = c00.add(x0.mul(w0));
+                c10 = c10.add(x0.mul(w1));
+                c20 = c20.add(x0.mul(w2));
+                c30 = c30.add(x0.mul(w3));
+                c01 = c01.add(x1.mul(w0));
+                c11 = c11.add(x1.mul(w1));
+                c21 = c21.add(x1.mul(w2));
+                c31 = c31.add(x1.mul(w3));
+            }
+            c00.intoArray(y, yOff + j);
+            c10.intoArray(y, y1 + j);
+            c20.intoArray(y, y2 + j);
+            c30.intoArray(y, y3 + j);
+            c01.intoArray(y, yOff + j + FLOAT_LANES);
+            c11.intoArray(y, y1 + j + FLOAT_LANES);
+            c21.intoArray(y, y2 + j + FLOAT_LANES);
+            c31.intoArray(y, y3 + j + FLOAT_LANES);
+        }
+        for (; j + FLOAT_LANES <= length; j += FLOAT_LANES) {
+            FloatVector c0 = FloatVector.fromArray(FLOAT_SPECIES, y, yOff + j);
+            FloatVector c1 = FloatVector.fromArray(FLOAT_SPECIES, y, y1 + j);
+            FloatVector c2 = FloatVector.fromArray(FLOAT_SPECIES, y, y2 + j);
+            FloatVector c3 = FloatVector.fromArray(FLOAT_SPECIES, y, y3 + j);
+            for (int r = 0, xr = xOff + j; r < inner; r++, xr += xStride) {
+                FloatVector x0 = FloatVector.fromArray(FLOAT_SPECIES, x, xr);
+                c0 = c0.add(x0.mul(a[aOff + r]));
+                c1 = c1.add(x0.mul(a[a1 + r]));
+                c2 = c2.add(x0.mul(a[a2 + r]));
+                c3 = c3.add(x0.mul(a[a3 + r]));
+            }
+            c0.intoArray(y, yOff + j);
+            c1.intoArray(y, y1 + j);
+            c2.intoArray(y, y2 + j);
+            c3.intoArray(y, y3 + j);
+        }
+        if (j < length) {
+            multiplyAccumulate1(a, aOff, x, xOff, xStride, inner, y, yOff, j, length);
+            multiplyAccumulate1(a, a1, x, xOff, xStride, inner, y, y1, j, length);
+            multiplyAccumulate1(a, a2, x, xOff, xStride, inner, y, y2, j, length);
+            multiplyAccumulate1(a, a3, x, xOff, xStride, inner, y, y3, j, length);
+        }
+    }
+
+    /**
+     * y の1行の列 [from, length)（単精度）
+     */
+    private static void multiplyAccumulate1(float[] a, int aOff, float[] x, int xOff, int xStride, int inner,
+                                            float[] y, int yOff, int from, int length) {
+        int j = from;
+        for (; j + FLOAT_LANES <= length; j += FLOAT_LANES) {
+            FloatVector acc = FloatVector.fromArray(FLOAT_SPECIES, y, yOff + j);
+            for (int r = 0, xr = xOff + j; r < inner; r++, xr += xStride) {
+                acc = acc.add(FloatVector.fromArray(FLOAT_SPECIES, x, xr).mul(a[aOff + r]));
+            }
+            acc.intoArray(y, yOff + j);
+        }
+        for (; j < length; j++) {
+            float sum = y[yOff + j];
+            for (int r = 0; r < inner; r++) {
+                sum += a[aOff + r] * x[xOff + r * xStride + j];
+            }
+            y[yOff + j] = sum;
+        }
+    }
+
+    @Override
+    public float dotHalf(HalfFormat format, short[] a, int aOff, float[] b, int bOff, int length) {
+        int i = 0;
+        float sum = 0.0f;
+
+        if (length >= 4 * FLOAT_LANES) {
+            FloatVector acc0 = FloatVector.zero(FLOAT_SPECIES);
+            FloatVector acc1 = FloatVector.zero(FLOAT_SPECIES);
+            int bound = length - length % (2 * FLOAT_LANES);
+            for (; i < bound; i += 2 * FLOAT_LANES) {
+                FloatVector a0 = unpackHalf(format, a, aOff + i);
+                FloatVector a1 = unpackHalf(format, a, aOff + i + FLOAT_LANES);
+                acc0 = acc0.add(a0.mul(FloatVector.fromArray(FLOAT_SPECIES, b, bOff + i)));
+                acc1 = acc1.add(a1.mul(FloatVector.fromArray(FLOAT_SPECIES, b, bOff + i + FLOAT_LANES)));
+            }
+            sum = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        }
+
+        for (; i < length; i++) {
+            sum += format.unpack(a[aOff + i]) * b[bOff + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void axpyHalf(HalfFormat format, float alpha, short[] x, int xOff, float[] y, int yOff, int length) {
+        int i = 0;
+        int bound = FLOAT_SPECIES.loopBound(length);
+        for (; i < bound; i += FLOAT_LANES) {
+            FloatVector vx = unpackHalf(format, x, xOff + i);
+            FloatVector vy = FloatVector.fromArray(FLOAT_SPECIES, y, yOff + i);
+            vy.add(vx.mul(alpha)).intoArray(y, yOff + i);
+        }
+        for (; i < length; i++) {
+            y[yOff + i] += alpha * format.unpack(x[xOff + i]);
+        }
+    }
+
+    @Override
+    public int dotInt8(byte[] a, int aOff, byte[] b, int bOff, int length) {
+        int i = 0;
+        int sum = 0;
+
+        if (length >= 2 * BYTE_LANES) {
+            // 2本の累積レジスタで加算の依存関係を分ける
+            IntVector acc0 = IntVector.zero(INT_SPECIES);
+            IntVector acc1 = IntVector.zero(INT_SPECIES);
+            int bound = length - length % (2 * BYTE_LANES);
+            for (; i < bound; i += 2 * BYTE_LANES) {
+                ByteVector a0 = ByteVector.fromArray(BYTE_SPECIES, a, aOff + i);
+                ByteVector b0 = ByteVector.fromArray(BYTE_SPECIES, b, bOff + i);
+                ByteVector a1 = ByteVector.fromArray(BYTE_SPECIES, a, aOff + i + BYTE_LANES);
+                ByteVector b1 = ByteVector.fromArray(BYTE_SPECIES, b, bOff + i + BYTE_LANES);
+                for (int part = 0; part < INT8_PARTS; part++) {
+                    acc0 = acc0.add(widen(a0, part).mul(widen(b0, part)));
+                    acc1 = acc1.add(widen(a1, part).mul(widen(b1, part)));
+                }
+            }
+            sum = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        }
+
+        for (; i < length; i++) {
+            sum += a[aOff + i] * b[bOff + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void axpyInt8(int alpha, byte[] x, int xOff, int[] y, int yOff, int length) {
+        int i = 0;
+        if (INT_LANES <= BYTE_LANES) {
+            int bound = BYTE_SPECIES.loopBound(length);
+            for (; i < bound; i += BYTE_LANES) {
+                ByteVector vx = ByteVector.fromArray(BYTE_SPECIES, x, xOff + i);
+                for (int part = 0; part < INT8_PARTS; part++) {
+                    int at = yOff + i + part * INT_LANES;
+                    widen(vx, part).mul(alpha).add(IntVector.fromArray(INT_SPECIES, y, at)).intoArray(y, at);
+                }
+            }
+        }
+        for (; i < length; i++) {
+            y[yOff + i] += alpha * x[xOff + i];
+        }
+    }
+
+    /**
+     * 8ビット整数のベクトルの part 番目の部分を int に広げる
+     */
+    private static IntVector widen(ByteVector v, int part) {
+        return (IntVector) v.convertShape(VectorOperators.B2I, INT_SPECIES, part);
+    }
+
+    /**
+     * 16ビット形式の FLOAT_LANES 要素を float のベクトルに展開
+     */
+    private static FloatVector unpackHalf(HalfFormat format, short[] a, int offset) {
+        IntVector h = (IntVector) ShortVector.fromArray(HALF_SPECIES, a, offset)
+                .convertShape(VectorOperators.S2I, INT_SPECIES, 0);
+        if (format == HalfFormat.BF16) {
+            // bf16 は float の上位16ビットそのもの
+            return h.lanewise(VectorOperators.LSHL, 16).reinterpretAsFloats();
+        }
+
+        // fp16: 指数・仮数を float の位置にずらして 2^112 倍すると、正規化数・非正規化数とも
+        // 指数のバイアスが 15 から 127 に付け替わる
+        IntVector magnitude = h.and(0x7fff).lanewise(VectorOperators.LSHL, 13);
+        IntVector bits = magnitude.reinterpretAsFloats().mul(0x1p112f).reinterpretAsInts();
+        // 無限大と NaN は指数をすべて1にする
+        VectorMask<Integer> special = h.and(0x7c00).eq(0x7c00);
+        bits = bits.blend(magnitude.or(0x7f800000), special);
+        // 符号
+        bits = bits.or(h.and(0x8000).lanewise(VectorOperators.LSHL, 16));
+        return bits.reinterpretAsFloats();
+    }
+}
@@ -1,13 +1,24 @@
 package alg;
 
 import calc.Backward;
+import calc.FloatBackward;
+import calc.FloatForward;
 import calc.Forward;
+import math.Precision;
 
 public class Backprop {
 
+    // 倍精度モデル
     private final Forward fwd;
     private final Backward bwd;
     private final Adam adam;
+
+    // 単精度モデル
+    private final FloatForward ffwd;
+    private final FloatBackward fbwd;
+    private final FloatAdam fadam;
+
+    private final Precision precision;
     private final double l2Lambda; // L2正則化の強度
 
     /**
@@ -21,10 +32,42 @@ public class Backprop {
      */
     public Backprop(int inputSize, int hidden1Size, int hidden2Size, int outputSize,
                     double learningRate, double l2Lambda) {
-        this.fwd = new Forward(inputSize, hidden1Size, hidden2Size, outputSize);
-        this.bwd = new Backward();
-        this.adam = new Adam(learningRate, hidden1Size, hidden2Size);
+        this(inputSize, hidden1Size, hidden2Size, outputSize, learningRate, l2Lambda, Precision.DOUBLE);
+    }
+
+    /**
+     * コンストラクタ（2層隠れ層、精度を指定）
+     * @param inputSize 入力層のサイズ
+     * @param hidden1Size 隠れ層1のサイズ
+     * @param hidden2Size 隠れ層2のサイズ
+     * @param outputSize 出力層のサイズ
+     * @param learningRate 学習率
+     * @param l2Lambda L2正則化の強度
+     * @param precision 重み・勾配・モーメントの精度
+     */
+    public Backprop(int inputSize, int hidden1Size, int hidden2Size, int outputSize,
+                    double learningRate, double l2Lambda, Precision precision) {
+        this.precision = precision;
         this.l2Lambda = l2Lambda;
+        if (precision == Precision.FLOAT) {
+            this.fwd = null;
+            this.bwd = null;
+            this.adam = null;
+            this.ffwd = new FloatForward(inputSize, hidden1Size, hidden2Size, outputSize);
+            this.fbwd = new FloatBackward();
+            this.fadam = new FloatAdam(learningRate, hidden1Size, hidden2Size);
+        } else {
+            this.fwd = new Forward(inputSize, hidden1Size, hidden2Size, outputSize);
+            this.bwd = new Backward();
+            this.adam = new Adam(learningRate, hidden1Size, hidden2Size);
+            this.ffwd = null;
+            this.fbwd = null;
+            this.fadam = null;
+        }
+    }
+
+    public Precision getPrecision() {
+        return precision;
     }
 
     /**
@@ -34,6 +77,14 @@ public class Backprop {
      * @return 損失値
      */
     public double train(double x, double y) {
+        if (precision == Precision.FLOAT) {
+            ffwd.forward((float) x);
+            double loss = fbwd.backward(ffwd, y);
+            addL2RegularizationFloat();
+            fadam.update(ffwd, fbwd);
+            return loss;
+        }
+
         // 順伝播
         fwd.forward(x);
 
@@ -55,6 +106,9 @@ public class Backprop {
      * @return 予測値
      */
     public double predict(double x) {
+        if (precision == Precision.FLOAT) {
+            return ffwd.forward((float) x);
+        }
         return fwd.forward(x);
     }
 
@@ -91,4 +145,24 @@ public class Backprop {
             }
         }
     }
+
+    /**
+     * L2正則化を勾配に追加（単精度）
+     */
+    private void addL2RegularizationFloat() {
+        if (l2Lambda > 0) {
+            float lambda = (float) l2Lambda;
+            addL2(fbwd.getGradW1(), ffwd.getW1(), lambda);
+            addL2(fbwd.getGradW2(), ffwd.getW2(), lambda);
+            addL2(fbwd.getGradW3(), ffwd.getW3(), lambda);
+        }
+    }
+
+    private static void addL2(float[][] grad, float[][] w, float lambda) {
+        for (int i = 0; i < grad.length; i++) {
+            for (int j = 0; j < grad[0].length; j++) {
+                grad[i][j] += lambda * w[i][j];
+            }
+        }
+    }
 }
@@ -1,5 +1,7 @@
 package alg;
 
+import math.Reductions;
+
 public class CrossEntropy {
 
     private static final double EPSILON = 1e-8; // 数値安定性のための小さな値
@@ -15,6 +17,16 @@ public class CrossEntropy {
         return -Math.log(predicted[targetClass] + EPSILON);
     }
 
+    /**
+     * クロスエントロピー損失を計算（単精度の確率分布）
+     * @param predicted 予測確率分布（Softmax出力）
+     * @param targetClass 正解クラスのインデックス
+     * @return 損失値
+     */
+    public static double calculate(float[] predicted, int targetClass) {
+        return -Math.log(predicted[targetClass] + EPSILON);
+    }
+
     /**
      * One-hotベクトルを使用したクロスエントロピー損失
      * @param predicted 予測確率分布
@@ -77,8 +89,7 @@ public class CrossEntropy {
      * @return 正解なら1.0、不正解なら0.0
      */
     public static double categoricalAccuracy(double[] predicted, int targetClass) {
-        int predictedClass = Softmax.argmax(predicted);
-        return predictedClass == targetClass ? 1.0 : 0.0;
+        return Reductions.argmax(predicted) == targetClass ? 1.0 : 0.0;
     }
 
     /**
@@ -103,13 +114,55 @@ public class CrossEntropy {
      * @return Top-k精度
      */
     public static double topKAccuracy(double[] predicted, int targetClass, int k) {
-        int[] topK = Softmax.topK(predicted, k);
-        for (int idx : topK) {
-            if (idx == targetClass) {
-                return 1.0;
+        // 上位k個を並べずに、正解クラスより上位のクラスを数える
+        return Reductions.rankOf(predicted, targetClass) < k ? 1.0 : 0.0;
+    }
+
+    /**
+     * バッチ全体の平均損失・精度・Top-k精度を、各行を1回ずつ走査して求める
+     * @param predicted バッチの予測確率分布 [batchSize][numClasses]
+     * @param targetClasses 正解クラスの配列 [batchSize]
+     * @param k Top-k精度の k
+     * @return 評価結果
+     */
+    public static BatchResult evaluateBatch(double[][] predicted, int[] targetClasses, int k) {
+        double totalLoss = 0.0;
+        int correct = 0;
+        int topKCorrect = 0;
+        for (int i = 0; i < predicted.length; i++) {
+            totalLoss += calculate(predicted[i], targetClasses[i]);
+            // 順位が0なら最大確率のクラス（同じ値は添字の小さい方を上位とするので argmax と一致する）
+            int rank = Reductions.rankOf(predicted[i], targetClasses[i]);
+            if (rank == 0) {
+                correct++;
             }
+            if (rank < k) {
+                topKCorrect++;
+            }
+        }
+        int n = predicted.length;
+        return new BatchResult(totalLoss / n, (double) correct / n, (double) topKCorrect / n);
+    }
+
+    /**
+     * バッチの評価結果（平均損失・精度・Top-k精度）
+     */
+    public static class BatchResult {
+        public final double loss;
+        public final double accuracy;
+        public final double topKAccuracy;
+
+        public BatchResult(double loss, double accuracy, double topKAccuracy) {
+            this.loss = loss;
+            this.accuracy = accuracy;
+            this.topKAccuracy = topKAccuracy;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Loss: %.4f, Accuracy: %.2f%%, Top-k: %.2f%%",
+                    loss, accuracy * 100, topKAccuracy * 100);
         }
-        return 0.0;
     }
 
     /**
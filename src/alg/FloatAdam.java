@@ -0,0 +1,94 @@
+package alg;
+
+import calc.FloatBackward;
+import calc.FloatForward;
+
+/**
+ * Adam最適化アルゴリズム（単精度）
+ * モーメントを float で保持する以外は {@link Adam} と同じ
+ */
+public class FloatAdam {
+
+    private final float beta1 = 0.9f;
+    private final float beta2 = 0.999f;
+    private final float epsilon = 1e-8f;
+    private final float learningRate;
+    private int t = 0;
+
+    // 1次モーメント
+    private final float[][] mW1;
+    private final float[][] mW2;
+    private final float[][] mW3;
+    private final float[] mb1;
+    private final float[] mb2;
+    private final float[] mb3;
+
+    // 2次モーメント
+    private final float[][] vW1;
+    private final float[][] vW2;
+    private final float[][] vW3;
+    private final float[] vb1;
+    private final float[] vb2;
+    private final float[] vb3;
+
+    public FloatAdam(double learningRate, int hidden1Size, int hidden2Size) {
+        this.learningRate = (float) learningRate;
+
+        // モーメントの初期化
+        mW1 = new float[hidden1Size][1];
+        vW1 = new float[hidden1Size][1];
+        mb1 = new float[hidden1Size];
+        vb1 = new float[hidden1Size];
+
+        mW2 = new float[hidden2Size][hidden1Size];
+        vW2 = new float[hidden2Size][hidden1Size];
+        mb2 = new float[hidden2Size];
+        vb2 = new float[hidden2Size];
+
+        mW3 = new float[1][hidden2Size];
+        vW3 = new float[1][hidden2Size];
+        mb3 = new float[1];
+        vb3 = new float[1];
+    }
+
+    /**
+     * Adamによる重み更新
+     */
+    public void update(FloatForward fwd, FloatBackward bwd) {
+        t++;
+
+        // バイアス補正項
+        float biasCorrection1 = (float) (1.0 - Math.pow(beta1, t));
+        float biasCorrection2 = (float) (1.0 - Math.pow(beta2, t));
+
+        updateMatrix(fwd.getW1(), bwd.getGradW1(), mW1, vW1, biasCorrection1, biasCorrection2);
+        updateVector(fwd.getB1(), bwd.getGradB1(), mb1, vb1, biasCorrection1, biasCorrection2);
+
+        updateMatrix(fwd.getW2(), bwd.getGradW2(), mW2, vW2, biasCorrection1, biasCorrection2);
+        updateVector(fwd.getB2(), bwd.getGradB2(), mb2, vb2, biasCorrection1, biasCorrection2);
+
+        updateMatrix(fwd.getW3(), bwd.getGradW3(), mW3, vW3, biasCorrection1, biasCorrection2);
+        updateVector(fwd.getB3(), bwd.getGradB3(), mb3, vb3, biasCorrection1, biasCorrection2);
+    }
+
+    private void updateMatrix(float[][] param, float[][] grad, float[][] m, float[][] v,
+                              float bc1, float bc2) {
+        for (int i = 0; i < param.length; i++) {
+            updateVector(param[i], grad[i], m[i], v[i], bc1, bc2);
+        }
+    }
+
+    private void updateVector(float[] param, float[] grad, float[] m, float[] v,
+                              float bc1, float bc2) {
+        for (int i = 0; i < param.length; i++) {
+            // モーメントの更新
+            m[i] = beta1 * m[i] + (1 - beta1) * grad[i];
+            v[i] = beta2 * v[i] + (1 - beta2) * grad[i] * grad[i];
+
+            // バイアス補正とパラメータ更新
+            float mHat = m[i] / bc1;
+            float vHat = v[i] / bc2;
+            param[i] -= learningRate * mHat / ((float) Math.sqrt(vHat) + epsilon);
+        }
+    }
+}
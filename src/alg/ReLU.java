@@ -17,11 +17,20 @@ public class ReLU {
      * @return ReLU適用後のベクトル
      */
     public static double[] apply(double[] x) {
-        double[] result = new double[x.length];
+        return applyInto(x, new double[x.length]);
+    }
+
+    /**
+     * ベクトルの各要素にReLU関数を適用して out に書き込む
+     * @param x 入力ベクトル
+     * @param out 書き込み先（x と同じでもよい）
+     * @return out
+     */
+    public static double[] applyInto(double[] x, double[] out) {
         for (int i = 0; i < x.length; i++) {
-            result[i] = apply(x[i]);
+            out[i] = apply(x[i]);
         }
-        return result;
+        return out;
     }
 
     /**
@@ -48,19 +57,28 @@ public class ReLU {
      * @return ReLU適用後の3Dテンソル
      */
     public static double[][][] apply(double[][][] x) {
+        return applyInto(x, new double[x.length][x[0].length][x[0][0].length]);
+    }
+
+    /**
+     * 3Dテンソルの各要素にReLU関数を適用して out に書き込む
+     * @param x 入力3Dテンソル [channels][height][width]
+     * @param out 書き込み先（x と同じでもよい）
+     * @return out
+     */
+    public static double[][][] applyInto(double[][][] x, double[][][] out) {
         int channels = x.length;
         int height = x[0].length;
         int width = x[0][0].length;
-        double[][][] result = new double[channels][height][width];
 
         for (int c = 0; c < channels; c++) {
             for (int h = 0; h < height; h++) {
                 for (int w = 0; w < width; w++) {
-                    result[c][h][w] = apply(x[c][h][w]);
+                    out[c][h][w] = apply(x[c][h][w]);
                 }
             }
         }
-        return result;
+        return out;
     }
 
     /**
@@ -78,11 +96,20 @@ public class ReLU {
      * @return 導関数適用後のベクトル
      */
     public static double[] derivative(double[] x) {
-        double[] result = new double[x.length];
+        return derivativeInto(x, new double[x.length]);
+    }
+
+    /**
+     * ベクトルの各要素にReLUの導関数を適用して out に書き込む
+     * @param x 入力ベクトル（ReLU適用前の値）
+     * @param out 書き込み先
+     * @return out
+     */
+    public static double[] derivativeInto(double[] x, double[] out) {
         for (int i = 0; i < x.length; i++) {
-            result[i] = derivative(x[i]);
+            out[i] = derivative(x[i]);
         }
-        return result;
+        return out;
     }
 
     /**
@@ -144,4 +171,50 @@ public class ReLU {
     public static double leakyDerivative(double x, double alpha) {
         return x > 0 ? 1.0 : alpha;
     }
-}
\ No newline at end of file
+
+    /**
+     * ベクトルの各要素にReLU関数を適用（単精度）
+     * @param x 入力ベクトル
+     * @return ReLU適用後のベクトル
+     */
+    public static float[] apply(float[] x) {
+        return applyInto(x, new float[x.length]);
+    }
+
+    /**
+     * ベクトルの各要素にReLU関数を適用して out に書き込む（単精度）
+     * @param x 入力ベクトル
+     * @param out 書き込み先（x と同じでもよい）
+     * @return out
+     */
+    public static float[] applyInto(float[] x, float[] out) {
+        for (int i = 0; i < x.length; i++) {
+            out[i] = Math.max(0.0f, x[i]);
+        }
+        return out;
+    }
+
+    /**
+     * 3Dテンソルの各要素にReLU関数を適用（単精度）
+     * @param x 入力3Dテンソル [channels][height][width]
+     * @return ReLU適用後の3Dテンソル
+     */
+    public static float[][][] apply(float[][][] x) {
+        return applyInto(x, new float[x.length][x[0].length][x[0][0].length]);
+    }
+
+    /**
+     * 3Dテンソルの各要素にReLU関数を適用して out に書き込む（単精度）
+     * @param x 入力3Dテンソル [channels][height][width]
+     * @param out 書き込み先（x と同じでもよい）
+     * @return out
+     */
+    public static float[][][] applyInto(float[][][] x, float[][][] out) {
+        for (int c = 0; c < x.length; c++) {
+            for (int h = 0; h < x[c].length; h++) {
+                applyInto(x[c][h], out[c][h]);
+            }
+        }
+        return out;
+    }
+}
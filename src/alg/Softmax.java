@@ -1,5 +1,7 @@
 package alg;
 
+import math.Reductions;
+
 public class Softmax {
 
     /**
@@ -8,27 +10,32 @@ public class Softmax {
      * @return Softmax適用後のベクトル（確率分布）
      */
     public static double[] apply(double[] x) {
+        return applyInto(x, new double[x.length]);
+    }
+
+    /**
+     * Softmax関数を適用して out に書き込む
+     * @param x 入力ベクトル
+     * @param out 書き込み先（x と同じでもよい）
+     * @return out
+     */
+    public static double[] applyInto(double[] x, double[] out) {
         // オーバーフロー対策として最大値を引く
-        double max = Double.NEGATIVE_INFINITY;
-        for (double val : x) {
-            max = Math.max(max, val);
-        }
+        double max = Reductions.max(x, 0, x.length);
 
-        // exp(x - max)を計算
-        double[] exp = new double[x.length];
+        // exp(x - max)を計算（指数は要素ごとに1回だけ）
         double sum = 0.0;
         for (int i = 0; i < x.length; i++) {
-            exp[i] = Math.exp(x[i] - max);
-            sum += exp[i];
+            out[i] = Math.exp(x[i] - max);
+            sum += out[i];
         }
 
-        // 正規化
-        double[] result = new double[x.length];
+        // 正規化（割り算の代わりに逆数を掛ける）
+        double scale = 1.0 / sum;
         for (int i = 0; i < x.length; i++) {
-            result[i] = exp[i] / sum;
+            out[i] *= scale;
         }
-
-        return result;
+        return out;
     }
 
     /**
@@ -104,17 +111,7 @@ public class Softmax {
      * @return 最大確率のクラスインデックス
      */
     public static int argmax(double[] probabilities) {
-        int maxIndex = 0;
-        double maxProb = probabilities[0];
-
-        for (int i = 1; i < probabilities.length; i++) {
-            if (probabilities[i] > maxProb) {
-                maxProb = probabilities[i];
-                maxIndex = i;
-            }
-        }
-
-        return maxIndex;
+        return Reductions.argmax(probabilities);
     }
 
     /**
@@ -124,25 +121,51 @@ public class Softmax {
      * @return Top-kクラスのインデックス配列
      */
     public static int[] topK(double[] probabilities, int k) {
-        k = Math.min(k, probabilities.length);
-        int[] indices = new int[k];
-        boolean[] used = new boolean[probabilities.length];
-
-        for (int i = 0; i < k; i++) {
-            int maxIndex = -1;
-            double maxProb = Double.NEGATIVE_INFINITY;
-
-            for (int j = 0; j < probabilities.length; j++) {
-                if (!used[j] && probabilities[j] > maxProb) {
-                    maxProb = probabilities[j];
-                    maxIndex = j;
-                }
-            }
+        return Reductions.topK(probabilities, k);
+    }
+
+    /**
+     * Softmax関数を適用（単精度）
+     * @param x 入力ベクトル
+     * @return Softmax適用後のベクトル（確率分布）
+     */
+    public static float[] apply(float[] x) {
+        return applyInto(x, new float[x.length]);
+    }
 
-            indices[i] = maxIndex;
-            used[maxIndex] = true;
+    /**
+     * Softmax関数を適用して out に書き込む（単精度）
+     * 指数と総和は倍精度で計算し、確率だけを単精度で持つ
+     * @param x 入力ベクトル
+     * @param out 書き込み先（x と同じでもよい）
+     * @return out
+     */
+    public static float[] applyInto(float[] x, float[] out) {
+        float max = Reductions.max(x, 0, x.length);
+
+        // 指数は1回だけ計算して単精度で持ち、総和は丸める前の倍精度の値で取る
+        double sum = 0.0;
+        for (int i = 0; i < x.length; i++) {
+            double e = Math.exp(x[i] - max);
+            out[i] = (float) e;
+            sum += e;
         }
+        double scale = 1.0 / sum;
+        for (int i = 0; i < x.length; i++) {
+            out[i] = (float) (out[i] * scale);
+        }
+        return out;
+    }
 
-        return indices;
+    /**
+     * Softmaxとクロスエントロピー損失の組み合わせの勾配（単精度）
+     * @param softmaxOutput Softmaxの出力
+     * @param targetClass 正解クラスのインデックス
+     * @return 勾配ベクトル
+     */
+    public static float[] gradientWithCrossEntropy(float[] softmaxOutput, int targetClass) {
+        float[] gradient = softmaxOutput.clone();
+        gradient[targetClass] -= 1.0f;
+        return gradient;
     }
-}
\ No newline at end of file
+}
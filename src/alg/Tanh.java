@@ -26,11 +26,20 @@ public class Tanh {
      * @return tanh適用後のベクトル
      */
     public static double[] apply(double[] x) {
-        double[] result = new double[x.length];
+        return applyInto(x, new double[x.length]);
+    }
+
+    /**
+     * ベクトルの各要素にtanh関数を適用して out に書き込む
+     * @param x 入力ベクトル
+     * @param out 書き込み先（x と同じでもよい）
+     * @return out
+     */
+    public static double[] applyInto(double[] x, double[] out) {
         for (int i = 0; i < x.length; i++) {
-            result[i] = apply(x[i]);
+            out[i] = apply(x[i]);
         }
-        return result;
+        return out;
     }
 
     /**
@@ -48,10 +57,55 @@ public class Tanh {
      * @return 導関数適用後のベクトル
      */
     public static double[] derivative(double[] tanhX) {
-        double[] result = new double[tanhX.length];
+        return derivativeInto(tanhX, new double[tanhX.length]);
+    }
+
+    /**
+     * ベクトルの各要素にtanhの導関数を適用して out に書き込む
+     * @param tanhX tanh適用後のベクトル
+     * @param out 書き込み先
+     * @return out
+     */
+    public static double[] derivativeInto(double[] tanhX, double[] out) {
+        for (int i = 0; i < tanhX.length; i++) {
+            out[i] = derivative(tanhX[i]);
+        }
+        return out;
+    }
+
+    /**
+     * ベクトルの各要素にtanh関数を適用（単精度）
+     * @param x 入力ベクトル
+     * @return tanh適用後のベクトル
+     */
+    public static float[] apply(float[] x) {
+        return applyInto(x, new float[x.length]);
+    }
+
+    /**
+     * ベクトルの各要素にtanh関数を適用して out に書き込む（単精度）
+     * 各要素は倍精度で計算してから丸める
+     * @param x 入力ベクトル
+     * @param out 書き込み先（x と同じでもよい）
+     * @return out
+     */
+    public static float[] applyInto(float[] x, float[] out) {
+        for (int i = 0; i < x.length; i++) {
+            out[i] = (float) apply(x[i]);
+        }
+        return out;
+    }
+
+    /**
+     * ベクトルの各要素にtanhの導関数を適用して out に書き込む（単精度）
+     * @param tanhX tanh適用後のベクトル
+     * @param out 書き込み先
+     * @return out
+     */
+    public static float[] derivativeInto(float[] tanhX, float[] out) {
         for (int i = 0; i < tanhX.length; i++) {
-            result[i] = derivative(tanhX[i]);
+            out[i] = 1.0f - tanhX[i] * tanhX[i];
         }
-        return result;
+        return out;
     }
 }
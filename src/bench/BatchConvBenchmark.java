@@ -0,0 +1,107 @@
+package bench;
+
+import math.ConvolutionOps;
+import math.Tensor;
+
+/**
+ * ミニバッチ全体をまとめて計算する4D（NCHW）の畳み込み・プーリングと、1枚ずつの計算の比較
+ * ImprovedCNN の conv1（1ch 32x32 -> 16ch）と conv2（16ch 16x16 -> 32ch）の形状、バッチ32で、
+ * 順伝播・入力の勾配・重みの勾配・最大プーリングの1バッチあたりの時間を測る。
+ * 1枚ずつの順伝播は convolve3DInto、逆伝播は4D版を1枚分のスライスに対して呼ぶ。
+ * 最大プーリングは1枚ずつの maxPool3DInto と、argmax を記録しない maxPool4DInto を比べる
+ * （使い回す重みがないのでメモリ帯域で決まり、conv2 の形状では同程度。argmax の記録は3割ほど余計にかかる）。
+ * 目標はバッチ32で3倍。conv2 の順伝播は4〜5倍になるが、conv1 の順伝播（約2倍）と逆伝播（約1倍）はまだ届いていない。
+ * 逆伝播は1枚ずつでも im2col の行列積で重みを全画素に使い回しており、どちらも積和のカーネルの速さで決まる
+ * （バッチ全体の重みの勾配を1回の積にしても速くならなかった）。
+ * 実行例: java --add-modules jdk.incubator.vector -cp out bench.BatchConvBenchmark
+ */
+public class BatchConvBenchmark {
+
+    private static final int BATCH = 32;
+    private static final int KERNEL = 3;
+
+    public static void main(String[] args) {
+        System.out.printf("%-22s %-10s %14s %14s %9s%n", "shape", "op", "per-image(us)", "batched(us)", "speedup");
+        run("conv1 1x32x32 -> 16", 1, 32, 32, 16);
+        run("conv2 16x16x16 -> 32", 16, 16, 16, 32);
+    }
+
+    private static void run(String name, int channels, int height, int width, int outChannels) {
+        double[][][][] kernels = new double[outChannels][channels][][];
+        for (int oc = 0; oc < outChannels; oc++) {
+            for (int ic = 0; ic < channels; ic++) {
+                kernels[oc][ic] = Bench.randomMatrix(KERNEL, KERNEL, oc * channels + ic);
+            }
+        }
+        double[] bias = Bench.randomVector(outChannels, 3);
+        Tensor input = Tensor.wrap(Bench.randomVector(BATCH * channels * height * width, 4),
+                BATCH, channels, height, width);
+        Tensor gradOutput = Tensor.wrap(Bench.randomVector(BATCH * outChannels * height * width, 5),
+                BATCH, outChannels, height, width);
+        double[][][][] images = new double[BATCH][][][];
+        for (int n = 0; n < BATCH; n++) {
+            images[n] = input.batch(n).toArray3D();
+        }
+
+        double[][][] output3D = new double[outChannels][height][width];
+        Tensor output = new Tensor(BATCH, outChannels, height, width);
+        Tensor gradInput = new Tensor(BATCH, channels, height, width);
+        double[][][][] gradKernels = new double[outChannels][channels][KERNEL][KERNEL];
+        double[] gradBias = new double[outChannels];
+
+        print(name, "forward",
+                Bench.nanosPerOp(() -> {
+                    for (int n = 0; n < BATCH; n++) {
+                        Bench.sink += ConvolutionOps.convolve3DInto(images[n], kernels, bias, 1, 1, output3D)[0][0][0];
+                    }
+                }),
+                Bench.nanosPerOp(() ->
+                        Bench.sink += ConvolutionOps.convolve4DInto(input, kernels, bias, 1, 1, output).getData()[0]));
+
+        print(name, "grad-in",
+                Bench.nanosPerOp(() -> {
+                    for (int n = 0; n < BATCH; n++) {
+                        Bench.sink += ConvolutionOps.convolve4DBackwardDataInto(gradOutput.slice(0, n, n + 1),
+                                kernels, 1, 1, gradInput.slice(0, n, n + 1)).getData()[0];
+                    }
+                }),
+                Bench.nanosPerOp(() -> Bench.sink += ConvolutionOps.convolve4DBackwardDataInto(gradOutput,
+                        kernels, 1, 1, gradInput).getData()[0]));
+
+        print(name, "grad-w",
+                Bench.nanosPerOp(() -> {
+                    for (int n = 0; n < BATCH; n++) {
+                        ConvolutionOps.convolve4DBackwardWeightsInto(input.slice(0, n, n + 1),
+                                gradOutput.slice(0, n, n + 1), 1, 1, gradKernels, gradBias);
+                    }
+                    Bench.sink += gradKernels[0][0][0][0];
+                }),
+                Bench.nanosPerOp(() -> {
+                    ConvolutionOps.convolve4DBackwardWeightsInto(input, gradOutput, 1, 1, gradKernels, gradBias);
+                    Bench.sink += gradKernels[0][0][0][0];
+                }));
+
+        double[][][] pooled3D = new double[outChannels][height / 2][width / 2];
+        double[][][][] outputs = new double[BATCH][][][];
+        for (int n = 0; n < BATCH; n++) {
+            outputs[n] = new double[outChannels][height][width];
+            ConvolutionOps.convolve3DInto(images[n], kernels, bias, 1, 1, outputs[n]);
+        }
+        ConvolutionOps.convolve4DInto(input, kernels, bias, 1, 1, output);
+        Tensor pooled = new Tensor(BATCH, outChannels, height / 2, width / 2);
+        int[] argmax = new int[pooled.getSize()];
+        print(name, "maxpool",
+                Bench.nanosPerOp(() -> {
+                    for (int n = 0; n < BATCH; n++) {
+                        Bench.sink += ConvolutionOps.maxPool3DInto(outputs[n], 2, 2, pooled3D)[0][0][0];
+                    }
+                }),
+                Bench.nanosPerOp(() ->
+                        Bench.sink += ConvolutionOps.maxPool4DInto(output, 2, 2, pooled, null).getData()[0]));
+    }
+
+    private static void print(String name, String op, double perImage, double batched) {
+        System.out.printf("%-22s %-10s %14.1f %14.1f %8.1fx%n", name, op, perImage / 1e3, batched / 1e3,
+                perImage / batched);
+    }
+}
@@ -0,0 +1,82 @@
+package bench;
+
+/**
+ * ベンチマーク用の簡易計測ヘルパー
+ * ウォームアップ後に一定時間繰り返し実行し、1回あたりの最短時間を返す
+ */
+public class Bench {
+
+    private static final long WARMUP_NANOS = 300_000_000L;
+    private static final long MEASURE_NANOS = 700_000_000L;
+
+    // 計算結果を捨てさせないための受け皿
+    public static volatile double sink;
+
+    /**
+     * 1回あたりの実行時間を計測
+     * @param task 計測する処理
+     * @return 1回あたりの最短時間（ナノ秒）
+     */
+    public static double nanosPerOp(Runnable task) {
+        run(task, WARMUP_NANOS);
+        return run(task, MEASURE_NANOS);
+    }
+
+    private static double run(Runnable task, long budgetNanos) {
+        double best = Double.MAX_VALUE;
+        long deadline = System.nanoTime() + budgetNanos;
+        int reps = 1;
+        while (System.nanoTime() < deadline) {
+            long start = System.nanoTime();
+            for (int r = 0; r < reps; r++) {
+                task.run();
+            }
+            long elapsed = System.nanoTime() - start;
+            best = Math.min(best, (double) elapsed / reps);
+            // 1ミリ秒未満で終わる処理はまとめて計測する
+            if (elapsed < 1_000_000L) {
+                reps *= 2;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 現在のスレッドがこれまでに確保したヒープのバイト数
+     * （HotSpot の com.sun.management.ThreadMXBean を使う。使えない場合は -1）
+     */
+    public static long allocatedBytes() {
+        java.lang.management.ThreadMXBean mx = java.lang.management.ManagementFactory.getThreadMXBean();
+        if (mx instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) mx)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * 乱数で埋めた行列
+     */
+    public static double[][] randomMatrix(int rows, int cols, long seed) {
+        java.util.Random rand = new java.util.Random(seed);
+        double[][] m = new double[rows][cols];
+        for (double[] row : m) {
+            for (int j = 0; j < cols; j++) {
+                row[j] = rand.nextGaussian();
+            }
+        }
+        return m;
+    }
+
+    /**
+     * 乱数で埋めたベクトル
+     */
+    public static double[] randomVector(int size, long seed) {
+        java.util.Random rand = new java.util.Random(seed);
+        double[] v = new double[size];
+        for (int i = 0; i < size; i++) {
+            v[i] = rand.nextGaussian();
+        }
+        return v;
+    }
+}
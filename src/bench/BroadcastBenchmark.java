@@ -0,0 +1,58 @@
+package bench;
+
+import math.BinaryOp;
+import math.BroadcastOps;
+import math.Tensor;
+
+/**
+ * ブロードキャスト付きの要素ごとの演算（BroadcastOps）の速度
+ * - conv2 の出力と同じ形状（32ch 16x16）へのチャンネルごとのバイアスの加算を、手書きのループと比べる
+ * - (a + b) * c をバッチ32の特徴マップで、連鎖を1回の走査で計算した場合と2回に分けた場合で比べる
+ * 実行例: java --add-modules jdk.incubator.vector -cp out bench.BroadcastBenchmark
+ */
+public class BroadcastBenchmark {
+
+    public static void main(String[] args) {
+        int channels = 32, height = 16, width = 16;
+        double[][][] featureMap = new double[channels][][];
+        for (int c = 0; c < channels; c++) {
+            featureMap[c] = Bench.randomMatrix(height, width, c);
+        }
+        Tensor map = Tensor.of(featureMap);
+        double[] bias = Bench.randomVector(channels, 100);
+        Tensor biasView = Tensor.wrap(bias, channels, 1, 1);
+
+        System.out.println("bias add [32][16][16] + [32][1][1]");
+        System.out.printf("%-12s %10s%n", "method", "ns/op");
+        System.out.printf("%-12s %10.1f%n", "loop", Bench.nanosPerOp(() -> {
+            for (int c = 0; c < channels; c++) {
+                for (double[] row : featureMap[c]) {
+                    for (int w = 0; w < width; w++) {
+                        row[w] += bias[c];
+                    }
+                }
+            }
+            Bench.sink += featureMap[0][0][0];
+        }));
+        System.out.printf("%-12s %10.1f%n", "broadcast", Bench.nanosPerOp(() ->
+                Bench.sink += BroadcastOps.applyInPlace(BinaryOp.ADD, map, biasView).getData()[0]));
+
+        // (a + b) * c（b はチャンネルごと、c は画素ごとに全チャンネル共通）
+        int batch = 32;
+        Tensor a = Tensor.wrap(Bench.randomVector(batch * channels * height * width, 1), batch, channels, height, width);
+        Tensor b = Tensor.wrap(Bench.randomVector(channels, 2), channels, 1, 1);
+        Tensor c = Tensor.wrap(Bench.randomVector(height * width, 3), height, width);
+        Tensor out = new Tensor(batch, channels, height, width);
+
+        System.out.println();
+        System.out.println("(a + b) * c  a=[32][32][16][16], b=[32][1][1], c=[16][16]");
+        System.out.printf("%-12s %10s%n", "method", "us/op");
+        System.out.printf("%-12s %10.1f%n", "two passes", Bench.nanosPerOp(() -> {
+            BroadcastOps.applyInto(BinaryOp.ADD, a, b, out);
+            Bench.sink += BroadcastOps.applyInPlace(BinaryOp.MULTIPLY, out, c).getData()[0];
+        }) / 1e3);
+        System.out.printf("%-12s %10.1f%n", "fused", Bench.nanosPerOp(() ->
+                Bench.sink += BroadcastOps.expression(a).then(BinaryOp.ADD, b).then(BinaryOp.MULTIPLY, c)
+                        .evaluateInto(out).getData()[0]) / 1e3);
+    }
+}
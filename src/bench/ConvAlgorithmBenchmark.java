@@ -0,0 +1,125 @@
+package bench;
+
+import math.ConvAlgorithm;
+import math.ConvolutionOps;
+import math.DenseMatrix;
+import math.FFTFilter;
+import math.Tensor;
+import math.WinogradFilter;
+
+/**
+ * 1枚の画像の3D畳み込みの計算方法（{@link ConvAlgorithm}）の比較
+ * ImprovedCNN の conv1（1ch 32x32 -> 16ch）と conv2（16ch 16x16 -> 32ch）の形状で、
+ * 直接法（DIRECT）を基準に各計算方法の1回あたりの時間と、im2col の変換だけにかかる時間を測る。
+ * Winograd 法と FFT 法は毎回カーネルを変換する場合と、変換したカーネルを使い回す場合（cached）の両方を測り、
+ * 入力の勾配（4D版を1枚分のスライスに対して呼ぶものが基準）も比べる。
+ * 誤差は直接法の出力の最大絶対値に対する相対誤差で、許容値（{@link #ERROR_BOUND}）を超えると NG を出す。
+ * 実行例: java --add-modules jdk.incubator.vector -cp out bench.ConvAlgorithmBenchmark
+ */
+public class ConvAlgorithmBenchmark {
+
+    private static final int KERNEL = 3;
+
+    /** 直接法に対する相対誤差の許容値 */
+    private static final double ERROR_BOUND = 1e-13;
+
+    public static void main(String[] args) {
+        System.out.printf("%-22s %-20s %12s %9s %12s%n", "shape", "algo", "time(us)", "speedup", "relErr");
+        // 大きな形状から先に測る
+        run("conv2 16x16x16 -> 32", 16, 16, 16, 32);
+        run("conv1 1x32x32 -> 16", 1, 32, 32, 16);
+    }
+
+    private static void run(String name, int channels, int height, int width, int outChannels) {
+        double[][][][] kernels = new double[outChannels][channels][][];
+        for (int oc = 0; oc < outChannels; oc++) {
+            for (int ic = 0; ic < channels; ic++) {
+                kernels[oc][ic] = Bench.randomMatrix(KERNEL, KERNEL, oc * channels + ic);
+            }
+        }
+        double[] bias = Bench.randomVector(outChannels, 3);
+        double[][][] input = new double[channels][][];
+        for (int c = 0; c < channels; c++) {
+            input[c] = Bench.randomMatrix(height, width, 100 + c);
+        }
+
+        double[][][] expected = ConvolutionOps.convolve3DInto(input, kernels, bias, 1, 1,
+                ConvAlgorithm.DIRECT, new double[outChannels][height][width]);
+        double direct = Double.NaN;
+        for (ConvAlgorithm algorithm : ConvAlgorithm.values()) {
+            double[][][] output = new double[outChannels][height][width];
+            double nanos = Bench.nanosPerOp(() -> Bench.sink += ConvolutionOps.convolve3DInto(input, kernels, bias,
+                    1, 1, algorithm, output)[0][0][0]);
+            if (algorithm == ConvAlgorithm.DIRECT) {
+                direct = nanos;
+            }
+            print(name, algorithm.toString(), nanos, direct, relativeError(expected, output));
+
+            int tileSize = algorithm.winogradTileSize();
+            if (tileSize > 0) {
+                WinogradFilter filter = WinogradFilter.forward(kernels, tileSize);
+                print(name, algorithm + " cached", Bench.nanosPerOp(() -> Bench.sink +=
+                        ConvolutionOps.convolve3DWinogradInto(input, filter, bias, 1, output)[0][0][0]),
+                        direct, relativeError(expected, output));
+            }
+            if (algorithm == ConvAlgorithm.FFT) {
+                FFTFilter filter = FFTFilter.forward(kernels,
+                        ConvolutionOps.fftSize(channels, height, width, outChannels, KERNEL, KERNEL));
+                print(name, algorithm + " cached", Bench.nanosPerOp(() -> Bench.sink +=
+                        ConvolutionOps.convolve3DFFTInto(input, filter, bias, 1, output)[0][0][0]),
+                        direct, relativeError(expected, output));
+            }
+        }
+
+        DenseMatrix col = new DenseMatrix(channels * KERNEL * KERNEL, height * width);
+        double im2col = Bench.nanosPerOp(() ->
+                Bench.sink += ConvolutionOps.im2colInto(input, KERNEL, KERNEL, 1, 1, col).get(0, 0));
+        System.out.printf("%-22s %-20s %12.1f%n", name, "(im2col)", im2col / 1e3);
+
+        // 入力の勾配
+        Tensor gradOutput = Tensor.wrap(Bench.randomVector(outChannels * height * width, 6),
+                1, outChannels, height, width);
+        double[][][] gradOutput3D = gradOutput.batch(0).toArray3D();
+        Tensor gradInput = new Tensor(1, channels, height, width);
+        double reference = Bench.nanosPerOp(() -> Bench.sink += ConvolutionOps.convolve4DBackwardDataInto(gradOutput,
+                kernels, 1, 1, gradInput).getData()[0]);
+        double[][][] expectedGrad = gradInput.batch(0).toArray3D();
+        print(name, "grad-in 4D", reference, reference, 0.0);
+        for (int tileSize : new int[]{2, 4}) {
+            WinogradFilter filter = WinogradFilter.backwardData(kernels, tileSize);
+            double[][][] grad = new double[channels][height][width];
+            print(name, "grad-in F" + tileSize + " cached", Bench.nanosPerOp(() -> Bench.sink +=
+                    ConvolutionOps.convolve3DWinogradBackwardDataInto(gradOutput3D, filter, 1, grad)[0][0][0]),
+                    reference, relativeError(expectedGrad, grad));
+        }
+    }
+
+    private static void print(String name, String algorithm, double nanos, double baseline, double error) {
+        System.out.printf("%-22s %-20s %12.1f %8.2fx %12.2e%s%n", name, algorithm, nanos / 1e3, baseline / nanos,
+                error, error > ERROR_BOUND ? " NG" : "");
+    }
+
+    private static double relativeError(double[][][] expected, double[][][] actual) {
+        double scale = 0.0;
+        for (double[][] channel : expected) {
+            for (double[] row : channel) {
+                for (double value : row) {
+                    scale = Math.max(scale, Math.abs(value));
+                }
+            }
+        }
+        return maxError(expected, actual) / scale;
+    }
+
+    private static double maxError(double[][][] expected, double[][][] actual) {
+        double max = 0.0;
+        for (int c = 0; c < expected.length; c++) {
+            for (int h = 0; h < expected[c].length; h++) {
+                for (int w = 0; w < expected[c][h].length; w++) {
+                    max = Math.max(max, Math.abs(expected[c][h][w] - actual[c][h][w]));
+                }
+            }
+        }
+        return max;
+    }
+}
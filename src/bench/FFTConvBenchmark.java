@@ -0,0 +1,59 @@
+package bench;
+
+import math.ConvAlgorithm;
+import math.ConvolutionOps;
+import math.FFTFilter;
+
+/**
+ * 大きなカーネル・大きな画像での FFT 法の畳み込みと直接法・im2col の比較
+ * 16ch -> 16ch、ストライド1・same パディングで、画像の大きさ（32, 64, 128）とカーネルの大きさ
+ * （3, 5, 7, 9, 11）を変えて1回あたりの時間を測る。FFT 法は変換したカーネルを使い回す（cached）。
+ * AUTO の列は {@link ConvolutionOps#selectAlgorithm} が選ぶ計算方法で、交点（FFT_CROSSOVER）は
+ * この結果で FFT が IM2COL より速くなる形状に合わせてある。
+ * 実行例: java --add-modules jdk.incubator.vector -cp out bench.FFTConvBenchmark
+ */
+public class FFTConvBenchmark {
+
+    private static final int CHANNELS = 16;
+    private static final int OUT_CHANNELS = 16;
+
+    public static void main(String[] args) {
+        System.out.printf("%-8s %-7s %5s %12s %12s %12s %9s %8s%n",
+                "image", "kernel", "n", "direct(us)", "im2col(us)", "fft(us)", "fft/i2c", "auto");
+        // 大きな形状から先に測る
+        for (int size : new int[]{128, 64, 32}) {
+            for (int kernel : new int[]{11, 9, 7, 5, 3}) {
+                run(size, kernel);
+            }
+        }
+    }
+
+    private static void run(int size, int kernel) {
+        double[][][][] kernels = new double[OUT_CHANNELS][CHANNELS][][];
+        for (int oc = 0; oc < OUT_CHANNELS; oc++) {
+            for (int ic = 0; ic < CHANNELS; ic++) {
+                kernels[oc][ic] = Bench.randomMatrix(kernel, kernel, oc * CHANNELS + ic);
+            }
+        }
+        double[] bias = Bench.randomVector(OUT_CHANNELS, 3);
+        double[][][] input = new double[CHANNELS][][];
+        for (int c = 0; c < CHANNELS; c++) {
+            input[c] = Bench.randomMatrix(size, size, 100 + c);
+        }
+        int padding = kernel / 2;
+        double[][][] output = new double[OUT_CHANNELS][size][size];
+
+        int n = ConvolutionOps.fftSize(CHANNELS, size, size, OUT_CHANNELS, kernel, kernel);
+        FFTFilter filter = FFTFilter.forward(kernels, n);
+        double fft = Bench.nanosPerOp(() -> Bench.sink +=
+                ConvolutionOps.convolve3DFFTInto(input, filter, bias, padding, output)[0][0][0]);
+        double im2col = Bench.nanosPerOp(() -> Bench.sink += ConvolutionOps.convolve3DInto(input, kernels, bias,
+                1, padding, ConvAlgorithm.IM2COL, output)[0][0][0]);
+        double direct = Bench.nanosPerOp(() -> Bench.sink += ConvolutionOps.convolve3DInto(input, kernels, bias,
+                1, padding, ConvAlgorithm.DIRECT, output)[0][0][0]);
+        ConvAlgorithm auto = ConvolutionOps.selectAlgorithm(CHANNELS, size, size, OUT_CHANNELS,
+                kernel, kernel, 1, padding);
+        System.out.printf("%-8s %-7s %5d %12.1f %12.1f %12.1f %8.2fx %8s%n", size + "x" + size,
+                kernel + "x" + kernel, n, direct / 1e3, im2col / 1e3, fft / 1e3, im2col / fft, auto);
+    }
+}
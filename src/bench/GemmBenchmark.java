@@ -0,0 +1,71 @@
+package bench;
+
+import math.DenseMatrix;
+import math.Gemm;
+import math.Matrix;
+
+/**
+ * 行列積のベンチマーク
+ * 従来の i-j-k ループとブロッキングGEMMのGFLOP/sを比較する
+ */
+public class GemmBenchmark {
+
+    // {m, k, n}: [m][k] × [k][n]
+    private static final int[][] SHAPES = {
+            {64, 64, 64},
+            {128, 128, 128},
+            {256, 256, 256},
+            {512, 512, 512},
+            {128, 2048, 1},     // fc1 (128x2048) × 1サンプル
+            {128, 2048, 32},    // fc1 × 32サンプル
+            {128, 2048, 128},
+            {2048, 128, 32},    // fc1^T × 32サンプル（逆伝播）
+    };
+
+    public static void main(String[] args) {
+        int[] blocks = Gemm.getBlockSizes();
+        System.out.printf("Block sizes: MC=%d KC=%d NC=%d%n", blocks[0], blocks[1], blocks[2]);
+        System.out.printf("%-16s %12s %12s %12s %8s%n", "shape", "naive", "Matrix.dot", "Gemm", "speedup");
+
+        for (int[] shape : SHAPES) {
+            int m = shape[0], k = shape[1], n = shape[2];
+            double[][] a = Bench.randomMatrix(m, k, 1);
+            double[][] b = Bench.randomMatrix(k, n, 2);
+            DenseMatrix da = DenseMatrix.of(a);
+            DenseMatrix db = DenseMatrix.of(b);
+            DenseMatrix dc = new DenseMatrix(m, n);
+            double flops = 2.0 * m * n * k;
+
+            double naive = Bench.nanosPerOp(() -> Bench.sink += naiveDot(a, b)[0][0]);
+            double dot = Bench.nanosPerOp(() -> Bench.sink += Matrix.dot(a, b)[0][0]);
+            double gemm = Bench.nanosPerOp(() -> {
+                Gemm.multiply(da, db, dc);
+                Bench.sink += dc.get(0, 0);
+            });
+
+            System.out.printf("%-16s %12.2f %12.2f %12.2f %7.2fx%n",
+                    m + "x" + k + "x" + n, flops / naive, flops / dot, flops / gemm, naive / gemm);
+        }
+        System.out.println("(GFLOP/s)");
+    }
+
+    /**
+     * 変更前の Matrix.dot と同じ i-j-k ループ
+     */
+    private static double[][] naiveDot(double[][] a, double[][] b) {
+        int m = a.length;
+        int n = a[0].length;
+        int p = b[0].length;
+        double[][] result = new double[m][p];
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < p; j++) {
+                double sum = 0.0;
+                for (int k = 0; k < n; k++) {
+                    sum += a[i][k] * b[k][j];
+                }
+                result[i][j] = sum;
+            }
+        }
+        return result;
+    }
+}
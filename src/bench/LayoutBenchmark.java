@@ -0,0 +1,78 @@
+package bench;
+
+import math.ConvolutionOps;
+import math.Tensor;
+
+/**
+ * NCHW（チャンネル優先）と NHWC（チャンネル後置）の畳み込み・最大プーリングの比較
+ * ImprovedCNN の conv1（1ch 32x32 -> 16ch）と conv2（16ch 16x16 -> 32ch）の形状で、
+ * 1枚の画像とバッチ32のそれぞれについて1回あたりの時間を測る。
+ * NHWC の層が NCHW の層の間に入るときに払う並べ替え（往復）の時間も示す。
+ * 実行例: java --add-modules jdk.incubator.vector -cp out bench.LayoutBenchmark
+ */
+public class LayoutBenchmark {
+
+    private static final int BATCH = 32;
+    private static final int KERNEL = 3;
+
+    public static void main(String[] args) {
+        System.out.printf("%-22s %-14s %12s %12s %14s%n", "shape", "op", "NCHW(us)", "NHWC(us)", "convert(us)");
+        run("conv1 1x32x32 -> 16", 1, 32, 32, 16);
+        run("conv2 16x16x16 -> 32", 16, 16, 16, 32);
+    }
+
+    private static void run(String name, int channels, int height, int width, int outChannels) {
+        double[][][][] kernels = new double[outChannels][channels][][];
+        for (int oc = 0; oc < outChannels; oc++) {
+            for (int ic = 0; ic < channels; ic++) {
+                kernels[oc][ic] = Bench.randomMatrix(KERNEL, KERNEL, oc * channels + ic);
+            }
+        }
+        double[] bias = Bench.randomVector(outChannels, 3);
+
+        // 1枚の画像
+        Tensor image = Tensor.wrap(Bench.randomVector(channels * height * width, 4), channels, height, width);
+        double[][][] image3D = image.toArray3D();
+        Tensor imageNHWC = ConvolutionOps.toNHWCInto(image, new Tensor(height, width, channels));
+        double[][][] output3D = new double[outChannels][height][width];
+        Tensor outputNHWC = new Tensor(height, width, outChannels);
+        double conversion = Bench.nanosPerOp(() -> {
+            ConvolutionOps.toNHWCInto(image3D, imageNHWC);
+            Bench.sink += ConvolutionOps.toNCHWInto(outputNHWC, output3D)[0][0][0];
+        });
+        print(name, "conv", Bench.nanosPerOp(() ->
+                        Bench.sink += ConvolutionOps.convolve3DInto(image3D, kernels, bias, 1, 1, output3D)[0][0][0]),
+                Bench.nanosPerOp(() -> Bench.sink += ConvolutionOps.convolveNHWCInto(imageNHWC, kernels, bias, 1, 1,
+                        outputNHWC).getData()[0]),
+                conversion);
+
+        double[][][] pooled3D = new double[outChannels][height / 2][width / 2];
+        Tensor pooledNHWC = new Tensor(height / 2, width / 2, outChannels);
+        print(name, "maxpool", Bench.nanosPerOp(() ->
+                        Bench.sink += ConvolutionOps.maxPool3DInto(output3D, 2, 2, pooled3D)[0][0][0]),
+                Bench.nanosPerOp(() ->
+                        Bench.sink += ConvolutionOps.maxPoolNHWCInto(outputNHWC, 2, 2, pooledNHWC).getData()[0]),
+                Double.NaN);
+
+        // バッチ
+        Tensor batch = Tensor.wrap(Bench.randomVector(BATCH * channels * height * width, 5),
+                BATCH, channels, height, width);
+        Tensor batchNHWC = ConvolutionOps.toNHWCInto(batch, new Tensor(BATCH, height, width, channels));
+        Tensor output = new Tensor(BATCH, outChannels, height, width);
+        Tensor batchOutputNHWC = new Tensor(BATCH, height, width, outChannels);
+        double batchConversion = Bench.nanosPerOp(() -> {
+            ConvolutionOps.toNHWCInto(batch, batchNHWC);
+            Bench.sink += ConvolutionOps.toNCHWInto(batchOutputNHWC, output).getData()[0];
+        });
+        print(name, "conv x" + BATCH, Bench.nanosPerOp(() ->
+                        Bench.sink += ConvolutionOps.convolve4DInto(batch, kernels, bias, 1, 1, output).getData()[0]),
+                Bench.nanosPerOp(() -> Bench.sink += ConvolutionOps.convolveNHWCInto(batchNHWC, kernels, bias, 1, 1,
+                        batchOutputNHWC).getData()[0]),
+                batchConversion);
+    }
+
+    private static void print(String name, String op, double nchw, double nhwc, double conversion) {
+        System.out.printf("%-22s %-14s %12.1f %12.1f %14s%n", name, op, nchw / 1e3, nhwc / 1e3,
+                Double.isNaN(conversion) ? "-" : String.format("%.1f", conversion / 1e3));
+    }
+}
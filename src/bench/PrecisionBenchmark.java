@@ -0,0 +1,110 @@
+package bench;
+
+import alg.Backprop;
+import datasets.SimpleDigitGenerator;
+import math.DenseMatrix;
+import math.FloatDenseMatrix;
+import math.HalfFormat;
+import math.HalfMatrix;
+import math.Matrix;
+import math.Precision;
+import models.cnn.ImprovedCNN;
+
+/**
+ * 倍精度モデルと単精度モデルの比較（学習の速度・確保メモリ・損失）と、
+ * 16ビット格納の重みによる行列×ベクトルの比較
+ * 実行例: java --add-modules jdk.incubator.vector -cp out bench.PrecisionBenchmark
+ */
+public class PrecisionBenchmark {
+
+    private static final int CNN_SAMPLES = 20;
+    private static final int REGRESSION_EPOCHS = 200;
+
+    public static void main(String[] args) {
+        // 同じ画像を両方のモデルに与える
+        SimpleDigitGenerator generator = new SimpleDigitGenerator();
+        double[][][][] images = new double[CNN_SAMPLES][][][];
+        for (int i = 0; i < CNN_SAMPLES; i++) {
+            images[i] = new double[][][]{generator.generateDigit(i % 10, 0.1)};
+        }
+
+        System.out.println("ImprovedCNN.train");
+        System.out.printf("%-7s %14s %12s %16s %12s%n",
+                "mode", "ctor alloc(B)", "ms/step", "alloc/step(KB)", "avg loss");
+        for (Precision precision : Precision.values()) {
+            long before = Bench.allocatedBytes();
+            ImprovedCNN model = new ImprovedCNN(0.001, precision);
+            long modelBytes = Bench.allocatedBytes() - before;
+
+            int[] step = {0};
+            double nanos = Bench.nanosPerOp(() -> {
+                int i = step[0]++ % CNN_SAMPLES;
+                Bench.sink += model.train(images[i], i % 10);
+            });
+
+            before = Bench.allocatedBytes();
+            double loss = 0;
+            for (int i = 0; i < CNN_SAMPLES; i++) {
+                loss += model.train(images[i], i % 10);
+            }
+            double allocPerStep = (Bench.allocatedBytes() - before) / (double) CNN_SAMPLES;
+
+            System.out.printf("%-7s %14d %12.3f %16.1f %12.5f%n", precision, modelBytes,
+                    nanos / 1e6, allocPerStep / 1024, loss / CNN_SAMPLES);
+        }
+
+        System.out.println();
+        System.out.println("Backprop.train (1-32-16-1)");
+        System.out.printf("%-7s %14s %12s %16s %12s%n",
+                "mode", "ctor alloc(B)", "ns/step", "alloc/step(B)", "final loss");
+        for (Precision precision : Precision.values()) {
+            long before = Bench.allocatedBytes();
+            Backprop model = new Backprop(1, 32, 16, 1, 0.002, 1e-4, precision);
+            long modelBytes = Bench.allocatedBytes() - before;
+
+            // 損失は同じ学習スケジュールで比較する
+            double loss = 0;
+            for (int e = 0; e < REGRESSION_EPOCHS; e++) {
+                loss = 0;
+                for (int i = 0; i < 100; i++) {
+                    double x = i / 50.0 - 1;
+                    loss += model.train(x, Math.sin(3 * x));
+                }
+            }
+
+            int[] step = {0};
+            double nanos = Bench.nanosPerOp(() -> {
+                double x = (step[0]++ % 100) / 50.0 - 1;
+                Bench.sink += model.train(x, Math.sin(3 * x));
+            });
+
+            before = Bench.allocatedBytes();
+            for (int i = 0; i < 10_000; i++) {
+                double x = (i % 100) / 50.0 - 1;
+                model.train(x, Math.sin(3 * x));
+            }
+            double allocPerStep = (Bench.allocatedBytes() - before) / 10_000.0;
+
+            System.out.printf("%-7s %14d %12.1f %16.1f %12.3e%n", precision, modelBytes,
+                    nanos, allocPerStep, loss / 100);
+        }
+
+        // fc1 と同じ形状の行列×ベクトル（重みの格納形式による違い）
+        System.out.println();
+        System.out.println("fc1 dotMV (128x2048)");
+        System.out.printf("%-7s %14s %12s%n", "format", "weights(KB)", "ns/op");
+        DenseMatrix weights = DenseMatrix.of(Bench.randomMatrix(128, 2048, 5));
+        double[] input = Bench.randomVector(2048, 6);
+        float[] floatInput = Matrix.toFloat(input);
+        FloatDenseMatrix floatWeights = FloatDenseMatrix.of(weights);
+        System.out.printf("%-7s %14d %12.1f%n", "DOUBLE", 128 * 2048 * 8 / 1024,
+                Bench.nanosPerOp(() -> Bench.sink += weights.dotMV(input)[0]));
+        System.out.printf("%-7s %14d %12.1f%n", "FLOAT", 128 * 2048 * 4 / 1024,
+                Bench.nanosPerOp(() -> Bench.sink += floatWeights.dotMV(floatInput)[0]));
+        for (HalfFormat format : HalfFormat.values()) {
+            HalfMatrix half = HalfMatrix.of(floatWeights, format);
+            System.out.printf("%-7s %14d %12.1f%n", format, 128 * 2048 * 2 / 1024,
+                    Bench.nanosPerOp(() -> Bench.sink += half.dotMV(floatInput)[0]));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package bench;
+
+import datasets.SimpleDigitGenerator;
+import math.Activation;
+import math.ConvolutionOps;
+import math.DenseMatrix;
+import math.FloatDenseMatrix;
+import math.Matrix;
+import math.QuantizedMatrix;
+import math.QuantizedTensor;
+import models.cnn.ImprovedCNN;
+import models.cnn.QuantizedInferenceCNN;
+
+/**
+ * 8ビット整数（int8）の推論カーネルと double / float の比較
+ * - fc1 と同じ形状の行列×ベクトル
+ * - conv2 と同じ形状の3D畳み込み
+ * - 学習済みの ImprovedCNN と QuantizedInferenceCNN の predict（速度・重みのバイト数・予測の一致率）
+ * 実行例: java --add-modules jdk.incubator.vector -cp out bench.QuantizedBenchmark
+ */
+public class QuantizedBenchmark {
+
+    private static final int TRAIN_STEPS = 600;
+    private static final int CALIBRATION_SAMPLES = 50;
+    private static final int TEST_SAMPLES = 200;
+
+    public static void main(String[] args) {
+        // fc1 と同じ形状（128 x 32*8*8）
+        System.out.println("fc1 dotMV (128x2048)");
+        System.out.printf("%-7s %14s %12s%n", "format", "weights(KB)", "ns/op");
+        DenseMatrix weights = DenseMatrix.of(Bench.randomMatrix(128, 2048, 1));
+        double[] input = Bench.randomVector(2048, 2);
+        FloatDenseMatrix floatWeights = FloatDenseMatrix.of(weights);
+        float[] floatInput = Matrix.toFloat(input);
+        QuantizedMatrix quantized = QuantizedMatrix.of(floatWeights);
+        QuantizedTensor quantizedInput = QuantizedTensor.quantize(floatInput);
+        float[] out = new float[128];
+        System.out.printf("%-7s %14d %12.1f%n", "DOUBLE", 128 * 2048 * 8 / 1024,
+                Bench.nanosPerOp(() -> Bench.sink += weights.dotMV(input)[0]));
+        System.out.printf("%-7s %14d %12.1f%n", "FLOAT", 128 * 2048 * 4 / 1024,
+                Bench.nanosPerOp(() -> Bench.sink += floatWeights.dotMVInto(floatInput, out)[0]));
+        System.out.printf("%-7s %14d %12.1f%n", "INT8", quantized.getBytes() / 1024,
+                Bench.nanosPerOp(() -> Bench.sink += quantized.dotMVInto(quantizedInput, null,
+                        Activation.IDENTITY, out)[0]));
+
+        // conv2 と同じ形状（16ch 16x16 -> 32ch、3x3）
+        System.out.println();
+        System.out.println("conv2 convolve3D (16x16x16 -> 32)");
+        System.out.printf("%-7s %12s%n", "format", "us/op");
+        float[][][][] kernels = new float[32][16][][];
+        for (int oc = 0; oc < 32; oc++) {
+            for (int ic = 0; ic < 16; ic++) {
+                kernels[oc][ic] = Matrix.toFloat(Bench.randomMatrix(3, 3, oc * 16 + ic));
+            }
+        }
+        float[][][] image = new float[16][][];
+        for (int c = 0; c < 16; c++) {
+            image[c] = Matrix.toFloat(Bench.randomMatrix(16, 16, 1000 + c));
+        }
+        float[] bias = new float[32];
+        float[][][] convOut = new float[32][16][16];
+        QuantizedMatrix quantizedKernels = QuantizedMatrix.ofKernels(kernels);
+        QuantizedTensor quantizedImage = QuantizedTensor.quantize(image);
+        QuantizedTensor quantizedOut = QuantizedTensor.forRange(0.0f, 10.0f, 32, 16, 16);
+        System.out.printf("%-7s %12.1f%n", "FLOAT", Bench.nanosPerOp(() ->
+                Bench.sink += ConvolutionOps.convolve3DInto(image, kernels, bias, 1, 1, convOut)[0][0][0]) / 1e3);
+        System.out.printf("%-7s %12.1f%n", "INT8", Bench.nanosPerOp(() ->
+                Bench.sink += ConvolutionOps.convolve3DInto(quantizedImage, quantizedKernels, 3, 3, bias,
+                        1, 1, Activation.RELU, quantizedOut).getData()[0]) / 1e3);
+
+        // 学習済みモデルの推論
+        SimpleDigitGenerator generator = new SimpleDigitGenerator();
+        ImprovedCNN model = new ImprovedCNN(0.001);
+        for (int i = 0; i < TRAIN_STEPS; i++) {
+            model.train(new double[][][]{generator.generateDigit(i % 10, 0.1)}, i % 10);
+        }
+        double[][][][] calibration = new double[CALIBRATION_SAMPLES][][][];
+        for (int i = 0; i < CALIBRATION_SAMPLES; i++) {
+            calibration[i] = new double[][][]{generator.generateDigit(i % 10, 0.1)};
+        }
+        double[][][][] tests = new double[TEST_SAMPLES][][][];
+        int[] labels = new int[TEST_SAMPLES];
+        for (int i = 0; i < TEST_SAMPLES; i++) {
+            labels[i] = i % 10;
+            tests[i] = new double[][][]{generator.generateDigit(labels[i], 0.1)};
+        }
+        QuantizedInferenceCNN quantizedModel = model.toQuantizedInference(calibration);
+
+        int agree = 0, correctDouble = 0, correctInt8 = 0;
+        for (int i = 0; i < TEST_SAMPLES; i++) {
+            int expected = model.predict(tests[i]);
+            int actual = quantizedModel.predict(tests[i]);
+            agree += expected == actual ? 1 : 0;
+            correctDouble += expected == labels[i] ? 1 : 0;
+            correctInt8 += actual == labels[i] ? 1 : 0;
+        }
+
+        System.out.println();
+        System.out.println("ImprovedCNN.predict vs QuantizedInferenceCNN.predict");
+        System.out.printf("%-7s %14s %12s %10s%n", "model", "weights(KB)", "us/op", "accuracy");
+        int[] step = {0};
+        long doubleBytes = 8L * (16 * 9 + 32 * 16 * 9 + 128 * 2048 + 10 * 128);
+        System.out.printf("%-7s %14d %12.1f %10.3f%n", "DOUBLE", doubleBytes / 1024,
+                Bench.nanosPerOp(() -> Bench.sink += model.predict(tests[step[0]++ % TEST_SAMPLES])) / 1e3,
+                correctDouble / (double) TEST_SAMPLES);
+        System.out.printf("%-7s %14d %12.1f %10.3f%n", "INT8", quantizedModel.getWeightBytes() / 1024,
+                Bench.nanosPerOp(() -> Bench.sink += quantizedModel.predict(tests[step[0]++ % TEST_SAMPLES])) / 1e3,
+                correctInt8 / (double) TEST_SAMPLES);
+        System.out.printf("prediction agreement: %.3f%n", agree / (double) TEST_SAMPLES);
+    }
+}
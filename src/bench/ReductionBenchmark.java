@@ -0,0 +1,116 @@
+package bench;
+
+import alg.Softmax;
+import math.Reductions;
+import math.Statistics;
+import math.Tensor;
+
+/**
+ * 集約（Reductions / Statistics）と、それを使う Softmax・正規化の以前の実装との比較
+ * 統計量は「総和・最小・最大・分散を別々に走査」と「1回の走査でまとめて求める」を、
+ * Softmax は以前の実装（Math.max の最大値・割り算での正規化）と Reductions.max・逆数の掛け算を、
+ * 正規化は最小・最大を1つのループで探す以前の実装と行ごとの集約を、28x28 と 64x128x128 の大きさで比べる。
+ * 実行例: java --add-modules jdk.incubator.vector -cp out bench.ReductionBenchmark
+ */
+public class ReductionBenchmark {
+
+    public static void main(String[] args) {
+        System.out.printf("%-28s %12s %12s %9s%n", "case", "before(us)", "after(us)", "speedup");
+        // 大きな配列から先に測る（小さな配列で JIT のプロファイルが偏らないように）
+        statistics("statistics 1M", 1 << 20);
+        normalize("normalize 64x128x128", 64, 128, 128);
+        statistics("statistics 4K", 1 << 12);
+        normalize("normalize 1x28x28", 1, 28, 28);
+        softmax("softmax 10", 10);
+        softmax("softmax 1000", 1000);
+    }
+
+    private static void statistics(String name, int n) {
+        double[] v = Bench.randomVector(n, 1);
+        print(name,
+                Bench.nanosPerOp(() -> {
+                    double sum = 0.0;
+                    for (double x : v) {
+                        sum += x;
+                    }
+                    double mean = sum / n;
+                    double min = Double.POSITIVE_INFINITY;
+                    for (double x : v) {
+                        min = Math.min(min, x);
+                    }
+                    double max = Double.NEGATIVE_INFINITY;
+                    for (double x : v) {
+                        max = Math.max(max, x);
+                    }
+                    double m2 = 0.0;
+                    for (double x : v) {
+                        m2 += (x - mean) * (x - mean);
+                    }
+                    Bench.sink += m2 / n + min + max;
+                }),
+                Bench.nanosPerOp(() -> {
+                    Statistics s = Reductions.statistics(v);
+                    Bench.sink += s.getVariance() + s.getMin() + s.getMax();
+                }));
+    }
+
+    private static void normalize(String name, int channels, int height, int width) {
+        double[][][] tensor = Tensor.wrap(Bench.randomVector(channels * height * width, 2),
+                channels, height, width).toArray3D();
+        double[][][] out = new double[channels][height][width];
+        double after = Bench.nanosPerOp(() -> Bench.sink += Tensor.normalizeInto(tensor, out)[0][0][0]);
+        print(name, Bench.nanosPerOp(() -> Bench.sink += normalizeTwoPass(tensor, out)[0][0][0]), after);
+    }
+
+    private static void softmax(String name, int n) {
+        double[] x = Bench.randomVector(n, 3);
+        double[] out = new double[n];
+        print(name,
+                Bench.nanosPerOp(() -> Bench.sink += softmaxThreePass(x, out)[0]),
+                Bench.nanosPerOp(() -> Bench.sink += Softmax.applyInto(x, out)[0]));
+    }
+
+    // 以前の Tensor.normalize（最小・最大の走査のあと書き込む）
+    private static double[][][] normalizeTwoPass(double[][][] tensor, double[][][] out) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (double[][] channel : tensor) {
+            for (double[] row : channel) {
+                for (double val : row) {
+                    min = Math.min(min, val);
+                    max = Math.max(max, val);
+                }
+            }
+        }
+        double range = max - min;
+        for (int c = 0; c < tensor.length; c++) {
+            for (int h = 0; h < tensor[0].length; h++) {
+                for (int w = 0; w < tensor[0][0].length; w++) {
+                    out[c][h][w] = (tensor[c][h][w] - min) / range;
+                }
+            }
+        }
+        return out;
+    }
+
+    // 以前の Softmax.applyInto（最大値・指数と総和・割り算の3回の走査）
+    private static double[] softmaxThreePass(double[] x, double[] out) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (double val : x) {
+            max = Math.max(max, val);
+        }
+        double sum = 0.0;
+        for (int i = 0; i < x.length; i++) {
+            out[i] = Math.exp(x[i] - max);
+            sum += out[i];
+        }
+        for (int i = 0; i < x.length; i++) {
+            out[i] = out[i] / sum;
+        }
+        return out;
+    }
+
+    private static void print(String name, double before, double after) {
+        System.out.printf("%-28s %12.2f %12.2f %8.2fx%n", name, before / 1e3, after / 1e3, before / after);
+    }
+}
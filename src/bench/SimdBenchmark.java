@@ -0,0 +1,62 @@
+package bench;
+
+import math.ElementKernels;
+import math.Kernels;
+
+/**
+ * 要素ごとの演算カーネルのベンチマーク（通常ループ版とVector API版の比較）
+ * 実行例: java --add-modules jdk.incubator.vector -cp out bench.SimdBenchmark
+ */
+public class SimdBenchmark {
+
+    // 回帰ネットの隠れ層（16, 32）とCNNの全結合層（128, 2048）で使う長さ
+    private static final int[] LENGTHS = {16, 32, 128, 2048};
+
+    public static void main(String[] args) {
+        ElementKernels scalar = Kernels.scalar();
+        ElementKernels simd = Kernels.simd();
+        if (simd == null) {
+            System.out.println("Vector API is not available; run with --add-modules jdk.incubator.vector");
+            return;
+        }
+
+        System.out.printf("%-10s %6s %12s %12s %8s%n", "op", "length", "scalar(ns)", "simd(ns)", "speedup");
+        for (int n : LENGTHS) {
+            double[] a = Bench.randomVector(n, 1);
+            double[] b = Bench.randomVector(n, 2);
+            double[] out = new double[n];
+
+            report("dot", n,
+                    Bench.nanosPerOp(() -> Bench.sink += scalar.dot(a, 0, b, 0, n)),
+                    Bench.nanosPerOp(() -> Bench.sink += simd.dot(a, 0, b, 0, n)));
+            report("add", n,
+                    Bench.nanosPerOp(() -> scalar.add(a, 0, b, 0, out, 0, n)),
+                    Bench.nanosPerOp(() -> simd.add(a, 0, b, 0, out, 0, n)));
+            report("hadamard", n,
+                    Bench.nanosPerOp(() -> scalar.multiply(a, 0, b, 0, out, 0, n)),
+                    Bench.nanosPerOp(() -> simd.multiply(a, 0, b, 0, out, 0, n)));
+            report("scale", n,
+                    Bench.nanosPerOp(() -> scalar.scale(a, 0, 0.5, out, 0, n)),
+                    Bench.nanosPerOp(() -> simd.scale(a, 0, 0.5, out, 0, n)));
+        }
+
+        // 行列×ベクトル（fc1: 128x2048）
+        double[][] m = Bench.randomMatrix(128, 2048, 3);
+        double[] v = Bench.randomVector(2048, 4);
+        double[] out = new double[128];
+        report("dotMV", 2048,
+                Bench.nanosPerOp(() -> dotMV(scalar, m, v, out)),
+                Bench.nanosPerOp(() -> dotMV(simd, m, v, out)));
+    }
+
+    private static void dotMV(ElementKernels kernels, double[][] m, double[] v, double[] out) {
+        for (int i = 0; i < m.length; i++) {
+            out[i] = kernels.dot(m[i], 0, v, 0, v.length);
+        }
+    }
+
+    private static void report(String op, int n, double scalarNanos, double simdNanos) {
+        System.out.printf("%-10s %6d %12.1f %12.1f %7.2fx%n",
+                op, n, scalarNanos, simdNanos, scalarNanos / simdNanos);
+    }
+}
@@ -0,0 +1,75 @@
+package bench;
+
+import alg.Backprop;
+import math.Matrix;
+import math.SmallKernels;
+import ui.ra.Launcher;
+
+/**
+ * 小さな行列向けの展開版カーネル（SmallKernels）の効果
+ * 回帰ネットワーク（1-32-16-1）の Backprop.train の1秒あたりのステップ数と、
+ * 各層の形状の行列×ベクトルの時間を、展開版の有効・無効で比べる。
+ * 実行例: java -cp out bench.SmallKernelBenchmark
+ *         java --add-modules jdk.incubator.vector -cp out bench.SmallKernelBenchmark
+ */
+public class SmallKernelBenchmark {
+
+    private static final int SAMPLES = 200;
+    private static final int EPOCHS = 50;
+
+    public static void main(String[] args) {
+        double[] xs = new double[SAMPLES];
+        double[] ys = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            xs[i] = -Math.PI + 2 * Math.PI * i / SAMPLES;
+            ys[i] = Math.sin(xs[i]);
+        }
+
+        boolean original = SmallKernels.isEnabled();
+        System.out.println("Backprop.train (1-" + Launcher.HIDDEN1_SIZE + "-" + Launcher.HIDDEN2_SIZE + "-1)");
+        System.out.printf("%-9s %12s %14s %14s%n", "kernels", "ns/step", "steps/sec", "mse");
+        for (boolean small : new boolean[]{false, true}) {
+            SmallKernels.setEnabled(small);
+            Backprop nn = new Backprop(1, Launcher.HIDDEN1_SIZE, Launcher.HIDDEN2_SIZE, 1, 0.001, 0.0001);
+            int[] step = {0};
+            double nanos = Bench.nanosPerOp(() -> {
+                int i = step[0]++ % SAMPLES;
+                Bench.sink += nn.train(xs[i], ys[i]);
+            });
+
+            // 損失は新しいモデルを決まった回数だけ学習させて比べる
+            Backprop fresh = new Backprop(1, Launcher.HIDDEN1_SIZE, Launcher.HIDDEN2_SIZE, 1, 0.001, 0.0001);
+            for (int epoch = 0; epoch < EPOCHS; epoch++) {
+                for (int i = 0; i < SAMPLES; i++) {
+                    fresh.train(xs[i], ys[i]);
+                }
+            }
+            double loss = 0;
+            for (int i = 0; i < SAMPLES; i++) {
+                double d = fresh.predict(xs[i]) - ys[i];
+                loss += d * d;
+            }
+            System.out.printf("%-9s %12.1f %14.0f %14.6e%n", small ? "unrolled" : "generic",
+                    nanos, 1e9 / nanos, loss / SAMPLES);
+        }
+
+        System.out.println();
+        System.out.println("Matrix.dotMVInto");
+        System.out.printf("%-8s %12s %12s %9s%n", "shape", "generic(ns)", "unrolled(ns)", "speedup");
+        int[][] shapes = {{Launcher.HIDDEN1_SIZE, 1}, {Launcher.HIDDEN2_SIZE, Launcher.HIDDEN1_SIZE},
+                {1, Launcher.HIDDEN2_SIZE}, {8, 8}, {4, 4}};
+        for (int[] shape : shapes) {
+            double[][] m = Bench.randomMatrix(shape[0], shape[1], 1);
+            double[] v = Bench.randomVector(shape[1], 2);
+            double[] out = new double[shape[0]];
+            SmallKernels.setEnabled(false);
+            double generic = Bench.nanosPerOp(() -> Matrix.dotMVInto(m, v, out));
+            SmallKernels.setEnabled(true);
+            double unrolled = Bench.nanosPerOp(() -> Matrix.dotMVInto(m, v, out));
+            System.out.printf("%-8s %12.1f %12.1f %8.2fx%n", shape[0] + "x" + shape[1],
+                    generic, unrolled, generic / unrolled);
+            Bench.sink += out[0];
+        }
+        SmallKernels.setEnabled(original);
+    }
+}
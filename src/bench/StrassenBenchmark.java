@@ -0,0 +1,56 @@
+package bench;
+
+import math.DenseMatrix;
+import math.Gemm;
+import math.Strassen;
+
+/**
+ * Strassen-Winograd法と通常の積（Gemm）の比較
+ * 再帰の段数ごとに実行時間と、通常の積に対する最大相対誤差を表示する。
+ * 再帰1段が Gemm より速くなる最小の n がクロスオーバーの目安になる。
+ * 実行例: java -cp out bench.StrassenBenchmark
+ */
+public class StrassenBenchmark {
+
+    private static final int[] SIZES = {256, 512, 1024, 2048};
+    private static final int MAX_LEVELS = 3;
+
+    public static void main(String[] args) {
+        int original = Strassen.getCrossover();
+        System.out.printf("%6s %7s %12s %9s %12s%n", "n", "levels", "ms", "speedup", "max rel err");
+
+        for (int n : SIZES) {
+            DenseMatrix a = DenseMatrix.of(Bench.randomMatrix(n, n, 1));
+            DenseMatrix b = DenseMatrix.of(Bench.randomMatrix(n, n, 2));
+            DenseMatrix reference = new DenseMatrix(n, n);
+            DenseMatrix c = new DenseMatrix(n, n);
+
+            double gemmNanos = Bench.nanosPerOp(() -> {
+                reference.fill(0.0);
+                Gemm.multiply(a, b, reference);
+            });
+            System.out.printf("%6d %7s %12.2f %9s %12s%n", n, "gemm", gemmNanos / 1e6, "1.00x", "-");
+
+            for (int levels = 1; levels <= MAX_LEVELS; levels++) {
+                // 最小辺が n / 2^levels になったところで Gemm に切り替える
+                Strassen.setCrossover(n >> levels);
+                double nanos = Bench.nanosPerOp(() -> Strassen.multiplyInto(a, b, c));
+                System.out.printf("%6d %7d %12.2f %8.2fx %12.2e%n", n, levels, nanos / 1e6,
+                        gemmNanos / nanos, maxRelativeError(c, reference));
+            }
+        }
+        Strassen.setCrossover(original);
+    }
+
+    private static double maxRelativeError(DenseMatrix c, DenseMatrix reference) {
+        double maxError = 0.0;
+        double maxValue = 0.0;
+        for (int i = 0; i < c.getRows(); i++) {
+            for (int j = 0; j < c.getCols(); j++) {
+                maxError = Math.max(maxError, Math.abs(c.get(i, j) - reference.get(i, j)));
+                maxValue = Math.max(maxValue, Math.abs(reference.get(i, j)));
+            }
+        }
+        return maxError / maxValue;
+    }
+}
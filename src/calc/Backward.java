@@ -1,12 +1,12 @@
 package calc;
 
 import math.Matrix;
-import alg.Tanh;
 import alg.MSE;
 
 /**
  * 逆伝播（Backward Propagation）の計算
  * 改良版：複数の隠れ層をサポート
+ * 勾配と作業領域は初回呼び出し時にネットワークの形状に合わせて確保し、以降は使い回す
  */
 public class Backward {
 
@@ -18,6 +18,10 @@ public class Backward {
     private double[][] gradW3;
     private double[] gradB3;
 
+    // 作業領域
+    private double[] delta3;      // 出力層のデルタ（要素数1）
+    private double[] input;       // 入力値（要素数1）
+
     /**
      * 逆伝播の実行
      * @param fwd 順伝播オブジェクト
@@ -25,37 +29,62 @@ public class Backward {
      * @return 損失値
      */
     public double backward(Forward fwd, double y) {
+        ensureBuffers(fwd);
+
         // 損失の計算
         double loss = MSE.calculate(fwd.getA3(), y);
 
         // 出力層のデルタ（恒等活性化なので導関数は1）
-        double delta3 = MSE.gradient(fwd.getA3(), y);
+        delta3[0] = MSE.gradient(fwd.getA3(), y);
 
         // 出力層の勾配
-        gradW3 = Matrix.outer(new double[]{delta3}, fwd.getA2());
-        gradB3 = new double[]{delta3};
+        Matrix.outerInto(delta3, fwd.getA2(), gradW3);
+        gradB3[0] = delta3[0];
 
-        // 隠れ層2のデルタ
-        double[] delta2Temp = Matrix.dotMV(Matrix.t(fwd.getW3()), new double[]{delta3});
-        double[] tanhDeriv2 = Tanh.derivative(fwd.getA2());
-        double[] delta2 = Matrix.hadamard(delta2Temp, tanhDeriv2);
+        // 隠れ層2のデルタ（gradB2 をデルタの格納先として兼用）
+        double[] delta2 = gradB2;
+        Matrix.dotTMVInto(fwd.getW3(), delta3, delta2);
+        Matrix.hadamardInPlace(delta2, fwd.getDeriv2());
 
         // 隠れ層2の勾配
-        gradW2 = Matrix.outer(delta2, fwd.getA1());
-        gradB2 = delta2;
+        Matrix.outerInto(delta2, fwd.getA1(), gradW2);
 
-        // 隠れ層1のデルタ
-        double[] delta1Temp = Matrix.dotMV(Matrix.t(fwd.getW2()), delta2);
-        double[] tanhDeriv1 = Tanh.derivative(fwd.getA1());
-        double[] delta1 = Matrix.hadamard(delta1Temp, tanhDeriv1);
+        // 隠れ層1のデルタ（gradB1 をデルタの格納先として兼用）
+        double[] delta1 = gradB1;
+        Matrix.dotTMVInto(fwd.getW2(), delta2, delta1);
+        Matrix.hadamardInPlace(delta1, fwd.getDeriv1());
 
         // 隠れ層1の勾配
-        gradW1 = Matrix.outer(delta1, new double[]{fwd.getLastInput()});
-        gradB1 = delta1;
+        input[0] = fwd.getLastInput();
+        Matrix.outerInto(delta1, input, gradW1);
 
         return loss;
     }
 
+    /**
+     * 勾配と作業領域をネットワークの形状に合わせて確保（形状が同じなら何もしない）
+     */
+    private void ensureBuffers(Forward fwd) {
+        double[][] w2 = fwd.getW2();
+        double[][] w3 = fwd.getW3();
+        int hidden1 = w2[0].length;
+        int hidden2 = w2.length;
+        if (gradW2 != null && gradW2.length == hidden2 && gradW2[0].length == hidden1
+                && gradW3.length == w3.length) {
+            return;
+        }
+
+        gradW1 = new double[hidden1][1];
+        gradB1 = new double[hidden1];
+        gradW2 = new double[hidden2][hidden1];
+        gradB2 = new double[hidden2];
+        gradW3 = new double[1][hidden2];
+        gradB3 = new double[1];
+
+        delta3 = new double[1];
+        input = new double[1];
+    }
+
     // ゲッターメソッド
     public double[][] getGradW1() { return gradW1; }
     public double[] getGradB1() { return gradB1; }
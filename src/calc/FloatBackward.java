@@ -0,0 +1,94 @@
+package calc;
+
+import math.Matrix;
+import alg.MSE;
+
+/**
+ * 逆伝播（Backward Propagation）の計算（単精度）
+ * 勾配と作業領域を float で保持する以外は {@link Backward} と同じ
+ */
+public class FloatBackward {
+
+    // 勾配
+    private float[][] gradW1;
+    private float[] gradB1;
+    private float[][] gradW2;
+    private float[] gradB2;
+    private float[][] gradW3;
+    private float[] gradB3;
+
+    // 作業領域
+    private float[] delta3;
+    private float[] input;
+
+    /**
+     * 逆伝播の実行
+     * @param fwd 順伝播オブジェクト
+     * @param y 正解値
+     * @return 損失値
+     */
+    public double backward(FloatForward fwd, double y) {
+        ensureBuffers(fwd);
+
+        // 損失の計算（スカラーなので倍精度で求める）
+        double loss = MSE.calculate(fwd.getA3(), y);
+
+        // 出力層のデルタ
+        delta3[0] = (float) MSE.gradient(fwd.getA3(), y);
+
+        // 出力層の勾配
+        Matrix.outerInto(delta3, fwd.getA2(), gradW3);
+        gradB3[0] = delta3[0];
+
+        // 隠れ層2のデルタ（gradB2 をデルタの格納先として兼用）
+        float[] delta2 = gradB2;
+        Matrix.dotTMVInto(fwd.getW3(), delta3, delta2);
+        Matrix.hadamardInPlace(delta2, fwd.getDeriv2());
+
+        // 隠れ層2の勾配
+        Matrix.outerInto(delta2, fwd.getA1(), gradW2);
+
+        // 隠れ層1のデルタ（gradB1 をデルタの格納先として兼用）
+        float[] delta1 = gradB1;
+        Matrix.dotTMVInto(fwd.getW2(), delta2, delta1);
+        Matrix.hadamardInPlace(delta1, fwd.getDeriv1());
+
+        // 隠れ層1の勾配
+        input[0] = fwd.getLastInput();
+        Matrix.outerInto(delta1, input, gradW1);
+
+        return loss;
+    }
+
+    /**
+     * 勾配と作業領域をネットワークの形状に合わせて確保（形状が同じなら何もしない）
+     */
+    private void ensureBuffers(FloatForward fwd) {
+        float[][] w2 = fwd.getW2();
+        float[][] w3 = fwd.getW3();
+        int hidden1 = w2[0].length;
+        int hidden2 = w2.length;
+        if (gradW2 != null && gradW2.length == hidden2 && gradW2[0].length == hidden1
+                && gradW3.length == w3.length) {
+            return;
+        }
+
+        gradW1 = new float[hidden1][1];
+        gradB1 = new float[hidden1];
+        gradW2 = new float[hidden2][hidden1];
+        gradB2 = new float[hidden2];
+        gradW3 = new float[1][hidden2];
+        gradB3 = new float[1];
+
+        delta3 = new float[1];
+        input = new float[1];
+    }
+
+    // ゲッターメソッド
+    public float[][] getGradW1() { return gradW1; }
+    public float[] getGradB1() { return gradB1; }
+    public float[][] getGradW2() { return gradW2; }
+    public float[] getGradB2() { return gradB2; }
+    public float[][] getGradW3() { return gradW3; }
+    public float[] getGradB3() { return gradB3; }
+}
@@ -0,0 +1,93 @@
+package calc;
+
+import math.Activation;
+import math.Matrix;
+
+/**
+ * 順伝播（Forward Propagation）の計算（単精度）
+ * 重み・中間結果を float で保持する以外は {@link Forward} と同じ
+ */
+public class FloatForward {
+
+    // ネットワークの重みとバイアス
+    private final float[][] W1;  // 隠れ層1の重み
+    private final float[] b1;    // 隠れ層1のバイアス
+    private final float[][] W2;  // 隠れ層2の重み
+    private final float[] b2;    // 隠れ層2のバイアス
+    private final float[][] W3;  // 出力層の重み
+    private final float[] b3;    // 出力層のバイアス
+
+    // 中間計算結果（逆伝播で使用）
+    private final float[] a1;      // 隠れ層1の出力
+    private final float[] deriv1;  // tanh'(隠れ層1)
+    private final float[] a2;      // 隠れ層2の出力
+    private final float[] deriv2;  // tanh'(隠れ層2)
+    private float a3;            // 出力層の出力（最終出力）
+
+    private float lastInput;     // 最後の入力値（逆伝播で使用）
+
+    // 作業領域
+    private final float[] input;
+    private final float[] z3Array;
+
+    /**
+     * コンストラクタ（2層隠れ層）
+     * 初期値は同じ乱数列から作った倍精度の重みを丸めたもの
+     * @param inputSize 入力層のサイズ
+     * @param hidden1Size 隠れ層1のサイズ
+     * @param hidden2Size 隠れ層2のサイズ
+     * @param outputSize 出力層のサイズ
+     */
+    public FloatForward(int inputSize, int hidden1Size, int hidden2Size, int outputSize) {
+        Forward init = new Forward(inputSize, hidden1Size, hidden2Size, outputSize);
+        W1 = Matrix.toFloat(init.getW1());
+        b1 = Matrix.toFloat(init.getB1());
+        W2 = Matrix.toFloat(init.getW2());
+        b2 = Matrix.toFloat(init.getB2());
+        W3 = Matrix.toFloat(init.getW3());
+        b3 = Matrix.toFloat(init.getB3());
+
+        input = new float[inputSize];
+        a1 = new float[hidden1Size];
+        deriv1 = new float[hidden1Size];
+        a2 = new float[hidden2Size];
+        deriv2 = new float[hidden2Size];
+        z3Array = new float[outputSize];
+    }
+
+    /**
+     * 順伝播の実行（ヒープ確保を行わない）
+     * @param x 入力値
+     * @return 出力値
+     */
+    public float forward(float x) {
+        lastInput = x;
+        input[0] = x;
+
+        // 隠れ層1の計算
+        Matrix.fusedDotMVInto(W1, input, b1, Activation.TANH, a1, deriv1);
+
+        // 隠れ層2の計算
+        Matrix.fusedDotMVInto(W2, a1, b2, Activation.TANH, a2, deriv2);
+
+        // 出力層の計算（恒等活性化）
+        Matrix.fusedDotMVInto(W3, a2, b3, Activation.IDENTITY, z3Array, null);
+        a3 = z3Array[0];
+
+        return a3;
+    }
+
+    // ゲッターメソッド（逆伝播で使用）
+    public float getLastInput() { return lastInput; }
+    public float[] getA1() { return a1; }
+    public float[] getDeriv1() { return deriv1; }
+    public float[] getA2() { return a2; }
+    public float[] getDeriv2() { return deriv2; }
+    public float getA3() { return a3; }
+    public float[][] getW1() { return W1; }
+    public float[] getB1() { return b1; }
+    public float[][] getW2() { return W2; }
+    public float[] getB2() { return b2; }
+    public float[][] getW3() { return W3; }
+    public float[] getB3() { return b3; }
+}
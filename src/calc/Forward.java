@@ -1,7 +1,7 @@
 package calc;
 
+import math.Activation;
 import math.Matrix;
-import alg.Tanh;
 
 /**
  * 順伝播（Forward Propagation）の計算
@@ -18,15 +18,19 @@ public class Forward {
     private double[] b3;    // 出力層のバイアス
 
     // 中間計算結果（逆伝播で使用）
-    private double[] z1;    // 隠れ層1の入力
-    private double[] a1;    // 隠れ層1の出力
-    private double[] z2;    // 隠れ層2の入力
-    private double[] a2;    // 隠れ層2の出力
+    private double[] a1;      // 隠れ層1の出力
+    private double[] deriv1;  // tanh'(隠れ層1)
+    private double[] a2;      // 隠れ層2の出力
+    private double[] deriv2;  // tanh'(隠れ層2)
     private double z3;      // 出力層の入力
     private double a3;      // 出力層の出力（最終出力）
 
     private double lastInput; // 最後の入力値（逆伝播で使用）
 
+    // 作業領域（毎回の確保を避けるため使い回す）
+    private final double[] input;
+    private final double[] z3Array;
+
     /**
      * コンストラクタ（2層隠れ層）
      * @param inputSize 入力層のサイズ
@@ -47,6 +51,13 @@ public class Forward {
         W3 = new double[outputSize][hidden2Size];
         b3 = new double[outputSize];
 
+        input = new double[inputSize];
+        a1 = new double[hidden1Size];
+        deriv1 = new double[hidden1Size];
+        a2 = new double[hidden2Size];
+        deriv2 = new double[hidden2Size];
+        z3Array = new double[outputSize];
+
         // ランダム初期化（改良版）
         java.util.Random rand = new java.util.Random(42);
 
@@ -77,6 +88,8 @@ public class Forward {
 
     /**
      * 順伝播の実行
+     * 中間結果は固定の配列に上書きするので、ヒープ確保を行わない。
+     * 各層は積・バイアス・活性化を1回の走査で計算し、tanh の導関数も同時に記録する
      * @param x 入力値
      * @return 出力値
      */
@@ -84,21 +97,16 @@ public class Forward {
         lastInput = x;
 
         // 入力を配列形式に変換
-        double[] input = {x};
+        input[0] = x;
 
         // 隠れ層1の計算
-        z1 = Matrix.dotMV(W1, input);
-        z1 = Matrix.addVec(z1, b1);
-        a1 = Tanh.apply(z1);
+        Matrix.fusedDotMVInto(W1, input, b1, Activation.TANH, a1, deriv1);
 
         // 隠れ層2の計算
-        z2 = Matrix.dotMV(W2, a1);
-        z2 = Matrix.addVec(z2, b2);
-        a2 = Tanh.apply(z2);
+        Matrix.fusedDotMVInto(W2, a1, b2, Activation.TANH, a2, deriv2);
 
         // 出力層の計算（恒等活性化）
-        double[] z3Array = Matrix.dotMV(W3, a2);
-        z3Array = Matrix.addVec(z3Array, b3);
+        Matrix.fusedDotMVInto(W3, a2, b3, Activation.IDENTITY, z3Array, null);
         z3 = z3Array[0];  // スカラーに変換
         a3 = z3;  // 恒等活性化
 
@@ -107,10 +115,10 @@ public class Forward {
 
     // ゲッターメソッド（逆伝播で使用）
     public double getLastInput() { return lastInput; }
-    public double[] getZ1() { return z1; }
     public double[] getA1() { return a1; }
-    public double[] getZ2() { return z2; }
+    public double[] getDeriv1() { return deriv1; }
     public double[] getA2() { return a2; }
+    public double[] getDeriv2() { return deriv2; }
     public double getZ3() { return z3; }
     public double getA3() { return a3; }
     public double[][] getW1() { return W1; }
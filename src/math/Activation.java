@@ -0,0 +1,190 @@
+package math;
+
+/**
+ * 積の後にまとめて適用する活性化関数（バイアス加算と一緒に1回の走査で処理する）
+ *
+ * 各値 z = x + bias について出力 f(z) と、必要なら導関数 f'(z) を同時に書き込む。
+ * 導関数を順伝播で記録しておけば、逆伝播では勾配に掛けるだけで済む。
+ * 値は alg.ReLU / alg.Tanh と同じ式で計算するので、分けて適用した場合と結果は一致する。
+ */
+public enum Activation {
+    IDENTITY,
+    RELU,
+    LEAKY_RELU,
+    TANH;
+
+    // Leaky ReLU の負の領域の傾き
+    public static final double LEAKY_SLOPE = 0.01;
+
+    /**
+     * 1つの値に活性化関数を適用
+     * @param z 活性化前の値
+     * @return f(z)
+     */
+    public double apply(double z) {
+        switch (this) {
+            case RELU:
+                return Math.max(0, z);
+            case LEAKY_RELU:
+                return z > 0 ? z : LEAKY_SLOPE * z;
+            case TANH:
+                return tanh(z);
+            default:
+                return z;
+        }
+    }
+
+    /**
+     * 導関数の値
+     * @param z 活性化前の値
+     * @param a 活性化後の値 f(z)
+     * @return f'(z)
+     */
+    public double derivative(double z, double a) {
+        switch (this) {
+            case RELU:
+                return z > 0 ? 1.0 : 0.0;
+            case LEAKY_RELU:
+                return z > 0 ? 1.0 : LEAKY_SLOPE;
+            case TANH:
+                return 1.0 - a * a;
+            default:
+                return 1.0;
+        }
+    }
+
+    /**
+     * x[i] にバイアスを足して活性化関数を適用する（x を上書き）
+     * @param x 積の結果 [from, to) を書き換える
+     * @param from 開始位置
+     * @param to 終了位置（含まない）
+     * @param bias バイアス（x と同じ位置を使う。null なら加算しない）
+     * @param deriv 導関数の書き込み先（null なら記録しない）
+     */
+    public void applyInPlace(double[] x, int from, int to, double[] bias, double[] deriv) {
+        // 要素ごとの分岐を避けるため、種類ごとにループを分ける
+        switch (this) {
+            case RELU:
+                for (int i = from; i < to; i++) {
+                    double z = bias == null ? x[i] : x[i] + bias[i];
+                    x[i] = Math.max(0, z);
+                    if (deriv != null) {
+                        deriv[i] = z > 0 ? 1.0 : 0.0;
+                    }
+                }
+                break;
+            case LEAKY_RELU:
+                for (int i = from; i < to; i++) {
+                    double z = bias == null ? x[i] : x[i] + bias[i];
+                    x[i] = z > 0 ? z : LEAKY_SLOPE * z;
+                    if (deriv != null) {
+                        deriv[i] = z > 0 ? 1.0 : LEAKY_SLOPE;
+                    }
+                }
+                break;
+            case TANH:
+                for (int i = from; i < to; i++) {
+                    double a = tanh(bias == null ? x[i] : x[i] + bias[i]);
+                    x[i] = a;
+                    if (deriv != null) {
+                        deriv[i] = 1.0 - a * a;
+                    }
+                }
+                break;
+            default:
+                for (int i = from; i < to; i++) {
+                    if (bias != null) {
+                        x[i] += bias[i];
+                    }
+                    if (deriv != null) {
+                        deriv[i] = 1.0;
+                    }
+                }
+                break;
+        }
+    }
+
+    /**
+     * 行列の1行 data[off .. off+len) に同じバイアスを足して活性化関数を適用する
+     * @param data 行列のデータ
+     * @param off 行の先頭位置
+     * @param len 行の長さ
+     * @param bias この行のバイアス
+     * @param deriv 導関数の書き込み先（null なら記録しない）
+     * @param derivOff deriv 側の行の先頭位置
+     */
+    public void applyRowInPlace(double[] data, int off, int len, double bias,
+                                double[] deriv, int derivOff) {
+        for (int j = 0; j < len; j++) {
+            double z = data[off + j] + bias;
+            double a = apply(z);
+            data[off + j] = a;
+            if (deriv != null) {
+                deriv[derivOff + j] = derivative(z, a);
+            }
+        }
+    }
+
+    // alg.Tanh.apply と同じ式（オーバーフロー対策を含む）
+    static double tanh(double x) {
+        if (x > 20) return 1.0;
+        if (x < -20) return -1.0;
+
+        double expPos = Math.exp(x);
+        double expNeg = Math.exp(-x);
+        return (expPos - expNeg) / (expPos + expNeg);
+    }
+
+    // ===== 単精度（float）版 =====
+
+    /**
+     * x[i] にバイアスを足して活性化関数を適用する（単精度、x を上書き）
+     * tanh は alg.Tanh と同じく倍精度で計算してから丸める
+     * @param x 積の結果 [from, to) を書き換える
+     * @param from 開始位置
+     * @param to 終了位置（含まない）
+     * @param bias バイアス（null なら加算しない）
+     * @param deriv 導関数の書き込み先（null なら記録しない）
+     */
+    public void applyInPlace(float[] x, int from, int to, float[] bias, float[] deriv) {
+        switch (this) {
+            case RELU:
+                for (int i = from; i < to; i++) {
+                    float z = bias == null ? x[i] : x[i] + bias[i];
+                    x[i] = Math.max(0.0f, z);
+                    if (deriv != null) {
+                        deriv[i] = z > 0 ? 1.0f : 0.0f;
+                    }
+                }
+                break;
+            case LEAKY_RELU:
+                for (int i = from; i < to; i++) {
+                    float z = bias == null ? x[i] : x[i] + bias[i];
+                    x[i] = z > 0 ? z : (float) LEAKY_SLOPE * z;
+                    if (deriv != null) {
+                        deriv[i] = z > 0 ? 1.0f : (float) LEAKY_SLOPE;
+                    }
+                }
+                break;
+            case TANH:
+                for (int i = from; i < to; i++) {
+                    float a = (float) tanh(bias == null ? x[i] : x[i] + bias[i]);
+                    x[i] = a;
+                    if (deriv != null) {
+                        deriv[i] = 1.0f - a * a;
+                    }
+                }
+                break;
+            default:
+                for (int i = from; i < to; i++) {
+                    if (bias != null) {
+                        x[i] += bias[i];
+                    }
+                    if (deriv != null) {
+                        deriv[i] = 1.0f;
+                    }
+                }
+                break;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package math;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * 計算バックエンド（{@link ComputeBackend}）の一覧と既定の選択
+ *
+ * 組み込みの {@link ReferenceBackend}（"reference"）と {@link ParallelBackend}（"parallel"）に加え、
+ * クラスパス上の META-INF/services/math.ComputeBackend に書かれた実装を ServiceLoader で読み込む。
+ * 既定のバックエンドは次の順で決まる。
+ * - {@link #setDefault(ComputeBackend)} で設定したもの
+ * - システムプロパティ jeeplearning.backend に名前を指定したもの（-Djeeplearning.backend=reference など。
+ *   見つからない名前なら標準エラー出力に警告を出して "parallel" を使う）
+ * - "parallel"
+ * モデルごとに選ぶ場合は ImprovedCNN#setBackend などに渡す。
+ */
+public final class Backends {
+
+    public static final String DEFAULT_NAME = ParallelBackend.NAME;
+
+    private static final List<ComputeBackend> AVAILABLE = load();
+    private static volatile ComputeBackend defaultBackend = fromProperty();
+
+    private Backends() {
+    }
+
+    /**
+     * 既定のバックエンド
+     */
+    public static ComputeBackend get() {
+        return defaultBackend;
+    }
+
+    /**
+     * 既定のバックエンドを設定（以降に作成するモデルが使う）
+     * @param backend 使用するバックエンド
+     */
+    public static void setDefault(ComputeBackend backend) {
+        if (backend == null) {
+            throw new IllegalArgumentException("Backend must not be null");
+        }
+        defaultBackend = backend;
+    }
+
+    /**
+     * 名前でバックエンドを探す
+     * @param name バックエンドの名前
+     * @return 見つかったバックエンド
+     */
+    public static ComputeBackend byName(String name) {
+        for (ComputeBackend backend : AVAILABLE) {
+            if (backend.getName().equals(name)) {
+                return backend;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compute backend: " + name + " (available: " + names() + ")");
+    }
+
+    /**
+     * 使用できるバックエンドの一覧
+     */
+    public static List<ComputeBackend> available() {
+        return AVAILABLE;
+    }
+
+    private static List<String> names() {
+        List<String> names = new ArrayList<>();
+        for (ComputeBackend backend : AVAILABLE) {
+            names.add(backend.getName());
+        }
+        return names;
+    }
+
+    // システムプロパティで指定したバックエンド（クラスの初期化で例外を投げないよう、不明な名前は既定に戻す）
+    private static ComputeBackend fromProperty() {
+        String name = System.getProperty("jeeplearning.backend", DEFAULT_NAME);
+        try {
+            return byName(name);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage() + "; falling back to \"" + DEFAULT_NAME + "\"");
+            return byName(DEFAULT_NAME);
+        }
+    }
+
+    private static List<ComputeBackend> load() {
+        List<ComputeBackend> backends = new ArrayList<>();
+        // 組み込みの実装はサービス定義がコピーされていない環境でも使えるよう直接登録する
+        backends.add(new ReferenceBackend());
+        backends.add(new ParallelBackend());
+
+        try {
+            for (ComputeBackend backend : ServiceLoader.load(ComputeBackend.class)) {
+                if (!contains(backends, backend.getName())) {
+                    backends.add(backend);
+                }
+            }
+        } catch (ServiceConfigurationError e) {
+            // 読み込めない実装があっても組み込みの実装は使えるようにする
+        }
+        return Collections.unmodifiableList(backends);
+    }
+
+    private static boolean contains(List<ComputeBackend> backends, String name) {
+        for (ComputeBackend backend : backends) {
+            if (backend.getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,36 @@
+package math;
+
+/**
+ * 要素ごとの2項演算（{@link BroadcastOps} で使う）
+ */
+public enum BinaryOp {
+    ADD,
+    SUBTRACT,
+    MULTIPLY,
+    DIVIDE,
+    MAXIMUM,
+    MINIMUM;
+
+    /**
+     * 1組の値に演算を適用
+     * @param a 左の値
+     * @param b 右の値
+     * @return a (op) b
+     */
+    public double apply(double a, double b) {
+        switch (this) {
+            case ADD:
+                return a + b;
+            case SUBTRACT:
+                return a - b;
+            case MULTIPLY:
+                return a * b;
+            case DIVIDE:
+                return a / b;
+            case MAXIMUM:
+                return Math.max(a, b);
+            default:
+                return Math.min(a, b);
+        }
+    }
+}
@@ -0,0 +1,520 @@
+package math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ブロードキャスト付きの要素ごとの演算（NumPy と同じ規則）
+ *
+ * 形状は末尾の次元から揃え、大きさが1の次元と足りない先頭の次元は同じ要素を繰り返して使う。
+ * 例: [C][H][W] の特徴マップに [C][1][1] のチャンネルごとのバイアスを足す。
+ * 演算の前に各テンソルのストライドを一度だけ求め、大きさ1の次元を除き、全てのテンソルで
+ * 続けて並ぶ次元は1つにまとめる。最後の次元（行）の中は添字を計算しない専用のループで計算し、
+ * 全て連続している行の加算・乗算は {@link ElementKernels} を使う。行の先頭位置は足し引きで進める。
+ *
+ * {@link Expression} は (a + b) * c のような演算の連鎖を1回の走査で計算する。
+ * 行ごとに最初の演算の結果を出力の行へ書き、残りの演算をキャッシュに載ったその行に続けて適用するので、
+ * 中間結果のテンソルを作らない。
+ * xxxInto の out は入力と同じビューでもよい（記憶域が重なる別のビューなら一時テンソルを経由する）。
+ */
+public class BroadcastOps {
+
+    /**
+     * 2つの形状をブロードキャストした形状
+     * @param a 形状1
+     * @param b 形状2
+     * @return 末尾から揃えて、各次元の大きい方（一方が1の場合）をとった形状
+     */
+    public static int[] broadcastShape(int[] a, int[] b) {
+        int rank = Math.max(a.length, b.length);
+        int[] result = new int[rank];
+        for (int i = 0; i < rank; i++) {
+            int da = i < rank - a.length ? 1 : a[i - (rank - a.length)];
+            int db = i < rank - b.length ? 1 : b[i - (rank - b.length)];
+            if (da != db && da != 1 && db != 1) {
+                throw new IllegalArgumentException("Cannot broadcast " + Arrays.toString(a)
+                        + " with " + Arrays.toString(b));
+            }
+            result[i] = da == 1 ? db : da;
+        }
+        return result;
+    }
+
+    /**
+     * 2項演算 a (op) b
+     * @return ブロードキャストした形状の新しいテンソル
+     */
+    public static Tensor apply(BinaryOp op, Tensor a, Tensor b) {
+        return expression(a).then(op, b).evaluate();
+    }
+
+    /**
+     * 2項演算 a (op) b の結果を out に書き込む
+     * @param out 書き込み先（a と b をブロードキャストした形状）
+     * @return out
+     */
+    public static Tensor applyInto(BinaryOp op, Tensor a, Tensor b, Tensor out) {
+        return expression(a).then(op, b).evaluateInto(out);
+    }
+
+    /**
+     * スカラーとの2項演算 a (op) scalar の結果を out に書き込む
+     * @param out 書き込み先（a をブロードキャストできる形状）
+     * @return out
+     */
+    public static Tensor applyInto(BinaryOp op, Tensor a, double scalar, Tensor out) {
+        return expression(a).then(op, scalar).evaluateInto(out);
+    }
+
+    /**
+     * 単項演算 op(a)
+     * @return a と同じ形状の新しいテンソル
+     */
+    public static Tensor apply(UnaryOp op, Tensor a) {
+        return expression(a).then(op).evaluate();
+    }
+
+    /**
+     * 単項演算 op(a) の結果を out に書き込む
+     * @param out 書き込み先（a をブロードキャストできる形状）
+     * @return out
+     */
+    public static Tensor applyInto(UnaryOp op, Tensor a, Tensor out) {
+        return expression(a).then(op).evaluateInto(out);
+    }
+
+    /**
+     * target = target (op) operand（operand は target の形状にブロードキャストする）
+     * @return target
+     */
+    public static Tensor applyInPlace(BinaryOp op, Tensor target, Tensor operand) {
+        return applyInto(op, target, operand, target);
+    }
+
+    /**
+     * target = op(target)
+     * @return target
+     */
+    public static Tensor applyInPlace(UnaryOp op, Tensor target) {
+        return applyInto(op, target, target);
+    }
+
+    /**
+     * source から始まる演算の連鎖を作る
+     * 例: expression(a).then(BinaryOp.ADD, b).then(BinaryOp.MULTIPLY, c).evaluateInto(out) は
+     * out = (a + b) * c を1回の走査で計算する
+     */
+    public static Expression expression(Tensor source) {
+        return new Expression(source);
+    }
+
+    /**
+     * 要素ごとの演算の連鎖（左から順に適用する）
+     */
+    public static final class Expression {
+        private final Tensor source;
+        private final List<Step> steps = new ArrayList<>();
+
+        private Expression(Tensor source) {
+            this.source = source;
+        }
+
+        /**
+         * 現在の値 (op) operand を続ける（operand はブロードキャストする）
+         */
+        public Expression then(BinaryOp op, Tensor operand) {
+            steps.add(new Step(op, null, operand, 0.0));
+            return this;
+        }
+
+        /**
+         * 現在の値 (op) scalar を続ける
+         */
+        public Expression then(BinaryOp op, double scalar) {
+            steps.add(new Step(op, null, null, scalar));
+            return this;
+        }
+
+        /**
+         * op(現在の値) を続ける
+         */
+        public Expression then(UnaryOp op) {
+            steps.add(new Step(null, op, null, 0.0));
+            return this;
+        }
+
+        /**
+         * 全ての入力をブロードキャストした形状
+         */
+        public int[] getShape() {
+            int[] shape = source.getShape();
+            for (Step step : steps) {
+                if (step.operand != null) {
+                    shape = broadcastShape(shape, step.operand.getShape());
+                }
+            }
+            return shape;
+        }
+
+        /**
+         * 連鎖を計算する
+         * @return {@link #getShape()} の形状の新しいテンソル
+         */
+        public Tensor evaluate() {
+            return evaluateInto(new Tensor(getShape()));
+        }
+
+        /**
+         * 連鎖を計算して out に書き込む
+         * @param out 書き込み先（全ての入力をブロードキャストできる形状）
+         * @return out
+         */
+        public Tensor evaluateInto(Tensor out) {
+            int[] shape = out.getShape();
+            // 入力の順は source、各段の operand（スカラーと単項演算の段は持たない）
+            List<Tensor> inputs = new ArrayList<>();
+            inputs.add(source.broadcastTo(shape));
+            for (Step step : steps) {
+                if (step.operand != null) {
+                    inputs.add(step.operand.broadcastTo(shape));
+                }
+            }
+            if (overlaps(out, inputs)) {
+                Tensor temp = evaluateInto(new Tensor(shape));
+                return out.copyFrom(temp);
+            }
+            new Plan(out, inputs).run(steps);
+            return out;
+        }
+
+        /**
+         * out の記憶域を共有する入力があり、要素ごとに同じ位置を読むとは限らないか
+         * （最初の段の入力が out と同じビューなら、その行を読んでから書くので重なってよい）
+         */
+        private boolean overlaps(Tensor out, List<Tensor> inputs) {
+            int firstStage = steps.isEmpty() || steps.get(0).operand == null ? 1 : 2;
+            for (int i = 0; i < inputs.size(); i++) {
+                Tensor in = inputs.get(i);
+                if (in.getData() != out.getData()) {
+                    continue;
+                }
+                boolean sameView = in.getOffset() == out.getOffset()
+                        && Arrays.equals(in.getStrides(), out.getStrides());
+                if (i >= firstStage || !sameView) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Step {
+        final BinaryOp binary;
+        final UnaryOp unary;
+        final Tensor operand;
+        final double scalar;
+
+        Step(BinaryOp binary, UnaryOp unary, Tensor operand, double scalar) {
+            this.binary = binary;
+            this.unary = unary;
+            this.operand = operand;
+            this.scalar = scalar;
+        }
+    }
+
+    /**
+     * 走査の計画: 大きさ1の次元を除き、全てのテンソルで続けて並ぶ次元をまとめた形状とストライド
+     * テンソルの番号は 0 が出力、1 以降が入力の順
+     */
+    private static final class Plan {
+        final double[][] data;
+        final int[] offsets;
+        final int[] dims;
+        final int[][] strides;  // [テンソル][次元]
+        final int size;
+
+        Plan(Tensor out, List<Tensor> inputs) {
+            int count = inputs.size() + 1;
+            data = new double[count][];
+            offsets = new int[count];
+            int[][] fullStrides = new int[count][];
+            for (int t = 0; t < count; t++) {
+                Tensor tensor = t == 0 ? out : inputs.get(t - 1);
+                data[t] = tensor.getData();
+                offsets[t] = tensor.getOffset();
+                fullStrides[t] = tensor.getStrides();
+            }
+            size = out.getSize();
+
+            // 大きさ1の次元を除き、後ろの次元に続けて並ぶ次元をまとめる
+            int[] shape = out.getShape();
+            int[] mergedDims = new int[Math.max(1, shape.length)];
+            int[][] mergedStrides = new int[count][mergedDims.length];
+            int rank = 0;
+            for (int axis = shape.length - 1; axis >= 0; axis--) {
+                if (shape[axis] == 1) {
+                    continue;
+                }
+                if (rank > 0 && mergeable(fullStrides, axis, mergedStrides, rank - 1, mergedDims[rank - 1])) {
+                    mergedDims[rank - 1] *= shape[axis];
+                    continue;
+                }
+                mergedDims[rank] = shape[axis];
+                for (int t = 0; t < count; t++) {
+                    mergedStrides[t][rank] = fullStrides[t][axis];
+                }
+                rank++;
+            }
+            if (rank == 0) {
+                mergedDims[0] = 1;
+                rank = 1;
+            }
+            // 外側の次元から並ぶように逆順にする
+            dims = new int[rank];
+            strides = new int[count][rank];
+            for (int i = 0; i < rank; i++) {
+                dims[i] = mergedDims[rank - 1 - i];
+                for (int t = 0; t < count; t++) {
+                    strides[t][i] = mergedStrides[t][rank - 1 - i];
+                }
+            }
+        }
+
+        private static boolean mergeable(int[][] fullStrides, int axis, int[][] mergedStrides, int inner, int innerDim) {
+            for (int t = 0; t < fullStrides.length; t++) {
+                if (fullStrides[t][axis] != mergedStrides[t][inner] * innerDim) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void run(List<Step> steps) {
+            if (size == 0) {
+                return;
+            }
+            int rank = dims.length;
+            int inner = rank - 1;
+            int width = dims[inner];
+            int count = data.length;
+            int[] pos = offsets.clone();
+            int[] idx = new int[inner];
+            int rows = size / width;
+
+            for (int r = 0; r < rows; r++) {
+                evaluateRow(steps, pos, width);
+                // 行の先頭位置を進める（添字は行ごとに1回だけ更新する）
+                for (int axis = inner - 1; axis >= 0; axis--) {
+                    for (int t = 0; t < count; t++) {
+                        pos[t] += strides[t][axis];
+                    }
+                    if (++idx[axis] < dims[axis]) {
+                        break;
+                    }
+                    for (int t = 0; t < count; t++) {
+                        pos[t] -= strides[t][axis] * dims[axis];
+                    }
+                    idx[axis] = 0;
+                }
+            }
+        }
+
+        private void evaluateRow(List<Step> steps, int[] pos, int width) {
+            int inner = dims.length - 1;
+            double[] out = data[0];
+            int outOff = pos[0];
+            int outStride = strides[0][inner];
+
+            // 最初の段は入力から出力の行へ、以降の段は出力の行の上で計算する
+            double[] src = data[1];
+            int srcOff = pos[1];
+            int srcStride = strides[1][inner];
+            int next = 2;
+            if (steps.isEmpty()) {
+                unaryRow(null, src, srcOff, srcStride, out, outOff, outStride, width);
+                return;
+            }
+            for (Step step : steps) {
+                if (step.unary != null) {
+                    unaryRow(step.unary, src, srcOff, srcStride, out, outOff, outStride, width);
+                } else if (step.operand == null) {
+                    scalarRow(step.binary, src, srcOff, srcStride, step.scalar, out, outOff, outStride, width);
+                } else {
+                    binaryRow(step.binary, src, srcOff, srcStride,
+                            data[next], pos[next], strides[next][inner], out, outOff, outStride, width);
+                    next++;
+                }
+                src = out;
+                srcOff = outOff;
+                srcStride = outStride;
+            }
+        }
+    }
+
+    // ===== 行のループ =====
+
+    /**
+     * out[i] = a[i] (op) b[i]
+     */
+    private static void binaryRow(BinaryOp op, double[] a, int aOff, int aStride, double[] b, int bOff, int bStride,
+                                  double[] out, int outOff, int outStride, int n) {
+        if (outStride == 1 && aStride == 1 && bStride == 0) {
+            scalarRow(op, a, aOff, 1, b[bOff], out, outOff, 1, n);
+            return;
+        }
+        if (outStride == 1 && aStride == 0 && bStride == 1) {
+            scalarLeftRow(op, a[aOff], b, bOff, out, outOff, n);
+            return;
+        }
+        if (outStride != 1 || aStride != 1 || bStride != 1) {
+            for (int i = 0; i < n; i++) {
+                out[outOff + i * outStride] = op.apply(a[aOff + i * aStride], b[bOff + i * bStride]);
+            }
+            return;
+        }
+        switch (op) {
+            case ADD:
+                Kernels.get().add(a, aOff, b, bOff, out, outOff, n);
+                break;
+            case MULTIPLY:
+                Kernels.get().multiply(a, aOff, b, bOff, out, outOff, n);
+                break;
+            case SUBTRACT:
+                for (int i = 0; i < n; i++) {
+                    out[outOff + i] = a[aOff + i] - b[bOff + i];
+                }
+                break;
+            case DIVIDE:
+                for (int i = 0; i < n; i++) {
+                    out[outOff + i] = a[aOff + i] / b[bOff + i];
+                }
+                break;
+            case MAXIMUM:
+                for (int i = 0; i < n; i++) {
+                    out[outOff + i] = Math.max(a[aOff + i], b[bOff + i]);
+                }
+                break;
+            default:
+                for (int i = 0; i < n; i++) {
+                    out[outOff + i] = Math.min(a[aOff + i], b[bOff + i]);
+                }
+                break;
+        }
+    }
+
+    /**
+     * out[i] = a[i] (op) s
+     */
+    private static void scalarRow(BinaryOp op, double[] a, int aOff, int aStride, double s,
+                                  double[] out, int outOff, int outStride, int n) {
+        if (outStride != 1 || aStride != 1) {
+            for (int i = 0; i < n; i++) {
+                out[outOff + i * outStride] = op.apply(a[aOff + i * aStride], s);
+            }
+            return;
+        }
+        switch (op) {
+            case ADD:
+                for (int i = 0; i < n; i++) {
+                    out[outOff + i] = a[aOff + i] + s;
+                }
+                break;
+            case SUBTRACT:
+                for (int i = 0; i < n; i++) {
+                    out[outOff + i] = a[aOff + i] - s;
+                }
+                break;
+            case MULTIPLY:
+                Kernels.get().scale(a, aOff, s, out, outOff, n);
+                break;
+            case DIVIDE:
+                for (int i = 0; i < n; i++) {
+                    out[outOff + i] = a[aOff + i] / s;
+                }
+                break;
+            case MAXIMUM:
+                for (int i = 0; i < n; i++) {
+                    out[outOff + i] = Math.max(a[aOff + i], s);
+                }
+                break;
+            default:
+                for (int i = 0; i < n; i++) {
+                    out[outOff + i] = Math.min(a[aOff + i], s);
+                }
+                break;
+        }
+    }
+
+    /**
+     * out[i] = s (op) b[i]（出力と b は連続）
+     */
+    private static void scalarLeftRow(BinaryOp op, double s, double[] b, int bOff, double[] out, int outOff, int n) {
+        switch (op) {
+            case SUBTRACT:
+                for (int i = 0; i < n; i++) {
+                    out[outOff + i] = s - b[bOff + i];
+                }
+                break;
+            case DIVIDE:
+                for (int i = 0; i < n; i++) {
+                    out[outOff + i] = s / b[bOff + i];
+                }
+                break;
+            default:
+                // 残りの演算は入れ替えても結果が同じ
+                scalarRow(op, b, bOff, 1, s, out, outOff, 1, n);
+                break;
+        }
+    }
+
+    /**
+     * out[i] = op(a[i])（op が null ならコピー）
+     */
+    private static void unaryRow(UnaryOp op, double[] a, int aOff, int aStride,
+                                 double[] out, int outOff, int outStride, int n) {
+        if (outStride != 1 || aStride != 1) {
+            for (int i = 0; i < n; i++) {
+                double x = a[aOff + i * aStride];
+                out[outOff + i * outStride] = op == null ? x : op.apply(x);
+            }
+            return;
+        }
+        if (op == null) {
+            System.arraycopy(a, aOff, out, outOff, n);
+            return;
+        }
+        switch (op) {
+            case NEGATE:
+                for (int i = 0; i < n; i++) {
+                    out[outOff + i] = -a[aOff + i];
+                }
+                break;
+            case ABS:
+                for (int i = 0; i < n; i++) {
+                    out[outOff + i] = Math.abs(a[aOff + i]);
+                }
+                break;
+            case SQUARE:
+                for (int i = 0; i < n; i++) {
+                    out[outOff + i] = a[aOff + i] * a[aOff + i];
+                }
+                break;
+            case SQRT:
+                for (int i = 0; i < n; i++) {
+                    out[outOff + i] = Math.sqrt(a[aOff + i]);
+                }
+                break;
+            case RELU:
+                for (int i = 0; i < n; i++) {
+                    out[outOff + i] = Math.max(0, a[aOff + i]);
+                }
+                break;
+            default:
+                for (int i = 0; i < n; i++) {
+                    out[outOff + i] = op.apply(a[aOff + i]);
+                }
+                break;
+        }
+    }
+}
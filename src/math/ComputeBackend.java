@@ -0,0 +1,131 @@
+package math;
+
+/**
+ * 行列積・行列×ベクトル・畳み込み・プーリング・要素ごとの演算・集約の実装をまとめた計算バックエンド
+ *
+ * モデルは演算をこのインターフェースを通して呼び、実装を差し替えられるようにする。
+ * 実装は {@link java.util.ServiceLoader} で見つけるので、別の jar に入れた実装も
+ * META-INF/services/math.ComputeBackend に書けば使える。選び方は {@link Backends} を参照。
+ *
+ * 実装は状態を持たず、複数のスレッドから同時に呼べること。
+ * xxxInto は結果を呼び出し側が用意した配列に書き込み、その配列を返す。
+ * 同じ入力に対する結果は実装によらず一致するのが望ましい（浮動小数点の加算順を変える実装は、
+ * 差が丸め誤差の範囲に収まることを {@link #getName()} の説明などで明記する）。
+ */
+public interface ComputeBackend {
+
+    /**
+     * バックエンドの名前（jeeplearning.backend で指定する値）
+     */
+    String getName();
+
+    // ===== 行列積・行列×ベクトル =====
+
+    /**
+     * 行列積 out = a × b
+     */
+    DenseMatrix dotInto(DenseMatrix a, DenseMatrix b, DenseMatrix out);
+
+    /**
+     * 行列とベクトルの積 out = m × v
+     */
+    double[] dotMVInto(DenseMatrix m, double[] v, double[] out);
+
+    /**
+     * 行列とベクトルの積にバイアスと活性化関数を続けて適用する out = f(m × v + bias)
+     * @param deriv 導関数の書き込み先（null なら記録しない）
+     */
+    double[] fusedDotMVInto(DenseMatrix m, double[] v, double[] bias, Activation activation,
+                            double[] out, double[] deriv);
+
+    /**
+     * 転置行列とベクトルの積 out = m^T × v
+     */
+    double[] dotTMVInto(DenseMatrix m, double[] v, double[] out);
+
+    /**
+     * 外積 out = v1 ⊗ v2
+     */
+    DenseMatrix outerInto(double[] v1, double[] v2, DenseMatrix out);
+
+    // ===== 畳み込み・プーリング =====
+
+    /**
+     * 3D畳み込み（{@link ConvolutionOps#convolve3DInto(double[][][], double[][][][], double[], int, int, double[][][])} と同じ）
+     */
+    double[][][] convolve3DInto(double[][][] input, double[][][][] kernels, double[] bias,
+                                int stride, int padding, double[][][] output);
+
+    /**
+     * 3D最大プーリング
+     */
+    double[][][] maxPool3DInto(double[][][] input, int poolSize, int stride, double[][][] output);
+
+    // ===== 要素ごとの演算 =====
+
+    /**
+     * out[i] = a[i] + b[i]
+     */
+    double[] addInto(double[] a, double[] b, double[] out);
+
+    /**
+     * out[i] = a[i] * b[i]
+     */
+    double[] hadamardInto(double[] a, double[] b, double[] out);
+
+    /**
+     * out[i] = v[i] * scalar
+     */
+    double[] scaleInto(double[] v, double scalar, double[] out);
+
+    // ===== 集約 =====
+
+    /**
+     * 総和
+     */
+    double sum(double[] v);
+
+    /**
+     * 最大値
+     */
+    double max(double[] v);
+
+    /**
+     * 最大値の位置（同じ値が複数あれば最初の位置）
+     */
+    int argmax(double[] v);
+
+    // ===== 単精度（float）版 =====
+
+    /**
+     * 行列とベクトルの積にバイアスと活性化関数を続けて適用する（単精度）
+     */
+    float[] fusedDotMVInto(FloatDenseMatrix m, float[] v, float[] bias, Activation activation,
+                           float[] out, float[] deriv);
+
+    /**
+     * 転置行列とベクトルの積（単精度）
+     */
+    float[] dotTMVInto(FloatDenseMatrix m, float[] v, float[] out);
+
+    /**
+     * 外積（単精度）
+     */
+    FloatDenseMatrix outerInto(float[] v1, float[] v2, FloatDenseMatrix out);
+
+    /**
+     * 3D畳み込み（単精度）
+     */
+    float[][][] convolve3DInto(float[][][] input, float[][][][] kernels, float[] bias,
+                               int stride, int padding, float[][][] output);
+
+    /**
+     * 3D最大プーリング（単精度）
+     */
+    float[][][] maxPool3DInto(float[][][] input, int poolSize, int stride, float[][][] output);
+
+    /**
+     * out[i] = a[i] * b[i]（単精度）
+     */
+    float[] hadamardInto(float[] a, float[] b, float[] out);
+}
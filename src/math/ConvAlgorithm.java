@@ -0,0 +1,36 @@
+package math;
+
+/**
+ * 畳み込みの計算方法
+ * DIRECT はカーネルの要素ごとに入力の行を出力に足し込む（{@link ConvolutionOps#convolve3DInto}）。
+ * IM2COL は全入力チャンネルの窓を [inputChannels*K*K][出力の画素数] の行列に並べ、
+ * [outputChannels][inputChannels*K*K] の重み行列との1回の行列積で計算する
+ * （{@link ConvolutionOps#convolve3DGemmInto}）。
+ * WINOGRAD_2X2 / WINOGRAD_4X4 は 3x3・ストライド1の畳み込みを Winograd の F(2×2, 3×3) / F(4×4, 3×3) で
+ * 計算する（{@link WinogradFilter}）。乗算は直接法の 1/2.25 / 1/4 になるが、F(4×4) は丸め誤差が大きい。
+ * FFT はストライド1の畳み込みを2次元の実数 FFT とブロックごとの overlap-add で計算する（{@link FFTFilter}）。
+ * 計算量がカーネルの面積によらないので、大きなカーネル・大きな画像で有利になる。
+ * AUTO は形状から推定した演算量で FFT と IM2COL を選ぶ（{@link ConvolutionOps#selectAlgorithm}）。
+ */
+public enum ConvAlgorithm {
+    DIRECT,
+    IM2COL,
+    WINOGRAD_2X2,
+    WINOGRAD_4X4,
+    FFT,
+    AUTO;
+
+    /**
+     * Winograd 法の出力のタイルの大きさ（Winograd 法でなければ0）
+     */
+    public int winogradTileSize() {
+        switch (this) {
+            case WINOGRAD_2X2:
+                return 2;
+            case WINOGRAD_4X4:
+                return 4;
+            default:
+                return 0;
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package math;
 
+import java.util.Arrays;
+
 /**
  * 畳み込みニューラルネットワーク用の演算
+ * xxxInto 版は結果を呼び出し側が用意した配列に書き込み、結果用の配列を確保しない
  */
 public class ConvolutionOps {
 
@@ -15,39 +18,88 @@ public class ConvolutionOps {
      */
     public static double[][] convolve2D(double[][] input, double[][] kernel,
                                         int stride, int padding) {
-        // パディングを適用
-        double[][] paddedInput = applyPadding(input, padding);
+        int outputHeight = outputSize(input.length, kernel.length, stride, padding);
+        int outputWidth = outputSize(input[0].length, kernel[0].length, stride, padding);
+        return convolve2DInto(input, kernel, stride, padding, new double[outputHeight][outputWidth]);
+    }
 
-        int inputHeight = paddedInput.length;
-        int inputWidth = paddedInput[0].length;
-        int kernelHeight = kernel.length;
-        int kernelWidth = kernel[0].length;
+    /**
+     * 2D畳み込み演算の結果を output に書き込む
+     * @param input 入力画像 [height][width]
+     * @param kernel カーネル [kernelHeight][kernelWidth]
+     * @param stride ストライド
+     * @param padding パディング
+     * @param output 書き込み先 [outputHeight][outputWidth]
+     * @return output
+     */
+    public static double[][] convolve2DInto(double[][] input, double[][] kernel,
+                                            int stride, int padding, double[][] output) {
+        for (double[] row : output) {
+            Arrays.fill(row, 0.0);
+        }
+        convolve2DAccumulate(input, kernel, stride, padding, output);
+        return output;
+    }
 
-        // 出力サイズを計算
-        int outputHeight = (inputHeight - kernelHeight) / stride + 1;
-        int outputWidth = (inputWidth - kernelWidth) / stride + 1;
+    /**
+     * 2D畳み込み演算の結果を output に加算する（チャンネル方向の累積用）
+     * パディングした画像は作らず、カーネルの要素ごとに入力の内側に当たる出力の範囲だけを計算する
+     * （範囲の外はパディングの0なので寄与しない）。範囲の中は境界の判定をせずに行単位で加算する。
+     * @param input 入力画像 [height][width]
+     * @param kernel カーネル [kernelHeight][kernelWidth]
+     * @param stride ストライド
+     * @param padding パディング
+     * @param output 加算先 [outputHeight][outputWidth]
+     */
+    public static void convolve2DAccumulate(double[][] input, double[][] kernel,
+                                            int stride, int padding, double[][] output) {
+        int inputHeight = input.length;
+        int inputWidth = input[0].length;
+        int outputHeight = output.length;
+        int outputWidth = output[0].length;
+        ElementKernels kernels = Kernels.get();
 
-        double[][] output = new double[outputHeight][outputWidth];
+        for (int kh = 0; kh < kernel.length; kh++) {
+            int ohFrom = validFrom(padding - kh, stride);
+            int ohTo = validTo(inputHeight, padding - kh, stride, outputHeight);
 
-        // 畳み込み演算
-        for (int oh = 0; oh < outputHeight; oh++) {
-            for (int ow = 0; ow < outputWidth; ow++) {
-                double sum = 0.0;
+            for (int kw = 0; kw < kernel[kh].length; kw++) {
+                int owFrom = validFrom(padding - kw, stride);
+                int owTo = validTo(inputWidth, padding - kw, stride, outputWidth);
+                if (owFrom >= owTo) {
+                    continue;
+                }
+                double weight = kernel[kh][kw];
 
-                // カーネルの各要素について
-                for (int kh = 0; kh < kernelHeight; kh++) {
-                    for (int kw = 0; kw < kernelWidth; kw++) {
-                        int ih = oh * stride + kh;
-                        int iw = ow * stride + kw;
-                        sum += paddedInput[ih][iw] * kernel[kh][kw];
+                for (int oh = ohFrom; oh < ohTo; oh++) {
+                    double[] inRow = input[oh * stride + kh - padding];
+                    double[] outRow = output[oh];
+                    int iw = owFrom * stride + kw - padding;
+                    if (stride == 1) {
+                        kernels.axpy(weight, inRow, iw, outRow, owFrom, owTo - owFrom);
+                    } else {
+                        for (int ow = owFrom; ow < owTo; ow++, iw += stride) {
+                            outRow[ow] += weight * inRow[iw];
+                        }
                     }
                 }
-
-                output[oh][ow] = sum;
             }
         }
+    }
 
-        return output;
+    /**
+     * 入力の位置 o * stride - shift が0以上になる最小の出力位置 o
+     */
+    private static int validFrom(int shift, int stride) {
+        return shift <= 0 ? 0 : (shift + stride - 1) / stride;
+    }
+
+    /**
+     * 入力の位置 o * stride - shift が size 未満になる出力位置 o の上限（outputSize で切る）
+     */
+    private static int validTo(int size, int shift, int stride, int outputSize) {
+        int last = size - 1 + shift;
+        return last < 0 ? 0 : Math.min(outputSize, last / stride + 1);
     }
 
     /**
@@ -61,41 +113,56 @@ public class ConvolutionOps {
      */
     public static double[][][] convolve3D(double[][][] input, double[][][][] kernels,
                                           double[] bias, int stride, int padding) {
-        int inputChannels = input.length;
-        int outputChannels = kernels.length;
+        int outputHeight = outputSize(input[0].length, kernels[0][0].length, stride, padding);
+        int outputWidth = outputSize(input[0][0].length, kernels[0][0][0].length, stride, padding);
+        double[][][] output = new double[kernels.length][outputHeight][outputWidth];
+        return convolve3DInto(input, kernels, bias, stride, padding, output);
+    }
 
-        // 最初のチャンネルで出力サイズを計算
-        double[][] firstPadded = applyPadding(input[0], padding);
-        int outputHeight = (firstPadded.length - kernels[0][0].length) / stride + 1;
-        int outputWidth = (firstPadded[0].length - kernels[0][0][0].length) / stride + 1;
+    /**
+     * 3D畳み込み演算の結果を output に書き込む
+     * @param input 入力テンソル [channels][height][width]
+     * @param kernels カーネル [outputChannels][inputChannels][kernelHeight][kernelWidth]
+     * @param bias バイアス [outputChannels]（nullなら加算しない）
+     * @param stride ストライド
+     * @param padding パディング
+     * @param output 書き込み先 [outputChannels][outputHeight][outputWidth]
+     * @return output
+     */
+    public static double[][][] convolve3DInto(double[][][] input, double[][][][] kernels,
+                                              double[] bias, int stride, int padding,
+                                              double[][][] output) {
+        // パディングは convolve2DAccumulate が範囲の計算で扱うので、パディングした入力は作らない
+        accumulateChannels(input, kernels, bias, stride, padding, output);
+        return output;
+    }
 
-        double[][][] output = new double[outputChannels][outputHeight][outputWidth];
+    private static void accumulateChannels(double[][][] input, double[][][][] kernels, double[] bias,
+                                           int stride, int padding, double[][][] output) {
+        int inputChannels = input.length;
+        int outputChannels = kernels.length;
 
         // 各出力チャンネルについて
         for (int oc = 0; oc < outputChannels; oc++) {
+            double[][] out = output[oc];
+            for (double[] row : out) {
+                Arrays.fill(row, 0.0);
+            }
+
             // 各入力チャンネルの畳み込みを累積
             for (int ic = 0; ic < inputChannels; ic++) {
-                double[][] conv = convolve2D(input[ic], kernels[oc][ic], stride, padding);
-
-                // 結果を累積
-                for (int h = 0; h < outputHeight; h++) {
-                    for (int w = 0; w < outputWidth; w++) {
-                        output[oc][h][w] += conv[h][w];
-                    }
-                }
+                convolve2DAccumulate(input[ic], kernels[oc][ic], stride, padding, out);
             }
 
             // バイアスを追加
             if (bias != null) {
-                for (int h = 0; h < outputHeight; h++) {
-                    for (int w = 0; w < outputWidth; w++) {
-                        output[oc][h][w] += bias[oc];
+                for (double[] row : out) {
+                    for (int w = 0; w < row.length; w++) {
+                        row[w] += bias[oc];
                     }
                 }
             }
         }
-
-        return output;
     }
 
     /**
@@ -106,34 +173,94 @@ public class ConvolutionOps {
      * @return プーリング結果
      */
     public static double[][] maxPool2D(double[][] input, int poolSize, int stride) {
-        int inputHeight = input.length;
-        int inputWidth = input[0].length;
+        int outputHeight = (input.length - poolSize) / stride + 1;
+        int outputWidth = (input[0].length - poolSize) / stride + 1;
+        return maxPool2DInto(input, poolSize, stride, new double[outputHeight][outputWidth]);
+    }
 
-        int outputHeight = (inputHeight - poolSize) / stride + 1;
-        int outputWidth = (inputWidth - poolSize) / stride + 1;
+    /**
+     * 最大プーリングの結果を output に書き込む
+     * @param input 入力画像 [height][width]
+     * @param poolSize プーリングサイズ
+     * @param stride ストライド
+     * @param output 書き込み先 [outputHeight][outputWidth]
+     * @return output
+     */
+    public static double[][] maxPool2DInto(double[][] input, int poolSize, int stride,
+                                           double[][] output) {
+        return maxPool2DInto(input, poolSize, stride, 0, output);
+    }
 
-        double[][] output = new double[outputHeight][outputWidth];
+    /**
+     * パディング付きの最大プーリングの結果を output に書き込む
+     * パディングの部分は最大値の候補に含めない。パディングした画像は作らず、
+     * 窓が入力の内側に収まる範囲は境界の判定をせずに、縁だけ窓を切り詰めて計算する。
+     * @param input 入力画像 [height][width]
+     * @param poolSize プーリングサイズ
+     * @param stride ストライド
+     * @param padding パディング
+     * @param output 書き込み先 [outputHeight][outputWidth]
+     * @return output
+     */
+    public static double[][] maxPool2DInto(double[][] input, int poolSize, int stride, int padding,
+                                           double[][] output) {
+        int outputHeight = output.length;
+        int outputWidth = output[0].length;
+        // 窓全体が入力の内側に収まる出力の範囲 [from, to)
+        int ohFrom = Math.min(outputHeight, validFrom(padding, stride));
+        int ohTo = Math.max(ohFrom, validTo(input.length - poolSize + 1, padding, stride, outputHeight));
+        int owFrom = Math.min(outputWidth, validFrom(padding, stride));
+        int owTo = Math.max(owFrom, validTo(input[0].length - poolSize + 1, padding, stride, outputWidth));
 
         for (int oh = 0; oh < outputHeight; oh++) {
-            for (int ow = 0; ow < outputWidth; ow++) {
-                double maxVal = Double.NEGATIVE_INFINITY;
+            double[] outRow = output[oh];
+            int ih = oh * stride - padding;
+            boolean interiorRow = oh >= ohFrom && oh < ohTo;
+
+            // 左右（上下の縁の行は全体）の縁
+            for (int ow = 0; ow < (interiorRow ? owFrom : outputWidth); ow++) {
+                outRow[ow] = borderMax(input, poolSize, ih, ow * stride - padding);
+            }
+            if (!interiorRow) {
+                continue;
+            }
+            for (int ow = owTo; ow < outputWidth; ow++) {
+                outRow[ow] = borderMax(input, poolSize, ih, ow * stride - padding);
+            }
 
-                // プーリング領域の最大値を見つける
+            // 内側
+            for (int ow = owFrom; ow < owTo; ow++) {
+                int iw = ow * stride - padding;
+                double maxVal = Double.NEGATIVE_INFINITY;
                 for (int ph = 0; ph < poolSize; ph++) {
+                    double[] inRow = input[ih + ph];
                     for (int pw = 0; pw < poolSize; pw++) {
-                        int ih = oh * stride + ph;
-                        int iw = ow * stride + pw;
-                        maxVal = Math.max(maxVal, input[ih][iw]);
+                        maxVal = Math.max(maxVal, inRow[iw + pw]);
                     }
                 }
-
-                output[oh][ow] = maxVal;
+                outRow[ow] = maxVal;
             }
         }
 
         return output;
     }
 
+    /**
+     * 左上が (ih, iw) の窓のうち入力の内側にある部分の最大値
+     */
+    private static double borderMax(double[][] input, int poolSize, int ih, int iw) {
+        int phTo = Math.min(poolSize, input.length - ih);
+        int pwTo = Math.min(poolSize, input[0].length - iw);
+        double maxVal = Double.NEGATIVE_INFINITY;
+        for (int ph = Math.max(0, -ih); ph < phTo; ph++) {
+            double[] inRow = input[ih + ph];
+            for (int pw = Math.max(0, -iw); pw < pwTo; pw++) {
+                maxVal = Math.max(maxVal, inRow[iw + pw]);
+            }
+        }
+        return maxVal;
+    }
+
     /**
      * 3D最大プーリング（複数チャンネル）
      * @param input 入力テンソル [channels][height][width]
@@ -154,124 +281,2418 @@ public class ConvolutionOps {
     }
 
     /**
-     * パディングを適用
-     * @param input 入力画像
-     * @param padding パディングサイズ
-     * @return パディングされた画像
+     * 3D最大プーリングの結果を output に書き込む
+     * @param input 入力テンソル [channels][height][width]
+     * @param poolSize プーリングサイズ
+     * @param stride ストライド
+     * @param output 書き込み先 [channels][outputHeight][outputWidth]
+     * @return output
      */
-    public static double[][] applyPadding(double[][] input, int padding) {
-        if (padding == 0) {
-            return input;
+    public static double[][][] maxPool3DInto(double[][][] input, int poolSize, int stride,
+                                             double[][][] output) {
+        return maxPool3DInto(input, poolSize, stride, 0, output);
+    }
+
+    /**
+     * パディング付きの3D最大プーリングの結果を output に書き込む（パディングした入力は作らない）
+     * @param input 入力テンソル [channels][height][width]
+     * @param poolSize プーリングサイズ
+     * @param stride ストライド
+     * @param padding パディング
+     * @param output 書き込み先 [channels][outputHeight][outputWidth]
+     * @return output
+     */
+    public static double[][][] maxPool3DInto(double[][][] input, int poolSize, int stride, int padding,
+                                             double[][][] output) {
+        for (int c = 0; c < input.length; c++) {
+            maxPool2DInto(input[c], poolSize, stride, padding, output[c]);
         }
+        return output;
+    }
 
-        int height = input.length;
-        int width = input[0].length;
-        int paddedHeight = height + 2 * padding;
-        int paddedWidth = width + 2 * padding;
+    // ===== im2col + GEMM 版 =====
+    // 全入力チャンネルの窓を im2col で [inputChannels*K*K][出力の画素数] の行列に並べ、
+    // [outputChannels][inputChannels*K*K] の重み行列との積を1回の行列積で求める。積はバッチ版と同じく
+    // 画素の列ブロックごとに ElementKernels.multiplyAccumulate で計算する（出力チャンネルが少ない
+    // 細長い積では、パネルに詰め直す Gemm より速い）。
+    // 行列の行は (入力チャンネル, kh, kw)、列は (oh, ow) の順。作業用の行列は BufferPool から借りる。
+
+    /**
+     * 計算方法を指定した3D畳み込みの結果を output に書き込む
+     * @param input 入力テンソル [channels][height][width]
+     * @param kernels カーネル [outputChannels][inputChannels][kernelHeight][kernelWidth]
+     * @param bias バイアス [outputChannels]（nullなら加算しない）
+     * @param stride ストライド
+     * @param padding パディング
+     * @param algorithm 計算方法
+     * @param output 書き込み先 [outputChannels][outputHeight][outputWidth]
+     * @return output
+     */
+    public static double[][][] convolve3DInto(double[][][] input, double[][][][] kernels, double[] bias,
+                                              int stride, int padding, ConvAlgorithm algorithm,
+                                              double[][][] output) {
+        switch (algorithm) {
+            case IM2COL:
+                return convolve3DGemmInto(input, kernels, bias, stride, padding, output);
+            case WINOGRAD_2X2:
+            case WINOGRAD_4X4:
+                if (stride != 1) {
+                    throw new IllegalArgumentException("Winograd convolution requires stride 1: " + stride);
+                }
+                return convolve3DWinogradInto(input,
+                        WinogradFilter.forward(kernels, algorithm.winogradTileSize()),
+                        bias, padding, output);
+            case FFT:
+                if (stride != 1) {
+                    throw new IllegalArgumentException("FFT convolution requires stride 1: " + stride);
+                }
+                return convolve3DFFTInto(input, FFTFilter.forward(kernels, fftSize(input.length,
+                        input[0].length, input[0][0].length, kernels.length,
+                        kernels[0][0].length, kernels[0][0][0].length)), bias, padding, output);
+            case AUTO:
+                return convolve3DInto(input, kernels, bias, stride, padding,
+                        selectAlgorithm(input.length, input[0].length, input[0][0].length, kernels.length,
+                                kernels[0][0].length, kernels[0][0][0].length, stride, padding),
+                        output);
+            case DIRECT:
+            default:
+                return convolve3DInto(input, kernels, bias, stride, padding, output);
+        }
+    }
+
+    /**
+     * im2col と GEMM による3D畳み込みの結果を output に書き込む
+     * @param input 入力テンソル [channels][height][width]
+     * @param kernels カーネル [outputChannels][inputChannels][kernelHeight][kernelWidth]
+     * @param bias バイアス [outputChannels]（nullなら加算しない）
+     * @param stride ストライド
+     * @param padding パディング
+     * @param output 書き込み先 [outputChannels][outputHeight][outputWidth]
+     * @return output
+     */
+    public static double[][][] convolve3DGemmInto(double[][][] input, double[][][][] kernels, double[] bias,
+                                                  int stride, int padding, double[][][] output) {
+        int outChannels = kernels.length;
+        int kernelHeight = kernels[0][0].length;
+        int kernelWidth = kernels[0][0][0].length;
+        int outputHeight = output[0].length;
+        int outputWidth = output[0][0].length;
+        int pixels = outputHeight * outputWidth;
+        int patchSize = input.length * kernelHeight * kernelWidth;
+        if (kernels[0].length != input.length) {
+            throw new IllegalArgumentException("Kernel expects " + kernels[0].length
+                    + " input channels but input has " + input.length);
+        }
 
-        double[][] padded = new double[paddedHeight][paddedWidth];
+        BufferPool pool = BufferPool.local();
+        int mark = pool.mark();
+        try {
+            DenseMatrix weights = new DenseMatrix(packKernels(kernels, pool.borrow(outChannels * patchSize)),
+                    outChannels, patchSize, patchSize, 0);
+            DenseMatrix col = im2colInto(input, kernelHeight, kernelWidth, stride, padding,
+                    new DenseMatrix(pool.borrow(patchSize * pixels), patchSize, pixels, pixels, 0));
+            DenseMatrix out = new DenseMatrix(pool.borrow(outChannels * pixels), outChannels, pixels, pixels, 0);
+            multiplyTile(weights, col, bias, out);
 
-        // 元の画像をコピー
-        for (int h = 0; h < height; h++) {
-            for (int w = 0; w < width; w++) {
-                padded[h + padding][w + padding] = input[h][w];
+            for (int oc = 0; oc < outChannels; oc++) {
+                for (int oh = 0; oh < outputHeight; oh++) {
+                    System.arraycopy(out.getData(), out.index(oc, oh * outputWidth), output[oc][oh], 0, outputWidth);
+                }
             }
+        } finally {
+            pool.release(mark);
         }
+        return output;
+    }
 
-        return padded;
+    /**
+     * 複数チャンネルの im2col 変換
+     * @param input 入力テンソル [channels][height][width]
+     * @param kernelHeight カーネルの高さ
+     * @param kernelWidth カーネルの幅
+     * @param stride ストライド
+     * @param padding パディング
+     * @return 変換後の行列 [channels*kernelHeight*kernelWidth][outputHeight*outputWidth]
+     */
+    public static DenseMatrix im2col(double[][][] input, int kernelHeight, int kernelWidth,
+                                     int stride, int padding) {
+        int outputHeight = outputSize(input[0].length, kernelHeight, stride, padding);
+        int outputWidth = outputSize(input[0][0].length, kernelWidth, stride, padding);
+        return im2colInto(input, kernelHeight, kernelWidth, stride, padding,
+                new DenseMatrix(input.length * kernelHeight * kernelWidth, outputHeight * outputWidth));
     }
 
     /**
-     * im2col変換（畳み込みを行列積として計算するための変換）
-     * @param input 入力画像 [height][width]
+     * 複数チャンネルの im2col 変換の結果を col に書き込む
+     * 行 (c, kh, kw) には、そのタップが各出力画素で読む入力の値を並べる。入力の内側に当たる範囲は
+     * 行をそのままコピーし、入力の外に当たる上下の行と左右の列だけを0にする（パディングした入力は作らない）
+     * @param input 入力テンソル [channels][height][width]
      * @param kernelHeight カーネルの高さ
      * @param kernelWidth カーネルの幅
      * @param stride ストライド
      * @param padding パディング
-     * @return 変換後の行列 [outputSize][kernelSize]
+     * @param col 書き込み先 [channels*kernelHeight*kernelWidth][outputHeight*outputWidth]
+     * @return col
      */
-    public static double[][] im2col(double[][] input, int kernelHeight, int kernelWidth,
-                                    int stride, int padding) {
-        double[][] padded = applyPadding(input, padding);
-        int inputHeight = padded.length;
-        int inputWidth = padded[0].length;
+    public static DenseMatrix im2colInto(double[][][] input, int kernelHeight, int kernelWidth,
+                                         int stride, int padding, DenseMatrix col) {
+        int height = input[0].length;
+        int width = input[0][0].length;
+        int outputHeight = outputSize(height, kernelHeight, stride, padding);
+        int outputWidth = outputSize(width, kernelWidth, stride, padding);
+        if (col.getRows() != input.length * kernelHeight * kernelWidth
+                || col.getCols() != outputHeight * outputWidth) {
+            throw new IllegalArgumentException("Expected " + input.length * kernelHeight * kernelWidth + "x"
+                    + outputHeight * outputWidth + " but got " + col.getRows() + "x" + col.getCols());
+        }
+        double[] c = col.getData();
 
-        int outputHeight = (inputHeight - kernelHeight) / stride + 1;
-        int outputWidth = (inputWidth - kernelWidth) / stride + 1;
-        int outputSize = outputHeight * outputWidth;
-        int kernelSize = kernelHeight * kernelWidth;
+        int r = 0;
+        for (double[][] channel : input) {
+            for (int kh = 0; kh < kernelHeight; kh++) {
+                int ohFrom = Math.min(outputHeight, validFrom(padding - kh, stride));
+                int ohTo = Math.max(ohFrom, validTo(height, padding - kh, stride, outputHeight));
+                for (int kw = 0; kw < kernelWidth; kw++, r++) {
+                    int owFrom = Math.min(outputWidth, validFrom(padding - kw, stride));
+                    int owTo = Math.max(owFrom, validTo(width, padding - kw, stride, outputWidth));
+                    int rowBase = col.index(r, 0);
 
-        double[][] col = new double[outputSize][kernelSize];
+                    Arrays.fill(c, rowBase, rowBase + ohFrom * outputWidth, 0.0);
+                    Arrays.fill(c, rowBase + ohTo * outputWidth, rowBase + outputHeight * outputWidth, 0.0);
+                    for (int oh = ohFrom; oh < ohTo; oh++) {
+                        int dst = rowBase + oh * outputWidth;
+                        Arrays.fill(c, dst, dst + owFrom, 0.0);
+                        Arrays.fill(c, dst + owTo, dst + outputWidth, 0.0);
+                        double[] inRow = channel[oh * stride + kh - padding];
+                        int iw = owFrom * stride + kw - padding;
+                        if (stride == 1) {
+                            System.arraycopy(inRow, iw, c, dst + owFrom, owTo - owFrom);
+                        } else {
+                            for (int ow = owFrom; ow < owTo; ow++, iw += stride) {
+                                c[dst + ow] = inRow[iw];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return col;
+    }
 
-        int outputIdx = 0;
-        for (int oh = 0; oh < outputHeight; oh++) {
-            for (int ow = 0; ow < outputWidth; ow++) {
-                int kernelIdx = 0;
+    /**
+     * カーネルを [outputChannels][inputChannels*K*K] の行優先の行列として data に並べる
+     */
+    private static double[] packKernels(double[][][][] kernels, double[] data) {
+        int idx = 0;
+        for (double[][][] kernel : kernels) {
+            for (double[][] channel : kernel) {
+                for (double[] row : channel) {
+                    System.arraycopy(row, 0, data, idx, row.length);
+                    idx += row.length;
+                }
+            }
+        }
+        return data;
+    }
 
-                for (int kh = 0; kh < kernelHeight; kh++) {
-                    for (int kw = 0; kw < kernelWidth; kw++) {
-                        int ih = oh * stride + kh;
-                        int iw = ow * stride + kw;
-                        col[outputIdx][kernelIdx] = padded[ih][iw];
-                        kernelIdx++;
+    // ===== Winograd 版 =====
+    // 3x3・ストライド1の畳み込みを F(m×m, 3×3)（m = 2, 4）で計算する（変換は WinogradFilter を参照）。
+    // 出力を m×m のタイルに分け、タイルのまとまりごとに入力のタイルを変換して V[(m+2)²][入力チャンネル][タイル] に並べ、
+    // (m+2)² 個の位置ごとに U[位置] [出力チャンネル][入力チャンネル] との積を ElementKernels.multiplyAccumulate で求めて
+    // M[(m+2)²][出力チャンネル][タイル] とし、各タイルを出力に戻す。入力の外はタイルを集めるときに0で埋める。
+
+    /** 1回に変換するタイルのまとまりの V・M の要素数の目安 */
+    private static final int WINOGRAD_BLOCK_ELEMENTS = 1 << 16;
+
+    /**
+     * Winograd 法による3D畳み込みの結果を output に書き込む（3x3・ストライド1）
+     * @param input 入力テンソル [channels][height][width]
+     * @param filter 順伝播用に変換したカーネル（{@link WinogradFilter#forward}）
+     * @param bias バイアス [outputChannels]（nullなら加算しない）
+     * @param padding パディング
+     * @param output 書き込み先 [outputChannels][outputHeight][outputWidth]
+     * @return output
+     */
+    public static double[][][] convolve3DWinogradInto(double[][][] input, WinogradFilter filter, double[] bias,
+                                                      int padding, double[][][] output) {
+        if (filter.isBackwardData()) {
+            throw new IllegalArgumentException("Filter is transformed for the backward pass");
+        }
+        return winograd(input, filter, bias, padding, output);
+    }
+
+    /**
+     * Winograd 法による3D畳み込みの入力に対する勾配を gradInput に書き込む（3x3・ストライド1）
+     * 出力の勾配を、180度回したカーネルでパディング 2 - padding の畳み込みにかける
+     * @param gradOutput 出力の勾配 [outputChannels][outputHeight][outputWidth]
+     * @param filter 入力の勾配用に変換したカーネル（{@link WinogradFilter#backwardData}）
+     * @param padding 順伝播のパディング（0 から 2）
+     * @param gradInput 書き込み先 [inputChannels][height][width]
+     * @return gradInput
+     */
+    public static double[][][] convolve3DWinogradBackwardDataInto(double[][][] gradOutput, WinogradFilter filter,
+                                                                  int padding, double[][][] gradInput) {
+        if (!filter.isBackwardData()) {
+            throw new IllegalArgumentException("Filter is transformed for the forward pass");
+        }
+        if (padding < 0 || padding > WinogradFilter.KERNEL - 1) {
+            throw new IllegalArgumentException("Padding must be between 0 and 2: " + padding);
+        }
+        return winograd(gradOutput, filter, null, WinogradFilter.KERNEL - 1 - padding, gradInput);
+    }
+
+    private static double[][][] winograd(double[][][] input, WinogradFilter filter, double[] bias,
+                                         int padding, double[][][] output) {
+        int channels = input.length;
+        int height = input[0].length;
+        int width = input[0][0].length;
+        int outChannels = filter.getOutChannels();
+        int outputHeight = outputSize(height, WinogradFilter.KERNEL, 1, padding);
+        int outputWidth = outputSize(width, WinogradFilter.KERNEL, 1, padding);
+        if (channels != filter.getInChannels()) {
+            throw new IllegalArgumentException("Filter expects " + filter.getInChannels()
+                    + " input channels but input has " + channels);
+        }
+        if (output.length != outChannels || output[0].length != outputHeight || output[0][0].length != outputWidth) {
+            throw new IllegalArgumentException("Expected output [" + outChannels + ", " + outputHeight + ", "
+                    + outputWidth + "] but got [" + output.length + ", " + output[0].length + ", "
+                    + output[0][0].length + "]");
+        }
+
+        int m = filter.getTileSize();
+        int alpha = m + WinogradFilter.KERNEL - 1;
+        int area = alpha * alpha;
+        int tilesW = (outputWidth + m - 1) / m;
+        int tiles = ((outputHeight + m - 1) / m) * tilesW;
+        int block = Math.max(1, Math.min(tiles, WINOGRAD_BLOCK_ELEMENTS / (area * Math.max(channels, outChannels))));
+        double[] u = filter.getData();
+        ElementKernels k = Kernels.get();
+
+        BufferPool pool = BufferPool.local();
+        int mark = pool.mark();
+        try {
+            double[] v = pool.borrow(area * channels * block);
+            double[] mm = pool.borrow(area * outChannels * block);
+            double[] tile = pool.borrow(area);
+            double[] tmp = pool.borrow(area);
+
+            for (int t0 = 0; t0 < tiles; t0 += block) {
+                int count = Math.min(block, tiles - t0);
+
+                // 入力のタイルを変換して V に並べる
+                for (int c = 0; c < channels; c++) {
+                    for (int t = 0; t < count; t++) {
+                        int th = (t0 + t) / tilesW, tw = (t0 + t) % tilesW;
+                        gatherTile(input[c], th * m - padding, tw * m - padding, alpha, tile);
+                        // Bᵀ d B（列に Bᵀ を掛けてから行に掛ける）
+                        for (int j = 0; j < alpha; j++) {
+                            winogradInput(m, tile, j, alpha, tmp, j, alpha);
+                        }
+                        for (int i = 0; i < alpha; i++) {
+                            winogradInput(m, tmp, i * alpha, 1, v, (i * alpha * channels + c) * block + t,
+                                    channels * block);
+                        }
                     }
                 }
 
-                outputIdx++;
+                // 位置ごとのチャンネル方向の積和
+                Arrays.fill(mm, 0, area * outChannels * block, 0.0);
+                for (int xi = 0; xi < area; xi++) {
+                    k.multiplyAccumulate(u, xi * outChannels * channels, channels, outChannels,
+                            v, xi * channels * block, block, channels,
+                            mm, xi * outChannels * block, block, count);
+                }
+
+                // 出力のタイルに戻して書き込む（出力の外に出る部分は捨てる）
+                for (int oc = 0; oc < outChannels; oc++) {
+                    double b = bias == null ? 0.0 : bias[oc];
+                    for (int t = 0; t < count; t++) {
+                        // Aᵀ M A（列に Aᵀ を掛けて m×alpha にしてから行に掛ける）
+                        for (int j = 0; j < alpha; j++) {
+                            winogradOutput(m, mm, (j * outChannels + oc) * block + t, alpha * outChannels * block,
+                                    tmp, j, alpha);
+                        }
+                        for (int i = 0; i < m; i++) {
+                            winogradOutput(m, tmp, i * alpha, 1, tile, i * m, 1);
+                        }
+                        int oh0 = (t0 + t) / tilesW * m, ow0 = (t0 + t) % tilesW * m;
+                        int rows = Math.min(m, outputHeight - oh0), cols = Math.min(m, outputWidth - ow0);
+                        for (int i = 0; i < rows; i++) {
+                            double[] outRow = output[oc][oh0 + i];
+                            for (int j = 0; j < cols; j++) {
+                                outRow[ow0 + j] = tile[i * m + j] + b;
+                            }
+                        }
+                    }
+                }
             }
+        } finally {
+            pool.release(mark);
         }
+        return output;
+    }
 
-        return col;
+    /**
+     * 左上が (ih, iw) の alpha×alpha の入力のタイルを tile に集める（入力の外は0）
+     */
+    private static void gatherTile(double[][] input, int ih, int iw, int alpha, double[] tile) {
+        int height = input.length, width = input[0].length;
+        boolean inside = iw >= 0 && iw + alpha <= width;
+        for (int p = 0; p < alpha; p++) {
+            int base = p * alpha;
+            if (ih + p < 0 || ih + p >= height) {
+                for (int q = 0; q < alpha; q++) {
+                    tile[base + q] = 0.0;
+                }
+            } else if (inside) {
+                double[] row = input[ih + p];
+                for (int q = 0; q < alpha; q++) {
+                    tile[base + q] = row[iw + q];
+                }
+            } else {
+                double[] row = input[ih + p];
+                for (int q = 0; q < alpha; q++) {
+                    tile[base + q] = iw + q >= 0 && iw + q < width ? row[iw + q] : 0.0;
+                }
+            }
+        }
     }
 
     /**
-     * col2im変換（im2colの逆変換）
-     * @param col 列形式のデータ
-     * @param inputHeight 元の画像の高さ
-     * @param inputWidth 元の画像の幅
-     * @param kernelHeight カーネルの高さ
-     * @param kernelWidth カーネルの幅
-     * @param stride ストライド
+     * 入力の変換 Bᵀ を長さ m + 2 のベクトル x に掛けて y に書き込む
+     */
+    private static void winogradInput(int m, double[] x, int xOff, int xStride, double[] y, int yOff, int yStride) {
+        double x0 = x[xOff], x1 = x[xOff + xStride], x2 = x[xOff + 2 * xStride], x3 = x[xOff + 3 * xStride];
+        if (m == 2) {
+            y[yOff] = x0 - x2;
+            y[yOff + yStride] = x1 + x2;
+            y[yOff + 2 * yStride] = x2 - x1;
+            y[yOff + 3 * yStride] = x1 - x3;
+            return;
+        }
+        double x4 = x[xOff + 4 * xStride], x5 = x[xOff + 5 * xStride];
+        y[yOff] = 4 * x0 - 5 * x2 + x4;
+        y[yOff + yStride] = -4 * (x1 + x2) + x3 + x4;
+        y[yOff + 2 * yStride] = 4 * (x1 - x2) - x3 + x4;
+        y[yOff + 3 * yStride] = 2 * (x3 - x1) - x2 + x4;
+        y[yOff + 4 * yStride] = 2 * (x1 - x3) - x2 + x4;
+        y[yOff + 5 * yStride] = 4 * x1 - 5 * x3 + x5;
+    }
+
+    /**
+     * 出力の変換 Aᵀ を長さ m + 2 のベクトル x に掛けて、長さ m の結果を y に書き込む
+     */
+    private static void winogradOutput(int m, double[] x, int xOff, int xStride, double[] y, int yOff, int yStride) {
+        double x0 = x[xOff], x1 = x[xOff + xStride], x2 = x[xOff + 2 * xStride], x3 = x[xOff + 3 * xStride];
+        if (m == 2) {
+            y[yOff] = x0 + x1 + x2;
+            y[yOff + yStride] = x1 - x2 - x3;
+            return;
+        }
+        double x4 = x[xOff + 4 * xStride], x5 = x[xOff + 5 * xStride];
+        double sum12 = x1 + x2, diff12 = x1 - x2, sum34 = x3 + x4, diff34 = x3 - x4;
+        y[yOff] = x0 + sum12 + sum34;
+        y[yOff + yStride] = diff12 + 2 * diff34;
+        y[yOff + 2 * yStride] = sum12 + 4 * sum34;
+        y[yOff + 3 * yStride] = diff12 + 8 * diff34 + x5;
+    }
+
+    // ===== FFT 版 =====
+    // ストライド1の畳み込みを2次元の実数 FFT で計算する（カーネルのスペクトルは FFTFilter を参照）。
+    // 入力を (n - KH + 1)×(n - KW + 1) のブロックに分け（overlap-add）、ブロックを0で埋めて n×n で変換し、
+    // 出力チャンネルごとに入力チャンネル方向のスペクトルの積和を求めて逆変換する。ブロックの線形畳み込みの
+    // 結果は隣のブロックの結果と重なるので、出力に足し込む。パディングの0はブロックに含めず、足し込む位置をずらす。
+    // 計算量は直接法がカーネルの面積に比例するのに対し、ブロックあたりの変換と積和だけで決まる。
+
+    /** FFT 法を選ぶ、推定した演算量の直接法との比（ConvAlgorithmBenchmark で測った交点） */
+    private static final double FFT_CROSSOVER = 4.0;
+
+    /** カーネルのスペクトルの要素数の上限（変換の大きさを選ぶときに超えないようにする） */
+    private static final int FFT_MAX_SPECTRUM_ELEMENTS = 1 << 22;
+
+    /**
+     * FFT 法による3D畳み込みの結果を output に書き込む（ストライド1）
+     * @param input 入力テンソル [channels][height][width]
+     * @param filter 変換したカーネル（{@link FFTFilter#forward}）
+     * @param bias バイアス [outputChannels]（nullなら加算しない）
      * @param padding パディング
-     * @return 画像形式のデータ
+     * @param output 書き込み先 [outputChannels][outputHeight][outputWidth]
+     * @return output
      */
-    public static double[][] col2im(double[][] col, int inputHeight, int inputWidth,
-                                    int kernelHeight, int kernelWidth,
-                                    int stride, int padding) {
-        int paddedHeight = inputHeight + 2 * padding;
-        int paddedWidth = inputWidth + 2 * padding;
-        double[][] padded = new double[paddedHeight][paddedWidth];
+    public static double[][][] convolve3DFFTInto(double[][][] input, FFTFilter filter, double[] bias,
+                                                 int padding, double[][][] output) {
+        int channels = input.length;
+        int height = input[0].length;
+        int width = input[0][0].length;
+        int outChannels = filter.getOutChannels();
+        int kernelHeight = filter.getKernelHeight();
+        int kernelWidth = filter.getKernelWidth();
+        int outputHeight = outputSize(height, kernelHeight, 1, padding);
+        int outputWidth = outputSize(width, kernelWidth, 1, padding);
+        if (channels != filter.getInChannels()) {
+            throw new IllegalArgumentException("Filter expects " + filter.getInChannels()
+                    + " input channels but input has " + channels);
+        }
+        if (output.length != outChannels || output[0].length != outputHeight || output[0][0].length != outputWidth) {
+            throw new IllegalArgumentException("Expected output [" + outChannels + ", " + outputHeight + ", "
+                    + outputWidth + "] but got [" + output.length + ", " + output[0].length + ", "
+                    + output[0][0].length + "]");
+        }
 
-        int outputHeight = (paddedHeight - kernelHeight) / stride + 1;
-        int outputWidth = (paddedWidth - kernelWidth) / stride + 1;
+        for (int oc = 0; oc < outChannels; oc++) {
+            double b = bias == null ? 0.0 : bias[oc];
+            for (double[] row : output[oc]) {
+                Arrays.fill(row, b);
+            }
+        }
 
-        int outputIdx = 0;
-        for (int oh = 0; oh < outputHeight; oh++) {
-            for (int ow = 0; ow < outputWidth; ow++) {
-                int kernelIdx = 0;
+        int n = filter.getFFTSize();
+        int spectrum = FFTFilter.spectrumSize(n);
+        int blockHeight = n - kernelHeight + 1;
+        int blockWidth = n - kernelWidth + 1;
+        double[] fr = filter.getReal();
+        double[] fi = filter.getImaginary();
 
-                for (int kh = 0; kh < kernelHeight; kh++) {
-                    for (int kw = 0; kw < kernelWidth; kw++) {
-                        int ih = oh * stride + kh;
-                        int iw = ow * stride + kw;
-                        padded[ih][iw] += col[outputIdx][kernelIdx];
-                        kernelIdx++;
+        BufferPool pool = BufferPool.local();
+        int mark = pool.mark();
+        try {
+            double[] block = pool.borrow(n * n);
+            double[] xr = pool.borrow(channels * spectrum);
+            double[] xi = pool.borrow(channels * spectrum);
+            double[] yr = pool.borrow(spectrum);
+            double[] yi = pool.borrow(spectrum);
+
+            for (int bh = 0; bh < height; bh += blockHeight) {
+                int rows = Math.min(blockHeight, height - bh);
+                // ブロックの線形畳み込みの行 r は出力の行 bh + padding - (KH - 1) + r に当たる
+                int oh0 = bh + padding - (kernelHeight - 1);
+                int rFrom = Math.max(0, -oh0);
+                int rTo = Math.min(rows + kernelHeight - 1, outputHeight - oh0);
+                for (int bw = 0; bw < width; bw += blockWidth) {
+                    int cols = Math.min(blockWidth, width - bw);
+                    int ow0 = bw + padding - (kernelWidth - 1);
+                    int cFrom = Math.max(0, -ow0);
+                    int cTo = Math.min(cols + kernelWidth - 1, outputWidth - ow0);
+                    if (rFrom >= rTo || cFrom >= cTo) {
+                        continue;
                     }
-                }
 
-                outputIdx++;
+                    // 入力チャンネルごとのブロックのスペクトル
+                    for (int c = 0; c < channels; c++) {
+                        Arrays.fill(block, 0, n * n, 0.0);
+                        for (int r = 0; r < rows; r++) {
+                            System.arraycopy(input[c][bh + r], bw, block, r * n, cols);
+                        }
+                        FFT.forward2D(block, 0, n, xr, xi, c * spectrum);
+                    }
+
+                    for (int oc = 0; oc < outChannels; oc++) {
+                        // 入力チャンネル方向のスペクトルの積和
+                        Arrays.fill(yr, 0, spectrum, 0.0);
+                        Arrays.fill(yi, 0, spectrum, 0.0);
+                        for (int c = 0; c < channels; c++) {
+                            complexMultiplyAccumulate(fr, fi, (oc * channels + c) * spectrum,
+                                    xr, xi, c * spectrum, yr, yi, spectrum);
+                        }
+                        FFT.inverse2D(yr, yi, 0, n, block, 0);
+
+                        // 重なる部分は足し込み、出力の外に出る部分は捨てる
+                        for (int r = rFrom; r < rTo; r++) {
+                            double[] out = output[oc][oh0 + r];
+                            int base = r * n;
+                            for (int cc = cFrom; cc < cTo; cc++) {
+                                out[ow0 + cc] += block[base + cc];
+                            }
+                        }
+                    }
+                }
             }
+        } finally {
+            pool.release(mark);
         }
+        return output;
+    }
 
-        // パディングを除去
-        if (padding > 0) {
-            double[][] result = new double[inputHeight][inputWidth];
-            for (int h = 0; h < inputHeight; h++) {
-                System.arraycopy(padded[h + padding], padding, result[h], 0, inputWidth);
+    /**
+     * FFT 法の変換の大きさを選ぶ
+     * ブロックを大きくすると重なりの無駄は減るが、変換の1点あたりの計算量が増えるので、
+     * 候補の2の累乗のうち推定した演算量（{@link #fftCost}）が最小のものを選ぶ
+     * @return 変換の大きさ（2の累乗）
+     */
+    public static int fftSize(int channels, int height, int width, int outChannels,
+                              int kernelHeight, int kernelWidth) {
+        int kernel = Math.max(kernelHeight, kernelWidth);
+        int smallest = Math.max(4, FFT.nextPowerOfTwo(kernel + 1));
+        int largest = Math.max(smallest,
+                FFT.nextPowerOfTwo(Math.max(height + kernelHeight, width + kernelWidth) - 1));
+        int best = smallest;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (int n = smallest; n <= largest; n <<= 1) {
+            if (n > smallest && (long) outChannels * channels * FFTFilter.spectrumSize(n) > FFT_MAX_SPECTRUM_ELEMENTS) {
+                break;
             }
-            return result;
+            double cost = fftCost(channels, height, width, outChannels, kernelHeight, kernelWidth, n);
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = n;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 計算方法を自動で選ぶ
+     * ストライド1で、FFT 法の推定演算量が直接法の 1/{@link #FFT_CROSSOVER} 未満なら FFT、それ以外は IM2COL
+     * （カーネルが大きいほど、画像が大きいほど FFT が有利になる）
+     * @return FFT または IM2COL
+     */
+    public static ConvAlgorithm selectAlgorithm(int channels, int height, int width, int outChannels,
+                                                int kernelHeight, int kernelWidth, int stride, int padding) {
+        if (stride != 1) {
+            return ConvAlgorithm.IM2COL;
         }
+        int outputHeight = outputSize(height, kernelHeight, 1, padding);
+        int outputWidth = outputSize(width, kernelWidth, 1, padding);
+        double direct = 2.0 * outputHeight * outputWidth * channels * outChannels * kernelHeight * kernelWidth;
+        int n = fftSize(channels, height, width, outChannels, kernelHeight, kernelWidth);
+        double fft = fftCost(channels, height, width, outChannels, kernelHeight, kernelWidth, n);
+        return fft * FFT_CROSSOVER < direct ? ConvAlgorithm.FFT : ConvAlgorithm.IM2COL;
+    }
 
-        return padded;
+    // FFT 法の推定演算量（ブロック数 ×（入出力チャンネル数分の変換 + スペクトルの積和））
+    private static double fftCost(int channels, int height, int width, int outChannels,
+                                  int kernelHeight, int kernelWidth, int n) {
+        int blocks = ((height + n - kernelHeight) / (n - kernelHeight + 1))
+                * ((width + n - kernelWidth) / (n - kernelWidth + 1));
+        // 実数の2次元変換はおよそ 2.5 n² log2(n)、複素数の積和は8演算
+        double transform = 2.5 * n * n * Integer.numberOfTrailingZeros(n);
+        double multiply = 8.0 * channels * outChannels * FFTFilter.spectrumSize(n);
+        return blocks * ((channels + outChannels) * transform + multiply);
+    }
+
+    // y += a × x（複素数の要素ごとの積、実部と虚部は別の配列）
+    private static void complexMultiplyAccumulate(double[] ar, double[] ai, int aOff,
+                                                  double[] xr, double[] xi, int xOff,
+                                                  double[] yr, double[] yi, int length) {
+        for (int i = 0; i < length; i++) {
+            double pr = ar[aOff + i], pi = ai[aOff + i];
+            double qr = xr[xOff + i], qi = xi[xOff + i];
+            yr[i] += pr * qr - pi * qi;
+            yi[i] += pr * qi + pi * qr;
+        }
+    }
+
+    // ===== ストライド付きテンソル（ビュー）版 =====
+
+    /**
+     * 3D畳み込みの結果を output に書き込む（{@link Tensor} のビューを入出力にする版）
+     * 入力は batch(n) などで取り出したビューでもよい。パディングした入力は作らない。
+     * @param input 入力テンソル [channels][height][width]
+     * @param kernels カーネル [outputChannels][inputChannels][kernelHeight][kernelWidth]
+     * @param bias バイアス [outputChannels]（nullなら加算しない）
+     * @param stride ストライド
+     * @param padding パディング
+     * @param output 書き込み先 [outputChannels][outputHeight][outputWidth]
+     * @return output
+     */
+    public static Tensor convolve3DInto(Tensor input, double[][][][] kernels, double[] bias,
+                                        int stride, int padding, Tensor output) {
+        int inputHeight = input.getDim(1);
+        int inputWidth = input.getDim(2);
+        Tensor.checkShape3D(output, kernels.length,
+                outputSize(inputHeight, kernels[0][0].length, stride, padding),
+                outputSize(inputWidth, kernels[0][0][0].length, stride, padding));
+
+        double[] in = input.getData();
+        double[] out = output.getData();
+        int inC = input.getStride(0), inH = input.getStride(1), inW = input.getStride(2);
+        int outC = output.getStride(0), outH = output.getStride(1), outW = output.getStride(2);
+        int outputHeight = output.getDim(1);
+        int outputWidth = output.getDim(2);
+        // 幅方向が連続していれば行ごとに axpy でまとめて足す
+        boolean rowKernel = stride * inW == 1 && outW == 1;
+        ElementKernels k = Kernels.get();
+
+        output.fill(0.0);
+        for (int oc = 0; oc < kernels.length; oc++) {
+            int outBase = output.getOffset() + oc * outC;
+
+            for (int ic = 0; ic < input.getDim(0); ic++) {
+                int inBase = input.getOffset() + ic * inC;
+                for (int kh = 0; kh < kernels[oc][ic].length; kh++) {
+                    double[] kernelRow = kernels[oc][ic][kh];
+                    int ohFrom = validFrom(padding - kh, stride);
+                    int ohTo = validTo(inputHeight, padding - kh, stride, outputHeight);
+                    for (int kw = 0; kw < kernelRow.length; kw++) {
+                        double weight = kernelRow[kw];
+                        int owFrom = validFrom(padding - kw, stride);
+                        int owTo = validTo(inputWidth, padding - kw, stride, outputWidth);
+                        for (int oh = ohFrom; oh < ohTo && owFrom < owTo; oh++) {
+                            int src = inBase + (oh * stride + kh - padding) * inH + (owFrom * stride + kw - padding) * inW;
+                            int dst = outBase + oh * outH + owFrom * outW;
+                            if (rowKernel) {
+                                k.axpy(weight, in, src, out, dst, owTo - owFrom);
+                            } else {
+                                for (int ow = 0; ow < owTo - owFrom; ow++) {
+                                    out[dst + ow * outW] += weight * in[src + ow * stride * inW];
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        // バイアスは [outputChannels][1][1] として全ての画素に足す（配列版と同じく累積の後に足す）
+        if (bias != null) {
+            BroadcastOps.applyInPlace(BinaryOp.ADD, output, Tensor.wrap(bias, kernels.length, 1, 1));
+        }
+        return output;
+    }
+
+    /**
+     * 3D最大プーリングの結果を output に書き込む（{@link Tensor} のビューを入出力にする版）
+     * @param input 入力テンソル [channels][height][width]
+     * @param poolSize プーリングサイズ
+     * @param stride ストライド
+     * @param output 書き込み先 [channels][outputHeight][outputWidth]
+     * @return output
+     */
+    public static Tensor maxPool3DInto(Tensor input, int poolSize, int stride, Tensor output) {
+        return Tensor.maxPoolInto(input, poolSize, stride, output);
+    }
+
+    // ===== バッチ（NCHW）版 =====
+    // 入出力は [batch][channels][height][width] の4次元の Tensor（ビューでもよい）。
+    // 畳み込みはサンプルのまとまり（タイル）ごとに im2col で [C*K*K][タイル内の画素数] の行列に並べ、
+    // [出力チャンネル][C*K*K] の重み行列との積で計算する。積は画素の列ブロックごとに
+    // ElementKernels.multiplyAccumulate で求め、重みはタイル内の全サンプルの画素に、
+    // im2col 行列の要素は複数の出力チャンネルに使い回される。作業用の行列は BufferPool から借りる。
+
+    /** 1タイルの im2col 行列の要素数の目安（タイルのサンプル数はこれを超えない範囲で最大にする） */
+    private static final int BATCH_TILE_ELEMENTS = 1 << 16;
+
+    /** タイルの積で一度に計算する画素の列数 */
+    private static final int BATCH_COLUMN_BLOCK = 256;
+
+    /**
+     * バッチの畳み込みの結果を output に書き込む
+     * @param input 入力 [batch][inputChannels][height][width]
+     * @param kernels カーネル [outputChannels][inputChannels][kernelHeight][kernelWidth]
+     * @param bias バイアス [outputChannels]（nullなら加算しない）
+     * @param stride ストライド
+     * @param padding パディング
+     * @param output 書き込み先 [batch][outputChannels][outputHeight][outputWidth]
+     * @return output
+     */
+    public static Tensor convolve4DInto(Tensor input, double[][][][] kernels, double[] bias,
+                                        int stride, int padding, Tensor output) {
+        BatchShape shape = new BatchShape(input, kernels, stride, padding);
+        shape.checkOutput(output);
+
+        BufferPool pool = BufferPool.local();
+        int mark = pool.mark();
+        try {
+            DenseMatrix weights = shape.weightMatrix(kernels, pool.borrow(shape.outChannels * shape.patchSize));
+            int tile = shape.tileSize();
+            double[] colData = pool.borrow(shape.patchSize * tile * shape.pixels);
+            double[] outData = pool.borrow(shape.outChannels * tile * shape.pixels);
+
+            // 各チャンネルの出力が連続していて面どうしが重ならなければ、サンプルごとの積を出力に直接書き込む
+            // （出力チャンネルが1つなら行は1本しかないので、面の間隔は使わずに行の長さを画素数とする）
+            boolean direct = output.getStride(3) == 1 && output.getStride(2) == shape.outputWidth
+                    && (shape.outChannels == 1 || output.getStride(1) >= shape.pixels);
+            int planeStride = shape.outChannels == 1 ? shape.pixels : output.getStride(1);
+
+            for (int n = 0; n < shape.batch; n += tile) {
+                int count = Math.min(tile, shape.batch - n);
+                int cols = count * shape.pixels;
+                DenseMatrix col = new DenseMatrix(colData, shape.patchSize, cols, cols, 0);
+                shape.im2col(input, n, count, col);
+                if (direct) {
+                    for (int t = 0; t < count; t++) {
+                        multiplyTile(weights, col.view(0, t * shape.pixels, shape.patchSize, shape.pixels), bias,
+                                new DenseMatrix(output.getData(), shape.outChannels, shape.pixels, planeStride,
+                                        output.getOffset() + (n + t) * output.getStride(0)));
+                    }
+                } else {
+                    DenseMatrix out = new DenseMatrix(outData, shape.outChannels, cols, cols, 0);
+                    multiplyTile(weights, col, bias, out);
+                    shape.scatter(out, n, count, output);
+                }
+            }
+        } finally {
+            pool.release(mark);
+        }
+        return output;
+    }
+
+    /**
+     * バッチの畳み込みの入力に対する勾配を gradInput に書き込む
+     * 重みの転置と出力の勾配の積を col2im で入力の形に足し戻す（パディングに落ちる値は捨てる）
+     * @param gradOutput 出力の勾配 [batch][outputChannels][outputHeight][outputWidth]
+     * @param kernels カーネル [outputChannels][inputChannels][kernelHeight][kernelWidth]
+     * @param stride ストライド
+     * @param padding パディング
+     * @param gradInput 書き込み先 [batch][inputChannels][height][width]
+     * @return gradInput
+     */
+    public static Tensor convolve4DBackwardDataInto(Tensor gradOutput, double[][][][] kernels,
+                                                    int stride, int padding, Tensor gradInput) {
+        BatchShape shape = new BatchShape(gradInput, kernels, stride, padding);
+        shape.checkOutput(gradOutput);
+
+        BufferPool pool = BufferPool.local();
+        int mark = pool.mark();
+        try {
+            DenseMatrix weights = shape.weightMatrix(kernels, pool.borrow(shape.outChannels * shape.patchSize));
+            DenseMatrix weightsT = weights.tInto(new DenseMatrix(pool.borrow(shape.patchSize * shape.outChannels),
+                    shape.patchSize, shape.outChannels, shape.outChannels, 0));
+            int tile = shape.tileSize();
+            double[] gradData = pool.borrow(shape.outChannels * tile * shape.pixels);
+            double[] colData = pool.borrow(shape.patchSize * tile * shape.pixels);
+
+            gradInput.fill(0.0);
+            for (int n = 0; n < shape.batch; n += tile) {
+                int count = Math.min(tile, shape.batch - n);
+                int cols = count * shape.pixels;
+                DenseMatrix grad = new DenseMatrix(gradData, shape.outChannels, cols, cols, 0);
+                DenseMatrix col = new DenseMatrix(colData, shape.patchSize, cols, cols, 0);
+                shape.gather(gradOutput, n, count, grad);
+                multiplyTile(weightsT, grad, null, col);
+                shape.col2imAccumulate(col, n, count, gradInput);
+            }
+        } finally {
+            pool.release(mark);
+        }
+        return gradInput;
+    }
+
+    /**
+     * バッチの畳み込みの重みとバイアスに対する勾配を書き込む（バッチ全体の和）
+     * @param input 順伝播の入力 [batch][inputChannels][height][width]
+     * @param gradOutput 出力の勾配 [batch][outputChannels][outputHeight][outputWidth]
+     * @param stride ストライド
+     * @param padding パディング
+     * @param gradKernels 書き込み先 [outputChannels][inputChannels][kernelHeight][kernelWidth]
+     * @param gradBias バイアスの勾配の書き込み先 [outputChannels]（nullなら計算しない）
+     */
+    public static void convolve4DBackwardWeightsInto(Tensor input, Tensor gradOutput, int stride, int padding,
+                                                     double[][][][] gradKernels, double[] gradBias) {
+        BatchShape shape = new BatchShape(input, gradKernels, stride, padding);
+        shape.checkOutput(gradOutput);
+
+        BufferPool pool = BufferPool.local();
+        int mark = pool.mark();
+        try {
+            int tile = shape.tileSize();
+            double[] colData = pool.borrow(shape.patchSize * tile * shape.pixels);
+            double[] gradData = pool.borrow(shape.outChannels * tile * shape.pixels);
+            // 重みの勾配は転置した形 [C*K*K][outputChannels] = col × grad^T で足し合わせる
+            DenseMatrix gradWeightsT = new DenseMatrix(pool.borrow(shape.patchSize * shape.outChannels),
+                    shape.patchSize, shape.outChannels, shape.outChannels, 0);
+            gradWeightsT.fill(0.0);
+            ElementKernels k = Kernels.get();
+            if (gradBias != null) {
+                Arrays.fill(gradBias, 0.0);
+            }
+
+            for (int n = 0; n < shape.batch; n += tile) {
+                int count = Math.min(tile, shape.batch - n);
+                int cols = count * shape.pixels;
+                DenseMatrix col = new DenseMatrix(colData, shape.patchSize, cols, cols, 0);
+                DenseMatrix gradT = new DenseMatrix(gradData, cols, shape.outChannels, shape.outChannels, 0);
+                shape.im2col(input, n, count, col);
+                shape.gatherTransposed(gradOutput, n, count, gradT);
+                k.multiplyAccumulate(colData, 0, cols, shape.patchSize, gradData, 0, shape.outChannels, cols,
+                        gradWeightsT.getData(), 0, shape.outChannels, shape.outChannels);
+            }
+            if (gradBias != null) {
+                // バイアスの勾配はチャンネルごとの出力の勾配の総和（各チャンネルの面を行ごとに足す）
+                shape.sumPlanes(gradOutput, gradBias);
+            }
+            DenseMatrix gradWeights = gradWeightsT.tInto(new DenseMatrix(pool.borrow(shape.outChannels * shape.patchSize),
+                    shape.outChannels, shape.patchSize, shape.patchSize, 0));
+            shape.unpackWeights(gradWeights, gradKernels);
+        } finally {
+            pool.release(mark);
+        }
+    }
+
+    /**
+     * バッチの最大プーリングの結果を output に書き込み、最大値の位置を argmax に記録する
+     * 最大値は Math.max で求め（窓に NaN があれば NaN）、位置は窓の中で最大値と同じ値の最初の位置
+     * （同じ値がなければ窓の左上）。比較は分岐させずに選ぶ（乱数に近い値では分岐予測が外れやすい）。
+     * 2x2・ストライド2で行が連続していれば、面ごとに2行ずつ読む専用の経路で計算する
+     * @param input 入力 [batch][channels][height][width]
+     * @param poolSize プーリングサイズ
+     * @param stride ストライド
+     * @param output 書き込み先 [batch][channels][outputHeight][outputWidth]
+     * @param argmax 最大値の入力チャンネル内での位置（h * width + w）の書き込み先。
+     *               output の要素と行優先で同じ順に並ぶ（nullなら記録しない）
+     * @return output
+     */
+    public static Tensor maxPool4DInto(Tensor input, int poolSize, int stride, Tensor output, int[] argmax) {
+        Tensor.checkRank(input, 4);
+        int batch = input.getDim(0);
+        int channels = input.getDim(1);
+        int inputWidth = input.getDim(3);
+        int outputHeight = (input.getDim(2) - poolSize) / stride + 1;
+        int outputWidth = (inputWidth - poolSize) / stride + 1;
+        checkBatchShape(output, batch, channels, outputHeight, outputWidth);
+        if (argmax != null && argmax.length < output.getSize()) {
+            throw new IllegalArgumentException("argmax too small: " + argmax.length + " < " + output.getSize());
+        }
+        double[] in = input.getData();
+        double[] out = output.getData();
+        int inH = input.getStride(2), inW = input.getStride(3);
+        int outH = output.getStride(2), outW = output.getStride(3);
+
+        boolean pairs = poolSize == 2 && stride == 2 && inW == 1 && outW == 1;
+
+        int idx = 0;
+        for (int n = 0; n < batch; n++) {
+            for (int c = 0; c < channels; c++) {
+                int inBase = input.getOffset() + n * input.getStride(0) + c * input.getStride(1);
+                int outBase = output.getOffset() + n * output.getStride(0) + c * output.getStride(1);
+                if (pairs) {
+                    maxPool2x2Plane(in, inBase, inH, inputWidth, out, outBase, outH,
+                            outputHeight, outputWidth, argmax, idx);
+                    idx += outputHeight * outputWidth;
+                    continue;
+                }
+                for (int oh = 0; oh < outputHeight; oh++) {
+                    for (int ow = 0; ow < outputWidth; ow++) {
+                        int rowFrom = inBase + oh * stride * inH;
+                        int colFrom = ow * stride;
+                        double maxVal = Double.NEGATIVE_INFINITY;
+                        for (int ph = 0; ph < poolSize; ph++) {
+                            int row = rowFrom + ph * inH;
+                            for (int pw = 0; pw < poolSize; pw++) {
+                                maxVal = Math.max(maxVal, in[row + (colFrom + pw) * inW]);
+                            }
+                        }
+                        out[outBase + oh * outH + ow * outW] = maxVal;
+                        if (argmax != null) {
+                            // 後ろから比べて、最大値と同じビット列の最初の位置を分岐せずに選ぶ
+                            long maxBits = Double.doubleToRawLongBits(maxVal);
+                            int maxPos = oh * stride * inputWidth + colFrom;
+                            for (int ph = poolSize - 1; ph >= 0; ph--) {
+                                int row = rowFrom + ph * inH;
+                                int pos = (oh * stride + ph) * inputWidth + colFrom;
+                                for (int pw = poolSize - 1; pw >= 0; pw--) {
+                                    maxPos = Double.doubleToRawLongBits(in[row + (colFrom + pw) * inW]) == maxBits
+                                            ? pos + pw : maxPos;
+                                }
+                            }
+                            argmax[idx] = maxPos;
+                        }
+                        idx++;
+                    }
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * 行が連続した1枚の面の 2x2・ストライド2 の最大プーリング（argmax が null でなければ idx から位置を記録する）
+     * 最大値と位置の決め方は {@link #maxPool4DInto} の汎用の経路と同じ
+     */
+    private static void maxPool2x2Plane(double[] in, int inBase, int inH, int inputWidth,
+                                        double[] out, int outBase, int outH,
+                                        int outputHeight, int outputWidth, int[] argmax, int idx) {
+        for (int oh = 0; oh < outputHeight; oh++) {
+            int top = inBase + 2 * oh * inH;
+            int bottom = top + inH;
+            int outRow = outBase + oh * outH;
+            int topPos = 2 * oh * inputWidth;
+            for (int ow = 0; ow < outputWidth; ow++) {
+                int iw = 2 * ow;
+                double a = in[top + iw], b = in[top + iw + 1];
+                double c = in[bottom + iw], d = in[bottom + iw + 1];
+                double maxVal = Math.max(Math.max(a, b), Math.max(c, d));
+                out[outRow + ow] = maxVal;
+                if (argmax != null) {
+                    long maxBits = Double.doubleToRawLongBits(maxVal);
+                    int maxPos = topPos + iw;
+                    maxPos = Double.doubleToRawLongBits(d) == maxBits ? topPos + inputWidth + iw + 1 : maxPos;
+                    maxPos = Double.doubleToRawLongBits(c) == maxBits ? topPos + inputWidth + iw : maxPos;
+                    maxPos = Double.doubleToRawLongBits(b) == maxBits ? topPos + iw + 1 : maxPos;
+                    maxPos = Double.doubleToRawLongBits(a) == maxBits ? topPos + iw : maxPos;
+                    argmax[idx++] = maxPos;
+                }
+            }
+        }
+    }
+
+    /**
+     * バッチの最大プーリングの入力に対する勾配を gradInput に書き込む
+     * @param gradOutput 出力の勾配 [batch][channels][outputHeight][outputWidth]
+     * @param argmax {@link #maxPool4DInto} が記録した最大値の位置
+     * @param gradInput 書き込み先 [batch][channels][height][width]
+     * @return gradInput
+     */
+    public static Tensor maxPool4DBackwardInto(Tensor gradOutput, int[] argmax, Tensor gradInput) {
+        Tensor.checkRank(gradOutput, 4);
+        Tensor.checkRank(gradInput, 4);
+        int inputWidth = gradInput.getDim(3);
+        double[] grad = gradOutput.getData();
+        double[] gin = gradInput.getData();
+        int inH = gradInput.getStride(2), inW = gradInput.getStride(3);
+        gradInput.fill(0.0);
+
+        int idx = 0;
+        for (int n = 0; n < gradOutput.getDim(0); n++) {
+            for (int c = 0; c < gradOutput.getDim(1); c++) {
+                int inBase = gradInput.getOffset() + n * gradInput.getStride(0) + c * gradInput.getStride(1);
+                int outBase = gradOutput.getOffset() + n * gradOutput.getStride(0) + c * gradOutput.getStride(1);
+                for (int oh = 0; oh < gradOutput.getDim(2); oh++) {
+                    for (int ow = 0; ow < gradOutput.getDim(3); ow++) {
+                        int pos = argmax[idx++];
+                        gin[inBase + (pos / inputWidth) * inH + (pos % inputWidth) * inW] +=
+                                grad[outBase + oh * gradOutput.getStride(2) + ow * gradOutput.getStride(3)];
+                    }
+                }
+            }
+        }
+        return gradInput;
+    }
+
+    /**
+     * バッチのアップサンプリング（最近傍補間）の結果を output に書き込む
+     * @param input 入力 [batch][channels][height][width]
+     * @param scale スケール倍率
+     * @param output 書き込み先 [batch][channels][height * scale][width * scale]
+     * @return output
+     */
+    public static Tensor upsample4DInto(Tensor input, int scale, Tensor output) {
+        Tensor.checkRank(input, 4);
+        checkBatchShape(output, input.getDim(0), input.getDim(1), input.getDim(2) * scale, input.getDim(3) * scale);
+        for (int n = 0; n < input.getDim(0); n++) {
+            Tensor.upsampleInto(input.batch(n), scale, output.batch(n));
+        }
+        return output;
+    }
+
+    /**
+     * out = a × b + bias（a は小さな行列、b と out は列の多い行列。バイアスは out の行ごとに1つ）
+     * 列をブロックに分け、ブロックごとに ElementKernels.multiplyAccumulate で求める
+     */
+    private static void multiplyTile(DenseMatrix a, DenseMatrix b, double[] bias, DenseMatrix out) {
+        ElementKernels k = Kernels.get();
+        int cols = b.getCols();
+        for (int i = 0; i < out.getRows(); i++) {
+            int row = out.index(i, 0);
+            Arrays.fill(out.getData(), row, row + cols, bias == null ? 0.0 : bias[i]);
+        }
+        for (int j = 0; j < cols; j += BATCH_COLUMN_BLOCK) {
+            int length = Math.min(BATCH_COLUMN_BLOCK, cols - j);
+            k.multiplyAccumulate(a.getData(), a.getOffset(), a.getStride(), a.getRows(),
+                    b.getData(), b.index(0, j), b.getStride(), a.getCols(),
+                    out.getData(), out.index(0, j), out.getStride(), length);
+        }
+    }
+
+    private static void checkBatchShape(Tensor t, int batch, int channels, int height, int width) {
+        Tensor.checkRank(t, 4);
+        if (t.getDim(0) != batch || t.getDim(1) != channels || t.getDim(2) != height || t.getDim(3) != width) {
+            throw new IllegalArgumentException("Shape mismatch: " + t + " vs [" + batch + ", " + channels
+                    + ", " + height + ", " + width + "]");
+        }
+    }
+
+    /**
+     * バッチの畳み込みの形状と、im2col 行列・NCHW のテンソルの間の並べ替え
+     * im2col 行列の行は (入力チャンネル, kh, kw)、列は (タイル内のサンプル, oh, ow) の順。
+     */
+    private static final class BatchShape {
+        final int batch, inChannels, height, width;
+        final int outChannels, kernelHeight, kernelWidth, stride, padding;
+        final int outputHeight, outputWidth, pixels, patchSize;
+
+        BatchShape(Tensor input, double[][][][] kernels, int stride, int padding) {
+            Tensor.checkRank(input, 4);
+            this.batch = input.getDim(0);
+            this.inChannels = input.getDim(1);
+            this.height = input.getDim(2);
+            this.width = input.getDim(3);
+            this.outChannels = kernels.length;
+            this.kernelHeight = kernels[0][0].length;
+            this.kernelWidth = kernels[0][0][0].length;
+            this.stride = stride;
+            this.padding = padding;
+            this.outputHeight = outputSize(height, kernelHeight, stride, padding);
+            this.outputWidth = outputSize(width, kernelWidth, stride, padding);
+            this.pixels = outputHeight * outputWidth;
+            this.patchSize = inChannels * kernelHeight * kernelWidth;
+            if (kernels[0].length != inChannels) {
+                throw new IllegalArgumentException("Kernel expects " + kernels[0].length
+                        + " input channels but input has " + inChannels);
+            }
+        }
+
+        void checkOutput(Tensor output) {
+            checkBatchShape(output, batch, outChannels, outputHeight, outputWidth);
+        }
+
+        int tileSize() {
+            return Math.max(1, Math.min(batch, BATCH_TILE_ELEMENTS / Math.max(1, patchSize * pixels)));
+        }
+
+        /**
+         * カーネルを [outputChannels][C*K*K] の行列に並べる
+         */
+        DenseMatrix weightMatrix(double[][][][] kernels, double[] data) {
+            return new DenseMatrix(packKernels(kernels, data), outChannels, patchSize, patchSize, 0);
+        }
+
+        void unpackWeights(DenseMatrix m, double[][][][] kernels) {
+            for (int o = 0; o < outChannels; o++) {
+                int idx = m.index(o, 0);
+                for (double[][] channel : kernels[o]) {
+                    for (double[] row : channel) {
+                        System.arraycopy(m.getData(), idx, row, 0, kernelWidth);
+                        idx += kernelWidth;
+                    }
+                }
+            }
+        }
+
+        /**
+         * サンプル [from, from + count) を im2col 行列に並べる（入力の外は0、パディングした入力は作らない）
+         */
+        void im2col(Tensor input, int from, int count, DenseMatrix col) {
+            double[] in = input.getData();
+            double[] c = col.getData();
+            int inH = input.getStride(2), inW = input.getStride(3);
+            int cols = col.getCols();
+
+            int r = 0;
+            for (int ic = 0; ic < inChannels; ic++) {
+                for (int kh = 0; kh < kernelHeight; kh++) {
+                    int ohFrom = Math.min(outputHeight, validFrom(padding - kh, stride));
+                    int ohTo = Math.max(ohFrom, validTo(height, padding - kh, stride, outputHeight));
+                    for (int kw = 0; kw < kernelWidth; kw++, r++) {
+                        int owFrom = Math.min(outputWidth, validFrom(padding - kw, stride));
+                        int owTo = Math.max(owFrom, validTo(width, padding - kw, stride, outputWidth));
+                        int rowBase = col.index(r, 0);
+
+                        for (int t = 0; t < count; t++) {
+                            int plane = input.getOffset() + (from + t) * input.getStride(0) + ic * input.getStride(1);
+                            int dstBase = rowBase + t * pixels;
+                            // 入力の外に当たる上下の行と左右の列だけを0にする
+                            Arrays.fill(c, dstBase, dstBase + ohFrom * outputWidth, 0.0);
+                            Arrays.fill(c, dstBase + ohTo * outputWidth, dstBase + pixels, 0.0);
+                            for (int oh = ohFrom; oh < ohTo; oh++) {
+                                int dst = dstBase + oh * outputWidth;
+                                Arrays.fill(c, dst, dst + owFrom, 0.0);
+                                Arrays.fill(c, dst + owTo, dst + outputWidth, 0.0);
+                                int src = plane + (oh * stride + kh - padding) * inH + (owFrom * stride + kw - padding) * inW;
+                                if (stride * inW == 1) {
+                                    System.arraycopy(in, src, c, dst + owFrom, owTo - owFrom);
+                                } else {
+                                    for (int ow = 0; ow < owTo - owFrom; ow++) {
+                                        c[dst + owFrom + ow] = in[src + ow * stride * inW];
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * im2col 行列の値をサンプル [from, from + count) の入力の位置に足し戻す（入力の外に落ちる値は捨てる）
+         */
+        void col2imAccumulate(DenseMatrix col, int from, int count, Tensor gradInput) {
+            double[] g = gradInput.getData();
+            double[] c = col.getData();
+            int inH = gradInput.getStride(2), inW = gradInput.getStride(3);
+            ElementKernels k = Kernels.get();
+
+            int r = 0;
+            for (int ic = 0; ic < inChannels; ic++) {
+                for (int kh = 0; kh < kernelHeight; kh++) {
+                    int ohFrom = validFrom(padding - kh, stride);
+                    int ohTo = validTo(height, padding - kh, stride, outputHeight);
+                    for (int kw = 0; kw < kernelWidth; kw++, r++) {
+                        int owFrom = validFrom(padding - kw, stride);
+                        int owTo = validTo(width, padding - kw, stride, outputWidth);
+                        int rowBase = col.index(r, 0);
+
+                        for (int t = 0; t < count; t++) {
+                            int plane = gradInput.getOffset() + (from + t) * gradInput.getStride(0) + ic * gradInput.getStride(1);
+                            for (int oh = ohFrom; oh < ohTo && owFrom < owTo; oh++) {
+                                int dst = plane + (oh * stride + kh - padding) * inH + (owFrom * stride + kw - padding) * inW;
+                                int src = rowBase + t * pixels + oh * outputWidth + owFrom;
+                                if (stride * inW == 1) {
+                                    k.axpy(1.0, c, src, g, dst, owTo - owFrom);
+                                } else {
+                                    for (int ow = 0; ow < owTo - owFrom; ow++) {
+                                        g[dst + ow * stride * inW] += c[src + ow];
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * [outputChannels][タイルの画素] の行列をサンプル [from, from + count) の出力に書き込む
+         */
+        void scatter(DenseMatrix m, int from, int count, Tensor output) {
+            double[] src = m.getData();
+            double[] out = output.getData();
+            int outH = output.getStride(2), outW = output.getStride(3);
+            for (int o = 0; o < outChannels; o++) {
+                for (int t = 0; t < count; t++) {
+                    int plane = output.getOffset() + (from + t) * output.getStride(0) + o * output.getStride(1);
+                    int s = m.index(o, t * pixels);
+                    for (int oh = 0; oh < outputHeight; oh++) {
+                        int dst = plane + oh * outH;
+                        for (int ow = 0; ow < outputWidth; ow++) {
+                            out[dst + ow * outW] = src[s++];
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * 全サンプルの出力の勾配をチャンネルごとに合計して sums に足す
+         */
+        void sumPlanes(Tensor gradOutput, double[] sums) {
+            double[] grad = gradOutput.getData();
+            int outW = gradOutput.getStride(3);
+            for (int n = 0; n < batch; n++) {
+                for (int o = 0; o < outChannels; o++) {
+                    int plane = gradOutput.getOffset() + n * gradOutput.getStride(0) + o * gradOutput.getStride(1);
+                    double sum = 0.0;
+                    for (int oh = 0; oh < outputHeight; oh++) {
+                        int row = plane + oh * gradOutput.getStride(2);
+                        for (int ow = 0; ow < outputWidth; ow++) {
+                            sum += grad[row + ow * outW];
+                        }
+                    }
+                    sums[o] += sum;
+                }
+            }
+        }
+
+        /**
+         * サンプル [from, from + count) の出力の勾配を [タイルの画素][outputChannels] の行列に並べる
+         */
+        void gatherTransposed(Tensor gradOutput, int from, int count, DenseMatrix m) {
+            double[] grad = gradOutput.getData();
+            double[] dst = m.getData();
+            int outC = gradOutput.getStride(1), outH = gradOutput.getStride(2), outW = gradOutput.getStride(3);
+            for (int t = 0; t < count; t++) {
+                int sample = gradOutput.getOffset() + (from + t) * gradOutput.getStride(0);
+                for (int oh = 0; oh < outputHeight; oh++) {
+                    for (int ow = 0; ow < outputWidth; ow++) {
+                        int src = sample + oh * outH + ow * outW;
+                        int d = m.index(t * pixels + oh * outputWidth + ow, 0);
+                        for (int o = 0; o < outChannels; o++) {
+                            dst[d + o] = grad[src + o * outC];
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * サンプル [from, from + count) の出力の勾配を [outputChannels][タイルの画素] の行列に並べる
+         */
+        void gather(Tensor gradOutput, int from, int count, DenseMatrix m) {
+            double[] grad = gradOutput.getData();
+            double[] dst = m.getData();
+            int outH = gradOutput.getStride(2), outW = gradOutput.getStride(3);
+            for (int o = 0; o < outChannels; o++) {
+                for (int t = 0; t < count; t++) {
+                    int plane = gradOutput.getOffset() + (from + t) * gradOutput.getStride(0) + o * gradOutput.getStride(1);
+                    int d = m.index(o, t * pixels);
+                    for (int oh = 0; oh < outputHeight; oh++) {
+                        int src = plane + oh * outH;
+                        for (int ow = 0; ow < outputWidth; ow++) {
+                            dst[d++] = grad[src + ow * outW];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // ===== チャンネル後置（NHWC）版 =====
+    // 画素ごとにチャンネルが連続して並ぶ配置 [height][width][channels]（バッチは [batch][height][width][channels]）。
+    // 畳み込みは各タップについて、出力の1行の画素 × 入力チャンネルの行列と [inputChannels][outputChannels] の
+    // 重みの積を ElementKernels.multiplyAccumulate で足す。入力チャンネルの和は連続した要素の積和になり、
+    // 出力チャンネルの方向にベクトル化される。パディングはタップごとに出力の範囲を切り詰めて扱う。
+    // 畳み込みとプーリングはチャンネルの間隔が1であること（連続した NHWC のテンソル）を前提にする。
+
+    /**
+     * NCHW のテンソルを NHWC に並べ替えて output に書き込む
+     * 出力の1行（width * channels 要素）ずつ並べ替えるので、書き込み先はキャッシュに載ったまま埋まる
+     * @param input 入力 [channels][height][width] または [batch][channels][height][width]
+     * @param output 書き込み先 [height][width][channels] または [batch][height][width][channels]
+     * @return output
+     */
+    public static Tensor toNHWCInto(Tensor input, Tensor output) {
+        int b = layoutRank(input) - 3;
+        int batch = b == 0 ? 1 : input.getDim(0);
+        int channels = input.getDim(b), height = input.getDim(b + 1), width = input.getDim(b + 2);
+        checkLayoutShape(output, input.getRank(), batch, height, width, channels);
+        relayout(input.getData(), input.getOffset(), b == 0 ? 0 : input.getStride(0),
+                input.getStride(b), input.getStride(b + 1), input.getStride(b + 2),
+                output.getData(), output.getOffset(), b == 0 ? 0 : output.getStride(0),
+                output.getStride(b + 2), output.getStride(b), output.getStride(b + 1),
+                batch, channels, height, width);
+        return output;
+    }
+
+    /**
+     * 3次元配列（NCHW）を NHWC のテンソルに並べ替えて書き込む
+     * @param input 入力 [channels][height][width]
+     * @param output 書き込み先 [height][width][channels]
+     * @return output
+     */
+    public static Tensor toNHWCInto(double[][][] input, Tensor output) {
+        int channels = input.length, height = input[0].length, width = input[0][0].length;
+        checkLayoutShape(output, 3, 1, height, width, channels);
+        double[] out = output.getData();
+        int outH = output.getStride(0), outW = output.getStride(1), outC = output.getStride(2);
+        for (int h = 0; h < height; h++) {
+            int row = output.getOffset() + h * outH;
+            for (int c = 0; c < channels; c++) {
+                double[] inRow = input[c][h];
+                int base = row + c * outC;
+                for (int w = 0; w < width; w++) {
+                    out[base + w * outW] = inRow[w];
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * NHWC のテンソルを NCHW に並べ替えて output に書き込む
+     * @param input 入力 [height][width][channels] または [batch][height][width][channels]
+     * @param output 書き込み先 [channels][height][width] または [batch][channels][height][width]
+     * @return output
+     */
+    public static Tensor toNCHWInto(Tensor input, Tensor output) {
+        int b = layoutRank(input) - 3;
+        int batch = b == 0 ? 1 : input.getDim(0);
+        int height = input.getDim(b), width = input.getDim(b + 1), channels = input.getDim(b + 2);
+        checkLayoutShape(output, input.getRank(), batch, channels, height, width);
+        relayout(input.getData(), input.getOffset(), b == 0 ? 0 : input.getStride(0),
+                input.getStride(b + 2), input.getStride(b), input.getStride(b + 1),
+                output.getData(), output.getOffset(), b == 0 ? 0 : output.getStride(0),
+                output.getStride(b), output.getStride(b + 1), output.getStride(b + 2),
+                batch, channels, height, width);
+        return output;
+    }
+
+    /**
+     * NHWC のテンソルを3次元配列（NCHW）に並べ替えて書き込む
+     * @param input 入力 [height][width][channels]
+     * @param output 書き込み先 [channels][height][width]
+     * @return output
+     */
+    public static double[][][] toNCHWInto(Tensor input, double[][][] output) {
+        Tensor.checkRank(input, 3);
+        int height = input.getDim(0), width = input.getDim(1), channels = input.getDim(2);
+        if (output.length != channels || output[0].length != height || output[0][0].length != width) {
+            throw new IllegalArgumentException("Shape mismatch: " + input + " vs [" + output.length + ", "
+                    + output[0].length + ", " + output[0][0].length + "]");
+        }
+        double[] in = input.getData();
+        int inH = input.getStride(0), inW = input.getStride(1), inC = input.getStride(2);
+        for (int h = 0; h < height; h++) {
+            int row = input.getOffset() + h * inH;
+            for (int c = 0; c < channels; c++) {
+                double[] outRow = output[c][h];
+                int base = row + c * inC;
+                for (int w = 0; w < width; w++) {
+                    outRow[w] = in[base + w * inW];
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * NHWC の畳み込みの結果を output に書き込む
+     * @param input 入力 [height][width][inputChannels] または [batch][height][width][inputChannels]
+     * @param kernels カーネル [outputChannels][inputChannels][kernelHeight][kernelWidth]
+     * @param bias バイアス [outputChannels]（nullなら加算しない）
+     * @param stride ストライド
+     * @param padding パディング
+     * @param output 書き込み先 [outputHeight][outputWidth][outputChannels]（バッチなら先頭に [batch]）
+     * @return output
+     */
+    public static Tensor convolveNHWCInto(Tensor input, double[][][][] kernels, double[] bias,
+                                          int stride, int padding, Tensor output) {
+        int b = layoutRank(input) - 3;
+        int batch = b == 0 ? 1 : input.getDim(0);
+        int height = input.getDim(b), width = input.getDim(b + 1), inChannels = input.getDim(b + 2);
+        int outChannels = kernels.length;
+        int kernelHeight = kernels[0][0].length, kernelWidth = kernels[0][0][0].length;
+        if (kernels[0].length != inChannels) {
+            throw new IllegalArgumentException("Kernel expects " + kernels[0].length
+                    + " input channels but input has " + inChannels);
+        }
+        int outputHeight = outputSize(height, kernelHeight, stride, padding);
+        int outputWidth = outputSize(width, kernelWidth, stride, padding);
+        checkLayoutShape(output, input.getRank(), batch, outputHeight, outputWidth, outChannels);
+        checkUnitChannelStride(input);
+        checkUnitChannelStride(output);
+
+        double[] in = input.getData(), out = output.getData();
+        int inN = b == 0 ? 0 : input.getStride(0), inH = input.getStride(b), inW = input.getStride(b + 1);
+        int outN = b == 0 ? 0 : output.getStride(0), outH = output.getStride(b), outW = output.getStride(b + 1);
+        ElementKernels k = Kernels.get();
+
+        BufferPool pool = BufferPool.local();
+        int mark = pool.mark();
+        try {
+            // 重みをタップごとの [inputChannels][outputChannels] の行列に並べる（[kh][kw][ic][oc]）
+            double[] packed = pool.borrow(kernelHeight * kernelWidth * inChannels * outChannels);
+            int idx = 0;
+            for (int kh = 0; kh < kernelHeight; kh++) {
+                for (int kw = 0; kw < kernelWidth; kw++) {
+                    for (int ic = 0; ic < inChannels; ic++) {
+                        for (int oc = 0; oc < outChannels; oc++) {
+                            packed[idx++] = kernels[oc][ic][kh][kw];
+                        }
+                    }
+                }
+            }
+
+            for (int n = 0; n < batch; n++) {
+                int inBase = input.getOffset() + n * inN;
+                for (int oh = 0; oh < outputHeight; oh++) {
+                    int outRow = output.getOffset() + n * outN + oh * outH;
+                    for (int ow = 0; ow < outputWidth; ow++) {
+                        if (bias == null) {
+                            Arrays.fill(out, outRow + ow * outW, outRow + ow * outW + outChannels, 0.0);
+                        } else {
+                            System.arraycopy(bias, 0, out, outRow + ow * outW, outChannels);
+                        }
+                    }
+                    for (int kh = 0; kh < kernelHeight; kh++) {
+                        int ih = oh * stride + kh - padding;
+                        if (ih < 0 || ih >= height) {
+                            continue;
+                        }
+                        for (int kw = 0; kw < kernelWidth; kw++) {
+                            // 入力の列 ow * stride + kw - padding が内側に入る出力の範囲
+                            int owFrom = validFrom(padding - kw, stride);
+                            int owTo = validTo(width, padding - kw, stride, outputWidth);
+                            if (owFrom >= owTo) {
+                                continue;
+                            }
+                            int iw = owFrom * stride + kw - padding;
+                            k.multiplyAccumulate(in, inBase + ih * inH + iw * inW, stride * inW, owTo - owFrom,
+                                    packed, (kh * kernelWidth + kw) * inChannels * outChannels, outChannels,
+                                    inChannels, out, outRow + owFrom * outW, outW, outChannels);
+                        }
+                    }
+                }
+            }
+        } finally {
+            pool.release(mark);
+        }
+        return output;
+    }
+
+    /**
+     * NHWC の最大プーリングの結果を output に書き込む（チャンネルの方向に連続して比べる）
+     * @param input 入力 [height][width][channels] または [batch][height][width][channels]
+     * @param poolSize プーリングサイズ
+     * @param stride ストライド
+     * @param output 書き込み先 [outputHeight][outputWidth][channels]（バッチなら先頭に [batch]）
+     * @return output
+     */
+    public static Tensor maxPoolNHWCInto(Tensor input, int poolSize, int stride, Tensor output) {
+        int b = layoutRank(input) - 3;
+        int batch = b == 0 ? 1 : input.getDim(0);
+        int height = input.getDim(b), width = input.getDim(b + 1), channels = input.getDim(b + 2);
+        int outputHeight = (height - poolSize) / stride + 1;
+        int outputWidth = (width - poolSize) / stride + 1;
+        checkLayoutShape(output, input.getRank(), batch, outputHeight, outputWidth, channels);
+        checkUnitChannelStride(input);
+        checkUnitChannelStride(output);
+
+        double[] in = input.getData(), out = output.getData();
+        int inN = b == 0 ? 0 : input.getStride(0), inH = input.getStride(b), inW = input.getStride(b + 1);
+        int outN = b == 0 ? 0 : output.getStride(0), outH = output.getStride(b), outW = output.getStride(b + 1);
+        for (int n = 0; n < batch; n++) {
+            for (int oh = 0; oh < outputHeight; oh++) {
+                for (int ow = 0; ow < outputWidth; ow++) {
+                    int dst = output.getOffset() + n * outN + oh * outH + ow * outW;
+                    int src = input.getOffset() + n * inN + oh * stride * inH + ow * stride * inW;
+                    System.arraycopy(in, src, out, dst, channels);
+                    for (int ph = 0; ph < poolSize; ph++) {
+                        for (int pw = ph == 0 ? 1 : 0; pw < poolSize; pw++) {
+                            int pixel = src + ph * inH + pw * inW;
+                            for (int c = 0; c < channels; c++) {
+                                out[dst + c] = Math.max(out[dst + c], in[pixel + c]);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * 2つの配置の間の並べ替え dst[n][c][h][w] = src[n][c][h][w]（配置の違いは間隔で表す）
+     * 画像の行ごとに、チャンネルを外側・幅を内側にして写す
+     */
+    private static void relayout(double[] src, int srcOff, int srcN, int srcC, int srcH, int srcW,
+                                 double[] dst, int dstOff, int dstN, int dstC, int dstH, int dstW,
+                                 int batch, int channels, int height, int width) {
+        for (int n = 0; n < batch; n++) {
+            for (int h = 0; h < height; h++) {
+                int srcRow = srcOff + n * srcN + h * srcH;
+                int dstRow = dstOff + n * dstN + h * dstH;
+                for (int c = 0; c < channels; c++) {
+                    int from = srcRow + c * srcC;
+                    int to = dstRow + c * dstC;
+                    for (int w = 0; w < width; w++) {
+                        dst[to + w * dstW] = src[from + w * srcW];
+                    }
+                }
+            }
+        }
+    }
+
+    private static int layoutRank(Tensor t) {
+        if (t.getRank() != 3 && t.getRank() != 4) {
+            throw new IllegalArgumentException("Expected rank 3 or 4 but was " + t.getRank());
+        }
+        return t.getRank();
+    }
+
+    /**
+     * 3次元なら [d1][d2][d3]、4次元なら [batch][d1][d2][d3] であることを確かめる
+     */
+    private static void checkLayoutShape(Tensor t, int rank, int batch, int d1, int d2, int d3) {
+        Tensor.checkRank(t, rank);
+        if (rank == 4) {
+            checkBatchShape(t, batch, d1, d2, d3);
+        } else {
+            Tensor.checkShape3D(t, d1, d2, d3);
+        }
+    }
+
+    private static void checkUnitChannelStride(Tensor t) {
+        if (t.getStride(t.getRank() - 1) != 1) {
+            throw new IllegalArgumentException("NHWC kernels need unit channel stride: " + t);
+        }
+    }
+
+    /**
+     * パディングを適用
+     * @param input 入力画像
+     * @param padding パディングサイズ
+     * @return パディングされた画像
+     */
+    public static double[][] applyPadding(double[][] input, int padding) {
+        if (padding == 0) {
+            return input;
+        }
+
+        int paddedHeight = input.length + 2 * padding;
+        int paddedWidth = input[0].length + 2 * padding;
+        return applyPaddingInto(input, padding, new double[paddedHeight][paddedWidth]);
+    }
+
+    /**
+     * パディングを適用して output に書き込む（縁は0で埋める）
+     * @param input 入力画像
+     * @param padding パディングサイズ
+     * @param output 書き込み先 [height + 2p][width + 2p]
+     * @return output
+     */
+    public static double[][] applyPaddingInto(double[][] input, int padding, double[][] output) {
+        int height = input.length;
+        int width = input[0].length;
+
+        for (int h = 0; h < padding; h++) {
+            Arrays.fill(output[h], 0.0);
+            Arrays.fill(output[height + padding + h], 0.0);
+        }
+
+        // 元の画像をコピー
+        for (int h = 0; h < height; h++) {
+            double[] row = output[h + padding];
+            Arrays.fill(row, 0, padding, 0.0);
+            System.arraycopy(input[h], 0, row, padding, width);
+            Arrays.fill(row, padding + width, row.length, 0.0);
+        }
+
+        return output;
+    }
+
+    /**
+     * im2col変換（畳み込みを行列積として計算するための変換）
+     * @param input 入力画像 [height][width]
+     * @param kernelHeight カーネルの高さ
+     * @param kernelWidth カーネルの幅
+     * @param stride ストライド
+     * @param padding パディング
+     * @return 変換後の行列 [outputSize][kernelSize]
+     */
+    public static double[][] im2col(double[][] input, int kernelHeight, int kernelWidth,
+                                    int stride, int padding) {
+        int outputHeight = outputSize(input.length, kernelHeight, stride, padding);
+        int outputWidth = outputSize(input[0].length, kernelWidth, stride, padding);
+        double[][] col = new double[outputHeight * outputWidth][kernelHeight * kernelWidth];
+        return im2colInto(input, kernelHeight, kernelWidth, stride, padding, col);
+    }
+
+    /**
+     * im2col変換の結果を col に書き込む
+     * パディングした画像は作らず、窓が入力の内側に収まる範囲は行をそのままコピーし、
+     * 縁だけ入力の外を0で埋める
+     * @param input 入力画像 [height][width]
+     * @param kernelHeight カーネルの高さ
+     * @param kernelWidth カーネルの幅
+     * @param stride ストライド
+     * @param padding パディング
+     * @param col 書き込み先 [outputSize][kernelSize]
+     * @return col
+     */
+    public static double[][] im2colInto(double[][] input, int kernelHeight, int kernelWidth,
+                                        int stride, int padding, double[][] col) {
+        int outputHeight = outputSize(input.length, kernelHeight, stride, padding);
+        int outputWidth = outputSize(input[0].length, kernelWidth, stride, padding);
+        // 窓全体が入力の内側に収まる出力の範囲 [from, to)
+        int ohFrom = Math.min(outputHeight, validFrom(padding, stride));
+        int ohTo = Math.max(ohFrom, validTo(input.length - kernelHeight + 1, padding, stride, outputHeight));
+        int owFrom = Math.min(outputWidth, validFrom(padding, stride));
+        int owTo = Math.max(owFrom, validTo(input[0].length - kernelWidth + 1, padding, stride, outputWidth));
+
+        for (int oh = 0; oh < outputHeight; oh++) {
+            int ih = oh * stride - padding;
+            int rowIdx = oh * outputWidth;
+            boolean interiorRow = oh >= ohFrom && oh < ohTo;
+
+            // 左右（上下の縁の行は全体）の縁
+            for (int ow = 0; ow < (interiorRow ? owFrom : outputWidth); ow++) {
+                borderWindow(input, kernelHeight, kernelWidth, ih, ow * stride - padding, col[rowIdx + ow]);
+            }
+            if (!interiorRow) {
+                continue;
+            }
+            for (int ow = owTo; ow < outputWidth; ow++) {
+                borderWindow(input, kernelHeight, kernelWidth, ih, ow * stride - padding, col[rowIdx + ow]);
+            }
+
+            // 内側
+            for (int ow = owFrom; ow < owTo; ow++) {
+                double[] colRow = col[rowIdx + ow];
+                int iw = ow * stride - padding;
+                int kernelIdx = 0;
+                for (int kh = 0; kh < kernelHeight; kh++) {
+                    double[] inRow = input[ih + kh];
+                    for (int kw = 0; kw < kernelWidth; kw++) {
+                        colRow[kernelIdx++] = inRow[iw + kw];
+                    }
+                }
+            }
+        }
+
+        return col;
+    }
+
+    /**
+     * 左上が (ih, iw) の窓を colRow に書き込む（入力の外は0）
+     */
+    private static void borderWindow(double[][] input, int kernelHeight, int kernelWidth,
+                                     int ih, int iw, double[] colRow) {
+        Arrays.fill(colRow, 0, kernelHeight * kernelWidth, 0.0);
+        int khTo = Math.min(kernelHeight, input.length - ih);
+        int kwFrom = Math.max(0, -iw);
+        int kwTo = Math.min(kernelWidth, input[0].length - iw);
+        for (int kh = Math.max(0, -ih); kh < khTo && kwFrom < kwTo; kh++) {
+            System.arraycopy(input[ih + kh], iw + kwFrom, colRow, kh * kernelWidth + kwFrom, kwTo - kwFrom);
+        }
+    }
+
+    /**
+     * col2im変換（im2colの逆変換）
+     * @param col 列形式のデータ
+     * @param inputHeight 元の画像の高さ
+     * @param inputWidth 元の画像の幅
+     * @param kernelHeight カーネルの高さ
+     * @param kernelWidth カーネルの幅
+     * @param stride ストライド
+     * @param padding パディング
+     * @return 画像形式のデータ
+     */
+    public static double[][] col2im(double[][] col, int inputHeight, int inputWidth,
+                                    int kernelHeight, int kernelWidth,
+                                    int stride, int padding) {
+        return col2imInto(col, kernelHeight, kernelWidth, stride, padding,
+                new double[inputHeight][inputWidth]);
+    }
+
+    /**
+     * col2im変換の結果を output に書き込む
+     * パディング部分に落ちる値は捨てるので、パディング済みの作業領域は使わない
+     * @param col 列形式のデータ
+     * @param kernelHeight カーネルの高さ
+     * @param kernelWidth カーネルの幅
+     * @param stride ストライド
+     * @param padding パディング
+     * @param output 書き込み先 [inputHeight][inputWidth]
+     * @return output
+     */
+    public static double[][] col2imInto(double[][] col, int kernelHeight, int kernelWidth,
+                                        int stride, int padding, double[][] output) {
+        int inputHeight = output.length;
+        int inputWidth = output[0].length;
+        int outputHeight = outputSize(inputHeight, kernelHeight, stride, padding);
+        int outputWidth = outputSize(inputWidth, kernelWidth, stride, padding);
+
+        for (double[] row : output) {
+            Arrays.fill(row, 0.0);
+        }
+
+        int outputIdx = 0;
+        for (int oh = 0; oh < outputHeight; oh++) {
+            for (int ow = 0; ow < outputWidth; ow++) {
+                int kernelIdx = 0;
+
+                for (int kh = 0; kh < kernelHeight; kh++) {
+                    for (int kw = 0; kw < kernelWidth; kw++) {
+                        int ih = oh * stride + kh - padding;
+                        int iw = ow * stride + kw - padding;
+                        if (ih >= 0 && ih < inputHeight && iw >= 0 && iw < inputWidth) {
+                            output[ih][iw] += col[outputIdx][kernelIdx];
+                        }
+                        kernelIdx++;
+                    }
+                }
+
+                outputIdx++;
+            }
+        }
+
+        return output;
+    }
+
+    /**
+     * 畳み込み・プーリング後の出力サイズ
+     * @param inputSize 入力サイズ
+     * @param kernelSize カーネルサイズ
+     * @param stride ストライド
+     * @param padding パディング
+     * @return 出力サイズ
+     */
+    public static int outputSize(int inputSize, int kernelSize, int stride, int padding) {
+        return (inputSize + 2 * padding - kernelSize) / stride + 1;
+    }
+
+    // ===== 単精度（float）版 =====
+
+    /**
+     * 3D畳み込み演算（複数チャンネル、単精度）
+     * @param input 入力テンソル [channels][height][width]
+     * @param kernels カーネル [outputChannels][inputChannels][kernelHeight][kernelWidth]
+     * @param bias バイアス [outputChannels]
+     * @param stride ストライド
+     * @param padding パディング
+     * @return 畳み込み結果 [outputChannels][outputHeight][outputWidth]
+     */
+    public static float[][][] convolve3D(float[][][] input, float[][][][] kernels,
+                                         float[] bias, int stride, int padding) {
+        int outputHeight = outputSize(input[0].length, kernels[0][0].length, stride, padding);
+        int outputWidth = outputSize(input[0][0].length, kernels[0][0][0].length, stride, padding);
+        float[][][] output = new float[kernels.length][outputHeight][outputWidth];
+        return convolve3DInto(input, kernels, bias, stride, padding, output);
+    }
+
+    /**
+     * 3D畳み込み演算の結果を output に書き込む（単精度）
+     * @param input 入力テンソル [channels][height][width]
+     * @param kernels カーネル [outputChannels][inputChannels][kernelHeight][kernelWidth]
+     * @param bias バイアス [outputChannels]（nullなら加算しない）
+     * @param stride ストライド
+     * @param padding パディング
+     * @param output 書き込み先 [outputChannels][outputHeight][outputWidth]
+     * @return output
+     */
+    public static float[][][] convolve3DInto(float[][][] input, float[][][][] kernels,
+                                             float[] bias, int stride, int padding,
+                                             float[][][] output) {
+        accumulateChannels(input, kernels, bias, stride, padding, output);
+        return output;
+    }
+
+    private static void accumulateChannels(float[][][] input, float[][][][] kernels, float[] bias,
+                                           int stride, int padding, float[][][] output) {
+        for (int oc = 0; oc < kernels.length; oc++) {
+            float[][] out = output[oc];
+            for (float[] row : out) {
+                Arrays.fill(row, 0.0f);
+            }
+
+            for (int ic = 0; ic < input.length; ic++) {
+                convolve2DAccumulate(input[ic], kernels[oc][ic], stride, padding, out);
+            }
+
+            if (bias != null) {
+                for (float[] row : out) {
+                    for (int w = 0; w < row.length; w++) {
+                        row[w] += bias[oc];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 2D畳み込みを output に加算する（単精度、パディングした入力は作らない）
+     */
+    private static void convolve2DAccumulate(float[][] input, float[][] kernel,
+                                             int stride, int padding, float[][] output) {
+        int outputHeight = output.length;
+        int outputWidth = output[0].length;
+        ElementKernels kernels = Kernels.get();
+
+        for (int kh = 0; kh < kernel.length; kh++) {
+            int ohFrom = validFrom(padding - kh, stride);
+            int ohTo = validTo(input.length, padding - kh, stride, outputHeight);
+
+            for (int kw = 0; kw < kernel[kh].length; kw++) {
+                int owFrom = validFrom(padding - kw, stride);
+                int owTo = validTo(input[0].length, padding - kw, stride, outputWidth);
+                if (owFrom >= owTo) {
+                    continue;
+                }
+                float weight = kernel[kh][kw];
+
+                for (int oh = ohFrom; oh < ohTo; oh++) {
+                    float[] inRow = input[oh * stride + kh - padding];
+                    float[] outRow = output[oh];
+                    int iw = owFrom * stride + kw - padding;
+                    if (stride == 1) {
+                        kernels.axpy(weight, inRow, iw, outRow, owFrom, owTo - owFrom);
+                    } else {
+                        for (int ow = owFrom; ow < owTo; ow++, iw += stride) {
+                            outRow[ow] += weight * inRow[iw];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 最大プーリング（単精度）
+     * @param input 入力画像 [height][width]
+     * @param poolSize プーリングサイズ
+     * @param stride ストライド
+     * @return プーリング結果
+     */
+    public static float[][] maxPool2D(float[][] input, int poolSize, int stride) {
+        int outputHeight = (input.length - poolSize) / stride + 1;
+        int outputWidth = (input[0].length - poolSize) / stride + 1;
+        return maxPool2DInto(input, poolSize, stride, new float[outputHeight][outputWidth]);
+    }
+
+    /**
+     * 最大プーリングの結果を output に書き込む（単精度）
+     * @param input 入力画像 [height][width]
+     * @param poolSize プーリングサイズ
+     * @param stride ストライド
+     * @param output 書き込み先 [outputHeight][outputWidth]
+     * @return output
+     */
+    public static float[][] maxPool2DInto(float[][] input, int poolSize, int stride,
+                                          float[][] output) {
+        return maxPool2DInto(input, poolSize, stride, 0, output);
+    }
+
+    /**
+     * パディング付きの最大プーリングの結果を output に書き込む（単精度、パディングの部分は候補に含めない）
+     * @param input 入力画像 [height][width]
+     * @param poolSize プーリングサイズ
+     * @param stride ストライド
+     * @param padding パディング
+     * @param output 書き込み先 [outputHeight][outputWidth]
+     * @return output
+     */
+    public static float[][] maxPool2DInto(float[][] input, int poolSize, int stride, int padding,
+                                          float[][] output) {
+        int outputHeight = output.length;
+        int outputWidth = output[0].length;
+        int ohFrom = Math.min(outputHeight, validFrom(padding, stride));
+        int ohTo = Math.max(ohFrom, validTo(input.length - poolSize + 1, padding, stride, outputHeight));
+        int owFrom = Math.min(outputWidth, validFrom(padding, stride));
+        int owTo = Math.max(owFrom, validTo(input[0].length - poolSize + 1, padding, stride, outputWidth));
+
+        for (int oh = 0; oh < outputHeight; oh++) {
+            float[] outRow = output[oh];
+            int ih = oh * stride - padding;
+            boolean interiorRow = oh >= ohFrom && oh < ohTo;
+
+            for (int ow = 0; ow < (interiorRow ? owFrom : outputWidth); ow++) {
+                outRow[ow] = borderMax(input, poolSize, ih, ow * stride - padding);
+            }
+            if (!interiorRow) {
+                continue;
+            }
+            for (int ow = owTo; ow < outputWidth; ow++) {
+                outRow[ow] = borderMax(input, poolSize, ih, ow * stride - padding);
+            }
+
+            for (int ow = owFrom; ow < owTo; ow++) {
+                int iw = ow * stride - padding;
+                float maxVal = Float.NEGATIVE_INFINITY;
+                for (int ph = 0; ph < poolSize; ph++) {
+                    float[] inRow = input[ih + ph];
+                    for (int pw = 0; pw < poolSize; pw++) {
+                        maxVal = Math.max(maxVal, inRow[iw + pw]);
+                    }
+                }
+                outRow[ow] = maxVal;
+            }
+        }
+        return output;
+    }
+
+    private static float borderMax(float[][] input, int poolSize, int ih, int iw) {
+        int phTo = Math.min(poolSize, input.length - ih);
+        int pwTo = Math.min(poolSize, input[0].length - iw);
+        float maxVal = Float.NEGATIVE_INFINITY;
+        for (int ph = Math.max(0, -ih); ph < phTo; ph++) {
+            float[] inRow = input[ih + ph];
+            for (int pw = Math.max(0, -iw); pw < pwTo; pw++) {
+                maxVal = Math.max(maxVal, inRow[iw + pw]);
+            }
+        }
+        return maxVal;
+    }
+
+    /**
+     * 3D最大プーリング（複数チャンネル、単精度）
+     * @param input 入力テンソル [channels][height][width]
+     * @param poolSize プーリングサイズ
+     * @param stride ストライド
+     * @return プーリング結果
+     */
+    public static float[][][] maxPool3D(float[][][] input, int poolSize, int stride) {
+        float[][][] output = new float[input.length][][];
+        for (int c = 0; c < input.length; c++) {
+            output[c] = maxPool2D(input[c], poolSize, stride);
+        }
+        return output;
+    }
+
+    /**
+     * 3D最大プーリングの結果を output に書き込む（単精度）
+     * @param input 入力テンソル [channels][height][width]
+     * @param poolSize プーリングサイズ
+     * @param stride ストライド
+     * @param output 書き込み先 [channels][outputHeight][outputWidth]
+     * @return output
+     */
+    public static float[][][] maxPool3DInto(float[][][] input, int poolSize, int stride,
+                                            float[][][] output) {
+        return maxPool3DInto(input, poolSize, stride, 0, output);
+    }
+
+    /**
+     * パディング付きの3D最大プーリングの結果を output に書き込む（単精度）
+     * @param input 入力テンソル [channels][height][width]
+     * @param poolSize プーリングサイズ
+     * @param stride ストライド
+     * @param padding パディング
+     * @param output 書き込み先 [channels][outputHeight][outputWidth]
+     * @return output
+     */
+    public static float[][][] maxPool3DInto(float[][][] input, int poolSize, int stride, int padding,
+                                            float[][][] output) {
+        for (int c = 0; c < input.length; c++) {
+            maxPool2DInto(input[c], poolSize, stride, padding, output[c]);
+        }
+        return output;
+    }
+
+    /**
+     * バッチの畳み込みの入力に対する勾配を gradInput に書き込む（単精度）
+     * 倍精度の Tensor 版と同じく、重みの転置と出力の勾配の積を col2im で入力の形に足し戻す（積はサンプルごと）
+     * @param gradOutput 出力の勾配 [batch][outputChannels][outputHeight][outputWidth]
+     * @param kernels カーネル [outputChannels][inputChannels][kernelHeight][kernelWidth]
+     * @param stride ストライド
+     * @param padding パディング
+     * @param gradInput 書き込み先 [batch][inputChannels][height][width]
+     * @return gradInput
+     */
+    public static float[][][][] convolve4DBackwardDataInto(float[][][][] gradOutput, float[][][][] kernels,
+                                                           int stride, int padding, float[][][][] gradInput) {
+        checkBatchShape(gradInput, kernels, stride, padding, gradOutput);
+        int outChannels = kernels.length;
+        int kernelHeight = kernels[0][0].length;
+        int kernelWidth = kernels[0][0][0].length;
+        int patchSize = gradInput[0].length * kernelHeight * kernelWidth;
+        int outputHeight = gradOutput[0][0].length;
+        int outputWidth = gradOutput[0][0][0].length;
+        int pixels = outputHeight * outputWidth;
+
+        BufferPool pool = BufferPool.local();
+        int mark = pool.mark();
+        try {
+            // 重みの転置 [C*K*K][outputChannels]
+            float[] weightsT = pool.borrowFloat(patchSize * outChannels);
+            for (int o = 0; o < outChannels; o++) {
+                int r = 0;
+                for (float[][] channel : kernels[o]) {
+                    for (float[] row : channel) {
+                        for (float w : row) {
+                            weightsT[r++ * outChannels + o] = w;
+                        }
+                    }
+                }
+            }
+            float[] grad = pool.borrowFloat(outChannels * pixels);
+            float[] col = pool.borrowFloat(patchSize * pixels);
+            ElementKernels k = Kernels.get();
+
+            for (int n = 0; n < gradOutput.length; n++) {
+                int idx = 0;
+                for (float[][] plane : gradOutput[n]) {
+                    for (float[] row : plane) {
+                        System.arraycopy(row, 0, grad, idx, outputWidth);
+                        idx += outputWidth;
+                    }
+                }
+                Arrays.fill(col, 0.0f);
+                k.multiplyAccumulate(weightsT, 0, outChannels, patchSize, grad, 0, pixels, outChannels,
+                        col, 0, pixels, pixels);
+                col2imInto(col, kernelHeight, kernelWidth, stride, padding,
+                        outputHeight, outputWidth, gradInput[n]);
+            }
+        } finally {
+            pool.release(mark);
+        }
+        return gradInput;
+    }
+
+    /**
+     * バッチの畳み込みの重みとバイアスに対する勾配を書き込む（単精度、バッチ全体の和）
+     * 重みの勾配は倍精度の Tensor 版と同じく im2col 行列と出力の勾配の転置の積で求め、単精度で累積する。
+     * バイアスの勾配（チャンネルごとの総和）は倍精度で累積する
+     * @param input 順伝播の入力 [batch][inputChannels][height][width]
+     * @param gradOutput 出力の勾配 [batch][outputChannels][outputHeight][outputWidth]
+     * @param stride ストライド
+     * @param padding パディング
+     * @param gradKernels 書き込み先 [outputChannels][inputChannels][kernelHeight][kernelWidth]
+     * @param gradBias バイアスの勾配の書き込み先 [outputChannels]（nullなら計算しない）
+     */
+    public static void convolve4DBackwardWeightsInto(float[][][][] input, float[][][][] gradOutput,
+                                                     int stride, int padding,
+                                                     float[][][][] gradKernels, float[] gradBias) {
+        checkBatchShape(input, gradKernels, stride, padding, gradOutput);
+        int outChannels = gradKernels.length;
+        int kernelHeight = gradKernels[0][0].length;
+        int kernelWidth = gradKernels[0][0][0].length;
+        int patchSize = input[0].length * kernelHeight * kernelWidth;
+        int outputHeight = gradOutput[0][0].length;
+        int outputWidth = gradOutput[0][0][0].length;
+        int pixels = outputHeight * outputWidth;
+
+        BufferPool pool = BufferPool.local();
+        int mark = pool.mark();
+        try {
+            float[] col = pool.borrowFloat(patchSize * pixels);
+            float[] gradT = pool.borrowFloat(pixels * outChannels);
+            // 重みの勾配は転置した形 [C*K*K][outputChannels] = col × grad^T で足し合わせる
+            float[] gradWeightsT = pool.borrowFloat(patchSize * outChannels);
+            Arrays.fill(gradWeightsT, 0.0f);
+            double[] biasSums = pool.borrow(outChannels);
+            Arrays.fill(biasSums, 0.0);
+            ElementKernels k = Kernels.get();
+
+            for (int n = 0; n < input.length; n++) {
+                im2colInto(input[n], kernelHeight, kernelWidth, stride, padding, outputHeight, outputWidth, col);
+                for (int o = 0; o < outChannels; o++) {
+                    float[][] plane = gradOutput[n][o];
+                    double sum = 0.0;
+                    for (int oh = 0; oh < outputHeight; oh++) {
+                        float[] row = plane[oh];
+                        for (int ow = 0; ow < outputWidth; ow++) {
+                            gradT[(oh * outputWidth + ow) * outChannels + o] = row[ow];
+                            sum += row[ow];
+                        }
+                    }
+                    biasSums[o] += sum;
+                }
+                k.multiplyAccumulate(col, 0, pixels, patchSize, gradT, 0, outChannels, pixels,
+                        gradWeightsT, 0, outChannels, outChannels);
+            }
+
+            for (int o = 0; o < outChannels; o++) {
+                int r = 0;
+                for (float[][] channel : gradKernels[o]) {
+                    for (float[] row : channel) {
+                        for (int kw = 0; kw < kernelWidth; kw++) {
+                            row[kw] = gradWeightsT[r++ * outChannels + o];
+                        }
+                    }
+                }
+                if (gradBias != null) {
+                    gradBias[o] = (float) biasSums[o];
+                }
+            }
+        } finally {
+            pool.release(mark);
+        }
+    }
+
+    /**
+     * 1枚の im2col 行列 [channels*K*K][outputHeight*outputWidth] を col に書き込む（単精度、入力の外は0）
+     */
+    private static void im2colInto(float[][][] input, int kernelHeight, int kernelWidth, int stride, int padding,
+                                   int outputHeight, int outputWidth, float[] col) {
+        int height = input[0].length;
+        int width = input[0][0].length;
+        int pixels = outputHeight * outputWidth;
+
+        int rowBase = 0;
+        for (float[][] channel : input) {
+            for (int kh = 0; kh < kernelHeight; kh++) {
+                int ohFrom = Math.min(outputHeight, validFrom(padding - kh, stride));
+                int ohTo = Math.max(ohFrom, validTo(height, padding - kh, stride, outputHeight));
+                for (int kw = 0; kw < kernelWidth; kw++, rowBase += pixels) {
+                    int owFrom = Math.min(outputWidth, validFrom(padding - kw, stride));
+                    int owTo = Math.max(owFrom, validTo(width, padding - kw, stride, outputWidth));
+
+                    Arrays.fill(col, rowBase, rowBase + ohFrom * outputWidth, 0.0f);
+                    Arrays.fill(col, rowBase + ohTo * outputWidth, rowBase + pixels, 0.0f);
+                    for (int oh = ohFrom; oh < ohTo; oh++) {
+                        int dst = rowBase + oh * outputWidth;
+                        Arrays.fill(col, dst, dst + owFrom, 0.0f);
+                        Arrays.fill(col, dst + owTo, dst + outputWidth, 0.0f);
+                        float[] inRow = channel[oh * stride + kh - padding];
+                        int iw = owFrom * stride + kw - padding;
+                        if (stride == 1) {
+                            System.arraycopy(inRow, iw, col, dst + owFrom, owTo - owFrom);
+                        } else {
+                            for (int ow = owFrom; ow < owTo; ow++, iw += stride) {
+                                col[dst + ow] = inRow[iw];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 1枚の im2col 行列の値を入力の位置に足し戻した結果を output に書き込む（単精度、入力の外に落ちる値は捨てる）
+     */
+    private static void col2imInto(float[] col, int kernelHeight, int kernelWidth, int stride, int padding,
+                                   int outputHeight, int outputWidth, float[][][] output) {
+        int height = output[0].length;
+        int width = output[0][0].length;
+        int pixels = outputHeight * outputWidth;
+        ElementKernels k = Kernels.get();
+
+        int rowBase = 0;
+        for (float[][] channel : output) {
+            for (float[] row : channel) {
+                Arrays.fill(row, 0.0f);
+            }
+            for (int kh = 0; kh < kernelHeight; kh++) {
+                int ohFrom = validFrom(padding - kh, stride);
+                int ohTo = validTo(height, padding - kh, stride, outputHeight);
+                for (int kw = 0; kw < kernelWidth; kw++, rowBase += pixels) {
+                    int owFrom = validFrom(padding - kw, stride);
+                    int owTo = validTo(width, padding - kw, stride, outputWidth);
+                    for (int oh = ohFrom; oh < ohTo && owFrom < owTo; oh++) {
+                        float[] outRow = channel[oh * stride + kh - padding];
+                        int iw = owFrom * stride + kw - padding;
+                        int src = rowBase + oh * outputWidth + owFrom;
+                        if (stride == 1) {
+                            k.axpy(1.0f, col, src, outRow, iw, owTo - owFrom);
+                        } else {
+                            for (int ow = 0; ow < owTo - owFrom; ow++) {
+                                outRow[iw + ow * stride] += col[src + ow];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 単精度のバッチの入力・カーネル・出力の形が合っているか確かめる
+     */
+    private static void checkBatchShape(float[][][][] input, float[][][][] kernels, int stride, int padding,
+                                        float[][][][] output) {
+        int outputHeight = outputSize(input[0][0].length, kernels[0][0].length, stride, padding);
+        int outputWidth = outputSize(input[0][0][0].length, kernels[0][0][0].length, stride, padding);
+        if (kernels[0].length != input[0].length) {
+            throw new IllegalArgumentException("Kernel expects " + kernels[0].length
+                    + " input channels but input has " + input[0].length);
+        }
+        if (output.length != input.length || output[0].length != kernels.length
+                || output[0][0].length != outputHeight || output[0][0][0].length != outputWidth) {
+            throw new IllegalArgumentException("Shape mismatch: [" + output.length + ", " + output[0].length + ", "
+                    + output[0][0].length + ", " + output[0][0][0].length + "] vs [" + input.length + ", "
+                    + kernels.length + ", " + outputHeight + ", " + outputWidth + "]");
+        }
+    }
+
+    // ===== 8ビット整数（int8）版 =====
+
+    /**
+     * 量子化した入力とカーネルの3D畳み込みを、実数に戻して output に書き込む
+     * output[oc] = activation(Σ kernels[oc] * input + bias[oc])
+     * パディングは入力のゼロ点（実数の 0）で埋める
+     * @param input 量子化した入力 [channels][height][width]
+     * @param kernels {@link QuantizedMatrix#ofKernels(float[][][][])} で量子化したカーネル
+     * @param kernelHeight カーネルの高さ
+     * @param kernelWidth カーネルの幅
+     * @param bias バイアス [outputChannels]（nullなら加算しない）
+     * @param stride ストライド
+     * @param padding パディング
+     * @param activation 活性化関数
+     * @param output 書き込み先 [outputChannels][outputHeight][outputWidth]
+     * @return output
+     */
+    public static float[][][] convolve3DInto(QuantizedTensor input, QuantizedMatrix kernels,
+                                             int kernelHeight, int kernelWidth, float[] bias,
+                                             int stride, int padding, Activation activation,
+                                             float[][][] output) {
+        BufferPool pool = BufferPool.local();
+        int mark = pool.mark();
+        try {
+            QuantizedConvolution conv = new QuantizedConvolution(input, kernels, kernelHeight, kernelWidth,
+                    stride, padding, pool);
+            float inputScale = input.getScale();
+            for (int oc = 0; oc < kernels.getRows(); oc++) {
+                int[] acc = conv.accumulate(oc);
+                float scale = kernels.getScales()[oc] * inputScale;
+                float offset = bias == null ? 0.0f : bias[oc];
+                int k = 0;
+                for (float[] row : output[oc]) {
+                    for (int ow = 0; ow < row.length; ow++) {
+                        row[ow] = (float) activation.apply(scale * acc[k++] + offset);
+                    }
+                }
+            }
+        } finally {
+            pool.release(mark);
+        }
+        return output;
+    }
+
+    /**
+     * 量子化した入力とカーネルの3D畳み込みを、output の scale と zeroPoint で量子化し直して書き込む
+     * 次の層にも8ビット整数のまま渡す場合に使う
+     * @param input 量子化した入力 [channels][height][width]
+     * @param kernels {@link QuantizedMatrix#ofKernels(float[][][][])} で量子化したカーネル
+     * @param kernelHeight カーネルの高さ
+     * @param kernelWidth カーネルの幅
+     * @param bias バイアス [outputChannels]（nullなら加算しない）
+     * @param stride ストライド
+     * @param padding パディング
+     * @param activation 活性化関数
+     * @param output 書き込み先 [outputChannels][outputHeight][outputWidth]（量子化パラメータは呼び出し側で決めておく）
+     * @return output
+     */
+    public static QuantizedTensor convolve3DInto(QuantizedTensor input, QuantizedMatrix kernels,
+                                                 int kernelHeight, int kernelWidth, float[] bias,
+                                                 int stride, int padding, Activation activation,
+                                                 QuantizedTensor output) {
+        BufferPool pool = BufferPool.local();
+        int mark = pool.mark();
+        try {
+            QuantizedConvolution conv = new QuantizedConvolution(input, kernels, kernelHeight, kernelWidth,
+                    stride, padding, pool);
+            int planeSize = conv.outputHeight * conv.outputWidth;
+            for (int oc = 0; oc < kernels.getRows(); oc++) {
+                kernels.requantize(conv.accumulate(oc), oc, input.getScale(), bias, activation,
+                        output.getData(), oc * planeSize, planeSize, output);
+            }
+        } finally {
+            pool.release(mark);
+        }
+        return output;
+    }
+
+    /**
+     * 量子化した3D畳み込みの作業領域（パディング済みの入力と窓ごとの入力の総和）
+     */
+    private static final class QuantizedConvolution {
+        final QuantizedMatrix kernels;
+        final int channels, kernelHeight, kernelWidth, stride;
+        final int paddedHeight, paddedWidth, outputHeight, outputWidth;
+        final byte[] padded;
+        final int[] windowSums;
+        final int[] acc;
+        final int accWidth;
+        final int inputZero;
+
+        QuantizedConvolution(QuantizedTensor input, QuantizedMatrix kernels, int kernelHeight, int kernelWidth,
+                             int stride, int padding, BufferPool pool) {
+            this.kernels = kernels;
+            this.channels = input.getDim(0);
+            this.kernelHeight = kernelHeight;
+            this.kernelWidth = kernelWidth;
+            this.stride = stride;
+            int height = input.getDim(1);
+            int width = input.getDim(2);
+            if (kernels.getCols() != channels * kernelHeight * kernelWidth) {
+                throw new IllegalArgumentException("Kernel shape mismatch: " + kernels.getCols()
+                        + " vs " + channels + "x" + kernelHeight + "x" + kernelWidth);
+            }
+            this.paddedHeight = height + 2 * padding;
+            this.paddedWidth = width + 2 * padding;
+            this.outputHeight = outputSize(height, kernelHeight, stride, padding);
+            this.outputWidth = outputSize(width, kernelWidth, stride, padding);
+            this.inputZero = input.getZeroPoint();
+
+            // 入力のゼロ点で埋めてから内側に写す
+            padded = pool.borrowByte(channels * paddedHeight * paddedWidth);
+            Arrays.fill(padded, (byte) inputZero);
+            byte[] src = input.getData();
+            for (int c = 0; c < channels; c++) {
+                for (int h = 0; h < height; h++) {
+                    System.arraycopy(src, (c * height + h) * width, padded,
+                            (c * paddedHeight + h + padding) * paddedWidth + padding, width);
+                }
+            }
+
+            // カーネルのゼロ点の補正に使う窓ごとの Σx（全出力チャンネルで共通）
+            windowSums = pool.borrowInt(outputHeight * outputWidth);
+            Arrays.fill(windowSums, 0);
+            for (int c = 0; c < channels; c++) {
+                for (int kh = 0; kh < kernelHeight; kh++) {
+                    for (int kw = 0; kw < kernelWidth; kw++) {
+                        for (int oh = 0; oh < outputHeight; oh++) {
+                            int base = (c * paddedHeight + oh * stride + kh) * paddedWidth + kw;
+                            for (int ow = 0; ow < outputWidth; ow++) {
+                                windowSums[oh * outputWidth + ow] += padded[base + ow * stride];
+                            }
+                        }
+                    }
+                }
+            }
+            // ストライド1では出力の行をパディング後の幅で並べ、1つの重みについて全行を1回の axpy で足す
+            // （各行の末尾の kernelWidth - 1 要素は使わない）
+            accWidth = stride == 1 ? paddedWidth : outputWidth;
+            acc = pool.borrowInt(outputHeight * accWidth);
+        }
+
+        /**
+         * 出力チャンネル oc の補正済みの整数の積 [outputHeight * outputWidth]
+         * （返す配列は次の呼び出しで上書きされる）
+         */
+        int[] accumulate(int oc) {
+            ElementKernels ops = Kernels.get();
+            byte[] weights = kernels.getData();
+            int row = oc * kernels.getCols();
+            Arrays.fill(acc, 0);
+
+            // 重み1つずつ、入力を掛けて出力に足す
+            int span = (outputHeight - 1) * accWidth + outputWidth;
+            for (int c = 0; c < channels; c++) {
+                for (int kh = 0; kh < kernelHeight; kh++) {
+                    for (int kw = 0; kw < kernelWidth; kw++) {
+                        int w = weights[row + (c * kernelHeight + kh) * kernelWidth + kw];
+                        if (w == 0) {
+                            continue;
+                        }
+                        int src = (c * paddedHeight + kh) * paddedWidth + kw;
+                        if (stride == 1) {
+                            ops.axpyInt8(w, padded, src, acc, 0, span);
+                            continue;
+                        }
+                        for (int oh = 0; oh < outputHeight; oh++) {
+                            int base = src + oh * stride * paddedWidth;
+                            int dst = oh * outputWidth;
+                            for (int ow = 0; ow < outputWidth; ow++) {
+                                acc[dst + ow] += w * padded[base + ow * stride];
+                            }
+                        }
+                    }
+                }
+            }
+
+            // ゼロ点を補正しながら [outputHeight][outputWidth] に詰める（前から詰めるので上書きしない）
+            for (int oh = 0; oh < outputHeight; oh++) {
+                for (int ow = 0; ow < outputWidth; ow++) {
+                    int p = oh * outputWidth + ow;
+                    acc[p] = kernels.correct(oc, acc[oh * accWidth + ow], inputZero, windowSums[p]);
+                }
+            }
+            return acc;
+        }
+    }
+
+    /**
+     * 3D最大プーリング（8ビット整数、出力の量子化パラメータは入力と同じ）
+     * 量子化は単調なので、整数のまま最大値を取れば実数の最大値に対応する
+     * @param input 量子化した入力 [channels][height][width]
+     * @param poolSize プーリングサイズ
+     * @param stride ストライド
+     * @return プーリング結果
+     */
+    public static QuantizedTensor maxPool3D(QuantizedTensor input, int poolSize, int stride) {
+        int outputHeight = (input.getDim(1) - poolSize) / stride + 1;
+        int outputWidth = (input.getDim(2) - poolSize) / stride + 1;
+        QuantizedTensor output = new QuantizedTensor(input.getScale(), input.getZeroPoint(),
+                input.getDim(0), outputHeight, outputWidth);
+        return maxPool3DInto(input, poolSize, stride, output);
+    }
+
+    /**
+     * 3D最大プーリングの結果を output に書き込む（8ビット整数）
+     * @param input 量子化した入力 [channels][height][width]
+     * @param poolSize プーリングサイズ
+     * @param stride ストライド
+     * @param output 書き込み先 [channels][outputHeight][outputWidth]（量子化パラメータは入力と同じであること）
+     * @return output
+     */
+    public static QuantizedTensor maxPool3DInto(QuantizedTensor input, int poolSize, int stride,
+                                                QuantizedTensor output) {
+        if (output.getScale() != input.getScale() || output.getZeroPoint() != input.getZeroPoint()) {
+            throw new IllegalArgumentException("Max pooling requires the same quantization for input and output");
+        }
+        int channels = input.getDim(0);
+        int height = input.getDim(1);
+        int width = input.getDim(2);
+        int outputHeight = output.getDim(1);
+        int outputWidth = output.getDim(2);
+        byte[] in = input.getData();
+        byte[] out = output.getData();
+        for (int c = 0; c < channels; c++) {
+            for (int oh = 0; oh < outputHeight; oh++) {
+                for (int ow = 0; ow < outputWidth; ow++) {
+                    int maxVal = QuantizedTensor.QMIN;
+                    for (int ph = 0; ph < poolSize; ph++) {
+                        int base = (c * height + oh * stride + ph) * width + ow * stride;
+                        for (int pw = 0; pw < poolSize; pw++) {
+                            maxVal = Math.max(maxVal, in[base + pw]);
+                        }
+                    }
+                    out[(c * outputHeight + oh) * outputWidth + ow] = (byte) maxVal;
+                }
+            }
+        }
+        return output;
     }
-}
\ No newline at end of file
+}
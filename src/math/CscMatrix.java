@@ -0,0 +1,213 @@
+package math;
+
+import java.util.Arrays;
+
+/**
+ * 圧縮列形式（CSC）の疎行列
+ * 非ゼロ要素を列ごとに並べて持つ。j 列目の非ゼロ要素は
+ * values[colPtr[j] .. colPtr[j+1]) にあり、その行番号が rowIdx の同じ位置に入る。
+ * 入力ベクトルの要素ごとに列を散らす演算に向き、入力にゼロが多い場合は
+ * その列をまるごと読み飛ばせる。
+ */
+public class CscMatrix {
+
+    private final int rows;
+    private final int cols;
+    private final int[] colPtr;   // [cols + 1]
+    private final int[] rowIdx;   // [nnz]
+    private final double[] values; // [nnz]
+
+    /**
+     * 既存の配列から作成（コピーしない）
+     * @param rows 行数
+     * @param cols 列数
+     * @param colPtr 各列の先頭位置 [cols + 1]
+     * @param rowIdx 各非ゼロ要素の行番号（列内で昇順）
+     * @param values 各非ゼロ要素の値
+     */
+    public CscMatrix(int rows, int cols, int[] colPtr, int[] rowIdx, double[] values) {
+        if (colPtr.length != cols + 1 || rowIdx.length < colPtr[cols] || values.length < colPtr[cols]) {
+            throw new IllegalArgumentException("Inconsistent CSC arrays for " + rows + "x" + cols);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.colPtr = colPtr;
+        this.rowIdx = rowIdx;
+        this.values = values;
+    }
+
+    /**
+     * 密行列から作成（絶対値が threshold 以下の要素は捨てる）
+     * @param m 元の行列
+     * @param threshold 捨てる値の上限（0なら厳密にゼロの要素だけを捨てる）
+     * @return 疎行列
+     */
+    public static CscMatrix fromDense(DenseMatrix m, double threshold) {
+        return CsrMatrix.fromDense(m, threshold).toCsc();
+    }
+
+    /**
+     * double[][] から作成（絶対値が threshold 以下の要素は捨てる）
+     * @param m 元の行列
+     * @param threshold 捨てる値の上限
+     * @return 疎行列
+     */
+    public static CscMatrix fromDense(double[][] m, double threshold) {
+        return fromDense(DenseMatrix.of(m), threshold);
+    }
+
+    /**
+     * 密行列に変換
+     * @return 密行列
+     */
+    public DenseMatrix toDense() {
+        DenseMatrix result = new DenseMatrix(rows, cols);
+        double[] data = result.getData();
+        for (int j = 0; j < cols; j++) {
+            for (int k = colPtr[j]; k < colPtr[j + 1]; k++) {
+                data[rowIdx[k] * cols + j] = values[k];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 圧縮行形式に変換
+     * @return 同じ行列の CSR 表現
+     */
+    public CsrMatrix toCsr() {
+        int nnz = getNonZeros();
+        int[] rowPtr = new int[rows + 1];
+        for (int k = 0; k < nnz; k++) {
+            rowPtr[rowIdx[k] + 1]++;
+        }
+        for (int i = 0; i < rows; i++) {
+            rowPtr[i + 1] += rowPtr[i];
+        }
+
+        int[] colIdx = new int[nnz];
+        double[] csrValues = new double[nnz];
+        int[] next = Arrays.copyOf(rowPtr, rows);
+        for (int j = 0; j < cols; j++) {
+            for (int k = colPtr[j]; k < colPtr[j + 1]; k++) {
+                int dst = next[rowIdx[k]]++;
+                colIdx[dst] = j;
+                csrValues[dst] = values[k];
+            }
+        }
+        return new CsrMatrix(rows, cols, rowPtr, colIdx, csrValues);
+    }
+
+    // アクセサ
+    public int getRows() { return rows; }
+    public int getCols() { return cols; }
+    public int[] getColPtr() { return colPtr; }
+    public int[] getRowIdx() { return rowIdx; }
+    public double[] getValues() { return values; }
+
+    /**
+     * 非ゼロ要素の数
+     */
+    public int getNonZeros() {
+        return colPtr[cols];
+    }
+
+    /**
+     * 非ゼロ要素の割合
+     */
+    public double getDensity() {
+        return rows == 0 || cols == 0 ? 0.0 : (double) getNonZeros() / ((double) rows * cols);
+    }
+
+    /**
+     * 疎行列とベクトルの積を計算 (this × v)
+     * @param v ベクトル [cols]
+     * @return 積の結果 [rows]
+     */
+    public double[] dotMV(double[] v) {
+        return dotMVInto(v, new double[rows]);
+    }
+
+    /**
+     * 疎行列とベクトルの積を out に書き込む (out = this × v)
+     * j 列目の非ゼロ要素を v[j] 倍して out に散らす（v[j] = 0 の列は読まない）
+     * @param v ベクトル [cols]
+     * @param out 結果の書き込み先 [rows]
+     * @return out
+     */
+    public double[] dotMVInto(double[] v, double[] out) {
+        if (v.length != cols) {
+            throw new IllegalArgumentException(
+                    "Vector length mismatch: expected " + cols + " but was " + v.length);
+        }
+        Arrays.fill(out, 0, rows, 0.0);
+        for (int j = 0; j < cols; j++) {
+            double vj = v[j];
+            if (vj == 0.0) {
+                continue;
+            }
+            for (int k = colPtr[j]; k < colPtr[j + 1]; k++) {
+                out[rowIdx[k]] += values[k] * vj;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 転置した疎行列とベクトルの積を計算 (this^T × v)
+     * 各列と v の内積なので、CSR の行列×ベクトルと同じ形になる
+     * @param v ベクトル [rows]
+     * @return 積の結果 [cols]
+     */
+    public double[] dotTMV(double[] v) {
+        if (v.length != rows) {
+            throw new IllegalArgumentException(
+                    "Vector length mismatch: expected " + rows + " but was " + v.length);
+        }
+        double[] out = new double[cols];
+        for (int j = 0; j < cols; j++) {
+            double sum = 0.0;
+            for (int k = colPtr[j]; k < colPtr[j + 1]; k++) {
+                sum += values[k] * v[rowIdx[k]];
+            }
+            out[j] = sum;
+        }
+        return out;
+    }
+
+    /**
+     * 疎行列と密行列の積を計算 (this × B)
+     * @param b 密行列 [cols][n]
+     * @return 積の結果 [rows][n]
+     */
+    public DenseMatrix dot(DenseMatrix b) {
+        return dotInto(b, new DenseMatrix(rows, b.getCols()));
+    }
+
+    /**
+     * 疎行列と密行列の積を out に書き込む (out = this × B)
+     * 非ゼロ要素 (i, j) ごとに B の j 行目を出力の i 行目に足し込む
+     * @param b 密行列 [cols][n]
+     * @param out 結果の書き込み先 [rows][n]
+     * @return out
+     */
+    public DenseMatrix dotInto(DenseMatrix b, DenseMatrix out) {
+        if (b.getRows() != cols || out.getRows() != rows || out.getCols() != b.getCols()) {
+            throw new IllegalArgumentException("Shape mismatch: " + rows + "x" + cols + " * "
+                    + b.getRows() + "x" + b.getCols() + " -> " + out.getRows() + "x" + out.getCols());
+        }
+        int n = b.getCols();
+        double[] bData = b.getData();
+        double[] outData = out.getData();
+        ElementKernels kernels = Kernels.get();
+
+        out.fill(0.0);
+        for (int j = 0; j < cols; j++) {
+            int bRow = b.index(j, 0);
+            for (int k = colPtr[j]; k < colPtr[j + 1]; k++) {
+                kernels.axpy(values[k], bData, bRow, outData, out.index(rowIdx[k], 0), n);
+            }
+        }
+        return out;
+    }
+}
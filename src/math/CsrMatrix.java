@@ -0,0 +1,272 @@
+package math;
+
+import java.util.Arrays;
+
+/**
+ * 圧縮行形式（CSR）の疎行列
+ * 非ゼロ要素だけを行ごとに並べて持つ。i 行目の非ゼロ要素は
+ * values[rowPtr[i] .. rowPtr[i+1]) にあり、その列番号が colIdx の同じ位置に入る。
+ * 枝刈りした重みなど、行ごとに読む演算（行列×ベクトル、行列×密行列）に向く。
+ * 作成後は非ゼロの配置を変えない（値の書き換えは getValues() 経由で行える）。
+ */
+public class CsrMatrix {
+
+    private final int rows;
+    private final int cols;
+    private final int[] rowPtr;   // [rows + 1]
+    private final int[] colIdx;   // [nnz]
+    private final double[] values; // [nnz]
+
+    /**
+     * 既存の配列から作成（コピーしない）
+     * @param rows 行数
+     * @param cols 列数
+     * @param rowPtr 各行の先頭位置 [rows + 1]
+     * @param colIdx 各非ゼロ要素の列番号（行内で昇順）
+     * @param values 各非ゼロ要素の値
+     */
+    public CsrMatrix(int rows, int cols, int[] rowPtr, int[] colIdx, double[] values) {
+        if (rowPtr.length != rows + 1 || colIdx.length < rowPtr[rows] || values.length < rowPtr[rows]) {
+            throw new IllegalArgumentException("Inconsistent CSR arrays for " + rows + "x" + cols);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.rowPtr = rowPtr;
+        this.colIdx = colIdx;
+        this.values = values;
+    }
+
+    /**
+     * 密行列から作成（絶対値が threshold 以下の要素は捨てる）
+     * @param m 元の行列
+     * @param threshold 捨てる値の上限（0なら厳密にゼロの要素だけを捨てる）
+     * @return 疎行列
+     */
+    public static CsrMatrix fromDense(DenseMatrix m, double threshold) {
+        int rows = m.getRows();
+        int cols = m.getCols();
+        double[] data = m.getData();
+
+        int[] rowPtr = new int[rows + 1];
+        for (int i = 0; i < rows; i++) {
+            int row = m.index(i, 0);
+            int count = 0;
+            for (int j = 0; j < cols; j++) {
+                if (Math.abs(data[row + j]) > threshold) {
+                    count++;
+                }
+            }
+            rowPtr[i + 1] = rowPtr[i] + count;
+        }
+
+        int[] colIdx = new int[rowPtr[rows]];
+        double[] values = new double[rowPtr[rows]];
+        for (int i = 0; i < rows; i++) {
+            int row = m.index(i, 0);
+            int k = rowPtr[i];
+            for (int j = 0; j < cols; j++) {
+                double v = data[row + j];
+                if (Math.abs(v) > threshold) {
+                    colIdx[k] = j;
+                    values[k] = v;
+                    k++;
+                }
+            }
+        }
+        return new CsrMatrix(rows, cols, rowPtr, colIdx, values);
+    }
+
+    /**
+     * double[][] から作成（絶対値が threshold 以下の要素は捨てる）
+     * @param m 元の行列
+     * @param threshold 捨てる値の上限
+     * @return 疎行列
+     */
+    public static CsrMatrix fromDense(double[][] m, double threshold) {
+        return fromDense(DenseMatrix.of(m), threshold);
+    }
+
+    /**
+     * 密行列に変換
+     * @return 密行列
+     */
+    public DenseMatrix toDense() {
+        DenseMatrix result = new DenseMatrix(rows, cols);
+        double[] data = result.getData();
+        for (int i = 0; i < rows; i++) {
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; k++) {
+                data[i * cols + colIdx[k]] = values[k];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 圧縮列形式に変換
+     * @return 同じ行列の CSC 表現
+     */
+    public CscMatrix toCsc() {
+        int nnz = getNonZeros();
+        int[] colPtr = new int[cols + 1];
+        for (int k = 0; k < nnz; k++) {
+            colPtr[colIdx[k] + 1]++;
+        }
+        for (int j = 0; j < cols; j++) {
+            colPtr[j + 1] += colPtr[j];
+        }
+
+        int[] rowIdx = new int[nnz];
+        double[] cscValues = new double[nnz];
+        int[] next = Arrays.copyOf(colPtr, cols);
+        // 行の昇順に走査するので、各列内の行番号も昇順になる
+        for (int i = 0; i < rows; i++) {
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; k++) {
+                int dst = next[colIdx[k]]++;
+                rowIdx[dst] = i;
+                cscValues[dst] = values[k];
+            }
+        }
+        return new CscMatrix(rows, cols, colPtr, rowIdx, cscValues);
+    }
+
+    // アクセサ
+    public int getRows() { return rows; }
+    public int getCols() { return cols; }
+    public int[] getRowPtr() { return rowPtr; }
+    public int[] getColIdx() { return colIdx; }
+    public double[] getValues() { return values; }
+
+    /**
+     * 非ゼロ要素の数
+     */
+    public int getNonZeros() {
+        return rowPtr[rows];
+    }
+
+    /**
+     * 非ゼロ要素の割合
+     */
+    public double getDensity() {
+        return rows == 0 || cols == 0 ? 0.0 : (double) getNonZeros() / ((double) rows * cols);
+    }
+
+    /**
+     * 疎行列とベクトルの積を計算 (this × v)
+     * @param v ベクトル [cols]
+     * @return 積の結果 [rows]
+     */
+    public double[] dotMV(double[] v) {
+        return dotMVInto(v, new double[rows]);
+    }
+
+    /**
+     * 疎行列とベクトルの積を out に書き込む (out = this × v)
+     * @param v ベクトル [cols]
+     * @param out 結果の書き込み先 [rows]
+     * @return out
+     */
+    public double[] dotMVInto(double[] v, double[] out) {
+        checkVector(v.length, cols);
+        dotMVRows(v, out, 0, rows);
+        return out;
+    }
+
+    /**
+     * 疎行列とベクトルの積を並列に計算 (this × v)
+     * 結果はスレッド数によらず dotMV と一致する
+     * @param v ベクトル [cols]
+     * @return 積の結果 [rows]
+     */
+    public double[] parallelDotMV(double[] v) {
+        checkVector(v.length, cols);
+        double[] out = new double[rows];
+        long workPerRow = Math.max(1, getNonZeros() / Math.max(1, rows));
+        Parallel.forRange(0, rows, Parallel.grainFor(workPerRow),
+                (from, to) -> dotMVRows(v, out, from, to));
+        return out;
+    }
+
+    private void dotMVRows(double[] v, double[] out, int from, int to) {
+        for (int i = from; i < to; i++) {
+            double sum = 0.0;
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; k++) {
+                sum += values[k] * v[colIdx[k]];
+            }
+            out[i] = sum;
+        }
+    }
+
+    /**
+     * 転置した疎行列とベクトルの積を計算 (this^T × v)
+     * @param v ベクトル [rows]
+     * @return 積の結果 [cols]
+     */
+    public double[] dotTMV(double[] v) {
+        return dotTMVInto(v, new double[cols]);
+    }
+
+    /**
+     * 転置した疎行列とベクトルの積を out に書き込む (out = this^T × v)
+     * i 行目の非ゼロ要素を v[i] 倍して out に散らす
+     * @param v ベクトル [rows]
+     * @param out 結果の書き込み先 [cols]
+     * @return out
+     */
+    public double[] dotTMVInto(double[] v, double[] out) {
+        checkVector(v.length, rows);
+        Arrays.fill(out, 0, cols, 0.0);
+        for (int i = 0; i < rows; i++) {
+            double vi = v[i];
+            if (vi == 0.0) {
+                continue;
+            }
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; k++) {
+                out[colIdx[k]] += values[k] * vi;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 疎行列と密行列の積を計算 (this × B)
+     * @param b 密行列 [cols][n]
+     * @return 積の結果 [rows][n]
+     */
+    public DenseMatrix dot(DenseMatrix b) {
+        return dotInto(b, new DenseMatrix(rows, b.getCols()));
+    }
+
+    /**
+     * 疎行列と密行列の積を out に書き込む (out = this × B)
+     * 出力の i 行目に、非ゼロ要素 (i, j) ごとに B の j 行目を足し込む
+     * @param b 密行列 [cols][n]
+     * @param out 結果の書き込み先 [rows][n]
+     * @return out
+     */
+    public DenseMatrix dotInto(DenseMatrix b, DenseMatrix out) {
+        if (b.getRows() != cols || out.getRows() != rows || out.getCols() != b.getCols()) {
+            throw new IllegalArgumentException("Shape mismatch: " + rows + "x" + cols + " * "
+                    + b.getRows() + "x" + b.getCols() + " -> " + out.getRows() + "x" + out.getCols());
+        }
+        int n = b.getCols();
+        double[] bData = b.getData();
+        double[] outData = out.getData();
+        ElementKernels kernels = Kernels.get();
+
+        out.fill(0.0);
+        for (int i = 0; i < rows; i++) {
+            int outRow = out.index(i, 0);
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; k++) {
+                kernels.axpy(values[k], bData, b.index(colIdx[k], 0), outData, outRow, n);
+            }
+        }
+        return out;
+    }
+
+    private static void checkVector(int length, int expected) {
+        if (length != expected) {
+            throw new IllegalArgumentException(
+                    "Vector length mismatch: expected " + expected + " but was " + length);
+        }
+    }
+}
@@ -0,0 +1,654 @@
+package math;
+
+import java.util.Arrays;
+
+/**
+ * 連続メモリ上の密行列
+ * 行優先の1次元配列に全要素を格納する。double[][] と違い各行が別オブジェクトに
+ * ならないため、行をまたぐアクセスでもポインタを辿らずに済む。
+ * 要素 (i, j) は data[offset + i * stride + j] に置かれる。
+ */
+public class DenseMatrix {
+
+    private final double[] data;
+    private final int rows;
+    private final int cols;
+    private final int stride;   // 行の先頭同士の距離（>= cols）
+    private final int offset;   // data内の先頭要素の位置
+
+    /**
+     * ゼロ初期化された行列を作成
+     * @param rows 行数
+     * @param cols 列数
+     */
+    public DenseMatrix(int rows, int cols) {
+        this(new double[rows * cols], rows, cols, cols, 0);
+    }
+
+    /**
+     * 既存の配列を包む行列を作成（コピーしない）
+     * @param data 要素を格納した配列
+     * @param rows 行数
+     * @param cols 列数
+     * @param stride 行の先頭同士の距離
+     * @param offset 先頭要素の位置
+     */
+    public DenseMatrix(double[] data, int rows, int cols, int stride, int offset) {
+        if (rows < 0 || cols < 0 || stride < cols) {
+            throw new IllegalArgumentException(
+                    "Invalid shape: rows=" + rows + ", cols=" + cols + ", stride=" + stride);
+        }
+        if (rows > 0 && offset + (rows - 1) * stride + cols > data.length) {
+            throw new IllegalArgumentException("Backing array too small for " + rows + "x" + cols);
+        }
+        this.data = data;
+        this.rows = rows;
+        this.cols = cols;
+        this.stride = stride;
+        this.offset = offset;
+    }
+
+    /**
+     * double[][] から行列を作成（要素をコピー）
+     * @param m 元の行列
+     * @return 連続メモリの行列
+     */
+    public static DenseMatrix of(double[][] m) {
+        int rows = m.length;
+        int cols = rows == 0 ? 0 : m[0].length;
+        DenseMatrix result = new DenseMatrix(rows, cols);
+
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(m[i], 0, result.data, i * cols, cols);
+        }
+        return result;
+    }
+
+    /**
+     * double[][] に変換（要素をコピー）
+     * @return 行列の2次元配列
+     */
+    public double[][] toArray() {
+        double[][] result = new double[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(data, offset + i * stride, result[i], 0, cols);
+        }
+        return result;
+    }
+
+    /**
+     * 部分行列のビューを作成（コピーしない）
+     * @param row 開始行
+     * @param col 開始列
+     * @param rows 行数
+     * @param cols 列数
+     * @return 元の配列を共有する部分行列
+     */
+    public DenseMatrix view(int row, int col, int rows, int cols) {
+        if (row < 0 || col < 0 || row + rows > this.rows || col + cols > this.cols) {
+            throw new IndexOutOfBoundsException(
+                    "View [" + row + "+" + rows + ", " + col + "+" + cols + "] out of "
+                            + this.rows + "x" + this.cols);
+        }
+        return new DenseMatrix(data, rows, cols, stride, index(row, col));
+    }
+
+    // アクセサ
+    public int getRows() { return rows; }
+    public int getCols() { return cols; }
+    public int getStride() { return stride; }
+    public int getOffset() { return offset; }
+    public double[] getData() { return data; }
+
+    /**
+     * 要素 (i, j) の data 内の位置
+     */
+    public int index(int i, int j) {
+        return offset + i * stride + j;
+    }
+
+    public double get(int i, int j) {
+        return data[index(i, j)];
+    }
+
+    public void set(int i, int j, double value) {
+        data[index(i, j)] = value;
+    }
+
+    /**
+     * 行間に隙間がないかどうか（全要素を1本のループで走査できる）
+     */
+    public boolean isContiguous() {
+        return stride == cols;
+    }
+
+    /**
+     * 行列の積を計算 (this × B)
+     * 最小辺が {@link Strassen#getCrossover()} を超える場合は Strassen-Winograd法を使う
+     * @param b 右側の行列
+     * @return 積の結果
+     */
+    public DenseMatrix dot(DenseMatrix b) {
+        checkInnerShape(b);
+        DenseMatrix result = new DenseMatrix(rows, b.cols);
+        // 十分大きな積は Strassen-Winograd法で演算量を減らす
+        if (Strassen.isWorthRecursing(rows, b.cols, cols)) {
+            return Strassen.multiplyInto(this, b, result);
+        }
+        return accumulateProduct(b, result);
+    }
+
+    /**
+     * 行列の積を out に書き込む (out = this × B)
+     * @param b 右側の行列
+     * @param out 結果の書き込み先 [rows][b.cols]
+     * @return out
+     */
+    public DenseMatrix dotInto(DenseMatrix b, DenseMatrix out) {
+        checkInnerShape(b);
+        out.checkShape(rows, b.cols);
+        if (Strassen.isWorthRecursing(rows, b.cols, cols)) {
+            return Strassen.multiplyInto(this, b, out);
+        }
+        out.fill(0.0);
+        return accumulateProduct(b, out);
+    }
+
+    /**
+     * 行列の積にバイアスと活性化関数を続けて適用する (out = f(this × B + bias))
+     * バイアスは出力の行ごとに1つ（W × X の形で、列が各サンプルに当たる場合）。
+     * 積はブロック化したまま求め、その後の1回の走査でバイアス・活性化・導関数をまとめて書く
+     * @param b 右側の行列
+     * @param bias バイアス [rows]（null なら加算しない）
+     * @param activation 活性化関数
+     * @param out 結果の書き込み先 [rows][b.cols]
+     * @param deriv 導関数の書き込み先 [rows][b.cols]（null なら記録しない）
+     * @return out
+     */
+    public DenseMatrix fusedDotInto(DenseMatrix b, double[] bias, Activation activation,
+                                    DenseMatrix out, DenseMatrix deriv) {
+        if (deriv != null) {
+            deriv.checkShape(rows, b.cols);
+        }
+        dotInto(b, out);
+        double[] derivData = deriv == null ? null : deriv.data;
+        for (int i = 0; i < rows; i++) {
+            activation.applyRowInPlace(out.data, out.index(i, 0), b.cols, bias == null ? 0.0 : bias[i],
+                    derivData, deriv == null ? 0 : deriv.index(i, 0));
+        }
+        return out;
+    }
+
+    private DenseMatrix accumulateProduct(DenseMatrix b, DenseMatrix out) {
+        if (Gemm.isWorthBlocking(rows, b.cols, cols)) {
+            Gemm.multiply(this, b, out);
+        } else {
+            multiplyRows(b, out, 0, rows);
+        }
+        return out;
+    }
+
+    /**
+     * 行列の積を並列に計算 (this × B)
+     * 出力の行ブロックをスレッドに分配する。各要素の加算順序は dot と同じなので、
+     * 結果はスレッド数によらず dot と一致する
+     * @param b 右側の行列
+     * @return 積の結果
+     */
+    public DenseMatrix parallelDot(DenseMatrix b) {
+        return parallelDotInto(b, new DenseMatrix(rows, b.cols));
+    }
+
+    /**
+     * 行列の積を並列に計算して out に書き込む (out = this × B)
+     * @param b 右側の行列
+     * @param out 結果の書き込み先 [rows][b.cols]
+     * @return out
+     */
+    public DenseMatrix parallelDotInto(DenseMatrix b, DenseMatrix out) {
+        checkInnerShape(b);
+        out.checkShape(rows, b.cols);
+        out.fill(0.0);
+        DenseMatrix result = out;
+        int m = rows;
+        int n = cols;
+        int p = b.cols;
+        boolean blocked = Gemm.isWorthBlocking(m, p, n);
+        int grain = Parallel.grainFor((long) n * p);
+
+        if (blocked) {
+            // タイルの途中で分割しないよう行数をMRの倍数にそろえる
+            grain = (grain + Gemm.MR - 1) / Gemm.MR * Gemm.MR;
+            Parallel.forRange(0, m, grain, (from, to) ->
+                    Gemm.gemm(to - from, p, n,
+                            data, index(from, 0), stride,
+                            b.data, b.offset, b.stride,
+                            result.data, result.index(from, 0), result.stride));
+        } else {
+            Parallel.forRange(0, m, grain, (from, to) -> multiplyRows(b, result, from, to));
+        }
+        return result;
+    }
+
+    /**
+     * 行 [from, to) について this × B を result に加算
+     */
+    private void multiplyRows(DenseMatrix b, DenseMatrix result, int from, int to) {
+        int n = cols;
+        int p = b.cols;
+        double[] c = result.data;
+
+        // i-k-j順でBとCを行方向に連続して読み書きする
+        for (int i = from; i < to; i++) {
+            int aRow = offset + i * stride;
+            int cRow = result.index(i, 0);
+            for (int k = 0; k < n; k++) {
+                double aik = data[aRow + k];
+                int bRow = b.offset + k * b.stride;
+                for (int j = 0; j < p; j++) {
+                    c[cRow + j] += aik * b.data[bRow + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * 行列とベクトルの積を計算 (this × v)
+     * @param v ベクトル
+     * @return 積の結果（ベクトル）
+     */
+    public double[] dotMV(double[] v) {
+        return dotMVInto(v, new double[rows]);
+    }
+
+    /**
+     * 行列とベクトルの積を out に書き込む (out = this × v)
+     * @param v ベクトル
+     * @param out 結果の書き込み先 [rows]
+     * @return out
+     */
+    public double[] dotMVInto(double[] v, double[] out) {
+        dotMVRows(v, out, 0, rows);
+        return out;
+    }
+
+    /**
+     * 行列とベクトルの積を並列に計算 (this × v)
+     * 結果はスレッド数によらず dotMV と一致する
+     * @param v ベクトル
+     * @return 積の結果（ベクトル）
+     */
+    public double[] parallelDotMV(double[] v) {
+        return parallelDotMVInto(v, new double[rows]);
+    }
+
+    /**
+     * 行列とベクトルの積を並列に計算して out に書き込む
+     * @param v ベクトル
+     * @param out 結果の書き込み先 [rows]
+     * @return out
+     */
+    public double[] parallelDotMVInto(double[] v, double[] out) {
+        Parallel.forRange(0, rows, Parallel.grainFor(cols),
+                (from, to) -> dotMVRows(v, out, from, to));
+        return out;
+    }
+
+    /**
+     * 行列とベクトルの積にバイアスと活性化関数を続けて適用する (out = f(this × v + bias))
+     * @param v ベクトル [cols]
+     * @param bias バイアス [rows]（null なら加算しない）
+     * @param activation 活性化関数
+     * @param out 結果の書き込み先 [rows]
+     * @param deriv 導関数 f'(this × v + bias) の書き込み先 [rows]（null なら記録しない）
+     * @return out
+     */
+    public double[] fusedDotMVInto(double[] v, double[] bias, Activation activation,
+                                   double[] out, double[] deriv) {
+        dotMVRows(v, out, 0, rows);
+        activation.applyInPlace(out, 0, rows, bias, deriv);
+        return out;
+    }
+
+    /**
+     * fusedDotMVInto を並列に計算
+     * 各スレッドが受け持つ行の積を求めた直後に、同じ行へバイアスと活性化を適用する
+     * @param v ベクトル [cols]
+     * @param bias バイアス [rows]（null なら加算しない）
+     * @param activation 活性化関数
+     * @param out 結果の書き込み先 [rows]
+     * @param deriv 導関数の書き込み先 [rows]（null なら記録しない）
+     * @return out
+     */
+    public double[] parallelFusedDotMVInto(double[] v, double[] bias, Activation activation,
+                                           double[] out, double[] deriv) {
+        Parallel.forRange(0, rows, Parallel.grainFor(cols), (from, to) -> {
+            dotMVRows(v, out, from, to);
+            activation.applyInPlace(out, from, to, bias, deriv);
+        });
+        return out;
+    }
+
+    private void dotMVRows(double[] v, double[] result, int from, int to) {
+        ElementKernels kernels = Kernels.get();
+        for (int i = from; i < to; i++) {
+            result[i] = kernels.dot(data, offset + i * stride, v, 0, cols);
+        }
+    }
+
+    /**
+     * 転置行列とベクトルの積を計算 (this^T × v)
+     * 転置行列を作らず、各行を v[i] 倍して足し合わせる
+     * @param v ベクトル [rows]
+     * @return 積の結果 [cols]
+     */
+    public double[] dotTMV(double[] v) {
+        return dotTMVInto(v, new double[cols]);
+    }
+
+    /**
+     * 転置行列とベクトルの積を out に書き込む (out = this^T × v)
+     * @param v ベクトル [rows]
+     * @param out 結果の書き込み先 [cols]
+     * @return out
+     */
+    public double[] dotTMVInto(double[] v, double[] out) {
+        if (v.length != rows) {
+            throw new IllegalArgumentException(
+                    "Shape mismatch: (" + rows + "x" + cols + ")^T * " + v.length);
+        }
+        ElementKernels kernels = Kernels.get();
+
+        Arrays.fill(out, 0, cols, 0.0);
+        for (int i = 0; i < rows; i++) {
+            kernels.axpy(v[i], data, offset + i * stride, out, 0, cols);
+        }
+        return out;
+    }
+
+    /**
+     * this × B^T を計算（B を転置せずに読む）
+     * @param b 行列 [n][cols]
+     * @return 積の結果 [rows][n]
+     */
+    public DenseMatrix dotNT(DenseMatrix b) {
+        return dotNTInto(b, new DenseMatrix(rows, b.rows));
+    }
+
+    /**
+     * this × B^T を out に書き込む
+     * @param b 行列 [n][cols]
+     * @param out 結果の書き込み先 [rows][n]
+     * @return out
+     */
+    public DenseMatrix dotNTInto(DenseMatrix b, DenseMatrix out) {
+        if (cols != b.cols) {
+            throw new IllegalArgumentException(
+                    "Shape mismatch: " + rows + "x" + cols + " * (" + b.rows + "x" + b.cols + ")^T");
+        }
+        out.checkShape(rows, b.rows);
+
+        if (Gemm.isWorthBlocking(rows, b.rows, cols)) {
+            // B^T の (p, j) 要素は b[j][p]：行方向の間隔1、列方向の間隔 b.stride としてパッキング
+            out.fill(0.0);
+            Gemm.gemmStrided(rows, b.rows, cols,
+                    data, offset, stride, 1,
+                    b.data, b.offset, 1, b.stride,
+                    out.data, out.offset, out.stride);
+            return out;
+        }
+
+        // 行同士の内積はどちらも連続領域を読む
+        ElementKernels kernels = Kernels.get();
+        for (int i = 0; i < rows; i++) {
+            int aRow = index(i, 0);
+            for (int j = 0; j < b.rows; j++) {
+                out.data[out.index(i, j)] = kernels.dot(data, aRow, b.data, b.index(j, 0), cols);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * this^T × B を計算（this を転置せずに読む）
+     * @param b 行列 [rows][n]
+     * @return 積の結果 [cols][n]
+     */
+    public DenseMatrix dotTN(DenseMatrix b) {
+        return dotTNInto(b, new DenseMatrix(cols, b.cols));
+    }
+
+    /**
+     * this^T × B を out に書き込む
+     * @param b 行列 [rows][n]
+     * @param out 結果の書き込み先 [cols][n]
+     * @return out
+     */
+    public DenseMatrix dotTNInto(DenseMatrix b, DenseMatrix out) {
+        if (rows != b.rows) {
+            throw new IllegalArgumentException(
+                    "Shape mismatch: (" + rows + "x" + cols + ")^T * " + b.rows + "x" + b.cols);
+        }
+        out.checkShape(cols, b.cols);
+        out.fill(0.0);
+
+        if (Gemm.isWorthBlocking(cols, b.cols, rows)) {
+            // this^T の (i, p) 要素は this[p][i]：行方向の間隔1、列方向の間隔 stride としてパッキング
+            Gemm.gemmStrided(cols, b.cols, rows,
+                    data, offset, 1, stride,
+                    b.data, b.offset, b.stride, 1,
+                    out.data, out.offset, out.stride);
+            return out;
+        }
+
+        // this の p 行目と B の p 行目の外積を足し合わせる
+        ElementKernels kernels = Kernels.get();
+        for (int p = 0; p < rows; p++) {
+            int aRow = index(p, 0);
+            int bRow = b.index(p, 0);
+            for (int i = 0; i < cols; i++) {
+                kernels.axpy(data[aRow + i], b.data, bRow, out.data, out.index(i, 0), b.cols);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * ベクトルの外積を計算 (v1 × v2^T)
+     * @param v1 列ベクトル
+     * @param v2 行ベクトル
+     * @return 外積の結果（行列）
+     */
+    public static DenseMatrix outer(double[] v1, double[] v2) {
+        return outerInto(v1, v2, new DenseMatrix(v1.length, v2.length));
+    }
+
+    /**
+     * ベクトルの外積を out に書き込む (out = v1 × v2^T)
+     * @param v1 列ベクトル
+     * @param v2 行ベクトル
+     * @param out 結果の書き込み先 [v1.length][v2.length]
+     * @return out
+     */
+    public static DenseMatrix outerInto(double[] v1, double[] v2, DenseMatrix out) {
+        return outerInto(v1, 0, v1.length, v2, out);
+    }
+
+    /**
+     * v1 の範囲 [from, to) と v2 の外積を out に書き込む（out の行 i = v1[from + i] × v2^T）
+     * 行の範囲ごとに分けて計算するときに、v1 の部分配列を作らずに使う
+     * @param v1 列ベクトル
+     * @param from v1 の範囲の先頭
+     * @param to v1 の範囲の終わり（含まない）
+     * @param v2 行ベクトル
+     * @param out 結果の書き込み先 [to - from][v2.length]
+     * @return out
+     */
+    public static DenseMatrix outerInto(double[] v1, int from, int to, double[] v2, DenseMatrix out) {
+        out.checkShape(to - from, v2.length);
+        ElementKernels kernels = Kernels.get();
+        for (int i = 0; i < to - from; i++) {
+            kernels.scale(v2, 0, v1[from + i], out.data, out.index(i, 0), v2.length);
+        }
+        return out;
+    }
+
+    /**
+     * ベクトルの外積をこの行列に加算 (this += v1 × v2^T)
+     * @param v1 列ベクトル
+     * @param v2 行ベクトル
+     */
+    public void outerAccumulate(double[] v1, double[] v2) {
+        checkShape(v1.length, v2.length);
+        ElementKernels kernels = Kernels.get();
+        for (int i = 0; i < v1.length; i++) {
+            kernels.axpy(v1[i], v2, 0, data, index(i, 0), v2.length);
+        }
+    }
+
+    /**
+     * 行列の転置
+     * @return 転置行列
+     */
+    public DenseMatrix t() {
+        return tInto(new DenseMatrix(cols, rows));
+    }
+
+    /**
+     * 転置ビューを返す（要素のコピーは行わない）
+     * @return この行列を転置として参照するビュー
+     */
+    public TransposedMatrix tView() {
+        return new TransposedMatrix(this);
+    }
+
+    /**
+     * 行列の転置を out に書き込む
+     * @param out 結果の書き込み先 [cols][rows]
+     * @return out
+     */
+    public DenseMatrix tInto(DenseMatrix out) {
+        out.checkShape(cols, rows);
+        double[] c = out.data;
+
+        for (int i = 0; i < rows; i++) {
+            int row = offset + i * stride;
+            for (int j = 0; j < cols; j++) {
+                c[out.index(j, i)] = data[row + j];
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 行列の要素ごとの和
+     * @param b 行列2
+     * @return 和の結果
+     */
+    public DenseMatrix add(DenseMatrix b) {
+        return addInto(b, new DenseMatrix(rows, cols));
+    }
+
+    /**
+     * 行列の要素ごとの和を out に書き込む（out は this や b と同じでもよい）
+     * @param b 行列2
+     * @param out 結果の書き込み先
+     * @return out
+     */
+    public DenseMatrix addInto(DenseMatrix b, DenseMatrix out) {
+        checkSameShape(b);
+        checkSameShape(out);
+        ElementKernels kernels = Kernels.get();
+
+        for (int i = 0; i < rows; i++) {
+            kernels.add(data, index(i, 0), b.data, b.index(i, 0), out.data, out.index(i, 0), cols);
+        }
+        return out;
+    }
+
+    /**
+     * 行列をスカラー倍
+     * @param scalar スカラー値
+     * @return スカラー倍した行列
+     */
+    public DenseMatrix scale(double scalar) {
+        return scaleInto(scalar, new DenseMatrix(rows, cols));
+    }
+
+    /**
+     * 行列のスカラー倍を out に書き込む（out は this と同じでもよい）
+     * @param scalar スカラー値
+     * @param out 結果の書き込み先
+     * @return out
+     */
+    public DenseMatrix scaleInto(double scalar, DenseMatrix out) {
+        checkSameShape(out);
+        ElementKernels kernels = Kernels.get();
+
+        for (int i = 0; i < rows; i++) {
+            kernels.scale(data, index(i, 0), scalar, out.data, out.index(i, 0), cols);
+        }
+        return out;
+    }
+
+    /**
+     * 全要素を同じ値で埋める
+     * @param value 値
+     */
+    public void fill(double value) {
+        if (isContiguous()) {
+            Arrays.fill(data, offset, offset + rows * cols, value);
+        } else {
+            for (int i = 0; i < rows; i++) {
+                int row = index(i, 0);
+                Arrays.fill(data, row, row + cols, value);
+            }
+        }
+    }
+
+    /**
+     * 行列のコピーを作成（結果は常に隙間のない配置になる）
+     * @return コピーされた行列
+     */
+    public DenseMatrix copy() {
+        return copyInto(new DenseMatrix(rows, cols));
+    }
+
+    /**
+     * 行列を out にコピー
+     * @param out コピー先
+     * @return out
+     */
+    public DenseMatrix copyInto(DenseMatrix out) {
+        checkSameShape(out);
+        if (isContiguous() && out.isContiguous()) {
+            System.arraycopy(data, offset, out.data, out.offset, rows * cols);
+        } else {
+            for (int i = 0; i < rows; i++) {
+                System.arraycopy(data, index(i, 0), out.data, out.index(i, 0), cols);
+            }
+        }
+        return out;
+    }
+
+    private void checkShape(int expectedRows, int expectedCols) {
+        if (rows != expectedRows || cols != expectedCols) {
+            throw new IllegalArgumentException("Shape mismatch: expected " + expectedRows + "x"
+                    + expectedCols + " but was " + rows + "x" + cols);
+        }
+    }
+
+    private void checkInnerShape(DenseMatrix b) {
+        if (cols != b.rows) {
+            throw new IllegalArgumentException(
+                    "Shape mismatch: " + rows + "x" + cols + " * " + b.rows + "x" + b.cols);
+        }
+    }
+
+    private void checkSameShape(DenseMatrix b) {
+        if (rows != b.rows || cols != b.cols) {
+            throw new IllegalArgumentException(
+                    "Shape mismatch: " + rows + "x" + cols + " vs " + b.rows + "x" + b.cols);
+        }
+    }
+}
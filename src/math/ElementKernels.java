@@ -0,0 +1,96 @@
+package math;
+
+/**
+ * 1次元配列に対する要素ごとの演算・内積のカーネル
+ * Matrix / DenseMatrix の内側ループはこのインターフェースを通して計算する。
+ * 単精度（float）版は倍精度版と同じ演算を float[] に対して行う。
+ */
+public interface ElementKernels {
+
+    /**
+     * 内積 Σ a[aOff + i] * b[bOff + i]
+     */
+    double dot(double[] a, int aOff, double[] b, int bOff, int length);
+
+    /**
+     * out[i] = a[i] + b[i]
+     */
+    void add(double[] a, int aOff, double[] b, int bOff, double[] out, int outOff, int length);
+
+    /**
+     * out[i] = a[i] * b[i]
+     */
+    void multiply(double[] a, int aOff, double[] b, int bOff, double[] out, int outOff, int length);
+
+    /**
+     * out[i] = a[i] * scalar
+     */
+    void scale(double[] a, int aOff, double scalar, double[] out, int outOff, int length);
+
+    /**
+     * y[i] += alpha * x[i]
+     */
+    void axpy(double alpha, double[] x, int xOff, double[] y, int yOff, int length);
+
+    /**
+     * 小さな行列の積を加算する y += A × X
+     * A は m 行 inner 列、X は inner 行 length 列、y は m 行 length 列で、それぞれ（配列, 先頭位置, 行の間隔）で表す。
+     * y[i][j] には r = 0, 1, ... の順に a[i][r] * x[r][j] を足す。y のブロックは積和を保ったまま X の全ての行を足し、
+     * X の1要素を A の複数の行に使い回す
+     */
+    void multiplyAccumulate(double[] a, int aOff, int aStride, int m,
+                            double[] x, int xOff, int xStride, int inner,
+                            double[] y, int yOff, int yStride, int length);
+
+    /**
+     * 内積 Σ a[aOff + i] * b[bOff + i]（単精度、累積も単精度）
+     */
+    float dot(float[] a, int aOff, float[] b, int bOff, int length);
+
+    /**
+     * out[i] = a[i] + b[i]（単精度）
+     */
+    void add(float[] a, int aOff, float[] b, int bOff, float[] out, int outOff, int length);
+
+    /**
+     * out[i] = a[i] * b[i]（単精度）
+     */
+    void multiply(float[] a, int aOff, float[] b, int bOff, float[] out, int outOff, int length);
+
+    /**
+     * out[i] = a[i] * scalar（単精度）
+     */
+    void scale(float[] a, int aOff, float scalar, float[] out, int outOff, int length);
+
+    /**
+     * y[i] += alpha * x[i]（単精度）
+     */
+    void axpy(float alpha, float[] x, int xOff, float[] y, int yOff, int length);
+
+    /**
+     * 小さな行列の積を加算する y += A × X（単精度、累積も単精度。足す順序は倍精度版と同じ）
+     */
+    void multiplyAccumulate(float[] a, int aOff, int aStride, int m,
+                            float[] x, int xOff, int xStride, int inner,
+                            float[] y, int yOff, int yStride, int length);
+
+    /**
+     * 内積 Σ unpack(a[aOff + i]) * b[bOff + i]（a は16ビット形式、累積は単精度）
+     */
+    float dotHalf(HalfFormat format, short[] a, int aOff, float[] b, int bOff, int length);
+
+    /**
+     * y[i] += alpha * unpack(x[i])（x は16ビット形式、累積は単精度）
+     */
+    void axpyHalf(HalfFormat format, float alpha, short[] x, int xOff, float[] y, int yOff, int length);
+
+    /**
+     * 内積 Σ a[aOff + i] * b[bOff + i]（8ビット整数、累積は32ビット整数）
+     */
+    int dotInt8(byte[] a, int aOff, byte[] b, int bOff, int length);
+
+    /**
+     * y[i] += alpha * x[i]（x は8ビット整数、y は32ビット整数）
+     */
+    void axpyInt8(int alpha, byte[] x, int xOff, int[] y, int yOff, int length);
+}
@@ -0,0 +1,273 @@
+package math;
+
+/**
+ * 2の累乗の長さの高速フーリエ変換（基数2、時間間引き）
+ *
+ * 実数の入力は長さ n/2 の複素数列に詰めて変換し（偶数番目を実部、奇数番目を虚部）、
+ * 結果を分けて n/2 + 1 個の係数を求める（残りは共役対称なので持たない）。
+ * 2次元の変換は各行を実数の変換にかけたあと、n/2 + 1 本の列を複素数の変換にかける。
+ * 列の変換は行どうしの butterfly を行の全要素に対して行うので、要素は行ごとに連続して読み書きされる。
+ * 複素数は実部と虚部を別の配列に持つ。回転因子とビット反転の表は長さごとに一度だけ作る。
+ */
+public final class FFT {
+
+    // 長さ 2^k の表（k ごとに一度だけ作る）
+    private static final Plan[] PLANS = new Plan[31];
+
+    private FFT() {
+    }
+
+    /**
+     * 2の累乗かどうか
+     */
+    public static boolean isPowerOfTwo(int n) {
+        return n > 0 && (n & (n - 1)) == 0;
+    }
+
+    /**
+     * n 以上の最小の2の累乗
+     */
+    public static int nextPowerOfTwo(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * n×n の実数の行列の2次元フーリエ変換
+     * 結果は [n][n/2 + 1] の複素数（列 0 から n/2 まで）
+     * @param x 入力 x[xOff + r * n + c]
+     * @param xOff 入力の先頭位置
+     * @param n 大きさ（4 以上の2の累乗）
+     * @param re 結果の実部 re[off + r * (n/2 + 1) + c]
+     * @param im 結果の虚部
+     * @param off 結果の先頭位置
+     */
+    public static void forward2D(double[] x, int xOff, int n, double[] re, double[] im, int off) {
+        int half = n / 2;
+        int cols = half + 1;
+        Plan rows = plan(half);
+        for (int r = 0; r < n; r++) {
+            realForward(rows, x, xOff + r * n, re, im, off + r * cols);
+        }
+        transformColumns(plan(n), re, im, off, cols, false);
+    }
+
+    /**
+     * {@link #forward2D} の逆変換（1/n² で正規化する。re と im は作業に使うので壊れる）
+     * @param re 係数の実部 [n][n/2 + 1]
+     * @param im 係数の虚部
+     * @param off 係数の先頭位置
+     * @param n 大きさ（4 以上の2の累乗）
+     * @param x 書き込み先 x[xOff + r * n + c]
+     * @param xOff 書き込み先の先頭位置
+     */
+    public static void inverse2D(double[] re, double[] im, int off, int n, double[] x, int xOff) {
+        int half = n / 2;
+        int cols = half + 1;
+        transformColumns(plan(n), re, im, off, cols, true);
+        Plan rows = plan(half);
+        double scale = 1.0 / ((double) n * half);
+        for (int r = 0; r < n; r++) {
+            realInverse(rows, re, im, off + r * cols, x, xOff + r * n, scale);
+        }
+    }
+
+    /**
+     * 長さ 2 * p.n の実数列 x[xOff...] の変換の係数 0..p.n を re, im[off...] に書き込む
+     */
+    private static void realForward(Plan p, double[] x, int xOff, double[] re, double[] im, int off) {
+        int h = p.n;
+        // 偶数番目を実部、奇数番目を虚部に詰めて長さ h の複素数の変換にかける
+        for (int k = 0; k < h; k++) {
+            re[off + k] = x[xOff + 2 * k];
+            im[off + k] = x[xOff + 2 * k + 1];
+        }
+        p.transform(re, im, off, false);
+
+        // Z[k] と conj(Z[h - k]) から偶数番目・奇数番目の変換 E, O を分け、X[k] = E + w^k O を求める
+        // k と h - k を同時に計算する（k = 0 と h は Z[0] から求める）
+        double z0r = re[off], z0i = im[off];
+        re[off] = z0r + z0i;
+        im[off] = 0.0;
+        re[off + h] = z0r - z0i;
+        im[off + h] = 0.0;
+        for (int k = 1; k <= h / 2; k++) {
+            int j = h - k;
+            double ar = re[off + k], ai = im[off + k];
+            double br = re[off + j], bi = im[off + j];
+            // k 側: E = (Z[k] + conj(Z[j])) / 2, O = -i (Z[k] - conj(Z[j])) / 2
+            double er = 0.5 * (ar + br), ei = 0.5 * (ai - bi);
+            double or = 0.5 * (ai + bi), oi = -0.5 * (ar - br);
+            double wr = p.realCos[k], wi = p.realSin[k];
+            re[off + k] = er + or * wr - oi * wi;
+            im[off + k] = ei + or * wi + oi * wr;
+            if (j != k) {
+                // j 側: E と O は k 側の共役、回転因子は w^j = -conj(w^k)
+                double ejr = er, eji = -ei;
+                double ojr = or, oji = -oi;
+                double vr = -wr, vi = wi;
+                re[off + j] = ejr + ojr * vr - oji * vi;
+                im[off + j] = eji + ojr * vi + oji * vr;
+            }
+        }
+    }
+
+    /**
+     * {@link #realForward} の逆（係数 re, im[off...] の 0..p.n から長さ 2 * p.n の実数列を x に書き込む。re と im は壊れる）
+     */
+    private static void realInverse(Plan p, double[] re, double[] im, int off, double[] x, int xOff, double scale) {
+        int h = p.n;
+        // E[k] = (X[k] + conj(X[h - k])) / 2, O[k] = (X[k] - conj(X[h - k])) / 2 · w^-k, Z[k] = E[k] + i O[k]
+        double x0r = re[off], xhr = re[off + h];
+        re[off] = 0.5 * (x0r + xhr);
+        im[off] = 0.5 * (x0r - xhr);
+        for (int k = 1; k <= h / 2; k++) {
+            int j = h - k;
+            double ar = re[off + k], ai = im[off + k];
+            double br = re[off + j], bi = im[off + j];
+            double er = 0.5 * (ar + br), ei = 0.5 * (ai - bi);
+            double dr = 0.5 * (ar - br), di = 0.5 * (ai + bi);
+            // O = D · conj(w^k)
+            double wr = p.realCos[k], wi = -p.realSin[k];
+            double or = dr * wr - di * wi, oi = dr * wi + di * wr;
+            re[off + k] = er - oi;
+            im[off + k] = ei + or;
+            if (j != k) {
+                // j 側: E は共役、D は -conj(D)、回転因子は conj(w^j) = -w^k
+                double ejr = er, eji = -ei;
+                double djr = -dr, dji = di;
+                double vr = -wr, vi = wi;
+                double ojr = djr * vr - dji * vi, oji = djr * vi + dji * vr;
+                re[off + j] = ejr - oji;
+                im[off + j] = eji + ojr;
+            }
+        }
+        p.transform(re, im, off, true);
+        for (int k = 0; k < h; k++) {
+            x[xOff + 2 * k] = re[off + k] * scale;
+            x[xOff + 2 * k + 1] = im[off + k] * scale;
+        }
+    }
+
+    /**
+     * 行の数 p.n、各行 cols 要素の複素数の行列の列ごとの変換（行どうしの butterfly を行の全要素に対して行う）
+     */
+    private static void transformColumns(Plan p, double[] re, double[] im, int off, int cols, boolean inverse) {
+        int n = p.n;
+        for (int i = 0; i < n; i++) {
+            int j = p.reverse[i];
+            if (i < j) {
+                swapRows(re, off + i * cols, off + j * cols, cols);
+                swapRows(im, off + i * cols, off + j * cols, cols);
+            }
+        }
+        for (int len = 2; len <= n; len <<= 1) {
+            int half = len >> 1;
+            int step = n / len;
+            for (int start = 0; start < n; start += len) {
+                for (int k = 0; k < half; k++) {
+                    double wr = p.cos[k * step];
+                    double wi = inverse ? -p.sin[k * step] : p.sin[k * step];
+                    int a = off + (start + k) * cols;
+                    int b = a + half * cols;
+                    for (int c = 0; c < cols; c++) {
+                        double xr = re[b + c], xi = im[b + c];
+                        double vr = xr * wr - xi * wi, vi = xr * wi + xi * wr;
+                        double ur = re[a + c], ui = im[a + c];
+                        re[a + c] = ur + vr;
+                        im[a + c] = ui + vi;
+                        re[b + c] = ur - vr;
+                        im[b + c] = ui - vi;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void swapRows(double[] v, int a, int b, int length) {
+        for (int c = 0; c < length; c++) {
+            double t = v[a + c];
+            v[a + c] = v[b + c];
+            v[b + c] = t;
+        }
+    }
+
+    private static Plan plan(int n) {
+        if (!isPowerOfTwo(n)) {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + n);
+        }
+        int log = Integer.numberOfTrailingZeros(n);
+        Plan p = PLANS[log];
+        if (p == null) {
+            p = new Plan(n);
+            PLANS[log] = p;
+        }
+        return p;
+    }
+
+    /**
+     * 長さ n の複素数の変換の表と変換
+     */
+    private static final class Plan {
+        final int n;
+        final int[] reverse;
+        final double[] cos, sin;           // e^{-2πik/n}（k < n/2）
+        final double[] realCos, realSin;   // e^{-2πik/(2n)}（実数の変換の分割用、k <= n/2）
+
+        Plan(int n) {
+            this.n = n;
+            int log = Integer.numberOfTrailingZeros(n);
+            reverse = new int[n];
+            for (int i = 0; i < n; i++) {
+                reverse[i] = log == 0 ? 0 : Integer.reverse(i) >>> (32 - log);
+            }
+            cos = new double[Math.max(1, n / 2)];
+            sin = new double[Math.max(1, n / 2)];
+            for (int k = 0; k < n / 2; k++) {
+                double angle = -2.0 * Math.PI * k / n;
+                cos[k] = Math.cos(angle);
+                sin[k] = Math.sin(angle);
+            }
+            realCos = new double[n / 2 + 1];
+            realSin = new double[n / 2 + 1];
+            for (int k = 0; k <= n / 2; k++) {
+                double angle = -Math.PI * k / n;
+                realCos[k] = Math.cos(angle);
+                realSin[k] = Math.sin(angle);
+            }
+        }
+
+        /**
+         * re, im[off, off + n) の複素数列をその場で変換する（逆変換は正規化しない）
+         */
+        void transform(double[] re, double[] im, int off, boolean inverse) {
+            for (int i = 0; i < n; i++) {
+                int j = reverse[i];
+                if (i < j) {
+                    double t = re[off + i];
+                    re[off + i] = re[off + j];
+                    re[off + j] = t;
+                    t = im[off + i];
+                    im[off + i] = im[off + j];
+                    im[off + j] = t;
+                }
+            }
+            for (int len = 2; len <= n; len <<= 1) {
+                int half = len >> 1;
+                int step = n / len;
+                for (int start = off; start < off + n; start += len) {
+                    for (int k = 0; k < half; k++) {
+                        double wr = cos[k * step];
+                        double wi = inverse ? -sin[k * step] : sin[k * step];
+                        int a = start + k, b = a + half;
+                        double xr = re[b], xi = im[b];
+                        double vr = xr * wr - xi * wi, vi = xr * wi + xi * wr;
+                        re[b] = re[a] - vr;
+                        im[b] = im[a] - vi;
+                        re[a] += vr;
+                        im[a] += vi;
+                    }
+                }
+            }
+        }
+    }
+}
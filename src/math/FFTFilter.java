@@ -0,0 +1,85 @@
+package math;
+
+/**
+ * FFT による畳み込み用に2次元フーリエ変換したカーネル（スペクトル）
+ *
+ * 畳み込み（相関）は180度回したカーネルとの線形畳み込みなので、回したカーネルを n×n に0で埋めて
+ * {@link FFT#forward2D} で変換しておく。入力のブロックのスペクトルとの積を逆変換すると、
+ * ブロックの大きさ L が n - K + 1 以下なら、長さ L + K - 1 の線形畳み込みが循環せずに求まる。
+ *
+ * 変換は重みが変わるまで使い回せるので、畳み込み層はこのオブジェクトを保持し、重みの更新時に作り直す。
+ * スペクトルは [outputChannels][inputChannels][n][n/2 + 1] の複素数で、実部と虚部を別の配列に持つ。
+ */
+public final class FFTFilter {
+
+    private final int fftSize;
+    private final int outChannels;
+    private final int inChannels;
+    private final int kernelHeight;
+    private final int kernelWidth;
+    private final double[] real;
+    private final double[] imaginary;
+
+    private FFTFilter(int fftSize, int outChannels, int inChannels, int kernelHeight, int kernelWidth) {
+        this.fftSize = fftSize;
+        this.outChannels = outChannels;
+        this.inChannels = inChannels;
+        this.kernelHeight = kernelHeight;
+        this.kernelWidth = kernelWidth;
+        int length = outChannels * inChannels * spectrumSize(fftSize);
+        this.real = new double[length];
+        this.imaginary = new double[length];
+    }
+
+    /**
+     * 順伝播用に変換したカーネルを作成
+     * @param kernels カーネル [outputChannels][inputChannels][kernelHeight][kernelWidth]
+     * @param fftSize 変換の大きさ（4 以上の2の累乗で、カーネルの高さ・幅以上。
+     *                {@link ConvolutionOps#fftSize} で選べる）
+     * @return 変換したカーネル
+     */
+    public static FFTFilter forward(double[][][][] kernels, int fftSize) {
+        int kernelHeight = kernels[0][0].length;
+        int kernelWidth = kernels[0][0][0].length;
+        if (!FFT.isPowerOfTwo(fftSize) || fftSize < 4) {
+            throw new IllegalArgumentException("FFT size must be a power of two >= 4: " + fftSize);
+        }
+        if (fftSize < Math.max(kernelHeight, kernelWidth)) {
+            throw new IllegalArgumentException("FFT size " + fftSize + " is smaller than the kernel "
+                    + kernelHeight + "x" + kernelWidth);
+        }
+        FFTFilter filter = new FFTFilter(fftSize, kernels.length, kernels[0].length, kernelHeight, kernelWidth);
+        int spectrum = spectrumSize(fftSize);
+        double[] padded = new double[fftSize * fftSize];
+        for (int oc = 0; oc < filter.outChannels; oc++) {
+            for (int ic = 0; ic < filter.inChannels; ic++) {
+                double[][] kernel = kernels[oc][ic];
+                for (int kh = 0; kh < kernelHeight; kh++) {
+                    for (int kw = 0; kw < kernelWidth; kw++) {
+                        padded[(kernelHeight - 1 - kh) * fftSize + (kernelWidth - 1 - kw)] = kernel[kh][kw];
+                    }
+                }
+                FFT.forward2D(padded, 0, fftSize, filter.real, filter.imaginary,
+                        (oc * filter.inChannels + ic) * spectrum);
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * n×n の実数の変換のスペクトルの要素数（n × (n/2 + 1)）
+     */
+    static int spectrumSize(int fftSize) {
+        return fftSize * (fftSize / 2 + 1);
+    }
+
+    double[] getReal() { return real; }
+    double[] getImaginary() { return imaginary; }
+
+    // アクセサ
+    public int getFFTSize() { return fftSize; }
+    public int getOutChannels() { return outChannels; }
+    public int getInChannels() { return inChannels; }
+    public int getKernelHeight() { return kernelHeight; }
+    public int getKernelWidth() { return kernelWidth; }
+}
@@ -0,0 +1,205 @@
+package math;
+
+import java.util.Arrays;
+
+/**
+ * 連続メモリ上の単精度密行列
+ * {@link DenseMatrix} の float 版。単精度モデルの重み・勾配・モーメントに使う。
+ * 全要素を行優先で隙間なく並べ、要素 (i, j) は data[i * cols + j] に置かれる。
+ */
+public class FloatDenseMatrix {
+
+    private final float[] data;
+    private final int rows;
+    private final int cols;
+
+    /**
+     * ゼロ初期化された行列を作成
+     * @param rows 行数
+     * @param cols 列数
+     */
+    public FloatDenseMatrix(int rows, int cols) {
+        if (rows < 0 || cols < 0) {
+            throw new IllegalArgumentException("Invalid shape: rows=" + rows + ", cols=" + cols);
+        }
+        this.data = new float[rows * cols];
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * 倍精度の行列から作成（要素を丸めてコピー）
+     * @param m 元の行列
+     * @return 単精度の行列
+     */
+    public static FloatDenseMatrix of(DenseMatrix m) {
+        FloatDenseMatrix result = new FloatDenseMatrix(m.getRows(), m.getCols());
+        for (int i = 0; i < result.rows; i++) {
+            for (int j = 0; j < result.cols; j++) {
+                result.data[i * result.cols + j] = (float) m.get(i, j);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 倍精度の行列に変換（要素をコピー）
+     * @return 倍精度の行列
+     */
+    public DenseMatrix toDouble() {
+        DenseMatrix result = new DenseMatrix(rows, cols);
+        double[] dst = result.getData();
+        for (int k = 0; k < data.length; k++) {
+            dst[k] = data[k];
+        }
+        return result;
+    }
+
+    // アクセサ
+    public int getRows() { return rows; }
+    public int getCols() { return cols; }
+    public float[] getData() { return data; }
+
+    public float get(int i, int j) {
+        return data[i * cols + j];
+    }
+
+    public void set(int i, int j, float value) {
+        data[i * cols + j] = value;
+    }
+
+    /**
+     * 行列とベクトルの積を計算 (this × v)
+     * @param v ベクトル [cols]
+     * @return 積の結果 [rows]
+     */
+    public float[] dotMV(float[] v) {
+        return dotMVInto(v, new float[rows]);
+    }
+
+    /**
+     * 行列とベクトルの積を out に書き込む (out = this × v)
+     * @param v ベクトル [cols]
+     * @param out 結果の書き込み先 [rows]
+     * @return out
+     */
+    public float[] dotMVInto(float[] v, float[] out) {
+        dotMVRows(v, out, 0, rows);
+        return out;
+    }
+
+    /**
+     * 行列とベクトルの積を並列に計算 (this × v)
+     * 結果はスレッド数によらず dotMV と一致する
+     * @param v ベクトル [cols]
+     * @return 積の結果 [rows]
+     */
+    public float[] parallelDotMV(float[] v) {
+        float[] out = new float[rows];
+        Parallel.forRange(0, rows, Parallel.grainFor(cols),
+                (from, to) -> dotMVRows(v, out, from, to));
+        return out;
+    }
+
+    /**
+     * 行列とベクトルの積にバイアスと活性化関数を続けて適用する (out = f(this × v + bias))
+     * @param v ベクトル [cols]
+     * @param bias バイアス [rows]（null なら加算しない）
+     * @param activation 活性化関数
+     * @param out 結果の書き込み先 [rows]
+     * @param deriv 導関数の書き込み先 [rows]（null なら記録しない）
+     * @return out
+     */
+    public float[] fusedDotMVInto(float[] v, float[] bias, Activation activation,
+                                  float[] out, float[] deriv) {
+        dotMVRows(v, out, 0, rows);
+        activation.applyInPlace(out, 0, rows, bias, deriv);
+        return out;
+    }
+
+    /**
+     * fusedDotMVInto を並列に計算
+     * 各スレッドが受け持つ行の積を求めた直後に、同じ行へバイアスと活性化を適用する
+     * @param v ベクトル [cols]
+     * @param bias バイアス [rows]（null なら加算しない）
+     * @param activation 活性化関数
+     * @param out 結果の書き込み先 [rows]
+     * @param deriv 導関数の書き込み先 [rows]（null なら記録しない）
+     * @return out
+     */
+    public float[] parallelFusedDotMVInto(float[] v, float[] bias, Activation activation,
+                                          float[] out, float[] deriv) {
+        Parallel.forRange(0, rows, Parallel.grainFor(cols), (from, to) -> {
+            dotMVRows(v, out, from, to);
+            activation.applyInPlace(out, from, to, bias, deriv);
+        });
+        return out;
+    }
+
+    private void dotMVRows(float[] v, float[] result, int from, int to) {
+        ElementKernels kernels = Kernels.get();
+        for (int i = from; i < to; i++) {
+            result[i] = kernels.dot(data, i * cols, v, 0, cols);
+        }
+    }
+
+    /**
+     * 転置行列とベクトルの積を計算 (this^T × v)（転置行列は作らない）
+     * @param v ベクトル [rows]
+     * @return 積の結果 [cols]
+     */
+    public float[] dotTMV(float[] v) {
+        return dotTMVInto(v, new float[cols]);
+    }
+
+    /**
+     * 転置行列とベクトルの積を out に書き込む (out = this^T × v)
+     * @param v ベクトル [rows]
+     * @param out 結果の書き込み先 [cols]
+     * @return out
+     */
+    public float[] dotTMVInto(float[] v, float[] out) {
+        ElementKernels kernels = Kernels.get();
+        Arrays.fill(out, 0, cols, 0.0f);
+        for (int i = 0; i < rows; i++) {
+            kernels.axpy(v[i], data, i * cols, out, 0, cols);
+        }
+        return out;
+    }
+
+    /**
+     * ベクトルの外積を計算 (v1 × v2^T)
+     * @param v1 列ベクトル
+     * @param v2 行ベクトル
+     * @return 外積の結果
+     */
+    public static FloatDenseMatrix outer(float[] v1, float[] v2) {
+        return outerInto(v1, v2, new FloatDenseMatrix(v1.length, v2.length));
+    }
+
+    /**
+     * ベクトルの外積を out に書き込む (out = v1 × v2^T)
+     * @param v1 列ベクトル
+     * @param v2 行ベクトル
+     * @param out 結果の書き込み先 [v1.length][v2.length]
+     * @return out
+     */
+    public static FloatDenseMatrix outerInto(float[] v1, float[] v2, FloatDenseMatrix out) {
+        if (out.rows != v1.length || out.cols != v2.length) {
+            throw new IllegalArgumentException("Shape mismatch: expected " + v1.length + "x"
+                    + v2.length + " but was " + out.rows + "x" + out.cols);
+        }
+        ElementKernels kernels = Kernels.get();
+        for (int i = 0; i < v1.length; i++) {
+            kernels.scale(v2, 0, v1[i], out.data, i * out.cols, v2.length);
+        }
+        return out;
+    }
+
+    /**
+     * 全要素を value で埋める
+     */
+    public void fill(float value) {
+        Arrays.fill(data, value);
+    }
+}
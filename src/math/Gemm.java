@@ -0,0 +1,445 @@
+package math;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * キャッシュブロッキングされた行列積（GEMM）カーネル
+ *
+ * C += A × B を次の3段のブロックに分けて計算する。
+ * - NC列ごとに B を切り出し、KC行 × NR列のパネルに詰め直す（L3に載る）
+ * - MC行ごとに A を切り出し、MR行 × KC列のパネルに詰め直す（L2に載る）
+ * - MR × NR のタイルをレジスタ上で累積するマイクロカーネル（L1/レジスタ）
+ *
+ * ブロックサイズは起動時に短いキャリブレーションで決定し、ローカルのチューニング
+ * ファイルに保存する。2回目以降の起動ではファイルから読み込む。
+ * - jeeplearning.gemm.tuningFile : チューニングファイルのパス
+ *   （既定: ~/.jeeplearning/gemm-tuning.properties）
+ * - jeeplearning.gemm.tune=false : キャリブレーションを行わず既定値を使う
+ */
+public final class Gemm {
+
+    // マイクロカーネルのレジスタブロック
+    static final int MR = 4;
+    static final int NR = 4;
+
+    // ブロッキングを使う最小の演算量（m*n*k）。これより小さいと詰め直しの方が高くつく
+    static final long MIN_BLOCKED_WORK = 32L * 32 * 32;
+
+    // 既定のブロックサイズ
+    private static final int DEFAULT_MC = 128;
+    private static final int DEFAULT_KC = 256;
+    private static final int DEFAULT_NC = 2048;
+
+    // キャリブレーション候補
+    private static final int[] MC_CANDIDATES = {64, 128, 256};
+    private static final int[] KC_CANDIDATES = {128, 256, 384};
+    private static final int[] NC_CANDIDATES = {1024, 4096};
+    private static final int CALIBRATION_SIZE = 256;
+
+    private static final int MC;
+    private static final int KC;
+    private static final int NC;
+
+    // 詰め直し用の作業領域（スレッドごと）
+    private static final ThreadLocal<double[][]> PACK_BUFFERS = new ThreadLocal<>();
+
+    static {
+        int[] sizes = loadOrCalibrate();
+        MC = sizes[0];
+        KC = sizes[1];
+        NC = sizes[2];
+    }
+
+    private Gemm() {
+    }
+
+    /**
+     * ブロッキングする価値のある大きさかどうか
+     * 行か列がタイルより細い場合（行列×ベクトルなど）はゼロ詰めが無駄になるので使わない
+     */
+    public static boolean isWorthBlocking(int m, int n, int k) {
+        return m >= MR && n >= NR && (long) m * n * k >= MIN_BLOCKED_WORK;
+    }
+
+    /**
+     * 現在のブロックサイズ {MC, KC, NC}
+     */
+    public static int[] getBlockSizes() {
+        return new int[]{MC, KC, NC};
+    }
+
+    /**
+     * C += A × B（DenseMatrix版）
+     * @param a 左側の行列 [m][k]
+     * @param b 右側の行列 [k][n]
+     * @param c 結果を加算する行列 [m][n]
+     */
+    public static void multiply(DenseMatrix a, DenseMatrix b, DenseMatrix c) {
+        if (a.getCols() != b.getRows() || a.getRows() != c.getRows() || b.getCols() != c.getCols()) {
+            throw new IllegalArgumentException("Shape mismatch: " + a.getRows() + "x" + a.getCols()
+                    + " * " + b.getRows() + "x" + b.getCols() + " -> " + c.getRows() + "x" + c.getCols());
+        }
+        gemm(a.getRows(), b.getCols(), a.getCols(),
+                a.getData(), a.getOffset(), a.getStride(),
+                b.getData(), b.getOffset(), b.getStride(),
+                c.getData(), c.getOffset(), c.getStride());
+    }
+
+    /**
+     * C += A × B（行優先の1次元配列版）
+     * @param m Aの行数
+     * @param n Bの列数
+     * @param k Aの列数（=Bの行数）
+     * @param a Aの配列
+     * @param aOff Aの先頭位置
+     * @param lda Aの行間距離
+     * @param b Bの配列
+     * @param bOff Bの先頭位置
+     * @param ldb Bの行間距離
+     * @param c Cの配列
+     * @param cOff Cの先頭位置
+     * @param ldc Cの行間距離
+     */
+    public static void gemm(int m, int n, int k,
+                            double[] a, int aOff, int lda,
+                            double[] b, int bOff, int ldb,
+                            double[] c, int cOff, int ldc) {
+        gemm(m, n, k, a, aOff, lda, 1, b, bOff, ldb, 1, c, cOff, ldc, MC, KC, NC);
+    }
+
+    /**
+     * C += op(A) × op(B)（行・列の距離を個別に指定する版）
+     * A の要素 (i, p) は a[aOff + i * aRowStride + p * aColStride] にあるものとして読む。
+     * 距離を入れ替えれば転置行列をコピーせずに掛けられる（詰め直しの際に並べ替わる）
+     * @param m op(A)の行数
+     * @param n op(B)の列数
+     * @param k op(A)の列数（=op(B)の行数）
+     * @param a Aの配列
+     * @param aOff Aの先頭位置
+     * @param aRowStride op(A)の行方向の距離
+     * @param aColStride op(A)の列方向の距離
+     * @param b Bの配列
+     * @param bOff Bの先頭位置
+     * @param bRowStride op(B)の行方向の距離
+     * @param bColStride op(B)の列方向の距離
+     * @param c Cの配列
+     * @param cOff Cの先頭位置
+     * @param ldc Cの行間距離
+     */
+    public static void gemmStrided(int m, int n, int k,
+                                   double[] a, int aOff, int aRowStride, int aColStride,
+                                   double[] b, int bOff, int bRowStride, int bColStride,
+                                   double[] c, int cOff, int ldc) {
+        gemm(m, n, k, a, aOff, aRowStride, aColStride, b, bOff, bRowStride, bColStride,
+                c, cOff, ldc, MC, KC, NC);
+    }
+
+    static void gemm(int m, int n, int k,
+                     double[] a, int aOff, int lda,
+                     double[] b, int bOff, int ldb,
+                     double[] c, int cOff, int ldc,
+                     int mc, int kc, int nc) {
+        gemm(m, n, k, a, aOff, lda, 1, b, bOff, ldb, 1, c, cOff, ldc, mc, kc, nc);
+    }
+
+    private static void gemm(int m, int n, int k,
+                             double[] a, int aOff, int rsa, int csa,
+                             double[] b, int bOff, int rsb, int csb,
+                             double[] c, int cOff, int ldc,
+                             int mc, int kc, int nc) {
+        if (m == 0 || n == 0 || k == 0) {
+            return;
+        }
+
+        double[][] buffers = packBuffers(mc, kc, nc);
+        double[] packedA = buffers[0];
+        double[] packedB = buffers[1];
+        double[] edge = buffers[2];
+
+        for (int jc = 0; jc < n; jc += nc) {
+            int ncCur = Math.min(nc, n - jc);
+
+            for (int pc = 0; pc < k; pc += kc) {
+                int kcCur = Math.min(kc, k - pc);
+                packB(kcCur, ncCur, b, bOff + pc * rsb + jc * csb, rsb, csb, packedB);
+
+                for (int ic = 0; ic < m; ic += mc) {
+                    int mcCur = Math.min(mc, m - ic);
+                    packA(mcCur, kcCur, a, aOff + ic * rsa + pc * csa, rsa, csa, packedA);
+
+                    macroKernel(mcCur, ncCur, kcCur, packedA, packedB,
+                            c, cOff + ic * ldc + jc, ldc, edge);
+                }
+            }
+        }
+    }
+
+    /**
+     * 詰め直したパネル同士の積をMR × NRタイルごとに計算
+     */
+    private static void macroKernel(int mc, int nc, int kc, double[] packedA, double[] packedB,
+                                    double[] c, int cOff, int ldc, double[] edge) {
+        for (int jr = 0; jr < nc; jr += NR) {
+            int nr = Math.min(NR, nc - jr);
+            int bPanel = jr * kc;
+
+            for (int ir = 0; ir < mc; ir += MR) {
+                int mr = Math.min(MR, mc - ir);
+                int aPanel = ir * kc;
+                int cTile = cOff + ir * ldc + jr;
+
+                if (mr == MR && nr == NR) {
+                    microKernel4x4(kc, packedA, aPanel, packedB, bPanel, c, cTile, ldc);
+                } else {
+                    microKernelEdge(kc, packedA, aPanel, packedB, bPanel, c, cTile, ldc, mr, nr, edge);
+                }
+            }
+        }
+    }
+
+    /**
+     * 4 × 4タイルのマイクロカーネル
+     * 16個の累積値をローカル変数（レジスタ）に保持し、Aの列とBの行を1回ずつ読む
+     */
+    private static void microKernel4x4(int kc, double[] pa, int aIdx, double[] pb, int bIdx,
+                                       double[] c, int cIdx, int ldc) {
+        double c00 = 0, c01 = 0, c02 = 0, c03 = 0;
+        double c10 = 0, c11 = 0, c12 = 0, c13 = 0;
+        double c20 = 0, c21 = 0, c22 = 0, c23 = 0;
+        double c30 = 0, c31 = 0, c32 = 0, c33 = 0;
+
+        for (int p = 0; p < kc; p++) {
+            double a0 = pa[aIdx];
+            double a1 = pa[aIdx + 1];
+            double a2 = pa[aIdx + 2];
+            double a3 = pa[aIdx + 3];
+            double b0 = pb[bIdx];
+            double b1 = pb[bIdx + 1];
+            double b2 = pb[bIdx + 2];
+            double b3 = pb[bIdx + 3];
+
+            c00 += a0 * b0; c01 += a0 * b1; c02 += a0 * b2; c03 += a0 * b3;
+            c10 += a1 * b0; c11 += a1 * b1; c12 += a1 * b2; c13 += a1 * b3;
+            c20 += a2 * b0; c21 += a2 * b1; c22 += a2 * b2; c23 += a2 * b3;
+            c30 += a3 * b0; c31 += a3 * b1; c32 += a3 * b2; c33 += a3 * b3;
+
+            aIdx += MR;
+            bIdx += NR;
+        }
+
+        int r0 = cIdx, r1 = r0 + ldc, r2 = r1 + ldc, r3 = r2 + ldc;
+        c[r0] += c00; c[r0 + 1] += c01; c[r0 + 2] += c02; c[r0 + 3] += c03;
+        c[r1] += c10; c[r1 + 1] += c11; c[r1 + 2] += c12; c[r1 + 3] += c13;
+        c[r2] += c20; c[r2 + 1] += c21; c[r2 + 2] += c22; c[r2 + 3] += c23;
+        c[r3] += c30; c[r3 + 1] += c31; c[r3 + 2] += c32; c[r3 + 3] += c33;
+    }
+
+    /**
+     * 端のタイル（mr < MR または nr < NR）
+     * パネルはゼロ詰めされているので、書き戻しだけ有効範囲に限定する
+     */
+    private static void microKernelEdge(int kc, double[] pa, int aIdx, double[] pb, int bIdx,
+                                        double[] c, int cIdx, int ldc, int mr, int nr,
+                                        double[] acc) {
+        Arrays.fill(acc, 0.0);
+
+        for (int p = 0; p < kc; p++) {
+            for (int i = 0; i < MR; i++) {
+                double ai = pa[aIdx + i];
+                for (int j = 0; j < NR; j++) {
+                    acc[i * NR + j] += ai * pb[bIdx + j];
+                }
+            }
+            aIdx += MR;
+            bIdx += NR;
+        }
+
+        for (int i = 0; i < mr; i++) {
+            for (int j = 0; j < nr; j++) {
+                c[cIdx + i * ldc + j] += acc[i * NR + j];
+            }
+        }
+    }
+
+    /**
+     * Aのブロック [mc][kc] をMR行ごとのパネルに詰め直す
+     * パネル内は列優先（p, i）の順。端はゼロで埋める
+     */
+    private static void packA(int mc, int kc, double[] a, int aOff, int rsa, int csa,
+                              double[] packed) {
+        int idx = 0;
+        for (int ir = 0; ir < mc; ir += MR) {
+            int mr = Math.min(MR, mc - ir);
+            for (int p = 0; p < kc; p++) {
+                int src = aOff + ir * rsa + p * csa;
+                for (int i = 0; i < mr; i++) {
+                    packed[idx + i] = a[src + i * rsa];
+                }
+                for (int i = mr; i < MR; i++) {
+                    packed[idx + i] = 0.0;
+                }
+                idx += MR;
+            }
+        }
+    }
+
+    /**
+     * Bのブロック [kc][nc] をNR列ごとのパネルに詰め直す
+     * パネル内は行優先（p, j）の順。端はゼロで埋める
+     */
+    private static void packB(int kc, int nc, double[] b, int bOff, int rsb, int csb,
+                              double[] packed) {
+        int idx = 0;
+        for (int jr = 0; jr < nc; jr += NR) {
+            int nr = Math.min(NR, nc - jr);
+            for (int p = 0; p < kc; p++) {
+                int src = bOff + p * rsb + jr * csb;
+                for (int j = 0; j < nr; j++) {
+                    packed[idx + j] = b[src + j * csb];
+                }
+                for (int j = nr; j < NR; j++) {
+                    packed[idx + j] = 0.0;
+                }
+                idx += NR;
+            }
+        }
+    }
+
+    private static double[][] packBuffers(int mc, int kc, int nc) {
+        int aSize = roundUp(mc, MR) * kc;
+        int bSize = roundUp(nc, NR) * kc;
+        double[][] buffers = PACK_BUFFERS.get();
+        if (buffers == null || buffers[0].length < aSize || buffers[1].length < bSize) {
+            buffers = new double[][]{new double[aSize], new double[bSize], new double[MR * NR]};
+            PACK_BUFFERS.set(buffers);
+        }
+        return buffers;
+    }
+
+    private static int roundUp(int value, int multiple) {
+        return (value + multiple - 1) / multiple * multiple;
+    }
+
+    // ---- ブロックサイズのチューニング ----
+
+    private static int[] loadOrCalibrate() {
+        Path file = tuningFile();
+        String fingerprint = machineFingerprint();
+
+        int[] loaded = load(file, fingerprint);
+        if (loaded != null) {
+            return loaded;
+        }
+
+        if (!Boolean.parseBoolean(System.getProperty("jeeplearning.gemm.tune", "true"))) {
+            return new int[]{DEFAULT_MC, DEFAULT_KC, DEFAULT_NC};
+        }
+
+        int[] best = calibrate();
+        save(file, fingerprint, best);
+        return best;
+    }
+
+    /**
+     * 候補のブロックサイズで実際に積を計算し、最も速い組み合わせを選ぶ
+     */
+    private static int[] calibrate() {
+        int n = CALIBRATION_SIZE;
+        Random rand = new Random(1);
+        double[] a = new double[n * n];
+        double[] b = new double[n * n];
+        double[] c = new double[n * n];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = rand.nextDouble();
+            b[i] = rand.nextDouble();
+        }
+
+        // JITを温める
+        for (int rep = 0; rep < 3; rep++) {
+            gemm(n, n, n, a, 0, n, b, 0, n, c, 0, n, DEFAULT_MC, DEFAULT_KC, DEFAULT_NC);
+        }
+
+        int[] best = {DEFAULT_MC, DEFAULT_KC, DEFAULT_NC};
+        long bestTime = Long.MAX_VALUE;
+        for (int nc : NC_CANDIDATES) {
+            for (int kc : KC_CANDIDATES) {
+                for (int mc : MC_CANDIDATES) {
+                    long time = Long.MAX_VALUE;
+                    for (int rep = 0; rep < 2; rep++) {
+                        long start = System.nanoTime();
+                        gemm(n, n, n, a, 0, n, b, 0, n, c, 0, n, mc, kc, nc);
+                        time = Math.min(time, System.nanoTime() - start);
+                    }
+                    if (time < bestTime) {
+                        bestTime = time;
+                        best = new int[]{mc, kc, nc};
+                    }
+                }
+            }
+        }
+        PACK_BUFFERS.remove();
+        return best;
+    }
+
+    private static Path tuningFile() {
+        String path = System.getProperty("jeeplearning.gemm.tuningFile");
+        if (path != null) {
+            return Paths.get(path);
+        }
+        return Paths.get(System.getProperty("user.home"), ".jeeplearning", "gemm-tuning.properties");
+    }
+
+    private static String machineFingerprint() {
+        return System.getProperty("os.arch") + "/" + Runtime.getRuntime().availableProcessors()
+                + "/" + System.getProperty("java.vm.version");
+    }
+
+    private static int[] load(Path file, String fingerprint) {
+        if (!Files.isReadable(file)) {
+            return null;
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            props.load(in);
+            if (!fingerprint.equals(props.getProperty("fingerprint"))) {
+                return null;
+            }
+            return new int[]{
+                    Integer.parseInt(props.getProperty("mc")),
+                    Integer.parseInt(props.getProperty("kc")),
+                    Integer.parseInt(props.getProperty("nc"))
+            };
+        } catch (IOException | RuntimeException e) {
+            // 壊れたファイルは無視して再計測する
+            return null;
+        }
+    }
+
+    private static void save(Path file, String fingerprint, int[] sizes) {
+        Properties props = new Properties();
+        props.setProperty("fingerprint", fingerprint);
+        props.setProperty("mc", Integer.toString(sizes[0]));
+        props.setProperty("kc", Integer.toString(sizes[1]));
+        props.setProperty("nc", Integer.toString(sizes[2]));
+        try {
+            Path parent = file.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (OutputStream out = Files.newOutputStream(file)) {
+                props.store(out, "GEMM block sizes (MC, KC, NC)");
+            }
+        } catch (IOException e) {
+            // 保存できなくても計算は続けられる
+            System.err.println("Could not save GEMM tuning file: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package math;
+
+/**
+ * 16ビット浮動小数点で詰めたベクトル
+ * 順伝播から逆伝播まで保持しておく中間結果など、読み出し回数の少ない値の保存に使う。
+ */
+public final class HalfArray {
+
+    private final HalfFormat format;
+    private final short[] data;
+
+    /**
+     * ゼロで初期化した配列を作成
+     * @param length 要素数
+     * @param format 格納形式
+     */
+    public HalfArray(int length, HalfFormat format) {
+        this.format = format;
+        this.data = new short[length];
+    }
+
+    /**
+     * float 配列を詰めた配列を作成
+     * @param values 元の値
+     * @param format 格納形式
+     * @return 詰めた配列
+     */
+    public static HalfArray pack(float[] values, HalfFormat format) {
+        return new HalfArray(values.length, format).packFrom(values);
+    }
+
+    /**
+     * values を詰めてこの配列に上書き
+     * @param values 元の値 [length]
+     * @return this
+     */
+    public HalfArray packFrom(float[] values) {
+        if (values.length != data.length) {
+            throw new IllegalArgumentException(
+                    "Length mismatch: expected " + data.length + " but was " + values.length);
+        }
+        format.packInto(values, 0, data, 0, data.length);
+        return this;
+    }
+
+    /**
+     * float に展開して out に書き込む
+     * @param out 書き込み先 [length]
+     * @return out
+     */
+    public float[] unpackInto(float[] out) {
+        format.unpackInto(data, 0, out, 0, data.length);
+        return out;
+    }
+
+    /**
+     * float 配列に展開
+     * @return 展開した配列
+     */
+    public float[] toFloatArray() {
+        return unpackInto(new float[data.length]);
+    }
+
+    public float get(int i) {
+        return format.unpack(data[i]);
+    }
+
+    public int length() { return data.length; }
+    public HalfFormat getFormat() { return format; }
+    public short[] getData() { return data; }
+}
@@ -0,0 +1,155 @@
+package math;
+
+/**
+ * 16ビット浮動小数点の格納形式
+ * 値は short に詰めて保持し、計算時に float へ展開する（累積は float で行う）。
+ * - FP16: IEEE 754 binary16（符号1・指数5・仮数10ビット）。精度は高いが範囲は ±65504
+ * - BF16: bfloat16（符号1・指数8・仮数7ビット）。float と同じ範囲で精度は約3桁
+ * float への丸めは最近接偶数丸め。
+ * 詰めた配列と float 配列の内積などは {@link ElementKernels} の dotHalf / axpyHalf で計算する。
+ */
+public enum HalfFormat {
+    FP16,
+    BF16;
+
+    // FP16 の全ビットパターンに対応する float 値（展開を表引きにする）
+    static final float[] FP16_TABLE = new float[1 << 16];
+
+    static {
+        for (int h = 0; h < FP16_TABLE.length; h++) {
+            FP16_TABLE[h] = fp16ToFloat((short) h);
+        }
+    }
+
+    /**
+     * float を16ビットに詰める
+     * @param value 元の値
+     * @return 16ビット表現
+     */
+    public short pack(float value) {
+        return this == BF16 ? floatToBf16(value) : floatToFp16(value);
+    }
+
+    /**
+     * 16ビット表現を float に展開
+     * @param bits 16ビット表現
+     * @return float 値
+     */
+    public float unpack(short bits) {
+        return this == BF16 ? bf16ToFloat(bits) : FP16_TABLE[bits & 0xffff];
+    }
+
+    /**
+     * 配列をまとめて詰める
+     * @param src 元の配列
+     * @param srcOff src の開始位置
+     * @param dst 書き込み先
+     * @param dstOff dst の開始位置
+     * @param length 要素数
+     */
+    public void packInto(float[] src, int srcOff, short[] dst, int dstOff, int length) {
+        if (this == BF16) {
+            for (int i = 0; i < length; i++) {
+                dst[dstOff + i] = floatToBf16(src[srcOff + i]);
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                dst[dstOff + i] = floatToFp16(src[srcOff + i]);
+            }
+        }
+    }
+
+    /**
+     * 配列をまとめて展開
+     * @param src 16ビット表現の配列
+     * @param srcOff src の開始位置
+     * @param dst 書き込み先
+     * @param dstOff dst の開始位置
+     * @param length 要素数
+     */
+    public void unpackInto(short[] src, int srcOff, float[] dst, int dstOff, int length) {
+        if (this == BF16) {
+            for (int i = 0; i < length; i++) {
+                dst[dstOff + i] = bf16ToFloat(src[srcOff + i]);
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                dst[dstOff + i] = FP16_TABLE[src[srcOff + i] & 0xffff];
+            }
+        }
+    }
+
+    // ===== ビット変換 =====
+
+    static float bf16ToFloat(short bits) {
+        return Float.intBitsToFloat(bits << 16);
+    }
+
+    static short floatToBf16(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        if ((bits & 0x7fffffff) > 0x7f800000) {
+            // NaN は仮数の上位ビットを立てて NaN のまま残す
+            return (short) ((bits >>> 16) | 0x40);
+        }
+        // 切り捨てられる16ビットで最近接偶数丸め
+        return (short) ((bits + 0x7fff + ((bits >>> 16) & 1)) >>> 16);
+    }
+
+    static float fp16ToFloat(short bits) {
+        int h = bits & 0xffff;
+        int sign = (h & 0x8000) << 16;
+        int exp = (h >>> 10) & 0x1f;
+        int mant = h & 0x3ff;
+
+        if (exp == 0) {
+            // ゼロと非正規化数: mant * 2^-24
+            float magnitude = mant * 0x1p-24f;
+            return sign == 0 ? magnitude : -magnitude;
+        }
+        if (exp == 0x1f) {
+            // 無限大と NaN
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mant << 13));
+        }
+        // 指数のバイアスを 15 から 127 に付け替える
+        return Float.intBitsToFloat(sign | ((exp + 112) << 23) | (mant << 13));
+    }
+
+    static short floatToFp16(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int abs = bits & 0x7fffffff;
+
+        if (abs >= 0x7f800000) {
+            // 無限大と NaN（NaN は仮数の上位ビットを立てる）
+            return (short) (sign | 0x7c00 | (abs > 0x7f800000 ? 0x200 | ((abs >>> 13) & 0x3ff) : 0));
+        }
+        if (abs >= 0x477ff000) {
+            // 65520 以上は丸めると無限大になる
+            return (short) (sign | 0x7c00);
+        }
+        if (abs < 0x38800000) {
+            // 2^-14 未満は非正規化数（2^-25 以下はゼロに丸める）
+            if (abs <= 0x33000000) {
+                return (short) sign;
+            }
+            int exp = abs >>> 23;
+            int mant = (abs & 0x7fffff) | 0x800000;
+            int shift = 126 - exp;
+            int half = mant >>> shift;
+            int rest = mant & ((1 << shift) - 1);
+            int midpoint = 1 << (shift - 1);
+            if (rest > midpoint || (rest == midpoint && (half & 1) == 1)) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+
+        // 正規化数: 指数のバイアスを付け替え、仮数の下位13ビットで最近接偶数丸め
+        int half = (abs - 0x38000000) >>> 13;
+        int rest = abs & 0x1fff;
+        if (rest > 0x1000 || (rest == 0x1000 && (half & 1) == 1)) {
+            half++;
+        }
+        return (short) (sign | half);
+    }
+}
@@ -0,0 +1,140 @@
+package math;
+
+import java.util.Arrays;
+
+/**
+ * 16ビット浮動小数点で詰めた密行列
+ * 重みを半分（double比では1/4）のバイト数で保持し、メモリ帯域が律速になる
+ * 大きな行列とベクトルの積を速くする。要素はカーネルの内側で float に展開し、
+ * 累積は float で行う。要素 (i, j) は data[i * cols + j] に置かれる。
+ */
+public class HalfMatrix {
+
+    private final HalfFormat format;
+    private final short[] data;
+    private final int rows;
+    private final int cols;
+
+    /**
+     * ゼロ初期化された行列を作成
+     * @param rows 行数
+     * @param cols 列数
+     * @param format 格納形式
+     */
+    public HalfMatrix(int rows, int cols, HalfFormat format) {
+        if (rows < 0 || cols < 0) {
+            throw new IllegalArgumentException("Invalid shape: rows=" + rows + ", cols=" + cols);
+        }
+        this.format = format;
+        this.data = new short[rows * cols];
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * 単精度の行列を詰めて作成
+     * @param m 元の行列
+     * @param format 格納形式
+     * @return 詰めた行列
+     */
+    public static HalfMatrix of(FloatDenseMatrix m, HalfFormat format) {
+        HalfMatrix result = new HalfMatrix(m.getRows(), m.getCols(), format);
+        format.packInto(m.getData(), 0, result.data, 0, result.data.length);
+        return result;
+    }
+
+    /**
+     * 倍精度の行列を詰めて作成
+     * @param m 元の行列
+     * @param format 格納形式
+     * @return 詰めた行列
+     */
+    public static HalfMatrix of(DenseMatrix m, HalfFormat format) {
+        HalfMatrix result = new HalfMatrix(m.getRows(), m.getCols(), format);
+        for (int i = 0; i < result.rows; i++) {
+            for (int j = 0; j < result.cols; j++) {
+                result.data[i * result.cols + j] = format.pack((float) m.get(i, j));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 単精度の行列に展開
+     * @return 展開した行列
+     */
+    public FloatDenseMatrix toFloat() {
+        FloatDenseMatrix result = new FloatDenseMatrix(rows, cols);
+        format.unpackInto(data, 0, result.getData(), 0, data.length);
+        return result;
+    }
+
+    // アクセサ
+    public int getRows() { return rows; }
+    public int getCols() { return cols; }
+    public HalfFormat getFormat() { return format; }
+    public short[] getData() { return data; }
+
+    public float get(int i, int j) {
+        return format.unpack(data[i * cols + j]);
+    }
+
+    public void set(int i, int j, float value) {
+        data[i * cols + j] = format.pack(value);
+    }
+
+    /**
+     * 行列とベクトルの積を計算 (this × v)
+     * @param v ベクトル [cols]
+     * @return 積の結果 [rows]
+     */
+    public float[] dotMV(float[] v) {
+        return dotMVInto(v, new float[rows]);
+    }
+
+    /**
+     * 行列とベクトルの積を out に書き込む (out = this × v)
+     * @param v ベクトル [cols]
+     * @param out 結果の書き込み先 [rows]
+     * @return out
+     */
+    public float[] dotMVInto(float[] v, float[] out) {
+        dotMVRows(v, out, 0, rows);
+        return out;
+    }
+
+    /**
+     * 行列とベクトルの積を並列に計算 (this × v)
+     * 結果はスレッド数によらず dotMV と一致する
+     * @param v ベクトル [cols]
+     * @return 積の結果 [rows]
+     */
+    public float[] parallelDotMV(float[] v) {
+        float[] out = new float[rows];
+        Parallel.forRange(0, rows, Parallel.grainFor(cols),
+                (from, to) -> dotMVRows(v, out, from, to));
+        return out;
+    }
+
+    private void dotMVRows(float[] v, float[] result, int from, int to) {
+        ElementKernels kernels = Kernels.get();
+        for (int i = from; i < to; i++) {
+            result[i] = kernels.dotHalf(format, data, i * cols, v, 0, cols);
+        }
+    }
+
+    /**
+     * 転置行列とベクトルの積を out に書き込む (out = this^T × v)
+     * @param v ベクトル [rows]
+     * @param out 結果の書き込み先 [cols]
+     * @return out
+     */
+    public float[] dotTMVInto(float[] v, float[] out) {
+        ElementKernels kernels = Kernels.get();
+        Arrays.fill(out, 0, cols, 0.0f);
+        for (int i = 0; i < rows; i++) {
+            kernels.axpyHalf(format, v[i], data, i * cols, out, 0, cols);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,62 @@
+package math;
+
+/**
+ * 要素ごとの演算カーネルの選択
+ *
+ * 起動時に jdk.incubator.vector モジュールが読み込まれていて（実行時に
+ * --add-modules jdk.incubator.vector を指定した場合）、SIMD版（別のソースルート src-simd にあり、
+ * モジュールを指定して別にコンパイルする）がクラスパスにあればそれを使い、そうでなければ通常のループ版を使う。
+ * -Djeeplearning.simd=false を指定すると常に通常のループ版を使う。
+ */
+public final class Kernels {
+
+    private static final ElementKernels SCALAR = new ScalarKernels();
+    private static final ElementKernels SIMD = loadSimd();
+    private static final ElementKernels ACTIVE =
+            SIMD != null && Boolean.parseBoolean(System.getProperty("jeeplearning.simd", "true"))
+                    ? SIMD : SCALAR;
+
+    private Kernels() {
+    }
+
+    /**
+     * 現在使用中のカーネル
+     */
+    public static ElementKernels get() {
+        return ACTIVE;
+    }
+
+    /**
+     * 通常のループ版カーネル
+     */
+    public static ElementKernels scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * SIMD版カーネル（Vector APIが使えない場合はnull）
+     */
+    public static ElementKernels simd() {
+        return SIMD;
+    }
+
+    /**
+     * SIMD版を使用中かどうか
+     */
+    public static boolean isSimdEnabled() {
+        return ACTIVE == SIMD;
+    }
+
+    private static ElementKernels loadSimd() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            // モジュールがない環境でリンクエラーにならないよう、名前で遅延ロードする
+            return (ElementKernels) Class.forName("math.SimdKernels")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package math;
+
+/**
+ * 画像（特徴マップ）の要素の並び順
+ * NCHW はチャンネルごとに画像が連続し（[channels][height][width]）、
+ * NHWC は画素ごとにチャンネルが連続する（[height][width][channels]）。
+ * NHWC では畳み込みの入力チャンネルの和が連続した要素の積和になり、
+ * 出力チャンネルの方向にベクトル化できる。並べ替えは {@link ConvolutionOps#toNHWCInto} などを使う。
+ */
+public enum Layout {
+    NCHW,
+    NHWC
+}
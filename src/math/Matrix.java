@@ -1,5 +1,13 @@
 package math;
 
+import java.util.Arrays;
+
+/**
+ * 行列・ベクトル演算
+ * 各演算には結果を新しく確保する版と、呼び出し側が用意した配列に書き込む版
+ * （xxxInto / xxxInPlace / xxxAccumulate）がある。後者はヒープ確保を行わない。
+ * 単精度モデル用に、主な演算には float[] 版のオーバーロードもある。
+ */
 public class Matrix {
     /**
      * 行列の積を計算 (A × B)
@@ -12,17 +20,37 @@ public class Matrix {
         int n = a[0].length;
         int p = b[0].length;
 
-        double[][] result = new double[m][p];
+        // 大きな行列はキャッシュブロッキングされたカーネル（さらに大きければStrassen法）で計算
+        if (Gemm.isWorthBlocking(m, p, n)) {
+            return DenseMatrix.of(a).dot(DenseMatrix.of(b)).toArray();
+        }
+
+        return dotInto(a, b, new double[m][p]);
+    }
+
+    /**
+     * 行列の積を out に書き込む (out = A × B)
+     * ブロッキングを使わない直接計算なので、作業領域を確保しない
+     * @param a 左側の行列
+     * @param b 右側の行列
+     * @param out 結果の書き込み先 [a.length][b[0].length]
+     * @return out
+     */
+    public static double[][] dotInto(double[][] a, double[][] b, double[][] out) {
+        int m = a.length;
+        int n = a[0].length;
+        int p = b[0].length;
+
         for (int i = 0; i < m; i++) {
             for (int j = 0; j < p; j++) {
                 double sum = 0.0;
                 for (int k = 0; k < n; k++) {
                     sum += a[i][k] * b[k][j];
                 }
-                result[i][j] = sum;
+                out[i][j] = sum;
             }
         }
-        return result;
+        return out;
     }
 
     /**
@@ -32,19 +60,175 @@ public class Matrix {
      * @return 積の結果（ベクトル）
      */
     public static double[] dotMV(double[][] m, double[] v) {
-        int rows = m.length;
-        double[] result = new double[rows];
+        return dotMVInto(m, v, new double[m.length]);
+    }
 
-        for (int i = 0; i < rows; i++) {
-            double sum = 0.0;
-            for (int j = 0; j < v.length; j++) {
-                sum += m[i][j] * v[j];
-            }
-            result[i] = sum;
+    /**
+     * 行列とベクトルの積を out に書き込む (out = M × v)
+     * @param m 行列
+     * @param v ベクトル
+     * @param out 結果の書き込み先 [m.length]
+     * @return out
+     */
+    public static double[] dotMVInto(double[][] m, double[] v, double[] out) {
+        if (SmallKernels.supports(v.length)) {
+            return SmallKernels.dotMVInto(m, v, out);
+        }
+        dotMVRows(m, v, out, 0, m.length);
+        return out;
+    }
+
+    /**
+     * 行列とベクトルの積にバイアスと活性化関数を続けて適用する (out = f(M × v + bias))
+     * 積を書き込んだ out の上でそのままバイアス加算と活性化を行うので、中間のベクトルを作らない
+     * @param m 行列
+     * @param v ベクトル
+     * @param bias バイアス [m.length]（null なら加算しない）
+     * @param activation 活性化関数
+     * @param out 結果の書き込み先 [m.length]
+     * @param deriv 導関数 f'(M × v + bias) の書き込み先（null なら記録しない）
+     * @return out
+     */
+    public static double[] fusedDotMVInto(double[][] m, double[] v, double[] bias,
+                                          Activation activation, double[] out, double[] deriv) {
+        dotMVInto(m, v, out);
+        activation.applyInPlace(out, 0, m.length, bias, deriv);
+        return out;
+    }
+
+    /**
+     * 行列の積を並列に計算 (A × B)
+     * 出力の行ブロックをスレッドに分配する。小さな行列は直列のまま計算し、
+     * 結果はスレッド数によらず dot と同じになる
+     * @param a 左側の行列
+     * @param b 右側の行列
+     * @return 積の結果
+     */
+    public static double[][] parallelDot(double[][] a, double[][] b) {
+        long work = (long) a.length * a[0].length * b[0].length;
+        if (Parallel.getThreads() == 1 || work < 2 * Parallel.MIN_PARALLEL_WORK) {
+            return dot(a, b);
         }
+        return DenseMatrix.of(a).parallelDot(DenseMatrix.of(b)).toArray();
+    }
+
+    /**
+     * 行列とベクトルの積を並列に計算 (M × v)
+     * 結果はスレッド数によらず dotMV と同じになる
+     * @param m 行列
+     * @param v ベクトル
+     * @return 積の結果（ベクトル）
+     */
+    public static double[] parallelDotMV(double[][] m, double[] v) {
+        double[] result = new double[m.length];
+        Parallel.forRange(0, m.length, Parallel.grainFor(v.length),
+                (from, to) -> dotMVRows(m, v, result, from, to));
         return result;
     }
 
+    private static void dotMVRows(double[][] m, double[] v, double[] result, int from, int to) {
+        ElementKernels kernels = Kernels.get();
+        for (int i = from; i < to; i++) {
+            result[i] = kernels.dot(m[i], 0, v, 0, v.length);
+        }
+    }
+
+    /**
+     * 転置行列とベクトルの積を計算 (M^T × v)
+     * 転置行列を作らず、M の各行を v[i] 倍して足し合わせる（行方向に連続して読む）
+     * @param m 行列 [rows][cols]
+     * @param v ベクトル [rows]
+     * @return 積の結果 [cols]
+     */
+    public static double[] dotTMV(double[][] m, double[] v) {
+        return dotTMVInto(m, v, new double[m[0].length]);
+    }
+
+    /**
+     * 転置行列とベクトルの積を out に書き込む (out = M^T × v)
+     * @param m 行列 [rows][cols]
+     * @param v ベクトル [rows]
+     * @param out 結果の書き込み先 [cols]
+     * @return out
+     */
+    public static double[] dotTMVInto(double[][] m, double[] v, double[] out) {
+        int cols = m[0].length;
+        if (SmallKernels.supports(cols)) {
+            return SmallKernels.dotTMVInto(m, v, out);
+        }
+        ElementKernels kernels = Kernels.get();
+
+        Arrays.fill(out, 0, cols, 0.0);
+        for (int i = 0; i < m.length; i++) {
+            kernels.axpy(v[i], m[i], 0, out, 0, cols);
+        }
+        return out;
+    }
+
+    /**
+     * A × B^T を計算（B を転置せず、A と B の行同士の内積として求める）
+     * @param a 行列 [m][k]
+     * @param b 行列 [n][k]
+     * @return 積の結果 [m][n]
+     */
+    public static double[][] dotNT(double[][] a, double[][] b) {
+        return dotNTInto(a, b, new double[a.length][b.length]);
+    }
+
+    /**
+     * A × B^T を out に書き込む
+     * @param a 行列 [m][k]
+     * @param b 行列 [n][k]
+     * @param out 結果の書き込み先 [m][n]
+     * @return out
+     */
+    public static double[][] dotNTInto(double[][] a, double[][] b, double[][] out) {
+        int k = a[0].length;
+        ElementKernels kernels = Kernels.get();
+
+        for (int i = 0; i < a.length; i++) {
+            for (int j = 0; j < b.length; j++) {
+                out[i][j] = kernels.dot(a[i], 0, b[j], 0, k);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * A^T × B を計算（A を転置せず、A の k 行目と B の k 行目の外積を足し合わせる）
+     * @param a 行列 [k][m]
+     * @param b 行列 [k][n]
+     * @return 積の結果 [m][n]
+     */
+    public static double[][] dotTN(double[][] a, double[][] b) {
+        return dotTNInto(a, b, new double[a[0].length][b[0].length]);
+    }
+
+    /**
+     * A^T × B を out に書き込む
+     * @param a 行列 [k][m]
+     * @param b 行列 [k][n]
+     * @param out 結果の書き込み先 [m][n]
+     * @return out
+     */
+    public static double[][] dotTNInto(double[][] a, double[][] b, double[][] out) {
+        int m = a[0].length;
+        int n = b[0].length;
+        ElementKernels kernels = Kernels.get();
+
+        for (double[] row : out) {
+            Arrays.fill(row, 0, n, 0.0);
+        }
+        for (int k = 0; k < a.length; k++) {
+            double[] aRow = a[k];
+            double[] bRow = b[k];
+            for (int i = 0; i < m; i++) {
+                kernels.axpy(aRow[i], bRow, 0, out[i], 0, n);
+            }
+        }
+        return out;
+    }
+
     /**
      * ベクトルの外積を計算 (v1 × v2^T)
      * @param v1 列ベクトル
@@ -52,16 +236,39 @@ public class Matrix {
      * @return 外積の結果（行列）
      */
     public static double[][] outer(double[] v1, double[] v2) {
-        int m = v1.length;
-        int n = v2.length;
-        double[][] result = new double[m][n];
+        return outerInto(v1, v2, new double[v1.length][v2.length]);
+    }
 
-        for (int i = 0; i < m; i++) {
-            for (int j = 0; j < n; j++) {
-                result[i][j] = v1[i] * v2[j];
-            }
+    /**
+     * ベクトルの外積を out に書き込む (out = v1 × v2^T)
+     * @param v1 列ベクトル
+     * @param v2 行ベクトル
+     * @param out 結果の書き込み先 [v1.length][v2.length]
+     * @return out
+     */
+    public static double[][] outerInto(double[] v1, double[] v2, double[][] out) {
+        if (SmallKernels.supports(v2.length)) {
+            return SmallKernels.outerInto(v1, v2, out);
+        }
+        ElementKernels kernels = Kernels.get();
+        for (int i = 0; i < v1.length; i++) {
+            kernels.scale(v2, 0, v1[i], out[i], 0, v2.length);
+        }
+        return out;
+    }
+
+    /**
+     * ベクトルの外積を dst に加算 (dst += v1 × v2^T)
+     * 勾配をサンプルごとに累積する場合に使う
+     * @param dst 加算先 [v1.length][v2.length]
+     * @param v1 列ベクトル
+     * @param v2 行ベクトル
+     */
+    public static void outerAccumulate(double[][] dst, double[] v1, double[] v2) {
+        ElementKernels kernels = Kernels.get();
+        for (int i = 0; i < v1.length; i++) {
+            kernels.axpy(v1[i], v2, 0, dst[i], 0, v2.length);
         }
-        return result;
     }
 
     /**
@@ -70,16 +277,25 @@ public class Matrix {
      * @return 転置行列
      */
     public static double[][] t(double[][] m) {
+        return tInto(m, new double[m[0].length][m.length]);
+    }
+
+    /**
+     * 行列の転置を out に書き込む
+     * @param m 元の行列
+     * @param out 結果の書き込み先 [m[0].length][m.length]
+     * @return out
+     */
+    public static double[][] tInto(double[][] m, double[][] out) {
         int rows = m.length;
         int cols = m[0].length;
-        double[][] result = new double[cols][rows];
 
         for (int i = 0; i < rows; i++) {
             for (int j = 0; j < cols; j++) {
-                result[j][i] = m[i][j];
+                out[j][i] = m[i][j];
             }
         }
-        return result;
+        return out;
     }
 
     /**
@@ -89,16 +305,24 @@ public class Matrix {
      * @return 和の結果
      */
     public static double[][] add(double[][] a, double[][] b) {
-        int rows = a.length;
+        return addInto(a, b, new double[a.length][a[0].length]);
+    }
+
+    /**
+     * 行列の要素ごとの和を out に書き込む（out は a や b と同じでもよい）
+     * @param a 行列1
+     * @param b 行列2
+     * @param out 結果の書き込み先
+     * @return out
+     */
+    public static double[][] addInto(double[][] a, double[][] b, double[][] out) {
         int cols = a[0].length;
-        double[][] result = new double[rows][cols];
+        ElementKernels kernels = Kernels.get();
 
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                result[i][j] = a[i][j] + b[i][j];
-            }
+        for (int i = 0; i < a.length; i++) {
+            kernels.add(a[i], 0, b[i], 0, out[i], 0, cols);
         }
-        return result;
+        return out;
     }
 
     /**
@@ -108,11 +332,28 @@ public class Matrix {
      * @return 和の結果
      */
     public static double[] addVec(double[] a, double[] b) {
-        double[] result = new double[a.length];
-        for (int i = 0; i < a.length; i++) {
-            result[i] = a[i] + b[i];
-        }
-        return result;
+        return addVecInto(a, b, new double[a.length]);
+    }
+
+    /**
+     * ベクトルの要素ごとの和を out に書き込む
+     * @param a ベクトル1
+     * @param b ベクトル2
+     * @param out 結果の書き込み先
+     * @return out
+     */
+    public static double[] addVecInto(double[] a, double[] b, double[] out) {
+        Kernels.get().add(a, 0, b, 0, out, 0, a.length);
+        return out;
+    }
+
+    /**
+     * ベクトルの要素ごとの和を a に上書き (a += b)
+     * @param a ベクトル1（結果で上書きされる）
+     * @param b ベクトル2
+     */
+    public static void addVecInPlace(double[] a, double[] b) {
+        Kernels.get().add(a, 0, b, 0, a, 0, a.length);
     }
 
     /**
@@ -122,11 +363,28 @@ public class Matrix {
      * @return 積の結果
      */
     public static double[] hadamard(double[] a, double[] b) {
-        double[] result = new double[a.length];
-        for (int i = 0; i < a.length; i++) {
-            result[i] = a[i] * b[i];
-        }
-        return result;
+        return hadamardInto(a, b, new double[a.length]);
+    }
+
+    /**
+     * アダマール積を out に書き込む
+     * @param a ベクトル1
+     * @param b ベクトル2
+     * @param out 結果の書き込み先
+     * @return out
+     */
+    public static double[] hadamardInto(double[] a, double[] b, double[] out) {
+        Kernels.get().multiply(a, 0, b, 0, out, 0, a.length);
+        return out;
+    }
+
+    /**
+     * アダマール積を a に上書き (a *= b)
+     * @param a ベクトル1（結果で上書きされる）
+     * @param b ベクトル2
+     */
+    public static void hadamardInPlace(double[] a, double[] b) {
+        Kernels.get().multiply(a, 0, b, 0, a, 0, a.length);
     }
 
     /**
@@ -136,16 +394,24 @@ public class Matrix {
      * @return スカラー倍した行列
      */
     public static double[][] scale(double[][] m, double scalar) {
-        int rows = m.length;
+        return scaleInto(m, scalar, new double[m.length][m[0].length]);
+    }
+
+    /**
+     * 行列のスカラー倍を out に書き込む（out は m と同じでもよい）
+     * @param m 行列
+     * @param scalar スカラー値
+     * @param out 結果の書き込み先
+     * @return out
+     */
+    public static double[][] scaleInto(double[][] m, double scalar, double[][] out) {
         int cols = m[0].length;
-        double[][] result = new double[rows][cols];
+        ElementKernels kernels = Kernels.get();
 
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                result[i][j] = m[i][j] * scalar;
-            }
+        for (int i = 0; i < m.length; i++) {
+            kernels.scale(m[i], 0, scalar, out[i], 0, cols);
         }
-        return result;
+        return out;
     }
 
     /**
@@ -155,11 +421,28 @@ public class Matrix {
      * @return スカラー倍したベクトル
      */
     public static double[] scaleVec(double[] v, double scalar) {
-        double[] result = new double[v.length];
-        for (int i = 0; i < v.length; i++) {
-            result[i] = v[i] * scalar;
-        }
-        return result;
+        return scaleVecInto(v, scalar, new double[v.length]);
+    }
+
+    /**
+     * ベクトルのスカラー倍を out に書き込む
+     * @param v ベクトル
+     * @param scalar スカラー値
+     * @param out 結果の書き込み先
+     * @return out
+     */
+    public static double[] scaleVecInto(double[] v, double scalar, double[] out) {
+        Kernels.get().scale(v, 0, scalar, out, 0, v.length);
+        return out;
+    }
+
+    /**
+     * ベクトルのスカラー倍を v に上書き (v *= scalar)
+     * @param v ベクトル（結果で上書きされる）
+     * @param scalar スカラー値
+     */
+    public static void scaleVecInPlace(double[] v, double scalar) {
+        Kernels.get().scale(v, 0, scalar, v, 0, v.length);
     }
 
     /**
@@ -168,14 +451,21 @@ public class Matrix {
      * @return クローン行列
      */
     public static double[][] clone(double[][] m) {
-        int rows = m.length;
-        int cols = m[0].length;
-        double[][] result = new double[rows][cols];
+        return copyInto(m, new double[m.length][m[0].length]);
+    }
 
-        for (int i = 0; i < rows; i++) {
-            System.arraycopy(m[i], 0, result[i], 0, cols);
+    /**
+     * 行列を out にコピー
+     * @param m 元の行列
+     * @param out コピー先
+     * @return out
+     */
+    public static double[][] copyInto(double[][] m, double[][] out) {
+        int cols = m[0].length;
+        for (int i = 0; i < m.length; i++) {
+            System.arraycopy(m[i], 0, out[i], 0, cols);
         }
-        return result;
+        return out;
     }
 
     /**
@@ -186,4 +476,205 @@ public class Matrix {
     public static double[] clone(double[] v) {
         return v.clone();
     }
+
+    // ===== 単精度（float）版 =====
+
+    /**
+     * 行列とベクトルの積を計算 (M × v)（単精度）
+     * @param m 行列
+     * @param v ベクトル
+     * @return 積の結果（ベクトル）
+     */
+    public static float[] dotMV(float[][] m, float[] v) {
+        return dotMVInto(m, v, new float[m.length]);
+    }
+
+    /**
+     * 行列とベクトルの積を out に書き込む (out = M × v)（単精度）
+     * @param m 行列
+     * @param v ベクトル
+     * @param out 結果の書き込み先 [m.length]
+     * @return out
+     */
+    public static float[] dotMVInto(float[][] m, float[] v, float[] out) {
+        ElementKernels kernels = Kernels.get();
+        for (int i = 0; i < m.length; i++) {
+            out[i] = kernels.dot(m[i], 0, v, 0, v.length);
+        }
+        return out;
+    }
+
+    /**
+     * 行列とベクトルの積にバイアスと活性化関数を続けて適用する (out = f(M × v + bias))（単精度）
+     * @param m 行列
+     * @param v ベクトル
+     * @param bias バイアス [m.length]（null なら加算しない）
+     * @param activation 活性化関数
+     * @param out 結果の書き込み先 [m.length]
+     * @param deriv 導関数の書き込み先（null なら記録しない）
+     * @return out
+     */
+    public static float[] fusedDotMVInto(float[][] m, float[] v, float[] bias,
+                                         Activation activation, float[] out, float[] deriv) {
+        dotMVInto(m, v, out);
+        activation.applyInPlace(out, 0, m.length, bias, deriv);
+        return out;
+    }
+
+    /**
+     * 転置行列とベクトルの積を計算 (M^T × v)（単精度）
+     * @param m 行列 [rows][cols]
+     * @param v ベクトル [rows]
+     * @return 積の結果 [cols]
+     */
+    public static float[] dotTMV(float[][] m, float[] v) {
+        return dotTMVInto(m, v, new float[m[0].length]);
+    }
+
+    /**
+     * 転置行列とベクトルの積を out に書き込む (out = M^T × v)（単精度）
+     * @param m 行列 [rows][cols]
+     * @param v ベクトル [rows]
+     * @param out 結果の書き込み先 [cols]
+     * @return out
+     */
+    public static float[] dotTMVInto(float[][] m, float[] v, float[] out) {
+        int cols = m[0].length;
+        ElementKernels kernels = Kernels.get();
+
+        Arrays.fill(out, 0, cols, 0.0f);
+        for (int i = 0; i < m.length; i++) {
+            kernels.axpy(v[i], m[i], 0, out, 0, cols);
+        }
+        return out;
+    }
+
+    /**
+     * ベクトルの外積を計算 (v1 × v2^T)（単精度）
+     * @param v1 列ベクトル
+     * @param v2 行ベクトル
+     * @return 外積の結果（行列）
+     */
+    public static float[][] outer(float[] v1, float[] v2) {
+        return outerInto(v1, v2, new float[v1.length][v2.length]);
+    }
+
+    /**
+     * ベクトルの外積を out に書き込む (out = v1 × v2^T)（単精度）
+     * @param v1 列ベクトル
+     * @param v2 行ベクトル
+     * @param out 結果の書き込み先 [v1.length][v2.length]
+     * @return out
+     */
+    public static float[][] outerInto(float[] v1, float[] v2, float[][] out) {
+        ElementKernels kernels = Kernels.get();
+        for (int i = 0; i < v1.length; i++) {
+            kernels.scale(v2, 0, v1[i], out[i], 0, v2.length);
+        }
+        return out;
+    }
+
+    /**
+     * ベクトルの要素ごとの和（単精度）
+     * @param a ベクトル1
+     * @param b ベクトル2
+     * @return 和の結果
+     */
+    public static float[] addVec(float[] a, float[] b) {
+        return addVecInto(a, b, new float[a.length]);
+    }
+
+    /**
+     * ベクトルの要素ごとの和を out に書き込む（単精度）
+     * @param a ベクトル1
+     * @param b ベクトル2
+     * @param out 結果の書き込み先
+     * @return out
+     */
+    public static float[] addVecInto(float[] a, float[] b, float[] out) {
+        Kernels.get().add(a, 0, b, 0, out, 0, a.length);
+        return out;
+    }
+
+    /**
+     * ベクトルの要素ごとの和を a に上書き (a += b)（単精度）
+     * @param a ベクトル1（結果で上書きされる）
+     * @param b ベクトル2
+     */
+    public static void addVecInPlace(float[] a, float[] b) {
+        Kernels.get().add(a, 0, b, 0, a, 0, a.length);
+    }
+
+    /**
+     * アダマール積を a に上書き (a *= b)（単精度）
+     * @param a ベクトル1（結果で上書きされる）
+     * @param b ベクトル2
+     */
+    public static void hadamardInPlace(float[] a, float[] b) {
+        Kernels.get().multiply(a, 0, b, 0, a, 0, a.length);
+    }
+
+    /**
+     * ベクトルのスカラー倍を out に書き込む（単精度）
+     * @param v ベクトル
+     * @param scalar スカラー値
+     * @param out 結果の書き込み先
+     * @return out
+     */
+    public static float[] scaleVecInto(float[] v, float scalar, float[] out) {
+        Kernels.get().scale(v, 0, scalar, out, 0, v.length);
+        return out;
+    }
+
+    /**
+     * 倍精度のベクトルを単精度に変換
+     * @param v 元のベクトル
+     * @return 単精度のベクトル
+     */
+    public static float[] toFloat(double[] v) {
+        float[] out = new float[v.length];
+        for (int i = 0; i < v.length; i++) {
+            out[i] = (float) v[i];
+        }
+        return out;
+    }
+
+    /**
+     * 倍精度の行列を単精度に変換
+     * @param m 元の行列
+     * @return 単精度の行列
+     */
+    public static float[][] toFloat(double[][] m) {
+        float[][] out = new float[m.length][];
+        for (int i = 0; i < m.length; i++) {
+            out[i] = toFloat(m[i]);
+        }
+        return out;
+    }
+
+    /**
+     * 単精度のベクトルを倍精度に変換
+     * @param v 元のベクトル
+     * @return 倍精度のベクトル
+     */
+    public static double[] toDouble(float[] v) {
+        double[] out = new double[v.length];
+        for (int i = 0; i < v.length; i++) {
+            out[i] = v[i];
+        }
+        return out;
+    }
+
+    /**
+     * 単精度の行列を倍精度に変換
+     * @param m 元の行列
+     * @return 倍精度の行列
+     */
+    public static double[][] toDouble(float[][] m) {
+        double[][] out = new double[m.length][];
+        for (int i = 0; i < m.length; i++) {
+            out[i] = toDouble(m[i]);
+        }
+        return out;
+    }
 }
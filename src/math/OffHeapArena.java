@@ -0,0 +1,126 @@
+package math;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ヒープ外メモリの確保と解放をまとめて管理する領域
+ *
+ * 大きな重み・中間結果・学習データをJavaヒープの外に置き、GCの走査とコピーの対象から外す。
+ * この領域から確保した {@link OffHeapTensor} は close() でまとめて解放され、
+ * その後にアクセスすると IllegalStateException になる（解放後の使用を検出する）。
+ * try-with-resources で寿命を明示して使う:
+ * <pre>
+ * try (OffHeapArena arena = new OffHeapArena()) {
+ *     OffHeapTensor images = arena.allocate(6000, 1, 28, 28);
+ *     ...
+ * }
+ * </pre>
+ *
+ * 実装は直接バッファ（ByteBuffer.allocateDirect）で、close() のときに
+ * sun.misc.Unsafe#invokeCleaner で即座にメモリを返す。これが使えない環境では、
+ * 解放は参照がなくなった後のGCに任せる（解放後の使用の検出は同じく行う）。
+ * 1つの領域は1つのスレッドから使うこと（close() と他スレッドのアクセスは同期しない）。
+ */
+public final class OffHeapArena implements AutoCloseable {
+
+    private static final Method INVOKE_CLEANER;
+    private static final Object UNSAFE;
+
+    static {
+        Method method = null;
+        Object unsafe = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            method = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            method = null;
+            unsafe = null;
+        }
+        INVOKE_CLEANER = method;
+        UNSAFE = unsafe;
+    }
+
+    private final List<ByteBuffer> buffers = new ArrayList<>();
+    private long allocatedBytes;
+    private boolean alive = true;
+
+    /**
+     * テンソルを確保（ゼロ初期化済み）
+     * @param shape 各次元の大きさ（行優先で並べる）
+     * @return 確保したテンソル
+     */
+    public OffHeapTensor allocate(int... shape) {
+        checkAlive();
+        long size = 1;
+        for (int dim : shape) {
+            if (dim < 0) {
+                throw new IllegalArgumentException("Negative dimension: " + dim);
+            }
+            size *= dim;
+        }
+        if (size * Double.BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Tensor too large for a single buffer: " + size + " elements");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) size * Double.BYTES).order(ByteOrder.nativeOrder());
+        buffers.add(buffer);
+        allocatedBytes += buffer.capacity();
+
+        return new OffHeapTensor(this, buffer.asDoubleBuffer(), shape.clone());
+    }
+
+    /**
+     * まだ解放されていないかどうか
+     */
+    public boolean isAlive() {
+        return alive;
+    }
+
+    /**
+     * この領域から確保したバイト数の合計
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * 確保したメモリをすべて解放する（2回目以降の呼び出しは何もしない）
+     */
+    @Override
+    public void close() {
+        if (!alive) {
+            return;
+        }
+        alive = false;
+        for (ByteBuffer buffer : buffers) {
+            free(buffer);
+        }
+        buffers.clear();
+    }
+
+    // テンソルの各アクセスから呼ばれる（解放済みのメモリを読ませない）
+    void checkAlive() {
+        if (!alive) {
+            throw new IllegalStateException("Off-heap arena already closed");
+        }
+    }
+
+    private static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+            // 解放できなかった分はGCに任せる
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package math;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * ヒープ外メモリ上の多次元配列（行優先、隙間なし）
+ *
+ * {@link OffHeapArena#allocate(int...)} で作成し、寿命は確保した領域に従う。
+ * 領域を閉じた後のアクセスはすべて IllegalStateException になる。
+ * 既存のカーネル（Matrix / Tensor / ConvolutionOps）はヒープ上の配列を受け取るので、
+ * 1サンプル分や1行分を copyTo で使い回しの配列に読み出してから渡す。
+ * 行列×ベクトルは dotMVInto でヒープに読み出さずに直接計算できる。
+ */
+public final class OffHeapTensor {
+
+    private final OffHeapArena arena;
+    private final DoubleBuffer data;
+    private final int offset;
+    private final int[] shape;
+    private final int size;
+
+    OffHeapTensor(OffHeapArena arena, DoubleBuffer data, int[] shape) {
+        this(arena, data, 0, shape);
+    }
+
+    private OffHeapTensor(OffHeapArena arena, DoubleBuffer data, int offset, int[] shape) {
+        int n = 1;
+        for (int dim : shape) {
+            n *= dim;
+        }
+        this.arena = arena;
+        this.data = data;
+        this.offset = offset;
+        this.shape = shape;
+        this.size = n;
+    }
+
+    // アクセサ
+    public int getRank() { return shape.length; }
+    public int getSize() { return size; }
+    public int getDim(int axis) { return shape[axis]; }
+    public int[] getShape() { return shape.clone(); }
+    public OffHeapArena getArena() { return arena; }
+
+    /**
+     * 使用中のバイト数
+     */
+    public long getBytes() {
+        return (long) size * Double.BYTES;
+    }
+
+    /**
+     * 先頭の次元で i 番目の部分を取り出す（コピーせず同じメモリを参照する）
+     * 例: [6000][1][28][28] の slice(i) は i 枚目の画像 [1][28][28]
+     * @param i 先頭の次元の位置
+     * @return 部分テンソル
+     */
+    public OffHeapTensor slice(int i) {
+        arena.checkAlive();
+        if (shape.length == 0 || i < 0 || i >= shape[0]) {
+            throw new IndexOutOfBoundsException("Slice " + i + " out of range for dimension "
+                    + (shape.length == 0 ? 0 : shape[0]));
+        }
+        int[] subShape = Arrays.copyOfRange(shape, 1, shape.length);
+        return new OffHeapTensor(arena, data, offset + i * (size / shape[0]), subShape);
+    }
+
+    /**
+     * 通し番号で要素を取得
+     */
+    public double get(int index) {
+        arena.checkAlive();
+        checkIndex(index, 1);
+        return data.get(offset + index);
+    }
+
+    /**
+     * 通し番号で要素を設定
+     */
+    public void set(int index, double value) {
+        arena.checkAlive();
+        checkIndex(index, 1);
+        data.put(offset + index, value);
+    }
+
+    /**
+     * 2次元テンソルの要素を取得
+     */
+    public double get(int i, int j) {
+        return get(i * shape[1] + j);
+    }
+
+    /**
+     * 3次元テンソルの要素を取得
+     */
+    public double get(int c, int h, int w) {
+        return get((c * shape[1] + h) * shape[2] + w);
+    }
+
+    /**
+     * すべての要素を value にする
+     */
+    public void fill(double value) {
+        arena.checkAlive();
+        for (int k = 0; k < size; k++) {
+            data.put(offset + k, value);
+        }
+    }
+
+    /**
+     * ヒープ上の配列から連続した要素を書き込む
+     * @param src 読み出し元
+     * @param srcOff src の開始位置
+     * @param index 書き込み先の通し番号
+     * @param length 要素数
+     */
+    public void copyFrom(double[] src, int srcOff, int index, int length) {
+        arena.checkAlive();
+        checkIndex(index, length);
+        data.put(offset + index, src, srcOff, length);
+    }
+
+    /**
+     * 連続した要素をヒープ上の配列に読み出す
+     * @param index 読み出し元の通し番号
+     * @param dst 書き込み先
+     * @param dstOff dst の開始位置
+     * @param length 要素数
+     */
+    public void copyTo(int index, double[] dst, int dstOff, int length) {
+        arena.checkAlive();
+        checkIndex(index, length);
+        data.get(offset + index, dst, dstOff, length);
+    }
+
+    /**
+     * 3次元配列 [channels][height][width] の内容を書き込む（形状が一致すること）
+     * @param src 読み出し元
+     */
+    public void copyFrom(double[][][] src) {
+        checkShape3D(src.length, src[0].length, src[0][0].length);
+        int width = shape[2];
+        int k = 0;
+        for (double[][] plane : src) {
+            for (double[] row : plane) {
+                copyFrom(row, 0, k, width);
+                k += width;
+            }
+        }
+    }
+
+    /**
+     * 内容を3次元配列 [channels][height][width] に読み出す（形状が一致すること）
+     * 学習データを1サンプルずつ使い回しの配列に読み出して、既存のカーネルに渡すのに使う
+     * @param dst 書き込み先
+     * @return dst
+     */
+    public double[][][] copyTo(double[][][] dst) {
+        checkShape3D(dst.length, dst[0].length, dst[0][0].length);
+        int width = shape[2];
+        int k = 0;
+        for (double[][] plane : dst) {
+            for (double[] row : plane) {
+                copyTo(k, row, 0, width);
+                k += width;
+            }
+        }
+        return dst;
+    }
+
+    /**
+     * 2次元テンソル（行列）とベクトルの積を out に書き込む (out = this × v)
+     * ヒープにコピーせず、ヒープ外メモリを直接読む
+     * @param v ベクトル [cols]
+     * @param out 結果の書き込み先 [rows]
+     * @return out
+     */
+    public double[] dotMVInto(double[] v, double[] out) {
+        arena.checkAlive();
+        if (shape.length != 2 || shape[1] != v.length) {
+            throw new IllegalArgumentException("Shape mismatch: " + Arrays.toString(shape)
+                    + " * " + v.length);
+        }
+        int rows = shape[0];
+        int cols = shape[1];
+        for (int i = 0; i < rows; i++) {
+            int base = offset + i * cols;
+            double sum = 0.0;
+            for (int j = 0; j < cols; j++) {
+                sum += data.get(base + j) * v[j];
+            }
+            out[i] = sum;
+        }
+        return out;
+    }
+
+    private void checkIndex(int index, int length) {
+        if (index < 0 || length < 0 || index + length > size) {
+            throw new IndexOutOfBoundsException("Range [" + index + ", " + (index + length)
+                    + ") out of bounds for size " + size);
+        }
+    }
+
+    private void checkShape3D(int channels, int height, int width) {
+        if (shape.length != 3 || shape[0] != channels || shape[1] != height || shape[2] != width) {
+            throw new IllegalArgumentException("Shape mismatch: " + Arrays.toString(shape)
+                    + " vs [" + channels + ", " + height + ", " + width + "]");
+        }
+    }
+}
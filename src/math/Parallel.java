@@ -0,0 +1,136 @@
+package math;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 演算カーネルの並列実行
+ * 出力の行範囲をブロックに分割し、ForkJoinPoolで並列に処理する。
+ *
+ * スレッド数は次のいずれかで指定する（既定は利用可能なCPU数）。
+ * - システムプロパティ jeeplearning.threads
+ * - {@link #setThreads(int)}
+ * - {@link #setPool(ForkJoinPool)} で任意のプールを渡す
+ * スレッド数が1の場合はプールを使わず、呼び出し元のスレッドで直列に実行する。
+ */
+public final class Parallel {
+
+    /**
+     * 範囲 [from, to) を処理する本体
+     */
+    public interface RangeBody {
+        void run(int from, int to);
+    }
+
+    // 1タスクあたりの最小の積和回数。これ未満の演算は並列化せず直列に実行する
+    public static final long MIN_PARALLEL_WORK = 1L << 15;
+
+    private static volatile ForkJoinPool pool;
+    private static volatile int threads =
+            Math.max(1, Integer.getInteger("jeeplearning.threads",
+                    Runtime.getRuntime().availableProcessors()));
+
+    private Parallel() {
+    }
+
+    /**
+     * 並列実行に使うスレッド数を設定
+     * @param n スレッド数（1なら常に直列）
+     */
+    public static synchronized void setThreads(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + n);
+        }
+        ForkJoinPool old = pool;
+        threads = n;
+        pool = null;
+        if (old != null && old != ForkJoinPool.commonPool()) {
+            old.shutdown();
+        }
+    }
+
+    /**
+     * 並列実行に使うプールを設定（スレッド数はプールの並列度になる）
+     * @param p 使用するプール
+     */
+    public static synchronized void setPool(ForkJoinPool p) {
+        pool = p;
+        threads = p.getParallelism();
+    }
+
+    /**
+     * 現在のスレッド数
+     */
+    public static int getThreads() {
+        return threads;
+    }
+
+    /**
+     * 1要素あたりの演算量から、1タスクが受け持つ最小の要素数を求める
+     * @param workPerItem 1要素（1行など）あたりの積和回数
+     * @return 1タスクあたりの最小の要素数
+     */
+    public static int grainFor(long workPerItem) {
+        long grain = (MIN_PARALLEL_WORK + workPerItem - 1) / Math.max(1, workPerItem);
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, grain));
+    }
+
+    /**
+     * 範囲 [from, to) を grain 単位以上のブロックに分けて並列に処理する
+     * スレッド数が1、または範囲が grain 以下なら呼び出し元で直列に実行する
+     * @param from 開始位置
+     * @param to 終了位置（含まない）
+     * @param grain 1タスクあたりの最小の幅
+     * @param body 各ブロックの処理
+     */
+    public static void forRange(int from, int to, int grain, RangeBody body) {
+        int n = threads;
+        grain = Math.max(1, grain);
+        if (n == 1 || to - from <= grain) {
+            body.run(from, to);
+            return;
+        }
+        // スレッド数の数倍に分けて負荷の偏りをならす
+        int chunk = Math.max(grain, (to - from + 4 * n - 1) / (4 * n));
+        pool().invoke(new RangeTask(from, to, chunk, body));
+    }
+
+    private static ForkJoinPool pool() {
+        ForkJoinPool p = pool;
+        if (p == null) {
+            synchronized (Parallel.class) {
+                p = pool;
+                if (p == null) {
+                    p = new ForkJoinPool(threads);
+                    pool = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    private static final class RangeTask extends RecursiveAction {
+        private final int from, to, chunk;
+        private final RangeBody body;
+
+        RangeTask(int from, int to, int chunk, RangeBody body) {
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunk) {
+                body.run(from, to);
+                return;
+            }
+            // ブロック境界がchunkの倍数になるように分割
+            int blocks = (to - from + chunk - 1) / chunk;
+            int mid = from + (blocks / 2) * chunk;
+            invokeAll(new RangeTask(from, mid, chunk, body),
+                    new RangeTask(mid, to, chunk, body));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package math;
+
+import java.util.Arrays;
+
+/**
+ * 出力を分けて {@link Parallel} で並列に計算するバックエンド（名前は "parallel"）
+ * 行列積・行列×ベクトル・外積は出力の行ごとに、畳み込みは出力チャンネルごとに分ける。
+ * 結果はスレッド数によらず一致する。行列積はブロック化した積を行で分けるので、
+ * {@link ReferenceBackend} が Strassen 法を使う大きさでは丸め誤差の範囲で異なる。
+ * スレッド数が1のときは分割せず ReferenceBackend と同じ処理を呼ぶ。
+ * 小さな演算や要素ごとの演算・集約は ReferenceBackend のまま直列に計算する。
+ */
+public class ParallelBackend extends ReferenceBackend {
+
+    public static final String NAME = "parallel";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    // ===== 行列積・行列×ベクトル =====
+
+    @Override
+    public DenseMatrix dotInto(DenseMatrix a, DenseMatrix b, DenseMatrix out) {
+        if (Parallel.getThreads() == 1) {
+            return super.dotInto(a, b, out);
+        }
+        return a.parallelDotInto(b, out);
+    }
+
+    @Override
+    public double[] dotMVInto(DenseMatrix m, double[] v, double[] out) {
+        return m.parallelDotMVInto(v, out);
+    }
+
+    @Override
+    public double[] fusedDotMVInto(DenseMatrix m, double[] v, double[] bias, Activation activation,
+                                   double[] out, double[] deriv) {
+        return m.parallelFusedDotMVInto(v, bias, activation, out, deriv);
+    }
+
+    @Override
+    public DenseMatrix outerInto(double[] v1, double[] v2, DenseMatrix out) {
+        if (Parallel.getThreads() == 1) {
+            return super.outerInto(v1, v2, out);
+        }
+        if (out.getRows() != v1.length || out.getCols() != v2.length) {
+            throw new IllegalArgumentException("Shape mismatch: expected " + v1.length + "x"
+                    + v2.length + " but was " + out.getRows() + "x" + out.getCols());
+        }
+        Parallel.forRange(0, v1.length, Parallel.grainFor(v2.length), (from, to) ->
+                DenseMatrix.outerInto(v1, from, to, v2, out.view(from, 0, to - from, v2.length)));
+        return out;
+    }
+
+    // ===== 畳み込み =====
+
+    @Override
+    public double[][][] convolve3DInto(double[][][] input, double[][][][] kernels, double[] bias,
+                                       int stride, int padding, double[][][] output) {
+        if (Parallel.getThreads() == 1) {
+            return super.convolve3DInto(input, kernels, bias, stride, padding, output);
+        }
+        long work = (long) input.length * kernels[0][0].length * kernels[0][0][0].length
+                * output[0].length * output[0][0].length;
+        // 出力チャンネルの範囲ごとにカーネル・バイアス・出力の部分配列を渡す（要素はコピーしない）
+        Parallel.forRange(0, kernels.length, Parallel.grainFor(work), (from, to) ->
+                ConvolutionOps.convolve3DInto(input, Arrays.copyOfRange(kernels, from, to),
+                        bias == null ? null : Arrays.copyOfRange(bias, from, to), stride, padding,
+                        Arrays.copyOfRange(output, from, to)));
+        return output;
+    }
+
+    // ===== 単精度（float）版 =====
+
+    @Override
+    public float[] fusedDotMVInto(FloatDenseMatrix m, float[] v, float[] bias, Activation activation,
+                                  float[] out, float[] deriv) {
+        return m.parallelFusedDotMVInto(v, bias, activation, out, deriv);
+    }
+
+    @Override
+    public float[][][] convolve3DInto(float[][][] input, float[][][][] kernels, float[] bias,
+                                      int stride, int padding, float[][][] output) {
+        if (Parallel.getThreads() == 1) {
+            return super.convolve3DInto(input, kernels, bias, stride, padding, output);
+        }
+        long work = (long) input.length * kernels[0][0].length * kernels[0][0][0].length
+                * output[0].length * output[0][0].length;
+        Parallel.forRange(0, kernels.length, Parallel.grainFor(work), (from, to) ->
+                ConvolutionOps.convolve3DInto(input, Arrays.copyOfRange(kernels, from, to),
+                        bias == null ? null : Arrays.copyOfRange(bias, from, to), stride, padding,
+                        Arrays.copyOfRange(output, from, to)));
+        return output;
+    }
+}
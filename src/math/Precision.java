@@ -0,0 +1,24 @@
+package math;
+
+/**
+ * モデルの数値精度
+ * FLOAT にすると重み・中間結果・Adamのモーメントを単精度で持ち、
+ * メモリ量と転送量が半分になり、SIMDの1命令で処理できる要素数が倍になる。
+ */
+public enum Precision {
+    DOUBLE(Double.BYTES),
+    FLOAT(Float.BYTES);
+
+    private final int bytes;
+
+    Precision(int bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * 1要素あたりのバイト数
+     */
+    public int getBytes() {
+        return bytes;
+    }
+}
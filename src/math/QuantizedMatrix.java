@@ -0,0 +1,359 @@
+package math;
+
+import java.util.Arrays;
+
+/**
+ * 8ビット整数に量子化した密行列（推論用）
+ *
+ * 行（出力チャンネル）ごとに scale と zeroPoint を持ち、要素 (i, j) は
+ * w ≈ scales[i] * (data[i * cols + j] - zeroPoints[i]) を表す。
+ * 重みのバイト数は double の1/8、float の1/4 になる。
+ *
+ * 積は {@link QuantizedTensor} の入力と整数のまま計算し、32ビット整数で累積する。
+ * ゼロ点の補正は Σ(w - zw)(x - zx) = Σwx - zx Σw - zw Σx + n zw zx で行い、
+ * Σw は作成時に行ごとに求めておく。結果は実数に戻す（dequantize）か、
+ * 出力側の scale と zeroPoint で8ビット整数に量子化し直す（requantize）。
+ */
+public class QuantizedMatrix {
+
+    private final byte[] data;
+    private final float[] scales;
+    private final int[] zeroPoints;
+    private final int[] rowSums;
+    private final int rows;
+    private final int cols;
+
+    private QuantizedMatrix(int rows, int cols) {
+        if (rows < 0 || cols < 0) {
+            throw new IllegalArgumentException("Invalid shape: rows=" + rows + ", cols=" + cols);
+        }
+        this.data = new byte[rows * cols];
+        this.scales = new float[rows];
+        this.zeroPoints = new int[rows];
+        this.rowSums = new int[rows];
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * 単精度の行列を行ごとの範囲で量子化して作成
+     * @param m 元の行列
+     * @return 量子化した行列
+     */
+    public static QuantizedMatrix of(FloatDenseMatrix m) {
+        QuantizedMatrix result = new QuantizedMatrix(m.getRows(), m.getCols());
+        float[] row = new float[m.getCols()];
+        for (int i = 0; i < result.rows; i++) {
+            System.arraycopy(m.getData(), i * result.cols, row, 0, result.cols);
+            result.quantizeRow(i, row);
+        }
+        return result;
+    }
+
+    /**
+     * 倍精度の行列を行ごとの範囲で量子化して作成
+     * @param m 元の行列
+     * @return 量子化した行列
+     */
+    public static QuantizedMatrix of(DenseMatrix m) {
+        QuantizedMatrix result = new QuantizedMatrix(m.getRows(), m.getCols());
+        float[] row = new float[m.getCols()];
+        for (int i = 0; i < result.rows; i++) {
+            for (int j = 0; j < result.cols; j++) {
+                row[j] = (float) m.get(i, j);
+            }
+            result.quantizeRow(i, row);
+        }
+        return result;
+    }
+
+    /**
+     * 畳み込みのカーネルを出力チャンネルごとに量子化して作成
+     * 行 oc に kernels[oc] を [inputChannels][kernelHeight][kernelWidth] の順に並べる
+     * （ConvolutionOps の8ビット整数版の convolve3DInto で使う）
+     * @param kernels カーネル [outputChannels][inputChannels][kernelHeight][kernelWidth]
+     * @return 量子化した行列 [outputChannels][inputChannels * kernelHeight * kernelWidth]
+     */
+    public static QuantizedMatrix ofKernels(float[][][][] kernels) {
+        int inputChannels = kernels[0].length;
+        int kernelHeight = kernels[0][0].length;
+        int kernelWidth = kernels[0][0][0].length;
+        QuantizedMatrix result = new QuantizedMatrix(kernels.length, inputChannels * kernelHeight * kernelWidth);
+        float[] row = new float[result.cols];
+        for (int oc = 0; oc < kernels.length; oc++) {
+            int k = 0;
+            for (float[][] kernel : kernels[oc]) {
+                for (float[] kRow : kernel) {
+                    System.arraycopy(kRow, 0, row, k, kernelWidth);
+                    k += kernelWidth;
+                }
+            }
+            result.quantizeRow(oc, row);
+        }
+        return result;
+    }
+
+    private void quantizeRow(int i, float[] row) {
+        float min = 0.0f, max = 0.0f;
+        for (float v : row) {
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+        float scale = QuantizedTensor.scaleFor(min, max);
+        int zeroPoint = QuantizedTensor.zeroPointFor(min, scale);
+        int sum = 0;
+        for (int j = 0; j < cols; j++) {
+            byte q = QuantizedTensor.quantize(row[j], scale, zeroPoint);
+            data[i * cols + j] = q;
+            sum += q;
+        }
+        scales[i] = scale;
+        zeroPoints[i] = zeroPoint;
+        rowSums[i] = sum;
+    }
+
+    /**
+     * 単精度の行列に戻す
+     * @return 実数に戻した行列
+     */
+    public FloatDenseMatrix toFloat() {
+        FloatDenseMatrix result = new FloatDenseMatrix(rows, cols);
+        float[] out = result.getData();
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                out[i * cols + j] = scales[i] * (data[i * cols + j] - zeroPoints[i]);
+            }
+        }
+        return result;
+    }
+
+    // アクセサ
+    public int getRows() { return rows; }
+    public int getCols() { return cols; }
+    public byte[] getData() { return data; }
+    public float[] getScales() { return scales; }
+    public int[] getZeroPoints() { return zeroPoints; }
+
+    /**
+     * 行 i の要素の総和 Σ data[i * cols + j]（ゼロ点の補正用）
+     */
+    int getRowSum(int i) {
+        return rowSums[i];
+    }
+
+    /**
+     * 重みと量子化パラメータのバイト数
+     */
+    public long getBytes() {
+        return data.length + (long) rows * (Float.BYTES + 2 * Integer.BYTES);
+    }
+
+    /**
+     * 行列とベクトルの積を実数に戻して out に書き込む
+     * out[i] = activation(Σ w[i][j] x[j] + bias[i])
+     * @param x 量子化したベクトル [cols]
+     * @param bias バイアス [rows]（null なら加算しない）
+     * @param activation 活性化関数
+     * @param out 書き込み先 [rows]
+     * @return out
+     */
+    public float[] dotMVInto(QuantizedTensor x, float[] bias, Activation activation, float[] out) {
+        BufferPool pool = BufferPool.local();
+        int mark = pool.mark();
+        try {
+            int[] acc = accumulateMV(x, pool.borrowInt(rows));
+            float xScale = x.getScale();
+            for (int i = 0; i < rows; i++) {
+                float z = scales[i] * xScale * acc[i] + (bias == null ? 0.0f : bias[i]);
+                out[i] = (float) activation.apply(z);
+            }
+        } finally {
+            pool.release(mark);
+        }
+        return out;
+    }
+
+    /**
+     * 行列とベクトルの積を out の scale と zeroPoint で量子化し直して書き込む
+     * @param x 量子化したベクトル [cols]
+     * @param bias バイアス [rows]（null なら加算しない）
+     * @param activation 活性化関数
+     * @param out 書き込み先 [rows]（量子化パラメータは呼び出し側で決めておく）
+     * @return out
+     */
+    public QuantizedTensor dotMVInto(QuantizedTensor x, float[] bias, Activation activation,
+                                     QuantizedTensor out) {
+        BufferPool pool = BufferPool.local();
+        int mark = pool.mark();
+        try {
+            int[] acc = accumulateMV(x, pool.borrowInt(rows));
+            requantize(acc, -1, x.getScale(), bias, activation, out.getData(), 0, rows, out);
+        } finally {
+            pool.release(mark);
+        }
+        return out;
+    }
+
+    /**
+     * 行列とベクトルの積（実数に戻した結果）
+     */
+    public float[] dotMV(QuantizedTensor x) {
+        return dotMVInto(x, null, Activation.IDENTITY, new float[rows]);
+    }
+
+    /**
+     * ゼロ点を補正した整数の積 acc[i] = Σ (w[i][j] - zw[i]) (x[j] - zx) を求める
+     */
+    private int[] accumulateMV(QuantizedTensor x, int[] acc) {
+        if (x.getSize() != cols) {
+            throw new IllegalArgumentException("Shape mismatch: " + rows + "x" + cols + " * " + x.getSize());
+        }
+        ElementKernels kernels = Kernels.get();
+        byte[] v = x.getData();
+        int xZero = x.getZeroPoint();
+        int xSum = 0;
+        for (byte b : v) {
+            xSum += b;
+        }
+        for (int i = 0; i < rows; i++) {
+            int raw = kernels.dotInt8(data, i * cols, v, 0, cols);
+            acc[i] = correct(i, raw, xZero, xSum);
+        }
+        return acc;
+    }
+
+    /**
+     * 行列積を実数に戻して out に書き込む (out = activation(this × b + bias))
+     * @param b 量子化した行列 [cols][n]
+     * @param bias 行ごとのバイアス [rows]（null なら加算しない）
+     * @param activation 活性化関数
+     * @param out 書き込み先 [rows][n]
+     * @return out
+     */
+    public FloatDenseMatrix dotInto(QuantizedTensor b, float[] bias, Activation activation,
+                                    FloatDenseMatrix out) {
+        int n = checkRightOperand(b);
+        BufferPool pool = BufferPool.local();
+        int mark = pool.mark();
+        try {
+            int[] colSums = columnSums(b, pool.borrowInt(n));
+            int[] acc = pool.borrowInt(n);
+            float[] result = out.getData();
+            float bScale = b.getScale();
+            for (int i = 0; i < rows; i++) {
+                accumulateRow(i, b, colSums, acc);
+                float scale = scales[i] * bScale;
+                float offset = bias == null ? 0.0f : bias[i];
+                for (int j = 0; j < n; j++) {
+                    result[i * n + j] = (float) activation.apply(scale * acc[j] + offset);
+                }
+            }
+        } finally {
+            pool.release(mark);
+        }
+        return out;
+    }
+
+    /**
+     * 行列積を out の scale と zeroPoint で量子化し直して書き込む
+     * @param b 量子化した行列 [cols][n]
+     * @param bias 行ごとのバイアス [rows]（null なら加算しない）
+     * @param activation 活性化関数
+     * @param out 書き込み先 [rows][n]
+     * @return out
+     */
+    public QuantizedTensor dotInto(QuantizedTensor b, float[] bias, Activation activation,
+                                   QuantizedTensor out) {
+        int n = checkRightOperand(b);
+        BufferPool pool = BufferPool.local();
+        int mark = pool.mark();
+        try {
+            int[] colSums = columnSums(b, pool.borrowInt(n));
+            int[] acc = pool.borrowInt(n);
+            for (int i = 0; i < rows; i++) {
+                accumulateRow(i, b, colSums, acc);
+                requantize(acc, i, b.getScale(), bias, activation, out.getData(), i * n, n, out);
+            }
+        } finally {
+            pool.release(mark);
+        }
+        return out;
+    }
+
+    private int checkRightOperand(QuantizedTensor b) {
+        if (b.getRank() != 2 || b.getDim(0) != cols) {
+            throw new IllegalArgumentException("Shape mismatch: " + rows + "x" + cols + " * "
+                    + Arrays.toString(b.getShape()));
+        }
+        return b.getDim(1);
+    }
+
+    private static int[] columnSums(QuantizedTensor b, int[] sums) {
+        int k = b.getDim(0);
+        int n = b.getDim(1);
+        byte[] bData = b.getData();
+        Arrays.fill(sums, 0);
+        for (int r = 0; r < k; r++) {
+            for (int j = 0; j < n; j++) {
+                sums[j] += bData[r * n + j];
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * 行 i と b の積を acc [n] に書き込む（ゼロ点は補正済み）
+     */
+    private void accumulateRow(int i, QuantizedTensor b, int[] colSums, int[] acc) {
+        ElementKernels kernels = Kernels.get();
+        int n = acc.length;
+        byte[] bData = b.getData();
+        Arrays.fill(acc, 0);
+        for (int k = 0; k < cols; k++) {
+            int w = data[i * cols + k];
+            if (w != 0) {
+                kernels.axpyInt8(w, bData, k * n, acc, 0, n);
+            }
+        }
+        int bZero = b.getZeroPoint();
+        for (int j = 0; j < n; j++) {
+            acc[j] = correct(i, acc[j], bZero, colSums[j]);
+        }
+    }
+
+    /**
+     * 生の整数の積からゼロ点の寄与を除く
+     * @param i 行
+     * @param raw Σ w[i][j] x[j]
+     * @param xZero 入力のゼロ点
+     * @param xSum Σ x[j]
+     * @return Σ (w[i][j] - zw[i]) (x[j] - xZero)
+     */
+    int correct(int i, int raw, int xZero, int xSum) {
+        int wZero = zeroPoints[i];
+        return raw - xZero * rowSums[i] - wZero * xSum + cols * wZero * xZero;
+    }
+
+    /**
+     * 補正済みの整数の積を実数に戻し、バイアスと活性化関数を適用して out の量子化パラメータで詰める
+     * @param acc 補正済みの積
+     * @param row 全要素が同じ行の結果ならその行、-1 なら要素 k が行 k の結果
+     * @param xScale 入力の scale
+     * @param bias バイアス
+     * @param activation 活性化関数
+     * @param dst 書き込み先
+     * @param dstOff dst の開始位置
+     * @param length 要素数
+     * @param out 出力の量子化パラメータ
+     */
+    void requantize(int[] acc, int row, float xScale, float[] bias, Activation activation,
+                    byte[] dst, int dstOff, int length, QuantizedTensor out) {
+        float outScale = out.getScale();
+        int outZero = out.getZeroPoint();
+        for (int k = 0; k < length; k++) {
+            int i = row >= 0 ? row : k;
+            float z = scales[i] * xScale * acc[k] + (bias == null ? 0.0f : bias[i]);
+            dst[dstOff + k] = QuantizedTensor.quantize((float) activation.apply(z), outScale, outZero);
+        }
+    }
+}
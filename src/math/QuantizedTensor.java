@@ -0,0 +1,202 @@
+package math;
+
+import java.util.Arrays;
+
+/**
+ * 8ビット整数に量子化した多次元配列（行優先、隙間なし）
+ *
+ * 実数 x は x ≈ scale * (q - zeroPoint) で表す（q は -128〜127）。
+ * scale と zeroPoint はテンソル全体で1組（活性値用。重みは {@link QuantizedMatrix} が行ごとに持つ）。
+ * 表せる範囲には必ず 0 を含めるので、0 は誤差なく zeroPoint になり、
+ * パディングや ReLU の下限は zeroPoint で表せる。
+ */
+public final class QuantizedTensor {
+
+    public static final int QMIN = -128;
+    public static final int QMAX = 127;
+
+    private final byte[] data;
+    private final int[] shape;
+    private final float scale;
+    private final int zeroPoint;
+
+    /**
+     * ゼロ（= zeroPoint）で埋めたテンソルを作成
+     * @param scale 量子化の刻み幅
+     * @param zeroPoint 実数の 0 に対応する整数
+     * @param shape 各次元の大きさ
+     */
+    public QuantizedTensor(float scale, int zeroPoint, int... shape) {
+        this(new byte[sizeOf(shape)], scale, zeroPoint, shape.clone());
+        Arrays.fill(data, (byte) zeroPoint);
+    }
+
+    private QuantizedTensor(byte[] data, float scale, int zeroPoint, int[] shape) {
+        if (!(scale > 0) || zeroPoint < QMIN || zeroPoint > QMAX) {
+            throw new IllegalArgumentException("Invalid quantization: scale=" + scale + ", zeroPoint=" + zeroPoint);
+        }
+        this.data = data;
+        this.shape = shape;
+        this.scale = scale;
+        this.zeroPoint = zeroPoint;
+    }
+
+    /**
+     * 実数の範囲 [min, max] を表せるテンソルを作成（範囲は 0 を含むように広げる）
+     * @param min 表したい最小値
+     * @param max 表したい最大値
+     * @param shape 各次元の大きさ
+     * @return 作成したテンソル
+     */
+    public static QuantizedTensor forRange(float min, float max, int... shape) {
+        float scale = scaleFor(min, max);
+        return new QuantizedTensor(scale, zeroPointFor(min, scale), shape);
+    }
+
+    /**
+     * ベクトルを値の範囲に合わせて量子化
+     * @param x 元のベクトル
+     * @return 量子化したテンソル [x.length]
+     */
+    public static QuantizedTensor quantize(float[] x) {
+        float min = 0.0f, max = 0.0f;
+        for (float v : x) {
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+        return forRange(min, max, x.length).quantizeFrom(x);
+    }
+
+    /**
+     * 3次元配列を値の範囲に合わせて量子化
+     * @param x 元のテンソル [channels][height][width]
+     * @return 量子化したテンソル
+     */
+    public static QuantizedTensor quantize(float[][][] x) {
+        float min = 0.0f, max = 0.0f;
+        for (float[][] plane : x) {
+            for (float[] row : plane) {
+                for (float v : row) {
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+            }
+        }
+        return forRange(min, max, x.length, x[0].length, x[0][0].length).quantizeFrom(x);
+    }
+
+    // アクセサ
+    public byte[] getData() { return data; }
+    public float getScale() { return scale; }
+    public int getZeroPoint() { return zeroPoint; }
+    public int getRank() { return shape.length; }
+    public int getDim(int axis) { return shape[axis]; }
+    public int[] getShape() { return shape.clone(); }
+    public int getSize() { return data.length; }
+
+    /**
+     * 同じデータを別の形状として見る（コピーしない）
+     * 例: [32][8][8] の reshape(2048) は全結合層への入力
+     * @param newShape 新しい形状（要素数が同じであること）
+     * @return 形状だけ異なるテンソル
+     */
+    public QuantizedTensor reshape(int... newShape) {
+        if (sizeOf(newShape) != data.length) {
+            throw new IllegalArgumentException("Cannot reshape " + Arrays.toString(shape)
+                    + " to " + Arrays.toString(newShape));
+        }
+        return new QuantizedTensor(data, scale, zeroPoint, newShape.clone());
+    }
+
+    /**
+     * 実数のベクトルをこのテンソルの scale と zeroPoint で量子化して書き込む
+     * @param x 元のベクトル（要素数が同じであること）
+     * @return this
+     */
+    public QuantizedTensor quantizeFrom(float[] x) {
+        checkSize(x.length);
+        for (int i = 0; i < x.length; i++) {
+            data[i] = quantize(x[i], scale, zeroPoint);
+        }
+        return this;
+    }
+
+    /**
+     * 3次元配列をこのテンソルの scale と zeroPoint で量子化して書き込む
+     * @param x 元のテンソル（要素数が同じであること）
+     * @return this
+     */
+    public QuantizedTensor quantizeFrom(float[][][] x) {
+        checkSize(x.length * x[0].length * x[0][0].length);
+        int k = 0;
+        for (float[][] plane : x) {
+            for (float[] row : plane) {
+                for (float v : row) {
+                    data[k++] = quantize(v, scale, zeroPoint);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 実数に戻したベクトルを out に書き込む
+     * @param out 書き込み先 [getSize()]
+     * @return out
+     */
+    public float[] dequantizeInto(float[] out) {
+        checkSize(out.length);
+        for (int i = 0; i < data.length; i++) {
+            out[i] = scale * (data[i] - zeroPoint);
+        }
+        return out;
+    }
+
+    /**
+     * 実数に戻したベクトル
+     */
+    public float[] dequantize() {
+        return dequantizeInto(new float[data.length]);
+    }
+
+    /**
+     * 範囲 [min, max]（0 を含むように広げる）を256段階で表す刻み幅
+     */
+    static float scaleFor(float min, float max) {
+        float range = Math.max(max, 0.0f) - Math.min(min, 0.0f);
+        return range > 0 ? range / (QMAX - QMIN) : 1.0f;
+    }
+
+    /**
+     * min が QMIN に対応するような zeroPoint
+     */
+    static int zeroPointFor(float min, float scale) {
+        int zeroPoint = QMIN - Math.round(Math.min(min, 0.0f) / scale);
+        return Math.max(QMIN, Math.min(QMAX, zeroPoint));
+    }
+
+    /**
+     * 実数1つを量子化（範囲外の値は端に丸める）
+     */
+    static byte quantize(float x, float scale, int zeroPoint) {
+        int q = Math.round(x / scale) + zeroPoint;
+        return (byte) Math.max(QMIN, Math.min(QMAX, q));
+    }
+
+    private static int sizeOf(int[] shape) {
+        int n = 1;
+        for (int dim : shape) {
+            if (dim < 0) {
+                throw new IllegalArgumentException("Negative dimension: " + dim);
+            }
+            n *= dim;
+        }
+        return n;
+    }
+
+    private void checkSize(int size) {
+        if (size != data.length) {
+            throw new IllegalArgumentException("Size mismatch: " + size + " vs " + Arrays.toString(shape));
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package math;
+
+/**
+ * 軸方向の集約の種類（{@link Reductions#reduceInto} で使う）
+ */
+public enum ReduceOp {
+    SUM,
+    MEAN,
+    MIN,
+    MAX,
+    /** 母分散（個数で割る） */
+    VARIANCE
+}
@@ -0,0 +1,464 @@
+package math;
+
+import java.util.Arrays;
+
+/**
+ * 配列・テンソルの集約（総和・統計量・最大値の位置・上位k個・logsumexp・軸方向の集約）
+ *
+ * 大きな配列の総和と {@link Statistics} は {@link #BLOCK} 要素のブロックに分けて求め、
+ * ブロックの結果を先頭から順に結合する。ブロックの境界と結合の順はスレッド数によらないので、
+ * {@link Parallel} で並列に計算しても直列と同じ結果になる。並列化するのは
+ * {@link Parallel#MIN_PARALLEL_WORK} を超える大きさの配列だけで、小さな配列は呼び出し元で直列に計算する。
+ */
+public class Reductions {
+
+    /** 集約を分けるブロックの要素数 */
+    public static final int BLOCK = 4096;
+
+    // ===== 1次元配列 =====
+
+    /**
+     * 総和
+     */
+    public static double sum(double[] v) {
+        return sum(v, 0, v.length);
+    }
+
+    /**
+     * 範囲 [from, to) の総和（ブロックごとの和を順に足す）
+     */
+    public static double sum(double[] v, int from, int to) {
+        int blocks = (to - from + BLOCK - 1) / BLOCK;
+        if (blocks <= 1) {
+            return blockSum(v, from, to);
+        }
+        double[] partial = new double[blocks];
+        Parallel.forRange(0, blocks, Parallel.grainFor(BLOCK), (b0, b1) -> {
+            for (int b = b0; b < b1; b++) {
+                int start = from + b * BLOCK;
+                partial[b] = blockSum(v, start, Math.min(to, start + BLOCK));
+            }
+        });
+        double sum = 0.0;
+        for (double p : partial) {
+            sum += p;
+        }
+        return sum;
+    }
+
+    /**
+     * 統計量（個数・総和・平均・分散・最小値・最大値とその位置）を1回の走査で求める
+     */
+    public static Statistics statistics(double[] v) {
+        return statistics(v, 0, v.length);
+    }
+
+    /**
+     * 範囲 [from, to) の統計量（最小値・最大値の位置は from からの位置）
+     */
+    public static Statistics statistics(double[] v, int from, int to) {
+        int blocks = (to - from + BLOCK - 1) / BLOCK;
+        if (blocks <= 1) {
+            return new Statistics().accept(v, from, to);
+        }
+        Statistics[] partial = new Statistics[blocks];
+        Parallel.forRange(0, blocks, Parallel.grainFor(BLOCK), (b0, b1) -> {
+            for (int b = b0; b < b1; b++) {
+                int start = from + b * BLOCK;
+                partial[b] = Statistics.block(v, start, 1, Math.min(to, start + BLOCK) - start);
+            }
+        });
+        Statistics result = new Statistics();
+        for (Statistics p : partial) {
+            result.combine(p);
+        }
+        return result;
+    }
+
+    /**
+     * 最大値
+     */
+    public static double max(double[] v) {
+        return max(v, 0, v.length);
+    }
+
+    /**
+     * 範囲 [from, to) の最大値（空なら負の無限大。NaN は無視する）
+     * Math.max の倍精度の集約は NaN と -0.0 の扱いのため遅いので、比較で選ぶ
+     */
+    public static double max(double[] v, int from, int to) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            max = v[i] > max ? v[i] : max;
+        }
+        return max;
+    }
+
+    /**
+     * 範囲 [from, to) の最大値（単精度）
+     */
+    public static float max(float[] v, int from, int to) {
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            max = v[i] > max ? v[i] : max;
+        }
+        return max;
+    }
+
+    /**
+     * 最小値
+     */
+    public static double min(double[] v) {
+        return min(v, 0, v.length);
+    }
+
+    /**
+     * 範囲 [from, to) の最小値（空なら正の無限大。NaN は無視する）
+     */
+    public static double min(double[] v, int from, int to) {
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            min = v[i] < min ? v[i] : min;
+        }
+        return min;
+    }
+
+    /**
+     * 最大値の位置（同じ値が複数あれば最初の位置）
+     */
+    public static int argmax(double[] v) {
+        return argmax(v, 0, v.length);
+    }
+
+    /**
+     * 範囲 [from, to) の最大値の位置（配列の添字。同じ値が複数あれば最初の位置）
+     */
+    public static int argmax(double[] v, int from, int to) {
+        if (to <= from) {
+            throw new IllegalArgumentException("Empty range: [" + from + ", " + to + ")");
+        }
+        int maxIndex = from;
+        double maxVal = v[from];
+        for (int i = from + 1; i < to; i++) {
+            if (v[i] > maxVal) {
+                maxVal = v[i];
+                maxIndex = i;
+            }
+        }
+        return maxIndex;
+    }
+
+    /**
+     * 範囲 [from, to) の最小値の位置（配列の添字。同じ値が複数あれば最初の位置）
+     */
+    public static int argmin(double[] v, int from, int to) {
+        if (to <= from) {
+            throw new IllegalArgumentException("Empty range: [" + from + ", " + to + ")");
+        }
+        int minIndex = from;
+        double minVal = v[from];
+        for (int i = from + 1; i < to; i++) {
+            if (v[i] < minVal) {
+                minVal = v[i];
+                minIndex = i;
+            }
+        }
+        return minIndex;
+    }
+
+    /**
+     * 大きい順の上位 k 個の位置（同じ値は位置の小さい方を先にする）
+     * 上位 k 個だけを整列したまま保持するので、大きな配列も1回の走査で済む
+     * @param v 値
+     * @param k 個数（配列の長さで切る）
+     * @return 大きい順の位置
+     */
+    public static int[] topK(double[] v, int k) {
+        k = Math.min(k, v.length);
+        int[] indices = new int[k];
+        int size = 0;
+        for (int i = 0; i < v.length; i++) {
+            // 末尾より大きい値だけを挿入する（同じ値は先に入った方を上位のままにする）
+            if (size == k && (k == 0 || !(v[i] > v[indices[k - 1]]))) {
+                continue;
+            }
+            int pos = size < k ? size++ : k - 1;
+            while (pos > 0 && v[i] > v[indices[pos - 1]]) {
+                indices[pos] = indices[pos - 1];
+                pos--;
+            }
+            indices[pos] = i;
+        }
+        return indices;
+    }
+
+    /**
+     * v[index] が大きい順で何番目か（0 始まり。同じ値は位置の小さい方を上位とする）
+     * rankOf(v, i) < k は i が {@link #topK(double[], int)} に含まれることと同じ
+     */
+    public static int rankOf(double[] v, int index) {
+        double x = v[index];
+        int rank = 0;
+        for (int i = 0; i < v.length; i++) {
+            if (v[i] > x || (v[i] == x && i < index)) {
+                rank++;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * log Σ exp(v[i]) を1回の走査で求める
+     * 最大値を更新しながら、それまでの和をその最大値の基準に直して足す（オーバーフローしない）
+     */
+    public static double logSumExp(double[] v, int from, int to) {
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0.0;
+        for (int i = from; i < to; i++) {
+            double x = v[i];
+            if (x > max) {
+                sum = sum * Math.exp(max - x) + 1.0;
+                max = x;
+            } else {
+                sum += Math.exp(x - max);
+            }
+        }
+        return max + Math.log(sum);
+    }
+
+    /**
+     * log Σ exp(v[i])（単精度の入力、計算は倍精度）
+     */
+    public static double logSumExp(float[] v, int from, int to) {
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0.0;
+        for (int i = from; i < to; i++) {
+            double x = v[i];
+            if (x > max) {
+                sum = sum * Math.exp(max - x) + 1.0;
+                max = x;
+            } else {
+                sum += Math.exp(x - max);
+            }
+        }
+        return max + Math.log(sum);
+    }
+
+    // ===== テンソル =====
+
+    /**
+     * テンソル全体の統計量（ビューでもよい。位置は行優先の通し番号）
+     */
+    public static Statistics statistics(Tensor t) {
+        if (t.isContiguous()) {
+            return statistics(t.getData(), t.getOffset(), t.getOffset() + t.getSize());
+        }
+        Statistics result = new Statistics();
+        int last = t.getRank() - 1;
+        int width = t.getDim(last);
+        int stride = t.getStride(last);
+        forEachRow(t, null, (from, unused) -> result.accept(t.getData(), from, stride, width));
+        return result;
+    }
+
+    /**
+     * axis 方向の集約を out に書き込む
+     * 最後の軸は行ごとに、それ以外の軸は axis 方向の各スライスを {@link BroadcastOps} で
+     * 出力に順に畳み込む（スライスの中は連続した行のループになる）
+     * @param op 集約の種類
+     * @param input 入力
+     * @param axis 集約する軸
+     * @param out 書き込み先（input の axis の大きさを1にした形状）
+     * @return out
+     */
+    public static Tensor reduceInto(ReduceOp op, Tensor input, int axis, Tensor out) {
+        int n = checkReduced(input, axis, out);
+        if (axis == input.getRank() - 1) {
+            reduceRows(op, input, out);
+            return out;
+        }
+
+        switch (op) {
+            case MIN:
+            case MAX:
+                out.copyFrom(input.slice(axis, 0, 1));
+                BinaryOp combine = op == ReduceOp.MIN ? BinaryOp.MINIMUM : BinaryOp.MAXIMUM;
+                for (int i = 1; i < n; i++) {
+                    BroadcastOps.applyInPlace(combine, out, input.slice(axis, i, i + 1));
+                }
+                break;
+            case VARIANCE:
+                // 平均を求めてから偏差の二乗を足す（2回の走査。桁落ちしない）
+                Tensor mean = reduceInto(ReduceOp.MEAN, input, axis, new Tensor(out.getShape()));
+                Tensor deviation = new Tensor(out.getShape());
+                out.fill(0.0);
+                for (int i = 0; i < n; i++) {
+                    BroadcastOps.expression(input.slice(axis, i, i + 1)).then(BinaryOp.SUBTRACT, mean)
+                            .then(UnaryOp.SQUARE).evaluateInto(deviation);
+                    BroadcastOps.applyInPlace(BinaryOp.ADD, out, deviation);
+                }
+                BroadcastOps.applyInto(BinaryOp.DIVIDE, out, n, out);
+                break;
+            default:
+                out.copyFrom(input.slice(axis, 0, 1));
+                for (int i = 1; i < n; i++) {
+                    BroadcastOps.applyInPlace(BinaryOp.ADD, out, input.slice(axis, i, i + 1));
+                }
+                if (op == ReduceOp.MEAN) {
+                    BroadcastOps.applyInto(BinaryOp.DIVIDE, out, n, out);
+                }
+                break;
+        }
+        return out;
+    }
+
+    /**
+     * axis 方向の最大値の位置を out に書き込む
+     * @param input 入力
+     * @param axis 集約する軸
+     * @param out 書き込み先（axis を除いた形状の要素数。行優先の順）
+     * @return out
+     */
+    public static int[] argmaxInto(Tensor input, int axis, int[] out) {
+        int rank = input.getRank();
+        int n = input.getDim(axis);
+        if (n == 0) {
+            throw new IllegalArgumentException("Empty axis " + axis + " of " + input);
+        }
+        if (out.length != input.getSize() / n) {
+            throw new IllegalArgumentException("Expected " + input.getSize() / n + " outputs but got " + out.length);
+        }
+        // axis を最後に回したビューの行ごとに求める（他の軸の順は変えない）
+        int[] axes = new int[rank];
+        for (int a = 0, k = 0; a < rank; a++) {
+            if (a != axis) {
+                axes[k++] = a;
+            }
+        }
+        axes[rank - 1] = axis;
+        Tensor view = input.permute(axes);
+        double[] data = input.getData();
+        int stride = input.getStride(axis);
+        int[] row = {0};
+        forEachRow(view, null, (from, unused) -> {
+            int maxIndex = 0;
+            double maxVal = data[from];
+            for (int i = 1; i < n; i++) {
+                double x = data[from + i * stride];
+                if (x > maxVal) {
+                    maxVal = x;
+                    maxIndex = i;
+                }
+            }
+            out[row[0]++] = maxIndex;
+        });
+        return out;
+    }
+
+    // ===== 内部処理 =====
+
+    private static double blockSum(double[] v, int from, int to) {
+        double sum = 0.0;
+        for (int i = from; i < to; i++) {
+            sum += v[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 最後の軸を行ごとに集約する
+     */
+    private static void reduceRows(ReduceOp op, Tensor input, Tensor out) {
+        int last = input.getRank() - 1;
+        int width = input.getDim(last);
+        int stride = input.getStride(last);
+        double[] in = input.getData();
+        double[] result = out.getData();
+        Statistics stats = new Statistics();
+        forEachRow(input, out, (from, to) -> {
+            double value;
+            switch (op) {
+                case SUM:
+                case MEAN: {
+                    double sum = 0.0;
+                    for (int i = 0; i < width; i++) {
+                        sum += in[from + i * stride];
+                    }
+                    value = op == ReduceOp.SUM ? sum : sum / width;
+                    break;
+                }
+                case MIN: {
+                    double min = in[from];
+                    for (int i = 1; i < width; i++) {
+                        min = Math.min(min, in[from + i * stride]);
+                    }
+                    value = min;
+                    break;
+                }
+                case MAX: {
+                    double max = in[from];
+                    for (int i = 1; i < width; i++) {
+                        max = Math.max(max, in[from + i * stride]);
+                    }
+                    value = max;
+                    break;
+                }
+                default:
+                    value = stats.reset().accept(in, from, stride, width).getVariance();
+                    break;
+            }
+            result[to] = value;
+        });
+    }
+
+    private static int checkReduced(Tensor input, int axis, Tensor out) {
+        int[] expected = input.getShape();
+        if (axis < 0 || axis >= expected.length) {
+            throw new IllegalArgumentException("Invalid axis " + axis + " for " + input);
+        }
+        int n = expected[axis];
+        if (n == 0) {
+            throw new IllegalArgumentException("Empty axis " + axis + " of " + input);
+        }
+        expected[axis] = 1;
+        if (!Arrays.equals(expected, out.getShape())) {
+            throw new IllegalArgumentException("Shape mismatch: " + out + " vs "
+                    + Arrays.toString(expected));
+        }
+        return n;
+    }
+
+    private interface RowBody {
+        void run(int from, int to);
+    }
+
+    /**
+     * a の最後の次元を除いた添字を行優先で回し、各行の先頭位置を body に渡す
+     * b を渡すと、同じ添字の b の位置も渡す（b は最後の次元以外が a と同じ形状）
+     */
+    private static void forEachRow(Tensor a, Tensor b, RowBody body) {
+        int last = a.getRank() - 1;
+        if (last < 0) {
+            body.run(a.getOffset(), b == null ? 0 : b.getOffset());
+            return;
+        }
+        int width = a.getDim(last);
+        int rows = width == 0 ? 0 : a.getSize() / width;
+        int[] idx = new int[last];
+        int posA = a.getOffset();
+        int posB = b == null ? 0 : b.getOffset();
+        for (int r = 0; r < rows; r++) {
+            body.run(posA, posB);
+            for (int axis = last - 1; axis >= 0; axis--) {
+                posA += a.getStride(axis);
+                posB += b == null ? 0 : b.getStride(axis);
+                if (++idx[axis] < a.getDim(axis)) {
+                    break;
+                }
+                posA -= a.getStride(axis) * a.getDim(axis);
+                posB -= b == null ? 0 : b.getStride(axis) * a.getDim(axis);
+                idx[axis] = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package math;
+
+/**
+ * 基準となる計算バックエンド（名前は "reference"）
+ * 既存の Matrix / DenseMatrix / ConvolutionOps の直列の実装をそのまま呼ぶ。
+ * 内側ループは {@link Kernels} が選んだカーネルで計算する。
+ * 他のバックエンドの結果を確かめるときの基準にする。
+ */
+public class ReferenceBackend implements ComputeBackend {
+
+    public static final String NAME = "reference";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    // ===== 行列積・行列×ベクトル =====
+
+    @Override
+    public DenseMatrix dotInto(DenseMatrix a, DenseMatrix b, DenseMatrix out) {
+        return a.dotInto(b, out);
+    }
+
+    @Override
+    public double[] dotMVInto(DenseMatrix m, double[] v, double[] out) {
+        return m.dotMVInto(v, out);
+    }
+
+    @Override
+    public double[] fusedDotMVInto(DenseMatrix m, double[] v, double[] bias, Activation activation,
+                                   double[] out, double[] deriv) {
+        return m.fusedDotMVInto(v, bias, activation, out, deriv);
+    }
+
+    @Override
+    public double[] dotTMVInto(DenseMatrix m, double[] v, double[] out) {
+        return m.dotTMVInto(v, out);
+    }
+
+    @Override
+    public DenseMatrix outerInto(double[] v1, double[] v2, DenseMatrix out) {
+        return DenseMatrix.outerInto(v1, v2, out);
+    }
+
+    // ===== 畳み込み・プーリング =====
+
+    @Override
+    public double[][][] convolve3DInto(double[][][] input, double[][][][] kernels, double[] bias,
+                                       int stride, int padding, double[][][] output) {
+        return ConvolutionOps.convolve3DInto(input, kernels, bias, stride, padding, output);
+    }
+
+    @Override
+    public double[][][] maxPool3DInto(double[][][] input, int poolSize, int stride, double[][][] output) {
+        return ConvolutionOps.maxPool3DInto(input, poolSize, stride, output);
+    }
+
+    // ===== 要素ごとの演算 =====
+
+    @Override
+    public double[] addInto(double[] a, double[] b, double[] out) {
+        return Matrix.addVecInto(a, b, out);
+    }
+
+    @Override
+    public double[] hadamardInto(double[] a, double[] b, double[] out) {
+        return Matrix.hadamardInto(a, b, out);
+    }
+
+    @Override
+    public double[] scaleInto(double[] v, double scalar, double[] out) {
+        return Matrix.scaleVecInto(v, scalar, out);
+    }
+
+    // ===== 集約 =====
+
+    @Override
+    public double sum(double[] v) {
+        double sum = 0.0;
+        for (double x : v) {
+            sum += x;
+        }
+        return sum;
+    }
+
+    @Override
+    public double max(double[] v) {
+        return v[argmax(v)];
+    }
+
+    @Override
+    public int argmax(double[] v) {
+        if (v.length == 0) {
+            throw new IllegalArgumentException("Empty vector");
+        }
+        int maxIndex = 0;
+        for (int i = 1; i < v.length; i++) {
+            if (v[i] > v[maxIndex]) {
+                maxIndex = i;
+            }
+        }
+        return maxIndex;
+    }
+
+    // ===== 単精度（float）版 =====
+
+    @Override
+    public float[] fusedDotMVInto(FloatDenseMatrix m, float[] v, float[] bias, Activation activation,
+                                  float[] out, float[] deriv) {
+        return m.fusedDotMVInto(v, bias, activation, out, deriv);
+    }
+
+    @Override
+    public float[] dotTMVInto(FloatDenseMatrix m, float[] v, float[] out) {
+        return m.dotTMVInto(v, out);
+    }
+
+    @Override
+    public FloatDenseMatrix outerInto(float[] v1, float[] v2, FloatDenseMatrix out) {
+        return FloatDenseMatrix.outerInto(v1, v2, out);
+    }
+
+    @Override
+    public float[][][] convolve3DInto(float[][][] input, float[][][][] kernels, float[] bias,
+                                      int stride, int padding, float[][][] output) {
+        return ConvolutionOps.convolve3DInto(input, kernels, bias, stride, padding, output);
+    }
+
+    @Override
+    public float[][][] maxPool3DInto(float[][][] input, int poolSize, int stride, float[][][] output) {
+        return ConvolutionOps.maxPool3DInto(input, poolSize, stride, output);
+    }
+
+    @Override
+    public float[] hadamardInto(float[] a, float[] b, float[] out) {
+        if (a.length != b.length || out.length != a.length) {
+            throw new IllegalArgumentException("Length mismatch: " + a.length + ", " + b.length
+                    + ", " + out.length);
+        }
+        Kernels.get().multiply(a, 0, b, 0, out, 0, a.length);
+        return out;
+    }
+}
@@ -0,0 +1,185 @@
+package math;
+
+/**
+ * 通常のループによるカーネル（JITの自動ベクトル化に任せる）
+ */
+final class ScalarKernels implements ElementKernels {
+
+    @Override
+    public double dot(double[] a, int aOff, double[] b, int bOff, int length) {
+        double sum = 0.0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOff + i] * b[bOff + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void add(double[] a, int aOff, double[] b, int bOff, double[] out, int outOff, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOff + i] = a[aOff + i] + b[bOff + i];
+        }
+    }
+
+    @Override
+    public void multiply(double[] a, int aOff, double[] b, int bOff, double[] out, int outOff, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOff + i] = a[aOff + i] * b[bOff + i];
+        }
+    }
+
+    @Override
+    public void scale(double[] a, int aOff, double scalar, double[] out, int outOff, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOff + i] = a[aOff + i] * scalar;
+        }
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOff, double[] y, int yOff, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOff + i] += alpha * x[xOff + i];
+        }
+    }
+
+    @Override
+    public void multiplyAccumulate(double[] a, int aOff, int aStride, int m,
+                                   double[] x, int xOff, int xStride, int inner,
+                                   double[] y, int yOff, int yStride, int length) {
+        for (int i = 0; i < m; i++) {
+            int aRow = aOff + i * aStride;
+            int yRow = yOff + i * yStride;
+            for (int j = 0; j < length; j++) {
+                double sum = y[yRow + j];
+                for (int r = 0; r < inner; r++) {
+                    sum += a[aRow + r] * x[xOff + r * xStride + j];
+                }
+                y[yRow + j] = sum;
+            }
+        }
+    }
+
+    @Override
+    public float dot(float[] a, int aOff, float[] b, int bOff, int length) {
+        float sum = 0.0f;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOff + i] * b[bOff + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void add(float[] a, int aOff, float[] b, int bOff, float[] out, int outOff, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOff + i] = a[aOff + i] + b[bOff + i];
+        }
+    }
+
+    @Override
+    public void multiply(float[] a, int aOff, float[] b, int bOff, float[] out, int outOff, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOff + i] = a[aOff + i] * b[bOff + i];
+        }
+    }
+
+    @Override
+    public void scale(float[] a, int aOff, float scalar, float[] out, int outOff, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOff + i] = a[aOff + i] * scalar;
+        }
+    }
+
+    @Override
+    public void axpy(float alpha, float[] x, int xOff, float[] y, int yOff, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOff + i] += alpha * x[xOff + i];
+        }
+    }
+
+    @Override
+    public void multiplyAccumulate(float[] a, int aOff, int aStride, int m,
+                                   float[] x, int xOff, int xStride, int inner,
+                                   float[] y, int yOff, int yStride, int length) {
+        for (int i = 0; i < m; i++) {
+            int aRow = aOff + i * aStride;
+            int yRow = yOff + i * yStride;
+            for (int j = 0; j < length; j++) {
+                float sum = y[yRow + j];
+                for (int r = 0; r < inner; r++) {
+                    sum += a[aRow + r] * x[xOff + r * xStride + j];
+                }
+                y[yRow + j] = sum;
+            }
+        }
+    }
+
+    @Override
+    public float dotHalf(HalfFormat format, short[] a, int aOff, float[] b, int bOff, int length) {
+        // 4本の累積変数で加算の依存関係を分ける
+        float s0 = 0.0f, s1 = 0.0f, s2 = 0.0f, s3 = 0.0f;
+        int i = 0;
+        int bound = length & ~3;
+        if (format == HalfFormat.BF16) {
+            for (; i < bound; i += 4) {
+                s0 += HalfFormat.bf16ToFloat(a[aOff + i]) * b[bOff + i];
+                s1 += HalfFormat.bf16ToFloat(a[aOff + i + 1]) * b[bOff + i + 1];
+                s2 += HalfFormat.bf16ToFloat(a[aOff + i + 2]) * b[bOff + i + 2];
+                s3 += HalfFormat.bf16ToFloat(a[aOff + i + 3]) * b[bOff + i + 3];
+            }
+            for (; i < length; i++) {
+                s0 += HalfFormat.bf16ToFloat(a[aOff + i]) * b[bOff + i];
+            }
+        } else {
+            float[] table = HalfFormat.FP16_TABLE;
+            for (; i < bound; i += 4) {
+                s0 += table[a[aOff + i] & 0xffff] * b[bOff + i];
+                s1 += table[a[aOff + i + 1] & 0xffff] * b[bOff + i + 1];
+                s2 += table[a[aOff + i + 2] & 0xffff] * b[bOff + i + 2];
+                s3 += table[a[aOff + i + 3] & 0xffff] * b[bOff + i + 3];
+            }
+            for (; i < length; i++) {
+                s0 += table[a[aOff + i] & 0xffff] * b[bOff + i];
+            }
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    @Override
+    public void axpyHalf(HalfFormat format, float alpha, short[] x, int xOff, float[] y, int yOff, int length) {
+        if (format == HalfFormat.BF16) {
+            for (int i = 0; i < length; i++) {
+                y[yOff + i] += alpha * HalfFormat.bf16ToFloat(x[xOff + i]);
+            }
+        } else {
+            float[] table = HalfFormat.FP16_TABLE;
+            for (int i = 0; i < length; i++) {
+                y[yOff + i] += alpha * table[x[xOff + i] & 0xffff];
+            }
+        }
+    }
+
+    @Override
+    public int dotInt8(byte[] a, int aOff, byte[] b, int bOff, int length) {
+        // 整数の加算は順序によらないので、累積変数を分けても結果は同じ
+        int s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        int bound = length & ~3;
+        for (; i < bound; i += 4) {
+            s0 += a[aOff + i] * b[bOff + i];
+            s1 += a[aOff + i + 1] * b[bOff + i + 1];
+            s2 += a[aOff + i + 2] * b[bOff + i + 2];
+            s3 += a[aOff + i + 3] * b[bOff + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[aOff + i] * b[bOff + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    @Override
+    public void axpyInt8(int alpha, byte[] x, int xOff, int[] y, int yOff, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOff + i] += alpha * x[xOff + i];
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package math;
+
+import java.util.Arrays;
+
+/**
+ * 小さな固定サイズの行列向けに展開したカーネル
+ *
+ * 回帰ネットワーク（calc.Forward）の重みは 32x1、16x32、1x16 のように小さく、
+ * 汎用のループではループ制御と境界チェックの費用が積和そのものを上回る。
+ * そこで列数が 1、4、8、16、32 の場合に、内側のループを完全に展開した版を使う。
+ * 入力が1つの層（列数1）は積1回で済ませ、出力が1つの層（行数1）の転置積は
+ * 加算を省いて単純な倍に置き換える。
+ *
+ * 加算の順序は ScalarKernels と同じ（先頭から順に足す）なので、
+ * 通常のループ版カーネルを使っている場合は結果がビット単位で一致する。
+ * SIMD版カーネルが有効な場合、16列と32列は SIMD版の内積のほうが速いので展開版を使わない。
+ * Matrix の dotMVInto / dotTMVInto / outerInto が形状を見て自動的に選ぶ。
+ * 無効にするには -Djeeplearning.smallKernels=false または {@link #setEnabled(boolean)} を使う。
+ */
+public final class SmallKernels {
+
+    private static volatile boolean enabled =
+            Boolean.parseBoolean(System.getProperty("jeeplearning.smallKernels", "true"));
+
+    private SmallKernels() {
+    }
+
+    /**
+     * 展開版カーネルを使うかどうかを設定
+     * @param value false なら常に汎用のループを使う
+     */
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    /**
+     * 展開版カーネルが有効かどうか
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 列数 cols の行列に展開版カーネルがあるかどうか
+     * @param cols 行列の列数
+     * @return 展開版を使う場合 true
+     */
+    public static boolean supports(int cols) {
+        if (!enabled) {
+            return false;
+        }
+        if (cols == 1 || cols == 4 || cols == 8) {
+            return true;
+        }
+        // 16列以上は SIMD版の内積（複数の累積変数で加算の依存を分ける）のほうが速い
+        return (cols == 16 || cols == 32) && !Kernels.isSimdEnabled();
+    }
+
+    /**
+     * 行列とベクトルの積を out に書き込む (out = M × v)
+     * supports(v.length) が true の場合だけ呼ぶこと
+     * @param m 行列 [rows][cols]
+     * @param v ベクトル [cols]
+     * @param out 結果の書き込み先 [rows]
+     * @return out
+     */
+    public static double[] dotMVInto(double[][] m, double[] v, double[] out) {
+        int rows = m.length;
+        switch (v.length) {
+            case 1: {
+                double v0 = v[0];
+                for (int i = 0; i < rows; i++) {
+                    out[i] = m[i][0] * v0;
+                }
+                break;
+            }
+            case 4:
+                for (int i = 0; i < rows; i++) {
+                    out[i] = dot4(m[i], v, 0, 0.0);
+                }
+                break;
+            case 8:
+                for (int i = 0; i < rows; i++) {
+                    out[i] = dot8(m[i], v, 0, 0.0);
+                }
+                break;
+            case 16:
+                for (int i = 0; i < rows; i++) {
+                    out[i] = dot16(m[i], v, 0, 0.0);
+                }
+                break;
+            case 32:
+                for (int i = 0; i < rows; i++) {
+                    double[] row = m[i];
+                    out[i] = dot16(row, v, 16, dot16(row, v, 0, 0.0));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported column count: " + v.length);
+        }
+        return out;
+    }
+
+    /**
+     * 転置行列とベクトルの積を out に書き込む (out = M^T × v)
+     * supports(m[0].length) が true の場合だけ呼ぶこと
+     * @param m 行列 [rows][cols]
+     * @param v ベクトル [rows]
+     * @param out 結果の書き込み先 [cols]
+     * @return out
+     */
+    public static double[] dotTMVInto(double[][] m, double[] v, double[] out) {
+        int cols = m[0].length;
+        if (m.length == 1) {
+            // 出力が1つの層: 加算は不要
+            scaleRow(m[0], v[0], out, cols);
+            return out;
+        }
+        Arrays.fill(out, 0, cols, 0.0);
+        for (int i = 0; i < m.length; i++) {
+            double[] row = m[i];
+            double vi = v[i];
+            switch (cols) {
+                case 1:
+                    out[0] += vi * row[0];
+                    break;
+                case 4:
+                    axpy4(vi, row, out, 0);
+                    break;
+                case 8:
+                    axpy8(vi, row, out, 0);
+                    break;
+                case 16:
+                    axpy16(vi, row, out, 0);
+                    break;
+                case 32:
+                    axpy16(vi, row, out, 0);
+                    axpy16(vi, row, out, 16);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported column count: " + cols);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * ベクトルの外積を out に書き込む (out = v1 × v2^T)
+     * supports(v2.length) が true の場合だけ呼ぶこと
+     * @param v1 列ベクトル
+     * @param v2 行ベクトル
+     * @param out 結果の書き込み先 [v1.length][v2.length]
+     * @return out
+     */
+    public static double[][] outerInto(double[] v1, double[] v2, double[][] out) {
+        int cols = v2.length;
+        for (int i = 0; i < v1.length; i++) {
+            scaleRow(v2, v1[i], out[i], cols);
+        }
+        return out;
+    }
+
+    private static void scaleRow(double[] x, double alpha, double[] out, int cols) {
+        switch (cols) {
+            case 1:
+                out[0] = x[0] * alpha;
+                break;
+            case 4:
+                scale4(x, alpha, out, 0);
+                break;
+            case 8:
+                scale8(x, alpha, out, 0);
+                break;
+            case 16:
+                scale16(x, alpha, out, 0);
+                break;
+            case 32:
+                scale16(x, alpha, out, 0);
+                scale16(x, alpha, out, 16);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported column count: " + cols);
+        }
+    }
+
+    // ===== 展開したカーネル本体（off から off + n - 1 までを処理） =====
+
+    private static double dot4(double[] a, double[] b, int off, double s) {
+        s += a[off] * b[off];
+        s += a[off + 1] * b[off + 1];
+        s += a[off + 2] * b[off + 2];
+        s += a[off + 3] * b[off + 3];
+        return s;
+    }
+
+    private static double dot8(double[] a, double[] b, int off, double s) {
+        s += a[off] * b[off];
+        s += a[off + 1] * b[off + 1];
+        s += a[off + 2] * b[off + 2];
+        s += a[off + 3] * b[off + 3];
+        s += a[off + 4] * b[off + 4];
+        s += a[off + 5] * b[off + 5];
+        s += a[off + 6] * b[off + 6];
+        s += a[off + 7] * b[off + 7];
+        return s;
+    }
+
+    private static double dot16(double[] a, double[] b, int off, double s) {
+        s += a[off] * b[off];
+        s += a[off + 1] * b[off + 1];
+        s += a[off + 2] * b[off + 2];
+        s += a[off + 3] * b[off + 3];
+        s += a[off + 4] * b[off + 4];
+        s += a[off + 5] * b[off + 5];
+        s += a[off + 6] * b[off + 6];
+        s += a[off + 7] * b[off + 7];
+        s += a[off + 8] * b[off + 8];
+        s += a[off + 9] * b[off + 9];
+        s += a[off + 10] * b[off + 10];
+        s += a[off + 11] * b[off + 11];
+        s += a[off + 12] * b[off + 12];
+        s += a[off + 13] * b[off + 13];
+        s += a[off + 14] * b[off + 14];
+        s += a[off + 15] * b[off + 15];
+        return s;
+    }
+
+    private static void axpy4(double alpha, double[] x, double[] y, int off) {
+        y[off] += alpha * x[off];
+        y[off + 1] += alpha * x[off + 1];
+        y[off + 2] += alpha * x[off + 2];
+        y[off + 3] += alpha * x[off + 3];
+    }
+
+    private static void axpy8(double alpha, double[] x, double[] y, int off) {
+        y[off] += alpha * x[off];
+        y[off + 1] += alpha * x[off + 1];
+        y[off + 2] += alpha * x[off + 2];
+        y[off + 3] += alpha * x[off + 3];
+        y[off + 4] += alpha * x[off + 4];
+        y[off + 5] += alpha * x[off + 5];
+        y[off + 6] += alpha * x[off + 6];
+        y[off + 7] += alpha * x[off + 7];
+    }
+
+    private static void axpy16(double alpha, double[] x, double[] y, int off) {
+        y[off] += alpha * x[off];
+        y[off + 1] += alpha * x[off + 1];
+        y[off + 2] += alpha * x[off + 2];
+        y[off + 3] += alpha * x[off + 3];
+        y[off + 4] += alpha * x[off + 4];
+        y[off + 5] += alpha * x[off + 5];
+        y[off + 6] += alpha * x[off + 6];
+        y[off + 7] += alpha * x[off + 7];
+        y[off + 8] += alpha * x[off + 8];
+        y[off + 9] += alpha * x[off + 9];
+        y[off + 10] += alpha * x[off + 10];
+        y[off + 11] += alpha * x[off + 11];
+        y[off + 12] += alpha * x[off + 12];
+        y[off + 13] += alpha * x[off + 13];
+        y[off + 14] += alpha * x[off + 14];
+        y[off + 15] += alpha * x[off + 15];
+    }
+
+    private static void scale4(double[] x, double alpha, double[] out, int off) {
+        out[off] = x[off] * alpha;
+        out[off + 1] = x[off + 1] * alpha;
+        out[off + 2] = x[off + 2] * alpha;
+        out[off + 3] = x[off + 3] * alpha;
+    }
+
+    private static void scale8(double[] x, double alpha, double[] out, int off) {
+        out[off] = x[off] * alpha;
+        out[off + 1] = x[off + 1] * alpha;
+        out[off + 2] = x[off + 2] * alpha;
+        out[off + 3] = x[off + 3] * alpha;
+        out[off + 4] = x[off + 4] * alpha;
+        out[off + 5] = x[off + 5] * alpha;
+        out[off + 6] = x[off + 6] * alpha;
+        out[off + 7] = x[off + 7] * alpha;
+    }
+
+    private static void scale16(double[] x, double alpha, double[] out, int off) {
+        out[off] = x[off] * alpha;
+        out[off + 1] = x[off + 1] * alpha;
+        out[off + 2] = x[off + 2] * alpha;
+        out[off + 3] = x[off + 3] * alpha;
+        out[off + 4] = x[off + 4] * alpha;
+        out[off + 5] = x[off + 5] * alpha;
+        out[off + 6] = x[off + 6] * alpha;
+        out[off + 7] = x[off + 7] * alpha;
+        out[off + 8] = x[off + 8] * alpha;
+        out[off + 9] = x[off + 9] * alpha;
+        out[off + 10] = x[off + 10] * alpha;
+        out[off + 11] = x[off + 11] * alpha;
+        out[off + 12] = x[off + 12] * alpha;
+        out[off + 13] = x[off + 13] * alpha;
+        out[off + 14] = x[off + 14] * alpha;
+        out[off + 15] = x[off + 15] * alpha;
+    }
+}
@@ -0,0 +1,156 @@
+package math;
+
+/**
+ * 疎ベクトル（非ゼロ要素の位置と値だけを持つ）
+ * ReLU やドロップアウトの後のようにゼロの多い中間結果を、
+ * 密な重みとの積や外積の累積に渡すときに使う。位置は昇順に並ぶ。
+ */
+public final class SparseVector {
+
+    private final int size;
+    private final int[] indices;
+    private final double[] values;
+    private int nnz;
+
+    /**
+     * 空の疎ベクトルを作成（容量は size 要素）
+     * @param size 元のベクトルの長さ
+     */
+    public SparseVector(int size) {
+        this.size = size;
+        this.indices = new int[size];
+        this.values = new double[size];
+    }
+
+    /**
+     * 密なベクトルから作成（絶対値が threshold 以下の要素は捨てる）
+     * @param v 元のベクトル
+     * @param threshold 捨てる値の上限（0なら厳密にゼロの要素だけを捨てる）
+     * @return 疎ベクトル
+     */
+    public static SparseVector fromDense(double[] v, double threshold) {
+        return new SparseVector(v.length).assign(v, threshold);
+    }
+
+    /**
+     * 密なベクトルの非ゼロ要素で内容を置き換える（配列を確保しない）
+     * @param v 元のベクトル [size]
+     * @param threshold 捨てる値の上限
+     * @return this
+     */
+    public SparseVector assign(double[] v, double threshold) {
+        if (v.length != size) {
+            throw new IllegalArgumentException("Length mismatch: expected " + size + " but was " + v.length);
+        }
+        int count = 0;
+        for (int i = 0; i < v.length; i++) {
+            if (Math.abs(v[i]) > threshold) {
+                indices[count] = i;
+                values[count] = v[i];
+                count++;
+            }
+        }
+        nnz = count;
+        return this;
+    }
+
+    /**
+     * 密なベクトルに変換
+     */
+    public double[] toDense() {
+        double[] result = new double[size];
+        for (int k = 0; k < nnz; k++) {
+            result[indices[k]] = values[k];
+        }
+        return result;
+    }
+
+    // アクセサ（indices と values の有効な長さは getNonZeros()）
+    public int getSize() { return size; }
+    public int getNonZeros() { return nnz; }
+    public int[] getIndices() { return indices; }
+    public double[] getValues() { return values; }
+
+    /**
+     * 密行列と疎ベクトルの積を計算 (M × x)
+     * 各行で x の非ゼロ位置の要素だけを読む
+     * @param m 密行列 [rows][size]
+     * @return 積の結果 [rows]
+     */
+    public double[] dotMV(DenseMatrix m) {
+        return dotMVInto(m, new double[m.getRows()]);
+    }
+
+    /**
+     * 密行列と疎ベクトルの積を out に書き込む (out = M × x)
+     * @param m 密行列 [rows][size]
+     * @param out 結果の書き込み先 [rows]
+     * @return out
+     */
+    public double[] dotMVInto(DenseMatrix m, double[] out) {
+        if (m.getCols() != size) {
+            throw new IllegalArgumentException(
+                    "Shape mismatch: " + m.getRows() + "x" + m.getCols() + " * " + size);
+        }
+        double[] data = m.getData();
+        for (int i = 0; i < m.getRows(); i++) {
+            int row = m.index(i, 0);
+            double sum = 0.0;
+            for (int k = 0; k < nnz; k++) {
+                sum += data[row + indices[k]] * values[k];
+            }
+            out[i] = sum;
+        }
+        return out;
+    }
+
+    /**
+     * 外積を密行列に加算 (dst += u × x^T)
+     * x のゼロの列は更新しない
+     * @param dst 加算先 [u.length][size]
+     * @param u 列ベクトル
+     */
+    public void outerAccumulate(DenseMatrix dst, double[] u) {
+        if (dst.getRows() != u.length || dst.getCols() != size) {
+            throw new IllegalArgumentException("Shape mismatch: expected " + u.length + "x" + size
+                    + " but was " + dst.getRows() + "x" + dst.getCols());
+        }
+        double[] data = dst.getData();
+        for (int i = 0; i < u.length; i++) {
+            double ui = u[i];
+            if (ui == 0.0) {
+                continue;
+            }
+            int row = dst.index(i, 0);
+            for (int k = 0; k < nnz; k++) {
+                data[row + indices[k]] += ui * values[k];
+            }
+        }
+    }
+
+    /**
+     * 外積を CSR 行列の既存の非ゼロ位置にだけ加算 (dst += (u × x^T) を dst のパターンに制限)
+     * 枝刈りした重みの勾配を、残っている重みについてだけ累積する場合に使う
+     * @param dst 加算先 [u.length][size]（非ゼロの配置は変えない）
+     * @param u 列ベクトル
+     * @param x 行ベクトル（密） [size]
+     */
+    public static void outerAccumulate(CsrMatrix dst, double[] u, double[] x) {
+        if (dst.getRows() != u.length || dst.getCols() != x.length) {
+            throw new IllegalArgumentException("Shape mismatch: expected " + u.length + "x" + x.length
+                    + " but was " + dst.getRows() + "x" + dst.getCols());
+        }
+        int[] rowPtr = dst.getRowPtr();
+        int[] colIdx = dst.getColIdx();
+        double[] values = dst.getValues();
+        for (int i = 0; i < u.length; i++) {
+            double ui = u[i];
+            if (ui == 0.0) {
+                continue;
+            }
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; k++) {
+                values[k] += ui * x[colIdx[k]];
+            }
+        }
+    }
+}
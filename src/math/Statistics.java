@@ -0,0 +1,187 @@
+package math;
+
+/**
+ * 1回の走査で求める複数の統計量（個数・総和・平均・分散・最小値・最大値とその位置）
+ *
+ * 値は {@link #accept(double)} で1つずつ、または {@link #accept(double[], int, int)} で配列の範囲ごとに加える。
+ * 分散は Welford の方法で更新する。配列の範囲は {@link Reductions#BLOCK} 要素のブロックごとに
+ * 平均と偏差の二乗和を求め（ブロックはキャッシュに載ったまま2回読む）、ブロックの結果を
+ * Chan らの式で結合するので、値の大きさが揃っていても桁落ちしない。
+ * 最小値・最大値の位置は加えた順の通し番号で、同じ値が複数あれば最初の位置になる。
+ */
+public final class Statistics {
+
+    private long count;
+    private double sum;
+    private double mean;
+    private double m2;  // 平均からの偏差の二乗和
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private long argMin = -1;
+    private long argMax = -1;
+
+    /**
+     * 値を1つ加える（Welford の更新）
+     */
+    public Statistics accept(double x) {
+        count++;
+        sum += x;
+        double delta = x - mean;
+        mean += delta / count;
+        m2 += delta * (x - mean);
+        if (x < min) {
+            min = x;
+            argMin = count - 1;
+        }
+        if (x > max) {
+            max = x;
+            argMax = count - 1;
+        }
+        return this;
+    }
+
+    /**
+     * 配列の範囲 [from, to) の値を順に加える
+     */
+    public Statistics accept(double[] v, int from, int to) {
+        return accept(v, from, 1, to - from);
+    }
+
+    /**
+     * 間隔 stride で並ぶ n 個の値 v[offset + i * stride] を順に加える
+     */
+    public Statistics accept(double[] v, int offset, int stride, int n) {
+        for (int start = 0; start < n; start += Reductions.BLOCK) {
+            acceptBlock(v, offset + start * stride, stride, Math.min(Reductions.BLOCK, n - start));
+        }
+        return this;
+    }
+
+    /**
+     * 別の統計量の値を、このあとに続けて加えたものとして結合する（Chan らの式）
+     */
+    public Statistics combine(Statistics other) {
+        return merge(other.count, other.sum, other.mean, other.m2, other.min, other.argMin, other.max, other.argMax);
+    }
+
+    /**
+     * 何も加えていない状態に戻す
+     */
+    public Statistics reset() {
+        count = 0;
+        sum = mean = m2 = 0.0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+        argMin = argMax = -1;
+        return this;
+    }
+
+    // 1ブロックの統計量
+    static Statistics block(double[] v, int offset, int stride, int n) {
+        return new Statistics().acceptBlock(v, offset, stride, n);
+    }
+
+    // 1ブロックの値を加える（合計・最小・最大を1回目、偏差の二乗和を2回目の走査で求め、結合する）
+    private Statistics acceptBlock(double[] v, int offset, int stride, int n) {
+        if (n == 0) {
+            return this;
+        }
+        double sum = 0.0;
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        int argMin = -1, argMax = -1;
+        for (int i = 0; i < n; i++) {
+            double x = v[offset + i * stride];
+            sum += x;
+            if (x < min) {
+                min = x;
+                argMin = i;
+            }
+            if (x > max) {
+                max = x;
+                argMax = i;
+            }
+        }
+        double mean = sum / n;
+        double m2 = 0.0;
+        for (int i = 0; i < n; i++) {
+            double d = v[offset + i * stride] - mean;
+            m2 += d * d;
+        }
+        return merge(n, sum, mean, m2, min, argMin, max, argMax);
+    }
+
+    private Statistics merge(long n, double sum, double mean, double m2,
+                             double min, long argMin, double max, long argMax) {
+        if (n == 0) {
+            return this;
+        }
+        if (count == 0) {
+            this.count = n;
+            this.sum = sum;
+            this.mean = mean;
+            this.m2 = m2;
+            this.min = min;
+            this.max = max;
+            this.argMin = argMin;
+            this.argMax = argMax;
+            return this;
+        }
+        long total = count + n;
+        double delta = mean - this.mean;
+        this.mean += delta * n / total;
+        this.m2 += m2 + delta * delta * ((double) count * n / total);
+        this.sum += sum;
+        if (min < this.min) {
+            this.min = min;
+            this.argMin = count + argMin;
+        }
+        if (max > this.max) {
+            this.max = max;
+            this.argMax = count + argMax;
+        }
+        count = total;
+        return this;
+    }
+
+    // アクセサ
+    public long getCount() { return count; }
+    public double getSum() { return sum; }
+    public double getMin() { return min; }
+    public double getMax() { return max; }
+    public long getArgMin() { return argMin; }
+    public long getArgMax() { return argMax; }
+
+    /**
+     * 平均（値がなければ NaN）
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * 分散（母分散、個数で割る）
+     */
+    public double getVariance() {
+        return count == 0 ? Double.NaN : m2 / count;
+    }
+
+    /**
+     * 不偏分散（個数 - 1 で割る）
+     */
+    public double getSampleVariance() {
+        return count < 2 ? Double.NaN : m2 / (count - 1);
+    }
+
+    /**
+     * 標準偏差（母分散の平方根）
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    @Override
+    public String toString() {
+        return "Statistics[count=" + count + ", mean=" + getMean() + ", variance=" + getVariance()
+                + ", min=" + min + ", max=" + max + "]";
+    }
+}
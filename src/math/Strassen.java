@@ -0,0 +1,216 @@
+package math;
+
+/**
+ * Strassen-Winograd法による行列積
+ *
+ * 2x2のブロックに分けた積を7回の部分積と15回の加減算で計算する（通常は8回の積）。
+ * 再帰ごとに演算量が 7/8 になり、全体では O(n^2.81) になる。部分行列の最小辺が
+ * クロスオーバー以下になったら {@link Gemm} の通常の積に切り替える。
+ *
+ * 奇数の辺は最後の1行・1列を切り離して（peeling）偶数部分だけを再帰させ、
+ * 切り離した分は通常の積で加算する。ゼロ詰めのコピーは行わない。
+ *
+ * クロスオーバーの計測値（1CPU / AVX-512、bench.StrassenBenchmark）:
+ * 正方行列で再帰1段（部分積 n/2）が Gemm を上回るのは n = 512 から（1.35倍）で、
+ * n = 256 では 0.73倍と遅くなる。そこで既定値は 256（最小辺が 256 を超えたら再帰）とした。
+ * n = 2048 では再帰3段で 1.31倍。
+ * 変更は jeeplearning.strassen.crossover または {@link #setCrossover(int)} で行う。
+ *
+ * 数値誤差: 加減算で打ち消しが起きるため、通常の積より誤差が大きくなる。
+ * 標準正規乱数の行列（n = 2048）で通常の積に対する最大相対誤差は、
+ * 再帰1段で 2.6e-15、2段で 6.6e-15、3段で 2.1e-14（1段ごとに2〜3倍）。
+ */
+public final class Strassen {
+
+    private static final int DEFAULT_CROSSOVER = 256;
+
+    private static volatile int crossover =
+            Math.max(1, Integer.getInteger("jeeplearning.strassen.crossover", DEFAULT_CROSSOVER));
+
+    private Strassen() {
+    }
+
+    /**
+     * 再帰を打ち切る大きさを設定
+     * @param size 部分行列の最小辺がこれ以下なら通常の積を使う
+     */
+    public static void setCrossover(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Crossover must be positive: " + size);
+        }
+        crossover = size;
+    }
+
+    /**
+     * 現在のクロスオーバー
+     */
+    public static int getCrossover() {
+        return crossover;
+    }
+
+    /**
+     * Strassen法で再帰する価値のある大きさかどうか
+     */
+    public static boolean isWorthRecursing(int m, int n, int k) {
+        return Math.min(m, Math.min(n, k)) > crossover;
+    }
+
+    /**
+     * 行列の積を計算 (A × B)
+     * @param a 左側の行列 [m][k]
+     * @param b 右側の行列 [k][n]
+     * @return 積の結果 [m][n]
+     */
+    public static DenseMatrix multiply(DenseMatrix a, DenseMatrix b) {
+        return multiplyInto(a, b, new DenseMatrix(a.getRows(), b.getCols()));
+    }
+
+    /**
+     * 行列の積を out に書き込む (out = A × B)
+     * @param a 左側の行列 [m][k]
+     * @param b 右側の行列 [k][n]
+     * @param out 結果の書き込み先 [m][n]（a や b と領域が重なってはならない）
+     * @return out
+     */
+    public static DenseMatrix multiplyInto(DenseMatrix a, DenseMatrix b, DenseMatrix out) {
+        if (a.getCols() != b.getRows() || a.getRows() != out.getRows() || b.getCols() != out.getCols()) {
+            throw new IllegalArgumentException("Shape mismatch: " + a.getRows() + "x" + a.getCols()
+                    + " * " + b.getRows() + "x" + b.getCols() + " -> " + out.getRows() + "x" + out.getCols());
+        }
+        multiplyRecursive(a, b, out, crossover);
+        return out;
+    }
+
+    private static void multiplyRecursive(DenseMatrix a, DenseMatrix b, DenseMatrix c, int cutoff) {
+        int m = a.getRows();
+        int k = a.getCols();
+        int n = b.getCols();
+
+        if (Math.min(m, Math.min(n, k)) <= cutoff) {
+            c.fill(0.0);
+            Gemm.multiply(a, b, c);
+            return;
+        }
+
+        // 偶数の部分だけを再帰させ、奇数の端は後で通常の積で補う
+        int m2 = m / 2;
+        int k2 = k / 2;
+        int n2 = n / 2;
+        int me = 2 * m2;
+        int ke = 2 * k2;
+        int ne = 2 * n2;
+
+        winograd(a.view(0, 0, me, ke), b.view(0, 0, ke, ne), c.view(0, 0, me, ne), m2, k2, n2, cutoff);
+
+        if (ke < k) {
+            // C[0:me, 0:ne] += A[0:me, k-1] × B[k-1, 0:ne]
+            Gemm.multiply(a.view(0, ke, me, 1), b.view(ke, 0, 1, ne), c.view(0, 0, me, ne));
+        }
+        if (ne < n) {
+            // 最後の列: C[0:me, n-1] = A[0:me, :] × B[:, n-1]
+            DenseMatrix column = c.view(0, ne, me, 1);
+            column.fill(0.0);
+            Gemm.multiply(a.view(0, 0, me, k), b.view(0, ne, k, 1), column);
+        }
+        if (me < m) {
+            // 最後の行: C[m-1, :] = A[m-1, :] × B
+            DenseMatrix row = c.view(me, 0, 1, n);
+            row.fill(0.0);
+            Gemm.multiply(a.view(me, 0, 1, k), b, row);
+        }
+    }
+
+    /**
+     * 偶数サイズの積を Winograd の手順で計算（c を上書き）
+     * 作業領域は S（A側）・T（B側）・M（部分積）の3つで、部分積の多くは C の各ブロックに直接書く
+     */
+    private static void winograd(DenseMatrix a, DenseMatrix b, DenseMatrix c,
+                                 int m2, int k2, int n2, int cutoff) {
+        DenseMatrix a11 = a.view(0, 0, m2, k2), a12 = a.view(0, k2, m2, k2);
+        DenseMatrix a21 = a.view(m2, 0, m2, k2), a22 = a.view(m2, k2, m2, k2);
+        DenseMatrix b11 = b.view(0, 0, k2, n2), b12 = b.view(0, n2, k2, n2);
+        DenseMatrix b21 = b.view(k2, 0, k2, n2), b22 = b.view(k2, n2, k2, n2);
+        DenseMatrix c11 = c.view(0, 0, m2, n2), c12 = c.view(0, n2, m2, n2);
+        DenseMatrix c21 = c.view(m2, 0, m2, n2), c22 = c.view(m2, n2, m2, n2);
+
+        DenseMatrix s = new DenseMatrix(m2, k2);
+        DenseMatrix t = new DenseMatrix(k2, n2);
+        DenseMatrix p = new DenseMatrix(m2, n2);
+
+        // P7 = (A11 - A21)(B22 - B12) -> C21
+        combine(a11, a21, -1.0, s);
+        combine(b22, b12, -1.0, t);
+        multiplyRecursive(s, t, c21, cutoff);
+
+        // P5 = (A21 + A22)(B12 - B11) -> C12      S1, T1
+        combine(a21, a22, 1.0, s);
+        combine(b12, b11, -1.0, t);
+        multiplyRecursive(s, t, c12, cutoff);
+
+        // P1 = A11 B11 -> C11
+        multiplyRecursive(a11, b11, c11, cutoff);
+
+        // P6 = (S1 - A11)(B22 - T1) -> C22        S2, T2
+        combine(s, a11, -1.0, s);
+        combine(b22, t, -1.0, t);
+        multiplyRecursive(s, t, c22, cutoff);
+
+        // ここで C11 = P1, C12 = P5, C21 = P7, C22 = P6
+        combine(c22, c11, 1.0, c22);           // U2 = P1 + P6
+        combine(c21, c22, 1.0, c21);           // U3 = U2 + P7
+        combine(c12, c22, 1.0, c12);           // U4 = U2 + P5
+        sumMinus(c21, c12, c22);               // U7 = U3 + P5 = U3 + U4 - U2
+
+        // P3 = (A12 - S2) B22、C12 = U4 + P3
+        combine(a12, s, -1.0, s);
+        multiplyRecursive(s, b22, p, cutoff);
+        combine(c12, p, 1.0, c12);
+
+        // P4 = A22 (T2 - B21)、C21 = U3 - P4
+        combine(t, b21, -1.0, t);
+        multiplyRecursive(a22, t, p, cutoff);
+        combine(c21, p, -1.0, c21);
+
+        // P2 = A12 B21、C11 = P1 + P2
+        multiplyRecursive(a12, b21, p, cutoff);
+        combine(c11, p, 1.0, c11);
+    }
+
+    /**
+     * out = x + sign * y（out は x や y と同じでもよい）
+     */
+    private static void combine(DenseMatrix x, DenseMatrix y, double sign, DenseMatrix out) {
+        int rows = out.getRows();
+        int cols = out.getCols();
+        double[] xd = x.getData(), yd = y.getData(), od = out.getData();
+
+        for (int i = 0; i < rows; i++) {
+            int xi = x.index(i, 0), yi = y.index(i, 0), oi = out.index(i, 0);
+            if (sign > 0) {
+                for (int j = 0; j < cols; j++) {
+                    od[oi + j] = xd[xi + j] + yd[yi + j];
+                }
+            } else {
+                for (int j = 0; j < cols; j++) {
+                    od[oi + j] = xd[xi + j] - yd[yi + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * z = x + y - z
+     */
+    private static void sumMinus(DenseMatrix x, DenseMatrix y, DenseMatrix z) {
+        int rows = z.getRows();
+        int cols = z.getCols();
+        double[] xd = x.getData(), yd = y.getData(), zd = z.getData();
+
+        for (int i = 0; i < rows; i++) {
+            int xi = x.index(i, 0), yi = y.index(i, 0), zi = z.index(i, 0);
+            for (int j = 0; j < cols; j++) {
+                zd[zi + j] = xd[xi + j] + yd[yi + j] - zd[zi + j];
+            }
+        }
+    }
+}
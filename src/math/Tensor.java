@@ -1,11 +1,420 @@
 package math;
 
+import java.util.Arrays;
+
 /**
  * 3D/4Dテンソル演算クラス
  * 画像処理のための多次元配列操作
+ *
+ * static メソッドは double[][][] を受け取る従来の演算。
+ * インスタンスは1次元の記憶域を形状（shape）・ストライド（strides）・開始位置（offset）で
+ * 見るストライド付きテンソル（NCHW などの行優先）で、reshape / flatten / slice / select / permute / broadcastTo は
+ * 記憶域を共有するビューを O(1) で返す（要素はコピーしない）。
+ * 各演算には Tensor を受け取る版があり、ビューをそのまま渡せる。
  */
 public class Tensor {
 
+    private final double[] data;
+    private final int offset;
+    private final int[] shape;
+    private final int[] strides;
+
+    /**
+     * ゼロ初期化された連続したテンソルを作成
+     * @param shape 各次元の大きさ（例: [batch][channels][height][width]）
+     */
+    public Tensor(int... shape) {
+        this(new double[checkedSize(shape)], 0, shape.clone(), contiguousStrides(shape));
+    }
+
+    private Tensor(double[] data, int offset, int[] shape, int[] strides) {
+        this.data = data;
+        this.offset = offset;
+        this.shape = shape;
+        this.strides = strides;
+    }
+
+    /**
+     * 既存の1次元配列を行優先のテンソルとして見る（コピーしない）
+     * @param data 記憶域（先頭から形状の要素数だけ使う）
+     * @param shape 各次元の大きさ
+     * @return data を共有するテンソル
+     */
+    public static Tensor wrap(double[] data, int... shape) {
+        int size = checkedSize(shape);
+        if (size > data.length) {
+            throw new IllegalArgumentException("Shape " + Arrays.toString(shape) + " needs " + size
+                    + " elements but storage has " + data.length);
+        }
+        return new Tensor(data, 0, shape.clone(), contiguousStrides(shape));
+    }
+
+    /**
+     * 3次元配列をコピーしてテンソルを作成
+     * @param array [channels][height][width]
+     * @return 連続したテンソル
+     */
+    public static Tensor of(double[][][] array) {
+        Tensor result = new Tensor(array.length, array[0].length, array[0][0].length);
+        result.copyFrom(array);
+        return result;
+    }
+
+    // アクセサ
+    public double[] getData() { return data; }
+    public int getOffset() { return offset; }
+    public int getRank() { return shape.length; }
+    public int getDim(int axis) { return shape[axis]; }
+    public int getStride(int axis) { return strides[axis]; }
+    public int[] getShape() { return shape.clone(); }
+    public int[] getStrides() { return strides.clone(); }
+
+    /**
+     * 要素数
+     */
+    public int getSize() {
+        int size = 1;
+        for (int dim : shape) {
+            size *= dim;
+        }
+        return size;
+    }
+
+    /**
+     * 行優先で隙間なく並んでいるかどうか（reshape をビューで行える条件）
+     */
+    public boolean isContiguous() {
+        int expected = 1;
+        for (int axis = shape.length - 1; axis >= 0; axis--) {
+            if (shape[axis] != 1 && strides[axis] != expected) {
+                return false;
+            }
+            expected *= shape[axis];
+        }
+        return true;
+    }
+
+    /**
+     * 添字に対応する記憶域の位置
+     */
+    public int index(int... idx) {
+        if (idx.length != shape.length) {
+            throw new IllegalArgumentException("Expected " + shape.length + " indices but got " + idx.length);
+        }
+        int pos = offset;
+        for (int axis = 0; axis < idx.length; axis++) {
+            if (idx[axis] < 0 || idx[axis] >= shape[axis]) {
+                throw new IndexOutOfBoundsException("Index " + idx[axis] + " out of bounds for axis "
+                        + axis + " of size " + shape[axis]);
+            }
+            pos += idx[axis] * strides[axis];
+        }
+        return pos;
+    }
+
+    public double get(int... idx) {
+        return data[index(idx)];
+    }
+
+    public void set(double value, int... idx) {
+        data[index(idx)] = value;
+    }
+
+    // ===== ビュー（記憶域を共有し、要素はコピーしない） =====
+
+    /**
+     * 形状を変えたビュー（連続していない場合は連続したコピーの形状を変える）
+     * @param newShape 新しい形状（要素数が同じであること）
+     * @return 形状を変えたテンソル
+     */
+    public Tensor reshape(int... newShape) {
+        if (checkedSize(newShape) != getSize()) {
+            throw new IllegalArgumentException("Cannot reshape " + Arrays.toString(shape)
+                    + " to " + Arrays.toString(newShape));
+        }
+        Tensor source = contiguous();
+        return new Tensor(source.data, source.offset, newShape.clone(), contiguousStrides(newShape));
+    }
+
+    /**
+     * 1次元にしたビュー
+     */
+    public Tensor flatten() {
+        return reshape(getSize());
+    }
+
+    /**
+     * axis 方向の範囲 [from, to) に絞ったビュー（次元数は変わらない）
+     */
+    public Tensor slice(int axis, int from, int to) {
+        if (from < 0 || to > shape[axis] || from > to) {
+            throw new IndexOutOfBoundsException("Slice [" + from + ", " + to + ") out of bounds for axis "
+                    + axis + " of size " + shape[axis]);
+        }
+        int[] newShape = shape.clone();
+        newShape[axis] = to - from;
+        return new Tensor(data, offset + from * strides[axis], newShape, strides.clone());
+    }
+
+    /**
+     * axis 方向の index 番目を取り出したビュー（その次元がなくなる）
+     */
+    public Tensor select(int axis, int index) {
+        if (index < 0 || index >= shape[axis]) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for axis "
+                    + axis + " of size " + shape[axis]);
+        }
+        int[] newShape = new int[shape.length - 1];
+        int[] newStrides = new int[shape.length - 1];
+        for (int a = 0, k = 0; a < shape.length; a++) {
+            if (a != axis) {
+                newShape[k] = shape[a];
+                newStrides[k] = strides[a];
+                k++;
+            }
+        }
+        return new Tensor(data, offset + index * strides[axis], newShape, newStrides);
+    }
+
+    /**
+     * バッチの n 番目のサンプル（[N][C][H][W] から [C][H][W]）のビュー
+     */
+    public Tensor batch(int n) {
+        return select(0, n);
+    }
+
+    /**
+     * 次元を並べ替えたビュー
+     * 例: NCHW の permute(0, 2, 3, 1) は NHWC として見たもの
+     * @param axes 新しい各次元が元のどの次元か
+     * @return 並べ替えたテンソル
+     */
+    public Tensor permute(int... axes) {
+        if (axes.length != shape.length) {
+            throw new IllegalArgumentException("Expected " + shape.length + " axes but got " + axes.length);
+        }
+        int[] newShape = new int[axes.length];
+        int[] newStrides = new int[axes.length];
+        boolean[] used = new boolean[axes.length];
+        for (int a = 0; a < axes.length; a++) {
+            if (axes[a] < 0 || axes[a] >= axes.length || used[axes[a]]) {
+                throw new IllegalArgumentException("Invalid permutation: " + Arrays.toString(axes));
+            }
+            used[axes[a]] = true;
+            newShape[a] = shape[axes[a]];
+            newStrides[a] = strides[axes[a]];
+        }
+        return new Tensor(data, offset, newShape, newStrides);
+    }
+
+    /**
+     * 形状 newShape に広げたビュー（NumPy のブロードキャストと同じ規則）
+     * 次元は末尾から揃え、大きさが1の次元と足りない先頭の次元はストライド0で繰り返す。
+     * 同じ要素を複数の位置から見るので、読み出し専用として使うこと。
+     * @param newShape 広げた後の形状
+     * @return 広げたテンソル
+     */
+    public Tensor broadcastTo(int... newShape) {
+        int lead = newShape.length - shape.length;
+        if (lead < 0) {
+            throw new IllegalArgumentException("Cannot broadcast " + Arrays.toString(shape)
+                    + " to " + Arrays.toString(newShape));
+        }
+        int[] newStrides = new int[newShape.length];
+        for (int a = 0; a < shape.length; a++) {
+            if (shape[a] == newShape[lead + a]) {
+                newStrides[lead + a] = strides[a];
+            } else if (shape[a] != 1) {
+                throw new IllegalArgumentException("Cannot broadcast " + Arrays.toString(shape)
+                        + " to " + Arrays.toString(newShape));
+            }
+        }
+        return new Tensor(data, offset, newShape.clone(), newStrides);
+    }
+
+    /**
+     * 連続していればこのテンソル、そうでなければ連続したコピー
+     */
+    public Tensor contiguous() {
+        if (isContiguous()) {
+            return this;
+        }
+        Tensor copy = new Tensor(shape);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    /**
+     * 行優先の1次元配列
+     * 連続していて記憶域全体を覆うビューなら記憶域そのもの（コピーしない）、そうでなければコピーを返す
+     */
+    public double[] toArray() {
+        int size = getSize();
+        if (offset == 0 && size == data.length && isContiguous()) {
+            return data;
+        }
+        double[] result = new double[size];
+        wrap(result, shape).copyFrom(this);
+        return result;
+    }
+
+    // ===== 要素の読み書き =====
+
+    /**
+     * 同じ形状のテンソルの内容を書き込む（ストライドは異なってよい）
+     * @param src 読み出し元
+     * @return this
+     */
+    public Tensor copyFrom(Tensor src) {
+        checkSameShape(src, this);
+        if (shape.length == 0) {
+            data[offset] = src.data[src.offset];
+            return this;
+        }
+        int last = shape.length - 1;
+        int width = shape[last];
+        int[] idx = new int[last];
+        int rows = getSize() / Math.max(1, width);
+        for (int r = 0; r < rows; r++) {
+            int from = src.rowStart(idx);
+            int to = rowStart(idx);
+            if (src.strides[last] == 1 && strides[last] == 1) {
+                System.arraycopy(src.data, from, data, to, width);
+            } else {
+                for (int w = 0; w < width; w++) {
+                    data[to + w * strides[last]] = src.data[from + w * src.strides[last]];
+                }
+            }
+            nextRow(idx);
+        }
+        return this;
+    }
+
+    /**
+     * 3次元配列 [channels][height][width] の内容を書き込む（形状が一致すること）
+     */
+    public Tensor copyFrom(double[][][] src) {
+        checkShape3D(this, src.length, src[0].length, src[0][0].length);
+        for (int c = 0; c < shape[0]; c++) {
+            for (int h = 0; h < shape[1]; h++) {
+                int base = offset + c * strides[0] + h * strides[1];
+                for (int w = 0; w < shape[2]; w++) {
+                    data[base + w * strides[2]] = src[c][h][w];
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 3次元配列 [channels][height][width] に読み出す
+     */
+    public double[][][] toArray3D() {
+        checkRank(this, 3);
+        double[][][] result = new double[shape[0]][shape[1]][shape[2]];
+        for (int c = 0; c < shape[0]; c++) {
+            for (int h = 0; h < shape[1]; h++) {
+                int base = offset + c * strides[0] + h * strides[1];
+                for (int w = 0; w < shape[2]; w++) {
+                    result[c][h][w] = data[base + w * strides[2]];
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * すべての要素を value にする
+     */
+    public Tensor fill(double value) {
+        if (offset == 0 && getSize() == data.length && isContiguous()) {
+            Arrays.fill(data, value);
+            return this;
+        }
+        int last = shape.length - 1;
+        int[] idx = new int[Math.max(0, last)];
+        int width = last < 0 ? 1 : shape[last];
+        int stride = last < 0 ? 1 : strides[last];
+        int rows = getSize() / Math.max(1, width);
+        for (int r = 0; r < rows; r++) {
+            int start = last < 0 ? offset : rowStart(idx);
+            for (int w = 0; w < width; w++) {
+                data[start + w * stride] = value;
+            }
+            nextRow(idx);
+        }
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "Tensor" + Arrays.toString(shape);
+    }
+
+    // 最後の次元を除いた添字 idx の行の先頭位置
+    private int rowStart(int[] idx) {
+        int pos = offset;
+        for (int axis = 0; axis < idx.length; axis++) {
+            pos += idx[axis] * strides[axis];
+        }
+        return pos;
+    }
+
+    // 最後の次元を除いた添字を行優先で1つ進める
+    private void nextRow(int[] idx) {
+        for (int axis = idx.length - 1; axis >= 0; axis--) {
+            if (++idx[axis] < shape[axis]) {
+                return;
+            }
+            idx[axis] = 0;
+        }
+    }
+
+    private static int[] contiguousStrides(int[] shape) {
+        int[] strides = new int[shape.length];
+        int stride = 1;
+        for (int axis = shape.length - 1; axis >= 0; axis--) {
+            strides[axis] = stride;
+            stride *= shape[axis];
+        }
+        return strides;
+    }
+
+    private static int checkedSize(int[] shape) {
+        long size = 1;
+        for (int dim : shape) {
+            if (dim < 0) {
+                throw new IllegalArgumentException("Negative dimension: " + dim);
+            }
+            size *= dim;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Tensor too large: " + Arrays.toString(shape));
+        }
+        return (int) size;
+    }
+
+    static void checkRank(Tensor t, int rank) {
+        if (t.shape.length != rank) {
+            throw new IllegalArgumentException("Expected rank " + rank + " but was " + Arrays.toString(t.shape));
+        }
+    }
+
+    static void checkShape3D(Tensor t, int channels, int height, int width) {
+        checkRank(t, 3);
+        if (t.shape[0] != channels || t.shape[1] != height || t.shape[2] != width) {
+            throw new IllegalArgumentException("Shape mismatch: " + Arrays.toString(t.shape)
+                    + " vs [" + channels + ", " + height + ", " + width + "]");
+        }
+    }
+
+    static void checkSameShape(Tensor a, Tensor b) {
+        if (!Arrays.equals(a.shape, b.shape)) {
+            throw new IllegalArgumentException("Shape mismatch: " + Arrays.toString(a.shape)
+                    + " vs " + Arrays.toString(b.shape));
+        }
+    }
+
     /**
      * 4Dテンソルを作成（画像バッチ用）
      * @param batch バッチサイズ
@@ -71,20 +480,27 @@ public class Tensor {
      * @return フラット化された配列
      */
     public static double[] flatten(double[][][] tensor) {
-        int channels = tensor.length;
+        return flattenInto(tensor, new double[tensor.length * tensor[0].length * tensor[0][0].length]);
+    }
+
+    /**
+     * テンソルをフラット化して out に書き込む
+     * @param tensor 3Dテンソル
+     * @param out 書き込み先 [channels * height * width]
+     * @return out
+     */
+    public static double[] flattenInto(double[][][] tensor, double[] out) {
         int height = tensor[0].length;
         int width = tensor[0][0].length;
-        double[] flat = new double[channels * height * width];
 
         int idx = 0;
-        for (int c = 0; c < channels; c++) {
+        for (double[][] channel : tensor) {
             for (int h = 0; h < height; h++) {
-                for (int w = 0; w < width; w++) {
-                    flat[idx++] = tensor[c][h][w];
-                }
+                System.arraycopy(channel[h], 0, out, idx, width);
+                idx += width;
             }
         }
-        return flat;
+        return out;
     }
 
     /**
@@ -96,17 +512,27 @@ public class Tensor {
      * @return 3Dテンソル
      */
     public static double[][][] reshape(double[] flat, int channels, int height, int width) {
-        double[][][] tensor = new double[channels][height][width];
+        return reshapeInto(flat, new double[channels][height][width]);
+    }
+
+    /**
+     * 1次元配列を out の形状に再形成して書き込む
+     * @param flat フラット配列
+     * @param out 書き込み先 [channels][height][width]
+     * @return out
+     */
+    public static double[][][] reshapeInto(double[] flat, double[][][] out) {
+        int height = out[0].length;
+        int width = out[0][0].length;
 
         int idx = 0;
-        for (int c = 0; c < channels; c++) {
+        for (double[][] channel : out) {
             for (int h = 0; h < height; h++) {
-                for (int w = 0; w < width; w++) {
-                    tensor[c][h][w] = flat[idx++];
-                }
+                System.arraycopy(flat, idx, channel[h], 0, width);
+                idx += width;
             }
         }
-        return tensor;
+        return out;
     }
 
     /**
@@ -115,10 +541,19 @@ public class Tensor {
      * @return コピーされたテンソル
      */
     public static double[][][] copy3D(double[][][] src) {
+        return copy3DInto(src, new double[src.length][src[0].length][src[0][0].length]);
+    }
+
+    /**
+     * テンソルを dst にコピー
+     * @param src ソーステンソル
+     * @param dst コピー先
+     * @return dst
+     */
+    public static double[][][] copy3DInto(double[][][] src, double[][][] dst) {
         int channels = src.length;
         int height = src[0].length;
         int width = src[0][0].length;
-        double[][][] dst = new double[channels][height][width];
 
         for (int c = 0; c < channels; c++) {
             for (int h = 0; h < height; h++) {
@@ -134,33 +569,43 @@ public class Tensor {
      * @return 正規化されたテンソル
      */
     public static double[][][] normalize(double[][][] tensor) {
-        double min = Double.MAX_VALUE;
-        double max = Double.MIN_VALUE;
+        return normalizeInto(tensor, new double[tensor.length][tensor[0].length][tensor[0][0].length]);
+    }
 
-        // 最小値と最大値を見つける
+    /**
+     * テンソルを正規化して out に書き込む（out は tensor と同じでもよい）
+     * @param tensor 入力テンソル
+     * @param out 書き込み先
+     * @return out
+     */
+    public static double[][][] normalizeInto(double[][][] tensor, double[][][] out) {
+        // 最小値と最大値を見つける（行ごとの集約はベクトル化される）
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
         for (double[][] channel : tensor) {
             for (double[] row : channel) {
-                for (double val : row) {
-                    min = Math.min(min, val);
-                    max = Math.max(max, val);
-                }
+                min = Math.min(min, Reductions.min(row, 0, row.length));
+                max = Math.max(max, Reductions.max(row, 0, row.length));
             }
         }
 
         // 正規化
-        double[][][] normalized = copy3D(tensor);
         double range = max - min;
         if (range > 0) {
             for (int c = 0; c < tensor.length; c++) {
                 for (int h = 0; h < tensor[0].length; h++) {
-                    for (int w = 0; w < tensor[0][0].length; w++) {
-                        normalized[c][h][w] = (tensor[c][h][w] - min) / range;
+                    double[] inRow = tensor[c][h];
+                    double[] outRow = out[c][h];
+                    for (int w = 0; w < inRow.length; w++) {
+                        outRow[w] = (inRow[w] - min) / range;
                     }
                 }
             }
+        } else if (out != tensor) {
+            copy3DInto(tensor, out);
         }
 
-        return normalized;
+        return out;
     }
 
     /**
@@ -170,24 +615,37 @@ public class Tensor {
      * @return パディングされたテンソル
      */
     public static double[][][] pad(double[][][] tensor, int padding) {
+        int newHeight = tensor[0].length + 2 * padding;
+        int newWidth = tensor[0][0].length + 2 * padding;
+        return padInto(tensor, padding, new double[tensor.length][newHeight][newWidth]);
+    }
+
+    /**
+     * パディングを追加して out に書き込む（縁は0で埋める）
+     * @param tensor 入力テンソル
+     * @param padding パディングサイズ
+     * @param out 書き込み先 [channels][height + 2p][width + 2p]
+     * @return out
+     */
+    public static double[][][] padInto(double[][][] tensor, int padding, double[][][] out) {
         int channels = tensor.length;
         int height = tensor[0].length;
         int width = tensor[0][0].length;
 
-        int newHeight = height + 2 * padding;
-        int newWidth = width + 2 * padding;
-
-        double[][][] padded = new double[channels][newHeight][newWidth];
-
         for (int c = 0; c < channels; c++) {
+            for (int h = 0; h < padding; h++) {
+                Arrays.fill(out[c][h], 0.0);
+                Arrays.fill(out[c][height + padding + h], 0.0);
+            }
             for (int h = 0; h < height; h++) {
-                for (int w = 0; w < width; w++) {
-                    padded[c][h + padding][w + padding] = tensor[c][h][w];
-                }
+                double[] row = out[c][h + padding];
+                Arrays.fill(row, 0, padding, 0.0);
+                System.arraycopy(tensor[c][h], 0, row, padding, width);
+                Arrays.fill(row, padding + width, row.length, 0.0);
             }
         }
 
-        return padded;
+        return out;
     }
 
     /**
@@ -198,7 +656,6 @@ public class Tensor {
      * @return 出力テンソル [C_out][H_out][W_out]
      */
     public static double[][][] convolve(double[][][] input, double[][][][] kernel, int stride) {
-        int inChannels = input.length;
         int inHeight = input[0].length;
         int inWidth = input[0][0].length;
 
@@ -209,7 +666,25 @@ public class Tensor {
         int outHeight = (inHeight - kernelHeight) / stride + 1;
         int outWidth = (inWidth - kernelWidth) / stride + 1;
 
-        double[][][] output = new double[outChannels][outHeight][outWidth];
+        return convolveInto(input, kernel, stride, new double[outChannels][outHeight][outWidth]);
+    }
+
+    /**
+     * 畳み込み演算の結果を output に書き込む
+     * @param input 入力テンソル [C_in][H][W]
+     * @param kernel カーネル [C_out][C_in][K_h][K_w]
+     * @param stride ストライド
+     * @param output 書き込み先 [C_out][H_out][W_out]
+     * @return output
+     */
+    public static double[][][] convolveInto(double[][][] input, double[][][][] kernel, int stride,
+                                            double[][][] output) {
+        int inChannels = input.length;
+        int outChannels = kernel.length;
+        int kernelHeight = kernel[0][0].length;
+        int kernelWidth = kernel[0][0][0].length;
+        int outHeight = output[0].length;
+        int outWidth = output[0][0].length;
 
         // 各出力チャンネルについて
         for (int oc = 0; oc < outChannels; oc++) {
@@ -252,7 +727,22 @@ public class Tensor {
         int outHeight = (inHeight - poolSize) / stride + 1;
         int outWidth = (inWidth - poolSize) / stride + 1;
 
-        double[][][] output = new double[channels][outHeight][outWidth];
+        return maxPoolInto(input, poolSize, stride, new double[channels][outHeight][outWidth]);
+    }
+
+    /**
+     * 最大プーリングの結果を output に書き込む
+     * @param input 入力テンソル
+     * @param poolSize プーリングサイズ
+     * @param stride ストライド
+     * @param output 書き込み先 [channels][H_out][W_out]
+     * @return output
+     */
+    public static double[][][] maxPoolInto(double[][][] input, int poolSize, int stride,
+                                           double[][][] output) {
+        int channels = input.length;
+        int outHeight = output[0].length;
+        int outWidth = output[0][0].length;
 
         for (int c = 0; c < channels; c++) {
             for (int oh = 0; oh < outHeight; oh++) {
@@ -290,7 +780,20 @@ public class Tensor {
         int outHeight = inHeight * scale;
         int outWidth = inWidth * scale;
 
-        double[][][] output = new double[channels][outHeight][outWidth];
+        return upsampleInto(input, scale, new double[channels][outHeight][outWidth]);
+    }
+
+    /**
+     * アップサンプリングの結果を output に書き込む
+     * @param input 入力テンソル
+     * @param scale スケール倍率
+     * @param output 書き込み先 [channels][H * scale][W * scale]
+     * @return output
+     */
+    public static double[][][] upsampleInto(double[][][] input, int scale, double[][][] output) {
+        int channels = input.length;
+        int outHeight = output[0].length;
+        int outWidth = output[0][0].length;
 
         for (int c = 0; c < channels; c++) {
             for (int oh = 0; oh < outHeight; oh++) {
@@ -312,21 +815,29 @@ public class Tensor {
      * @return A + B
      */
     public static double[][][] add(double[][][] a, double[][][] b) {
+        return addInto(a, b, new double[a.length][a[0].length][a[0][0].length]);
+    }
+
+    /**
+     * テンソルの要素ごとの加算を out に書き込む（out は a や b と同じでもよい）
+     * @param a テンソルA
+     * @param b テンソルB
+     * @param out 書き込み先
+     * @return out
+     */
+    public static double[][][] addInto(double[][][] a, double[][][] b, double[][][] out) {
         int channels = a.length;
         int height = a[0].length;
         int width = a[0][0].length;
-
-        double[][][] result = new double[channels][height][width];
+        ElementKernels kernels = Kernels.get();
 
         for (int c = 0; c < channels; c++) {
             for (int h = 0; h < height; h++) {
-                for (int w = 0; w < width; w++) {
-                    result[c][h][w] = a[c][h][w] + b[c][h][w];
-                }
+                kernels.add(a[c][h], 0, b[c][h], 0, out[c][h], 0, width);
             }
         }
 
-        return result;
+        return out;
     }
 
     /**
@@ -336,16 +847,381 @@ public class Tensor {
      * @return tensor * scalar
      */
     public static double[][][] multiply(double[][][] tensor, double scalar) {
-        double[][][] result = copy3D(tensor);
+        return multiplyInto(tensor, scalar,
+                new double[tensor.length][tensor[0].length][tensor[0][0].length]);
+    }
+
+    /**
+     * テンソルのスカラー倍を out に書き込む（out は tensor と同じでもよい）
+     * @param tensor テンソル
+     * @param scalar スカラー値
+     * @param out 書き込み先
+     * @return out
+     */
+    public static double[][][] multiplyInto(double[][][] tensor, double scalar, double[][][] out) {
+        int width = tensor[0][0].length;
+        ElementKernels kernels = Kernels.get();
 
         for (int c = 0; c < tensor.length; c++) {
             for (int h = 0; h < tensor[0].length; h++) {
-                for (int w = 0; w < tensor[0][0].length; w++) {
-                    result[c][h][w] *= scalar;
+                kernels.scale(tensor[c][h], 0, scalar, out[c][h], 0, width);
+            }
+        }
+
+        return out;
+    }
+
+    // ===== ストライド付きテンソル（ビュー）版 =====
+    // 入出力は [channels][height][width] の3次元のテンソル。batch(n) や slice で取り出したビューも渡せる。
+    // 最後の次元が連続している行は ElementKernels でまとめて計算する。
+
+    /**
+     * パディングを追加して out に書き込む（縁は0で埋める）
+     * @param tensor 入力テンソル [C][H][W]
+     * @param padding パディングサイズ
+     * @param out 書き込み先 [C][H + 2p][W + 2p]
+     * @return out
+     */
+    public static Tensor padInto(Tensor tensor, int padding, Tensor out) {
+        checkRank(tensor, 3);
+        int height = tensor.shape[1];
+        int width = tensor.shape[2];
+        checkShape3D(out, tensor.shape[0], height + 2 * padding, width + 2 * padding);
+        out.fill(0.0);
+        out.slice(1, padding, padding + height).slice(2, padding, padding + width).copyFrom(tensor);
+        return out;
+    }
+
+    /**
+     * テンソルを正規化して out に書き込む（0-1の範囲に。out は tensor と同じでもよい）
+     * @param tensor 入力テンソル
+     * @param out 書き込み先
+     * @return out
+     */
+    public static Tensor normalizeInto(Tensor tensor, Tensor out) {
+        checkRank(tensor, 3);
+        checkSameShape(tensor, out);
+        Statistics stats = Reductions.statistics(tensor);
+        double min = stats.getMin();
+        double range = stats.getMax() - min;
+        if (range > 0) {
+            // (x - min) / range を1回の走査で書き込む
+            BroadcastOps.expression(tensor).then(BinaryOp.SUBTRACT, min).then(BinaryOp.DIVIDE, range)
+                    .evaluateInto(out);
+        } else if (out != tensor) {
+            out.copyFrom(tensor);
+        }
+        return out;
+    }
+
+    /**
+     * 畳み込み演算（パディングなし）の結果を output に書き込む
+     * @param input 入力テンソル [C_in][H][W]
+     * @param kernel カーネル [C_out][C_in][K_h][K_w]
+     * @param stride ストライド
+     * @param output 書き込み先 [C_out][H_out][W_out]
+     * @return output
+     */
+    public static Tensor convolveInto(Tensor input, double[][][][] kernel, int stride, Tensor output) {
+        checkRank(input, 3);
+        int kernelHeight = kernel[0][0].length;
+        int kernelWidth = kernel[0][0][0].length;
+        checkShape3D(output, kernel.length, (input.shape[1] - kernelHeight) / stride + 1,
+                (input.shape[2] - kernelWidth) / stride + 1);
+        int[] is = input.strides;
+        int[] os = output.strides;
+
+        for (int oc = 0; oc < output.shape[0]; oc++) {
+            for (int oh = 0; oh < output.shape[1]; oh++) {
+                for (int ow = 0; ow < output.shape[2]; ow++) {
+                    double sum = 0.0;
+                    for (int ic = 0; ic < input.shape[0]; ic++) {
+                        for (int kh = 0; kh < kernelHeight; kh++) {
+                            int base = input.offset + ic * is[0] + (oh * stride + kh) * is[1] + ow * stride * is[2];
+                            double[] k = kernel[oc][ic][kh];
+                            for (int kw = 0; kw < kernelWidth; kw++) {
+                                sum += input.data[base + kw * is[2]] * k[kw];
+                            }
+                        }
+                    }
+                    output.data[output.offset + oc * os[0] + oh * os[1] + ow * os[2]] = sum;
                 }
             }
         }
+        return output;
+    }
 
-        return result;
+    /**
+     * 最大プーリングの結果を output に書き込む
+     * @param input 入力テンソル [C][H][W]
+     * @param poolSize プーリングサイズ
+     * @param stride ストライド
+     * @param output 書き込み先 [C][H_out][W_out]
+     * @return output
+     */
+    public static Tensor maxPoolInto(Tensor input, int poolSize, int stride, Tensor output) {
+        checkRank(input, 3);
+        checkShape3D(output, input.shape[0], (input.shape[1] - poolSize) / stride + 1,
+                (input.shape[2] - poolSize) / stride + 1);
+        int[] is = input.strides;
+        int[] os = output.strides;
+
+        for (int c = 0; c < output.shape[0]; c++) {
+            for (int oh = 0; oh < output.shape[1]; oh++) {
+                for (int ow = 0; ow < output.shape[2]; ow++) {
+                    double maxVal = Double.NEGATIVE_INFINITY;
+                    for (int ph = 0; ph < poolSize; ph++) {
+                        int base = input.offset + c * is[0] + (oh * stride + ph) * is[1] + ow * stride * is[2];
+                        for (int pw = 0; pw < poolSize; pw++) {
+                            maxVal = Math.max(maxVal, input.data[base + pw * is[2]]);
+                        }
+                    }
+                    output.data[output.offset + c * os[0] + oh * os[1] + ow * os[2]] = maxVal;
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * アップサンプリング（最近傍補間）の結果を output に書き込む
+     * @param input 入力テンソル [C][H][W]
+     * @param scale スケール倍率
+     * @param output 書き込み先 [C][H * scale][W * scale]
+     * @return output
+     */
+    public static Tensor upsampleInto(Tensor input, int scale, Tensor output) {
+        checkRank(input, 3);
+        checkShape3D(output, input.shape[0], input.shape[1] * scale, input.shape[2] * scale);
+        int[] is = input.strides;
+        int[] os = output.strides;
+
+        for (int c = 0; c < output.shape[0]; c++) {
+            for (int oh = 0; oh < output.shape[1]; oh++) {
+                int from = input.offset + c * is[0] + (oh / scale) * is[1];
+                int to = output.offset + c * os[0] + oh * os[1];
+                for (int ow = 0; ow < output.shape[2]; ow++) {
+                    output.data[to + ow * os[2]] = input.data[from + (ow / scale) * is[2]];
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * テンソルの要素ごとの加算を out に書き込む（out は a や b と同じでもよい）
+     * 形状が異なる場合は {@link BroadcastOps} でブロードキャストして足す（例: [C][1][1] のバイアス）
+     * @param a テンソルA
+     * @param b テンソルB
+     * @param out 書き込み先
+     * @return out
+     */
+    public static Tensor addInto(Tensor a, Tensor b, Tensor out) {
+        if (!Arrays.equals(a.shape, b.shape)) {
+            return BroadcastOps.applyInto(BinaryOp.ADD, a, b, out);
+        }
+        checkRank(a, 3);
+        checkSameShape(a, b);
+        checkSameShape(a, out);
+        int width = a.shape[2];
+        boolean unitStride = a.strides[2] == 1 && b.strides[2] == 1 && out.strides[2] == 1;
+        ElementKernels kernels = Kernels.get();
+
+        for (int c = 0; c < a.shape[0]; c++) {
+            for (int h = 0; h < a.shape[1]; h++) {
+                int aOff = a.offset + c * a.strides[0] + h * a.strides[1];
+                int bOff = b.offset + c * b.strides[0] + h * b.strides[1];
+                int outOff = out.offset + c * out.strides[0] + h * out.strides[1];
+                if (unitStride) {
+                    kernels.add(a.data, aOff, b.data, bOff, out.data, outOff, width);
+                } else {
+                    for (int w = 0; w < width; w++) {
+                        out.data[outOff + w * out.strides[2]] =
+                                a.data[aOff + w * a.strides[2]] + b.data[bOff + w * b.strides[2]];
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * テンソルのスカラー倍を out に書き込む（out は tensor と同じでもよい）
+     * @param tensor テンソル
+     * @param scalar スカラー値
+     * @param out 書き込み先
+     * @return out
+     */
+    public static Tensor multiplyInto(Tensor tensor, double scalar, Tensor out) {
+        checkRank(tensor, 3);
+        checkSameShape(tensor, out);
+        int width = tensor.shape[2];
+        boolean unitStride = tensor.strides[2] == 1 && out.strides[2] == 1;
+        ElementKernels kernels = Kernels.get();
+
+        for (int c = 0; c < tensor.shape[0]; c++) {
+            for (int h = 0; h < tensor.shape[1]; h++) {
+                int from = tensor.offset + c * tensor.strides[0] + h * tensor.strides[1];
+                int to = out.offset + c * out.strides[0] + h * out.strides[1];
+                if (unitStride) {
+                    kernels.scale(tensor.data, from, scalar, out.data, to, width);
+                } else {
+                    for (int w = 0; w < width; w++) {
+                        out.data[to + w * out.strides[2]] = tensor.data[from + w * tensor.strides[2]] * scalar;
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    // ===== 単精度（float）版 =====
+
+    /**
+     * テンソルを1次元配列にフラット化（単精度）
+     * @param tensor 3Dテンソル
+     * @return フラット化された配列
+     */
+    public static float[] flatten(float[][][] tensor) {
+        return flattenInto(tensor, new float[tensor.length * tensor[0].length * tensor[0][0].length]);
+    }
+
+    /**
+     * テンソルをフラット化して out に書き込む（単精度）
+     * @param tensor 3Dテンソル
+     * @param out 書き込み先 [channels * height * width]
+     * @return out
+     */
+    public static float[] flattenInto(float[][][] tensor, float[] out) {
+        int height = tensor[0].length;
+        int width = tensor[0][0].length;
+
+        int idx = 0;
+        for (float[][] channel : tensor) {
+            for (int h = 0; h < height; h++) {
+                System.arraycopy(channel[h], 0, out, idx, width);
+                idx += width;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 1次元配列を3Dテンソルに再形成（単精度）
+     * @param flat フラット配列
+     * @param channels チャンネル数
+     * @param height 高さ
+     * @param width 幅
+     * @return 3Dテンソル
+     */
+    public static float[][][] reshape(float[] flat, int channels, int height, int width) {
+        return reshapeInto(flat, new float[channels][height][width]);
+    }
+
+    /**
+     * 1次元配列を out の形状に再形成して書き込む（単精度）
+     * @param flat フラット配列
+     * @param out 書き込み先 [channels][height][width]
+     * @return out
+     */
+    public static float[][][] reshapeInto(float[] flat, float[][][] out) {
+        int height = out[0].length;
+        int width = out[0][0].length;
+
+        int idx = 0;
+        for (float[][] channel : out) {
+            for (int h = 0; h < height; h++) {
+                System.arraycopy(flat, idx, channel[h], 0, width);
+                idx += width;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * パディングを追加（単精度）
+     * @param tensor 入力テンソル
+     * @param padding パディングサイズ
+     * @return パディングされたテンソル
+     */
+    public static float[][][] pad(float[][][] tensor, int padding) {
+        int newHeight = tensor[0].length + 2 * padding;
+        int newWidth = tensor[0][0].length + 2 * padding;
+        return padInto(tensor, padding, new float[tensor.length][newHeight][newWidth]);
+    }
+
+    /**
+     * パディングを追加して out に書き込む（単精度、縁は0で埋める）
+     * @param tensor 入力テンソル
+     * @param padding パディングサイズ
+     * @param out 書き込み先 [channels][height + 2p][width + 2p]
+     * @return out
+     */
+    public static float[][][] padInto(float[][][] tensor, int padding, float[][][] out) {
+        int channels = tensor.length;
+        int height = tensor[0].length;
+        int width = tensor[0][0].length;
+
+        for (int c = 0; c < channels; c++) {
+            for (int h = 0; h < padding; h++) {
+                Arrays.fill(out[c][h], 0.0f);
+                Arrays.fill(out[c][height + padding + h], 0.0f);
+            }
+            for (int h = 0; h < height; h++) {
+                float[] row = out[c][h + padding];
+                Arrays.fill(row, 0, padding, 0.0f);
+                System.arraycopy(tensor[c][h], 0, row, padding, width);
+                Arrays.fill(row, padding + width, row.length, 0.0f);
+            }
+        }
+
+        return out;
+    }
+
+    /**
+     * 倍精度のテンソルを単精度に変換
+     * @param tensor 元のテンソル [channels][height][width]
+     * @return 単精度のテンソル
+     */
+    public static float[][][] toFloat(double[][][] tensor) {
+        return toFloatInto(tensor, new float[tensor.length][tensor[0].length][tensor[0][0].length]);
+    }
+
+    /**
+     * 倍精度のテンソルを単精度に変換して out に書き込む
+     * @param tensor 元のテンソル [channels][height][width]
+     * @param out 書き込み先
+     * @return out
+     */
+    public static float[][][] toFloatInto(double[][][] tensor, float[][][] out) {
+        for (int c = 0; c < tensor.length; c++) {
+            for (int h = 0; h < tensor[c].length; h++) {
+                double[] src = tensor[c][h];
+                float[] dst = out[c][h];
+                for (int w = 0; w < src.length; w++) {
+                    dst[w] = (float) src[w];
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 単精度のテンソルを倍精度に変換
+     * @param tensor 元のテンソル [channels][height][width]
+     * @return 倍精度のテンソル
+     */
+    public static double[][][] toDouble(float[][][] tensor) {
+        double[][][] out = new double[tensor.length][tensor[0].length][tensor[0][0].length];
+        for (int c = 0; c < tensor.length; c++) {
+            for (int h = 0; h < tensor[c].length; h++) {
+                float[] src = tensor[c][h];
+                double[] dst = out[c][h];
+                for (int w = 0; w < src.length; w++) {
+                    dst[w] = src[w];
+                }
+            }
+        }
+        return out;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,79 @@
+package math;
+
+/**
+ * DenseMatrix の転置ビュー
+ * 元の行列のデータをそのまま参照し、積は転置を読む専用カーネル（dotTMV / dotTN）で計算する。
+ * 元の行列を書き換えるとビューにも反映される。
+ */
+public final class TransposedMatrix {
+
+    private final DenseMatrix source;
+
+    TransposedMatrix(DenseMatrix source) {
+        this.source = source;
+    }
+
+    /**
+     * 転置前の行列
+     */
+    public DenseMatrix getSource() { return source; }
+
+    public int getRows() { return source.getCols(); }
+    public int getCols() { return source.getRows(); }
+
+    public double get(int i, int j) {
+        return source.get(j, i);
+    }
+
+    /**
+     * 行列とベクトルの積を計算 (source^T × v)
+     * @param v ベクトル [source.rows]
+     * @return 積の結果 [source.cols]
+     */
+    public double[] dotMV(double[] v) {
+        return source.dotTMV(v);
+    }
+
+    /**
+     * 行列とベクトルの積を out に書き込む (out = source^T × v)
+     * @param v ベクトル [source.rows]
+     * @param out 結果の書き込み先 [source.cols]
+     * @return out
+     */
+    public double[] dotMVInto(double[] v, double[] out) {
+        return source.dotTMVInto(v, out);
+    }
+
+    /**
+     * 行列の積を計算 (source^T × B)
+     * @param b 右側の行列 [source.rows][n]
+     * @return 積の結果 [source.cols][n]
+     */
+    public DenseMatrix dot(DenseMatrix b) {
+        return source.dotTN(b);
+    }
+
+    /**
+     * 行列の積を out に書き込む (out = source^T × B)
+     * @param b 右側の行列 [source.rows][n]
+     * @param out 結果の書き込み先 [source.cols][n]
+     * @return out
+     */
+    public DenseMatrix dotInto(DenseMatrix b, DenseMatrix out) {
+        return source.dotTNInto(b, out);
+    }
+
+    /**
+     * 転置の転置（元の行列）
+     */
+    public DenseMatrix t() {
+        return source;
+    }
+
+    /**
+     * 転置した行列を新しく確保して返す
+     */
+    public DenseMatrix materialize() {
+        return source.t();
+    }
+}
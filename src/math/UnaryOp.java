@@ -0,0 +1,39 @@
+package math;
+
+/**
+ * 要素ごとの単項演算（{@link BroadcastOps} で使う）
+ * 値は alg.ReLU などと同じ式で計算する。
+ */
+public enum UnaryOp {
+    NEGATE,
+    ABS,
+    SQUARE,
+    SQRT,
+    EXP,
+    LOG,
+    RELU;
+
+    /**
+     * 1つの値に演算を適用
+     * @param x 値
+     * @return op(x)
+     */
+    public double apply(double x) {
+        switch (this) {
+            case NEGATE:
+                return -x;
+            case ABS:
+                return Math.abs(x);
+            case SQUARE:
+                return x * x;
+            case SQRT:
+                return Math.sqrt(x);
+            case EXP:
+                return Math.exp(x);
+            case LOG:
+                return Math.log(x);
+            default:
+                return Math.max(0, x);
+        }
+    }
+}
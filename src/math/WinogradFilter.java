@@ -0,0 +1,142 @@
+package math;
+
+/**
+ * Winograd の最小フィルタリング F(m×m, 3×3) 用に変換した 3x3 カーネル
+ *
+ * 出力の m×m のタイルを (m+2)×(m+2) の入力のタイルから求める。カーネル g は U = G g Gᵀ に、
+ * 入力のタイル d は V = Bᵀ d B に変換し、変換後の (m+2)² 個の位置ごとに U と V の
+ * チャンネル方向の積和 M を求め、Y = Aᵀ M A で出力のタイルに戻す。
+ * 乗算の回数は直接法の 9m²/(m+2)² 倍（F(2×2) で 1/2.25、F(4×4) で 1/4）になる。
+ *
+ * カーネルの変換は重みが変わるまで使い回せるので、畳み込み層はこのオブジェクトを
+ * 保持し、重みの更新時に作り直す。変換後の値は [(m+2)²][outputChannels][inputChannels] の順に並ぶ。
+ * 入力の勾配用（{@link #backwardData}）のものは、カーネルを180度回して入出力のチャンネルを入れ替えてから変換する。
+ */
+public final class WinogradFilter {
+
+    /** カーネルの大きさ（3x3 のみ） */
+    static final int KERNEL = 3;
+
+    // カーネルの変換行列 G（入力と出力の変換 Bᵀ・Aᵀ は ConvolutionOps に式で書く）
+    // F(2×2, 3×3)
+    private static final double[][] G2 = {
+            {1, 0, 0},
+            {0.5, 0.5, 0.5},
+            {0.5, -0.5, 0.5},
+            {0, 0, 1}
+    };
+
+    // F(4×4, 3×3)（補間点 0, ±1, ±2, ∞）
+    private static final double[][] G4 = {
+            {1.0 / 4, 0, 0},
+            {-1.0 / 6, -1.0 / 6, -1.0 / 6},
+            {-1.0 / 6, 1.0 / 6, -1.0 / 6},
+            {1.0 / 24, 1.0 / 12, 1.0 / 6},
+            {1.0 / 24, -1.0 / 12, 1.0 / 6},
+            {0, 0, 1}
+    };
+
+    private final int tileSize;
+    private final int outChannels;
+    private final int inChannels;
+    private final boolean backwardData;
+    private final double[] data;
+
+    private WinogradFilter(int tileSize, int outChannels, int inChannels, boolean backwardData) {
+        this.tileSize = tileSize;
+        this.outChannels = outChannels;
+        this.inChannels = inChannels;
+        this.backwardData = backwardData;
+        int alpha = tileSize + KERNEL - 1;
+        this.data = new double[alpha * alpha * outChannels * inChannels];
+    }
+
+    /**
+     * 順伝播用に変換したカーネルを作成
+     * @param kernels カーネル [outputChannels][inputChannels][3][3]
+     * @param tileSize 出力のタイルの大きさ（2 または 4）
+     * @return 変換したカーネル
+     */
+    public static WinogradFilter forward(double[][][][] kernels, int tileSize) {
+        checkKernels(kernels);
+        WinogradFilter filter = new WinogradFilter(checkTileSize(tileSize), kernels.length, kernels[0].length, false);
+        for (int oc = 0; oc < filter.outChannels; oc++) {
+            for (int ic = 0; ic < filter.inChannels; ic++) {
+                filter.transform(kernels[oc][ic], oc, ic);
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * 入力の勾配用に変換したカーネルを作成
+     * 入力の勾配は、出力の勾配と180度回したカーネル（入出力のチャンネルを入れ替えたもの）の畳み込みになる
+     * @param kernels カーネル [outputChannels][inputChannels][3][3]
+     * @param tileSize 入力の勾配のタイルの大きさ（2 または 4）
+     * @return 変換したカーネル（入力チャンネルは元のカーネルの出力チャンネル）
+     */
+    public static WinogradFilter backwardData(double[][][][] kernels, int tileSize) {
+        checkKernels(kernels);
+        WinogradFilter filter = new WinogradFilter(checkTileSize(tileSize), kernels[0].length, kernels.length, true);
+        double[][] rotated = new double[KERNEL][KERNEL];
+        for (int oc = 0; oc < kernels.length; oc++) {
+            for (int ic = 0; ic < kernels[0].length; ic++) {
+                for (int kh = 0; kh < KERNEL; kh++) {
+                    for (int kw = 0; kw < KERNEL; kw++) {
+                        rotated[kh][kw] = kernels[oc][ic][KERNEL - 1 - kh][KERNEL - 1 - kw];
+                    }
+                }
+                filter.transform(rotated, ic, oc);
+            }
+        }
+        return filter;
+    }
+
+    // U = G g Gᵀ を位置 (oc, ic) に書き込む
+    private void transform(double[][] g, int oc, int ic) {
+        double[][] gm = tileSize == 2 ? G2 : G4;
+        int alpha = gm.length;
+        double[] tmp = new double[alpha * KERNEL];
+        for (int i = 0; i < alpha; i++) {
+            for (int j = 0; j < KERNEL; j++) {
+                double sum = 0.0;
+                for (int k = 0; k < KERNEL; k++) {
+                    sum += gm[i][k] * g[k][j];
+                }
+                tmp[i * KERNEL + j] = sum;
+            }
+        }
+        int stride = outChannels * inChannels;
+        for (int i = 0; i < alpha; i++) {
+            for (int j = 0; j < alpha; j++) {
+                double sum = 0.0;
+                for (int k = 0; k < KERNEL; k++) {
+                    sum += tmp[i * KERNEL + k] * gm[j][k];
+                }
+                data[(i * alpha + j) * stride + oc * inChannels + ic] = sum;
+            }
+        }
+    }
+
+    private static void checkKernels(double[][][][] kernels) {
+        if (kernels[0][0].length != KERNEL || kernels[0][0][0].length != KERNEL) {
+            throw new IllegalArgumentException("Winograd convolution requires 3x3 kernels but got "
+                    + kernels[0][0].length + "x" + kernels[0][0][0].length);
+        }
+    }
+
+    private static int checkTileSize(int tileSize) {
+        if (tileSize != 2 && tileSize != 4) {
+            throw new IllegalArgumentException("Tile size must be 2 or 4: " + tileSize);
+        }
+        return tileSize;
+    }
+
+    double[] getData() { return data; }
+
+    // アクセサ
+    public int getTileSize() { return tileSize; }
+    public int getOutChannels() { return outChannels; }
+    public int getInChannels() { return inChannels; }
+    public boolean isBackwardData() { return backwardData; }
+}
@@ -0,0 +1,114 @@
+package models.cnn;
+
+import alg.ReLU;
+import alg.Softmax;
+import math.ConvolutionOps;
+import math.HalfFormat;
+import math.HalfMatrix;
+import math.Matrix;
+import math.Tensor;
+
+/**
+ * 推論専用のCNN（全結合層の重みを16ビット浮動小数点で保持）
+ * {@link ImprovedCNN#toHalfInference(HalfFormat)} で学習済みのモデルから作成する。
+ * 全結合層の重みは {@link HalfMatrix} に詰め、積の計算中に float へ展開して float で累積する。
+ * 畳み込み層の重みは小さいので float のまま持つ。ドロップアウトは行わない。
+ */
+public class HalfInferenceCNN {
+
+    // ImprovedCNN と同じ層構成（3x3カーネル、ストライド1、パディング1）
+    private static final int STRIDE = 1;
+    private static final int PADDING = 1;
+
+    private final float[][][][] conv1Weights;
+    private final float[] conv1Bias;
+    private final float[][][][] conv2Weights;
+    private final float[] conv2Bias;
+    private final HalfMatrix fc1Weights;
+    private final float[] fc1Bias;
+    private final HalfMatrix fc2Weights;
+    private final float[] fc2Bias;
+
+    HalfInferenceCNN(float[][][][] conv1Weights, float[] conv1Bias,
+                     float[][][][] conv2Weights, float[] conv2Bias,
+                     HalfMatrix fc1Weights, float[] fc1Bias,
+                     HalfMatrix fc2Weights, float[] fc2Bias) {
+        this.conv1Weights = conv1Weights;
+        this.conv1Bias = conv1Bias;
+        this.conv2Weights = conv2Weights;
+        this.conv2Bias = conv2Bias;
+        this.fc1Weights = fc1Weights;
+        this.fc1Bias = fc1Bias;
+        this.fc2Weights = fc2Weights;
+        this.fc2Bias = fc2Bias;
+    }
+
+    /**
+     * 順伝播
+     * @param input 入力画像 [1][height][width]
+     * @return 各クラスの確率
+     */
+    public double[] forward(double[][][] input) {
+        float[][][] x = Tensor.toFloat(input);
+
+        // Conv1 -> ReLU -> Pool
+        x = ConvolutionOps.convolve3D(x, conv1Weights, conv1Bias, STRIDE, PADDING);
+        x = ConvolutionOps.maxPool3D(ReLU.applyInto(x, x), 2, 2);
+
+        // Conv2 -> ReLU -> Pool
+        x = ConvolutionOps.convolve3D(x, conv2Weights, conv2Bias, STRIDE, PADDING);
+        x = ConvolutionOps.maxPool3D(ReLU.applyInto(x, x), 2, 2);
+
+        // FC1 -> ReLU
+        float[] hidden = fc1Weights.parallelDotMV(Tensor.flatten(x));
+        Matrix.addVecInPlace(hidden, fc1Bias);
+        ReLU.applyInto(hidden, hidden);
+
+        // FC2 -> Softmax
+        float[] logits = fc2Weights.dotMV(hidden);
+        Matrix.addVecInPlace(logits, fc2Bias);
+        return Matrix.toDouble(Softmax.applyInto(logits, logits));
+    }
+
+    /**
+     * 予測
+     * @param input 入力画像 [1][height][width]
+     * @return 最も確率の高いクラス
+     */
+    public int predict(double[][][] input) {
+        return Softmax.argmax(forward(input));
+    }
+
+    public HalfFormat getFormat() {
+        return fc1Weights.getFormat();
+    }
+
+    /**
+     * 全結合層の重みが占めるバイト数
+     */
+    public long getWeightBytes() {
+        return 2L * (fc1Weights.getData().length + fc2Weights.getData().length);
+    }
+
+    static float[][][][] toFloat(double[][][][] weights) {
+        float[][][][] result = new float[weights.length][weights[0].length][][];
+        for (int o = 0; o < weights.length; o++) {
+            for (int i = 0; i < weights[o].length; i++) {
+                result[o][i] = Matrix.toFloat(weights[o][i]);
+            }
+        }
+        return result;
+    }
+
+    static float[][][][] copy(float[][][][] weights) {
+        float[][][][] result = new float[weights.length][weights[0].length][weights[0][0].length][];
+        for (int o = 0; o < weights.length; o++) {
+            for (int i = 0; i < weights[o].length; i++) {
+                for (int h = 0; h < weights[o][i].length; h++) {
+                    result[o][i][h] = weights[o][i][h].clone();
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -3,10 +3,25 @@ package models.cnn;
 import alg.CrossEntropy;
 import alg.ReLU;
 import alg.Softmax;
+import math.Activation;
+import math.Backends;
+import math.BufferPool;
+import math.ComputeBackend;
+import math.ConvAlgorithm;
 import math.ConvolutionOps;
+import math.DenseMatrix;
+import math.FFTFilter;
+import math.FloatDenseMatrix;
+import math.HalfArray;
+import math.HalfFormat;
+import math.HalfMatrix;
+import math.Layout;
 import math.Matrix;
+import math.Precision;
 import math.Tensor;
+import math.WinogradFilter;
 
+import java.util.Arrays;
 import java.util.Random;
 
 /**
@@ -15,15 +30,30 @@ import java.util.Random;
  * - データ拡張
  * - 学習率減衰
  * - ドロップアウト
+ * - 数値精度の選択（{@link Precision#FLOAT} では重み・中間結果・Adamのモーメントを単精度で保持）
+ * - 16ビット浮動小数点（{@link HalfFormat}）での推論用モデルの作成と、学習中の中間結果の保持
+ * - 8ビット整数に量子化した推論用モデルの作成（{@link QuantizedInferenceCNN}）
+ * - 計算バックエンド（{@link ComputeBackend}）の選択（既定は {@link Backends#get()}）
+ * - 畳み込み層ごとの計算時の要素の並び順（{@link Layout}）の選択（倍精度モデルのみ）
+ * - 畳み込み層ごとの計算方法（{@link ConvAlgorithm}）の選択（倍精度モデルのみ）
  */
 public class ImprovedCNN {
 
-    // 層のパラメータ
+    // 層のパラメータ（倍精度モデル）
     private final ConvLayer conv1;
     private final ConvLayer conv2;
     private final FullyConnectedLayer fc1;
     private final FullyConnectedLayer fc2;
 
+    // 層のパラメータ（単精度モデル）
+    private final FloatConvLayer fconv1;
+    private final FloatConvLayer fconv2;
+    private final FloatFullyConnectedLayer ffc1;
+    private final FloatFullyConnectedLayer ffc2;
+
+    private final Precision precision;
+    private ComputeBackend backend;
+
     // ハイパーパラメータ
     private double initialLearningRate;
     private double currentLearningRate;
@@ -34,37 +64,182 @@ public class ImprovedCNN {
     private final Random random;
 
     public ImprovedCNN(double learningRate) {
+        this(learningRate, Precision.DOUBLE);
+    }
+
+    /**
+     * 精度を指定してモデルを作成
+     * @param learningRate 学習率
+     * @param precision 重みと中間結果の精度
+     */
+    public ImprovedCNN(double learningRate, Precision precision) {
         this.initialLearningRate = learningRate;
         this.currentLearningRate = learningRate;
         this.random = new Random(42);
+        this.precision = precision;
 
         // 層の初期化
-        conv1 = new ConvLayer(1, 16, 3, 1, 1, learningRate);    // 入力1ch、出力16ch、3x3カーネル
-        conv2 = new ConvLayer(16, 32, 3, 1, 1, learningRate);   // 入力16ch、出力32ch、3x3カーネル
-        fc1 = new FullyConnectedLayer(32 * 8 * 8, 128, learningRate);
-        fc2 = new FullyConnectedLayer(128, 10, learningRate);
+        if (precision == Precision.FLOAT) {
+            conv1 = null;
+            conv2 = null;
+            fc1 = null;
+            fc2 = null;
+            fconv1 = new FloatConvLayer(1, 16, 3, 1, 1, learningRate);
+            fconv2 = new FloatConvLayer(16, 32, 3, 1, 1, learningRate);
+            ffc1 = new FloatFullyConnectedLayer(32 * 8 * 8, 128, learningRate);
+            ffc2 = new FloatFullyConnectedLayer(128, 10, learningRate);
+        } else {
+            conv1 = new ConvLayer(1, 16, 3, 1, 1, learningRate);    // 入力1ch、出力16ch、3x3カーネル
+            conv2 = new ConvLayer(16, 32, 3, 1, 1, learningRate);   // 入力16ch、出力32ch、3x3カーネル
+            fc1 = new FullyConnectedLayer(32 * 8 * 8, 128, learningRate);
+            fc2 = new FullyConnectedLayer(128, 10, learningRate);
+            fconv1 = null;
+            fconv2 = null;
+            ffc1 = null;
+            ffc2 = null;
+        }
+        setBackend(Backends.get());
+    }
+
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    public ComputeBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * このモデルの演算に使うバックエンドを設定
+     * @param backend 使用するバックエンド（{@link Backends#byName(String)} などで取得する）
+     */
+    public void setBackend(ComputeBackend backend) {
+        if (backend == null) {
+            throw new IllegalArgumentException("Backend must not be null");
+        }
+        this.backend = backend;
+        if (precision == Precision.FLOAT) {
+            fconv1.setBackend(backend);
+            fconv2.setBackend(backend);
+            ffc1.setBackend(backend);
+            ffc2.setBackend(backend);
+        } else {
+            conv1.setBackend(backend);
+            conv2.setBackend(backend);
+            fc1.setBackend(backend);
+            fc2.setBackend(backend);
+        }
+    }
+
+    /**
+     * 学習中に全結合層が逆伝播まで保持する入力の格納形式を設定（単精度モデルのみ）
+     * 保持中は16ビットに詰め、逆伝播の直前に float へ展開する
+     * @param format 格納形式（null なら float のまま保持）
+     */
+    public void setActivationFormat(HalfFormat format) {
+        if (precision != Precision.FLOAT) {
+            throw new IllegalStateException("Half activation storage requires Precision.FLOAT");
+        }
+        ffc1.setActivationFormat(format);
+        ffc2.setActivationFormat(format);
+    }
+
+    /**
+     * 畳み込み層が計算に使う要素の並び順を層ごとに設定（倍精度モデルのみ）
+     * 層の間で受け渡す特徴マップは NCHW のままで、NHWC の層は入力と出力を並べ替えて計算する
+     * @param conv1Layout 1層目の並び順
+     * @param conv2Layout 2層目の並び順
+     */
+    public void setConvLayouts(Layout conv1Layout, Layout conv2Layout) {
+        if (precision != Precision.DOUBLE) {
+            throw new IllegalStateException("Layout selection requires Precision.DOUBLE");
+        }
+        conv1.setLayout(conv1Layout);
+        conv2.setLayout(conv2Layout);
+    }
+
+    /**
+     * 畳み込み層の計算方法を層ごとに設定（倍精度モデルのみ）
+     * DIRECT 以外は計算バックエンドを通さず {@link ConvolutionOps} で計算する。
+     * Winograd 法・FFT 法の層は変換したカーネル（{@link WinogradFilter}・{@link FFTFilter}）を保持し、
+     * 重みを更新したときに作り直す。AUTO の層は入力の形状から FFT 法か im2col を選ぶ。
+     * NHWC の並び順を設定した層では並び順の方が優先される
+     * @param conv1Algorithm 1層目の計算方法
+     * @param conv2Algorithm 2層目の計算方法
+     */
+    public void setConvAlgorithms(ConvAlgorithm conv1Algorithm, ConvAlgorithm conv2Algorithm) {
+        if (precision != Precision.DOUBLE) {
+            throw new IllegalStateException("Algorithm selection requires Precision.DOUBLE");
+        }
+        conv1.setAlgorithm(conv1Algorithm);
+        conv2.setAlgorithm(conv2Algorithm);
+    }
+
+    /**
+     * 重みを16ビットに詰めた推論専用のモデルを作成
+     * 全結合層の重みを詰め、小さな畳み込み層の重みは float で持つ
+     * @param format 重みの格納形式
+     * @return 推論専用のモデル（このモデルとは重みを共有しない）
+     */
+    public HalfInferenceCNN toHalfInference(HalfFormat format) {
+        if (precision == Precision.FLOAT) {
+            return new HalfInferenceCNN(
+                    HalfInferenceCNN.copy(fconv1.getWeights()), fconv1.getBias().clone(),
+                    HalfInferenceCNN.copy(fconv2.getWeights()), fconv2.getBias().clone(),
+                    HalfMatrix.of(ffc1.getWeights(), format), ffc1.getBias().clone(),
+                    HalfMatrix.of(ffc2.getWeights(), format), ffc2.getBias().clone());
+        }
+        return new HalfInferenceCNN(
+                HalfInferenceCNN.toFloat(conv1.getWeights()), Matrix.toFloat(conv1.getBias()),
+                HalfInferenceCNN.toFloat(conv2.getWeights()), Matrix.toFloat(conv2.getBias()),
+                HalfMatrix.of(fc1.getWeights(), format), Matrix.toFloat(fc1.getBias()),
+                HalfMatrix.of(fc2.getWeights(), format), Matrix.toFloat(fc2.getBias()));
+    }
+
+    /**
+     * 重みと活性値を8ビット整数に量子化した推論専用のモデルを作成
+     * 各層の出力の量子化パラメータは、校正用の画像での値の範囲から決める
+     * @param calibration 校正用の画像 [n][1][height][width]（学習データの一部でよい）
+     * @return 推論専用のモデル（このモデルとは重みを共有しない）
+     */
+    public QuantizedInferenceCNN toQuantizedInference(double[][][][] calibration) {
+        if (precision == Precision.FLOAT) {
+            return QuantizedInferenceCNN.calibrate(
+                    fconv1.getWeights(), fconv1.getBias().clone(),
+                    fconv2.getWeights(), fconv2.getBias().clone(),
+                    ffc1.getWeights(), ffc1.getBias().clone(),
+                    ffc2.getWeights(), ffc2.getBias().clone(), calibration);
+        }
+        return QuantizedInferenceCNN.calibrate(
+                HalfInferenceCNN.toFloat(conv1.getWeights()), Matrix.toFloat(conv1.getBias()),
+                HalfInferenceCNN.toFloat(conv2.getWeights()), Matrix.toFloat(conv2.getBias()),
+                FloatDenseMatrix.of(fc1.getWeights()), Matrix.toFloat(fc1.getBias()),
+                FloatDenseMatrix.of(fc2.getWeights()), Matrix.toFloat(fc2.getBias()), calibration);
     }
 
     /**
      * 順伝播
      */
     public double[] forward(double[][][] input) {
+        if (precision == Precision.FLOAT) {
+            return Matrix.toDouble(forwardFloat(Tensor.toFloat(input)));
+        }
+
         // Conv1 -> ReLU -> Pool
         double[][][] conv1Out = conv1.forward(input);
         double[][][] relu1Out = ReLU.apply(conv1Out);
-        double[][][] pool1Out = ConvolutionOps.maxPool3D(relu1Out, 2, 2);
+        double[][][] pool1Out = backend.maxPool3DInto(relu1Out, 2, 2, pooledLike(relu1Out));
 
         // Conv2 -> ReLU -> Pool
         double[][][] conv2Out = conv2.forward(pool1Out);
         double[][][] relu2Out = ReLU.apply(conv2Out);
-        double[][][] pool2Out = ConvolutionOps.maxPool3D(relu2Out, 2, 2);
+        double[][][] pool2Out = backend.maxPool3DInto(relu2Out, 2, 2, pooledLike(relu2Out));
 
         // Flatten
         double[] flattened = Tensor.flatten(pool2Out);
 
-        // FC1 -> ReLU -> Dropout
-        double[] fc1Out = fc1.forward(flattened);
-        double[] relu3Out = ReLU.apply(fc1Out);
+        // FC1 -> ReLU -> Dropout（積・バイアス・ReLU は1回の走査で行う）
+        double[] relu3Out = fc1.forward(flattened, Activation.RELU, null);
         double[] dropped = applyDropout(relu3Out);
 
         // FC2 -> Softmax
@@ -74,29 +249,49 @@ public class ImprovedCNN {
 
     /**
      * 学習（順伝播と逆伝播）
+     * 1ステップ内の中間結果は {@link BufferPool} から借り、ステップの終わりにまとめて返す
      */
     public double train(double[][][] input, int targetClass) {
         isTraining = true;
+        BufferPool pool = BufferPool.local();
+        int mark = pool.mark();
+        try {
+            if (precision == Precision.FLOAT) {
+                return trainFloat(Tensor.toFloat(input), targetClass);
+            }
+            return trainDouble(input, targetClass);
+        } finally {
+            pool.release(mark);
+        }
+    }
+
+    /**
+     * 倍精度モデルの学習（train が開いたプールの区間の中で呼ぶ）
+     */
+    private double trainDouble(double[][][] input, int targetClass) {
+        BufferPool pool = BufferPool.local();
 
         // 順伝播（中間結果を保存）
         // Conv1
         double[][][] conv1Out = conv1.forward(input);
-        double[][][] relu1Out = ReLU.apply(conv1Out);
+        double[][][] relu1Out = ReLU.applyInto(conv1Out, borrowLike(pool, conv1Out));
         double[][][] pool1Out = maxPoolForward(relu1Out, 2, 2);
         int[][][] pool1Indices = lastPoolIndices;
 
         // Conv2
         double[][][] conv2Out = conv2.forward(pool1Out);
-        double[][][] relu2Out = ReLU.apply(conv2Out);
-        double[][][] pool2Out = maxPoolForward(relu2Out, 2, 2);
+        double[][][] relu2Out = ReLU.applyInto(conv2Out, borrowLike(pool, conv2Out));
+        // Pool2 は FC1 の入力になる1次元の配列に書き込み、Flatten はそのビューにする（コピーしない）
+        Tensor pool2Out = maxPoolForward(relu2Out, 2, 2, Tensor.wrap(pool.borrow(fc1.getInputSize()),
+                relu2Out.length, relu2Out[0].length / 2, relu2Out[0][0].length / 2));
         int[][][] pool2Indices = lastPoolIndices;
 
         // Flatten
-        double[] flattened = Tensor.flatten(pool2Out);
+        double[] flattened = pool2Out.flatten().toArray();
 
-        // FC1
-        double[] fc1Out = fc1.forward(flattened);
-        double[] relu3Out = ReLU.apply(fc1Out);
+        // FC1（ReLU の導関数を同時に記録）
+        double[] relu3Deriv = pool.borrow(fc1.getOutputSize());
+        double[] relu3Out = fc1.forward(flattened, Activation.RELU, relu3Deriv);
         double[] dropped = applyDropout(relu3Out);
         boolean[] dropoutMask = lastDropoutMask;
 
@@ -117,31 +312,22 @@ public class ImprovedCNN {
         // Dropoutの逆伝播
         double[] gradDropout = applyDropoutBackward(gradFC1, dropoutMask);
 
-        // ReLU (FC1後)の逆伝播
-        double[] gradReLU3 = new double[fc1Out.length];
-        for (int i = 0; i < fc1Out.length; i++) {
-            gradReLU3[i] = fc1Out[i] > 0 ? gradDropout[i] : 0;
-        }
+        // ReLU (FC1後)の逆伝播（順伝播で記録した導関数を掛ける）
+        double[] gradReLU3 = gradDropout;
+        backend.hadamardInto(gradReLU3, relu3Deriv, gradReLU3);
 
         // FC1の逆伝播
         double[] gradFlatten = fc1.backward(gradReLU3, flattened);
 
-        // Unflatten
-        double[][][] gradPool2 = Tensor.reshape(gradFlatten, 32, 7, 7);
+        // Unflatten（勾配の配列をそのまま Pool2 の形状で見る）
+        Tensor gradPool2 = Tensor.wrap(gradFlatten, pool2Out.getShape());
 
         // MaxPool2の逆伝播
         double[][][] gradReLU2 = maxPoolBackward(gradPool2, pool2Indices, 2, 2, relu2Out);
 
-        // ReLU (Conv2後)の逆伝播
-        double[][][] gradConv2 = new double[32][][];
-        for (int c = 0; c < 32; c++) {
-            gradConv2[c] = new double[14][14];
-            for (int h = 0; h < 14; h++) {
-                for (int w = 0; w < 14; w++) {
-                    gradConv2[c][h][w] = conv2Out[c][h][w] > 0 ? gradReLU2[c][h][w] : 0;
-                }
-            }
-        }
+        // ReLU (Conv2後)の逆伝播（MaxPool2 の勾配は conv2Out と同じ形状で全体が書かれているので、その場でマスクする）
+        double[][][] gradConv2 = gradReLU2;
+        maskByPositive(gradConv2, conv2Out);
 
         // Conv2の逆伝播
         double[][][] gradPool1 = conv2.backward(gradConv2, pool1Out);
@@ -150,15 +336,8 @@ public class ImprovedCNN {
         double[][][] gradReLU1 = maxPoolBackward(gradPool1, pool1Indices, 2, 2, relu1Out);
 
         // ReLU (Conv1後)の逆伝播
-        double[][][] gradConv1 = new double[16][][];
-        for (int c = 0; c < 16; c++) {
-            gradConv1[c] = new double[28][28];
-            for (int h = 0; h < 28; h++) {
-                for (int w = 0; w < 28; w++) {
-                    gradConv1[c][h][w] = conv1Out[c][h][w] > 0 ? gradReLU1[c][h][w] : 0;
-                }
-            }
-        }
+        double[][][] gradConv1 = gradReLU1;
+        maskByPositive(gradConv1, conv1Out);
 
         // Conv1の逆伝播
         conv1.backward(gradConv1, input);
@@ -178,7 +357,7 @@ public class ImprovedCNN {
     public int predict(double[][][] input) {
         isTraining = false;
         double[] probabilities = forward(input);
-        return Softmax.argmax(probabilities);
+        return backend.argmax(probabilities);
     }
 
     /**
@@ -189,16 +368,170 @@ public class ImprovedCNN {
         // 学習率の減衰（10エポックごとに0.9倍）
         if (epoch % 10 == 0) {
             currentLearningRate *= 0.9;
-            conv1.setLearningRate(currentLearningRate);
-            conv2.setLearningRate(currentLearningRate);
-            fc1.setLearningRate(currentLearningRate);
-            fc2.setLearningRate(currentLearningRate);
+            if (precision == Precision.FLOAT) {
+                fconv1.setLearningRate(currentLearningRate);
+                fconv2.setLearningRate(currentLearningRate);
+                ffc1.setLearningRate(currentLearningRate);
+                ffc2.setLearningRate(currentLearningRate);
+            } else {
+                conv1.setLearningRate(currentLearningRate);
+                conv2.setLearningRate(currentLearningRate);
+                fc1.setLearningRate(currentLearningRate);
+                fc2.setLearningRate(currentLearningRate);
+            }
+        }
+    }
+
+    /**
+     * 単精度モデルの順伝播
+     */
+    private float[] forwardFloat(float[][][] input) {
+        float[][][] relu1Out = ReLU.apply(fconv1.forward(input));
+        float[][][] pool1Out = backend.maxPool3DInto(relu1Out, 2, 2, pooledLike(relu1Out));
+        float[][][] relu2Out = ReLU.apply(fconv2.forward(pool1Out));
+        float[][][] pool2Out = backend.maxPool3DInto(relu2Out, 2, 2, pooledLike(relu2Out));
+        float[] relu3Out = ffc1.forward(Tensor.flatten(pool2Out), Activation.RELU, null);
+        return Softmax.apply(ffc2.forward(applyDropout(relu3Out)));
+    }
+
+    /**
+     * 単精度モデルの学習（手順は train と同じ。形状は固定値ではなく各層の出力から取る）
+     */
+    private double trainFloat(float[][][] input, int targetClass) {
+        BufferPool pool = BufferPool.local();
+
+        // 順伝播（中間結果を保存）
+        float[][][] conv1Out = fconv1.forward(input);
+        float[][][] relu1Out = ReLU.applyInto(conv1Out, borrowLike(pool, conv1Out));
+        float[][][] pool1Out = maxPoolForward(relu1Out, 2, 2);
+        int[][][] pool1Indices = lastPoolIndices;
+
+        float[][][] conv2Out = fconv2.forward(pool1Out);
+        float[][][] relu2Out = ReLU.applyInto(conv2Out, borrowLike(pool, conv2Out));
+        float[][][] pool2Out = maxPoolForward(relu2Out, 2, 2);
+        int[][][] pool2Indices = lastPoolIndices;
+
+        float[] flattened = Tensor.flattenInto(pool2Out,
+                pool.borrowFloat(pool2Out.length * pool2Out[0].length * pool2Out[0][0].length));
+
+        float[] relu3Deriv = pool.borrowFloat(ffc1.getOutputSize());
+        float[] relu3Out = ffc1.forwardAndSave(flattened, Activation.RELU, relu3Deriv);
+        float[] dropped = applyDropout(relu3Out);
+        boolean[] dropoutMask = lastDropoutMask;
+
+        float[] fc2Out = ffc2.forwardAndSave(dropped, Activation.IDENTITY, null);
+        float[] probabilities = Softmax.apply(fc2Out);
+
+        double loss = CrossEntropy.calculate(probabilities, targetClass);
+
+        // 逆伝播
+        float[] gradOutput = Softmax.gradientWithCrossEntropy(probabilities, targetClass);
+        float[] gradFC1 = ffc2.backward(gradOutput);
+        float[] gradDropout = applyDropoutBackward(gradFC1, dropoutMask);
+
+        // ReLU (FC1後)の逆伝播
+        float[] gradReLU3 = gradDropout;
+        backend.hadamardInto(gradReLU3, relu3Deriv, gradReLU3);
+
+        float[] gradFlatten = ffc1.backward(gradReLU3);
+        float[][][] gradPool2 = Tensor.reshapeInto(gradFlatten, borrowLike(pool, pool2Out));
+
+        float[][][] gradConv2 = maxPoolBackward(gradPool2, pool2Indices, 2, 2, relu2Out);
+        maskByPositive(gradConv2, conv2Out);
+        float[][][] gradPool1 = fconv2.backward(gradConv2, pool1Out);
+
+        float[][][] gradConv1 = maxPoolBackward(gradPool1, pool1Indices, 2, 2, relu1Out);
+        maskByPositive(gradConv1, conv1Out);
+        fconv1.backward(gradConv1, input);
+
+        // 重みの更新
+        fconv1.updateWeights();
+        fconv2.updateWeights();
+        ffc1.updateWeights();
+        ffc2.updateWeights();
+
+        return loss;
+    }
+
+    /**
+     * ReLUの逆伝播：活性化前の値が正でない位置の勾配を0にする（grad を上書き）
+     */
+    private static void maskByPositive(double[][][] grad, double[][][] preActivation) {
+        for (int c = 0; c < grad.length; c++) {
+            for (int h = 0; h < grad[c].length; h++) {
+                double[] g = grad[c][h];
+                double[] z = preActivation[c][h];
+                for (int w = 0; w < g.length; w++) {
+                    if (z[w] <= 0) {
+                        g[w] = 0;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void maskByPositive(float[][][] grad, float[][][] preActivation) {
+        for (int c = 0; c < grad.length; c++) {
+            for (int h = 0; h < grad[c].length; h++) {
+                float[] g = grad[c][h];
+                float[] z = preActivation[c][h];
+                for (int w = 0; w < g.length; w++) {
+                    if (z[w] <= 0) {
+                        g[w] = 0;
+                    }
+                }
+            }
         }
     }
 
     // 補助メソッド
     private int[][][] lastPoolIndices;
 
+    /**
+     * like と同じ形状の配列をプールから借りる（中身は不定）
+     */
+    static double[][][] borrowLike(BufferPool pool, double[][][] like) {
+        return pool.borrow3D(like.length, like[0].length, like[0][0].length);
+    }
+
+    static float[][][] borrowLike(BufferPool pool, float[][][] like) {
+        return pool.borrowFloat3D(like.length, like[0].length, like[0][0].length);
+    }
+
+    /**
+     * 3次元配列 [C][H][W] を大きさ1のバッチ [1][C][H][W] のテンソルに写す（配列はプールから借りる）
+     */
+    static Tensor borrowBatch(BufferPool pool, double[][][] src) {
+        int channels = src.length, height = src[0].length, width = src[0][0].length;
+        return Tensor.wrap(Tensor.flattenInto(src, pool.borrow(channels * height * width)),
+                1, channels, height, width);
+    }
+
+    // 2x2・ストライド2のプーリングの出力
+    private static double[][][] pooledLike(double[][][] input) {
+        return new double[input.length][input[0].length / 2][input[0][0].length / 2];
+    }
+
+    private static float[][][] pooledLike(float[][][] input) {
+        return new float[input.length][input[0].length / 2][input[0][0].length / 2];
+    }
+
+    static void clear(double[][][] tensor) {
+        for (double[][] plane : tensor) {
+            for (double[] row : plane) {
+                Arrays.fill(row, 0.0);
+            }
+        }
+    }
+
+    static void clear(float[][][] tensor) {
+        for (float[][] plane : tensor) {
+            for (float[] row : plane) {
+                Arrays.fill(row, 0.0f);
+            }
+        }
+    }
+
     private double[][][] maxPoolForward(double[][][] input, int poolSize, int stride) {
         int channels = input.length;
         int inputHeight = input[0].length;
@@ -206,7 +539,7 @@ public class ImprovedCNN {
         int outputHeight = (inputHeight - poolSize) / stride + 1;
         int outputWidth = (inputWidth - poolSize) / stride + 1;
 
-        double[][][] output = new double[channels][outputHeight][outputWidth];
+        double[][][] output = BufferPool.local().borrow3D(channels, outputHeight, outputWidth);
         lastPoolIndices = new int[channels][outputHeight][outputWidth];
 
         for (int c = 0; c < channels; c++) {
@@ -235,6 +568,63 @@ public class ImprovedCNN {
         return output;
     }
 
+    /**
+     * 最大プーリングの結果を output のビューに書き込み、最大値の位置を lastPoolIndices に記録する
+     */
+    private Tensor maxPoolForward(double[][][] input, int poolSize, int stride, Tensor output) {
+        int channels = output.getDim(0);
+        int outputHeight = output.getDim(1);
+        int outputWidth = output.getDim(2);
+        double[] out = output.getData();
+        lastPoolIndices = new int[channels][outputHeight][outputWidth];
+
+        for (int c = 0; c < channels; c++) {
+            for (int oh = 0; oh < outputHeight; oh++) {
+                int base = output.getOffset() + c * output.getStride(0) + oh * output.getStride(1);
+                for (int ow = 0; ow < outputWidth; ow++) {
+                    double maxVal = Double.NEGATIVE_INFINITY;
+                    int maxIdx = 0;
+
+                    for (int ph = 0; ph < poolSize; ph++) {
+                        for (int pw = 0; pw < poolSize; pw++) {
+                            double val = input[c][oh * stride + ph][ow * stride + pw];
+                            if (val > maxVal) {
+                                maxVal = val;
+                                maxIdx = ph * poolSize + pw;
+                            }
+                        }
+                    }
+
+                    out[base + ow * output.getStride(2)] = maxVal;
+                    lastPoolIndices[c][oh][ow] = maxIdx;
+                }
+            }
+        }
+
+        return output;
+    }
+
+    private double[][][] maxPoolBackward(Tensor gradOutput, int[][][] indices,
+                                         int poolSize, int stride, double[][][] originalInput) {
+        double[][][] gradInput = borrowLike(BufferPool.local(), originalInput);
+        clear(gradInput);
+        double[] grad = gradOutput.getData();
+
+        for (int c = 0; c < gradOutput.getDim(0); c++) {
+            for (int oh = 0; oh < gradOutput.getDim(1); oh++) {
+                int base = gradOutput.getOffset() + c * gradOutput.getStride(0) + oh * gradOutput.getStride(1);
+                for (int ow = 0; ow < gradOutput.getDim(2); ow++) {
+                    int maxIdx = indices[c][oh][ow];
+                    int ih = oh * stride + maxIdx / poolSize;
+                    int iw = ow * stride + maxIdx % poolSize;
+                    gradInput[c][ih][iw] += grad[base + ow * gradOutput.getStride(2)];
+                }
+            }
+        }
+
+        return gradInput;
+    }
+
     private double[][][] maxPoolBackward(double[][][] gradOutput, int[][][] indices,
                                          int poolSize, int stride, double[][][] originalInput) {
         int channels = gradOutput.length;
@@ -243,7 +633,8 @@ public class ImprovedCNN {
         int inputHeight = originalInput[0].length;
         int inputWidth = originalInput[0][0].length;
 
-        double[][][] gradInput = new double[channels][inputHeight][inputWidth];
+        double[][][] gradInput = borrowLike(BufferPool.local(), originalInput);
+        clear(gradInput);
 
         for (int c = 0; c < channels; c++) {
             for (int oh = 0; oh < outputHeight; oh++) {
@@ -303,6 +694,94 @@ public class ImprovedCNN {
         return gradInput;
     }
 
+    private float[][][] maxPoolForward(float[][][] input, int poolSize, int stride) {
+        int channels = input.length;
+        int outputHeight = (input[0].length - poolSize) / stride + 1;
+        int outputWidth = (input[0][0].length - poolSize) / stride + 1;
+
+        float[][][] output = BufferPool.local().borrowFloat3D(channels, outputHeight, outputWidth);
+        lastPoolIndices = new int[channels][outputHeight][outputWidth];
+
+        for (int c = 0; c < channels; c++) {
+            for (int oh = 0; oh < outputHeight; oh++) {
+                for (int ow = 0; ow < outputWidth; ow++) {
+                    float maxVal = Float.NEGATIVE_INFINITY;
+                    int maxIdx = 0;
+
+                    for (int ph = 0; ph < poolSize; ph++) {
+                        for (int pw = 0; pw < poolSize; pw++) {
+                            float val = input[c][oh * stride + ph][ow * stride + pw];
+                            if (val > maxVal) {
+                                maxVal = val;
+                                maxIdx = ph * poolSize + pw;
+                            }
+                        }
+                    }
+
+                    output[c][oh][ow] = maxVal;
+                    lastPoolIndices[c][oh][ow] = maxIdx;
+                }
+            }
+        }
+
+        return output;
+    }
+
+    private float[][][] maxPoolBackward(float[][][] gradOutput, int[][][] indices,
+                                        int poolSize, int stride, float[][][] originalInput) {
+        float[][][] gradInput = borrowLike(BufferPool.local(), originalInput);
+        clear(gradInput);
+
+        for (int c = 0; c < gradOutput.length; c++) {
+            for (int oh = 0; oh < gradOutput[c].length; oh++) {
+                for (int ow = 0; ow < gradOutput[c][oh].length; ow++) {
+                    int maxIdx = indices[c][oh][ow];
+                    int ih = oh * stride + maxIdx / poolSize;
+                    int iw = ow * stride + maxIdx % poolSize;
+                    gradInput[c][ih][iw] += gradOutput[c][oh][ow];
+                }
+            }
+        }
+
+        return gradInput;
+    }
+
+    private float[] applyDropout(float[] input) {
+        if (!isTraining || dropoutRate == 0) {
+            return input;
+        }
+
+        float[] output = new float[input.length];
+        lastDropoutMask = new boolean[input.length];
+        float scale = (float) (1.0 / (1.0 - dropoutRate));
+
+        for (int i = 0; i < input.length; i++) {
+            if (random.nextDouble() > dropoutRate) {
+                output[i] = input[i] * scale;
+                lastDropoutMask[i] = true;
+            }
+        }
+
+        return output;
+    }
+
+    private float[] applyDropoutBackward(float[] gradOutput, boolean[] mask) {
+        if (!isTraining || dropoutRate == 0) {
+            return gradOutput;
+        }
+
+        float[] gradInput = new float[gradOutput.length];
+        float scale = (float) (1.0 / (1.0 - dropoutRate));
+
+        for (int i = 0; i < gradOutput.length; i++) {
+            if (mask[i]) {
+                gradInput[i] = gradOutput[i] * scale;
+            }
+        }
+
+        return gradInput;
+    }
+
     /**
      * データ拡張
      */
@@ -417,6 +896,13 @@ class ConvLayer {
     private double[] mBias, vBias;
     private int t = 0;
 
+    private ComputeBackend backend = Backends.get();
+    private Layout layout = Layout.NCHW;
+    private ConvAlgorithm algorithm = ConvAlgorithm.DIRECT;
+    private WinogradFilter winograd;  // Winograd 法で変換したカーネル（重みの更新で作り直す）
+    private WinogradFilter winogradBackward;  // 入力の勾配用に Winograd 法で変換したカーネル（同上）
+    private FFTFilter fft;            // FFT 法で変換したカーネル（重みの更新・変換の大きさの変更で作り直す）
+
     public ConvLayer(int inChannels, int outChannels, int kernelSize,
                      int stride, int padding, double learningRate) {
         this.inChannels = inChannels;
@@ -448,37 +934,81 @@ class ConvLayer {
         vWeights = new double[outChannels][inChannels][kernelSize][kernelSize];
         mBias = new double[outChannels];
         vBias = new double[outChannels];
+
+        gradWeights = new double[outChannels][inChannels][kernelSize][kernelSize];
+        gradBias = new double[outChannels];
     }
 
+    /**
+     * 順伝播（出力はプールから借りるので、学習ステップの外へ持ち出さないこと）
+     */
     public double[][][] forward(double[][][] input) {
-        return ConvolutionOps.convolve3D(input, weights, bias, stride, padding);
+        int outputHeight = ConvolutionOps.outputSize(input[0].length, kernelSize, stride, padding);
+        int outputWidth = ConvolutionOps.outputSize(input[0][0].length, kernelSize, stride, padding);
+        BufferPool pool = BufferPool.local();
+        double[][][] output = pool.borrow3D(outChannels, outputHeight, outputWidth);
+        if (layout == Layout.NHWC) {
+            // NHWC に並べ替えて計算し、結果を NCHW に戻す（バックエンドを通さず ConvolutionOps を直接呼ぶ）
+            int height = input[0].length, width = input[0][0].length;
+            Tensor in = ConvolutionOps.toNHWCInto(input,
+                    Tensor.wrap(pool.borrow(height * width * inChannels), height, width, inChannels));
+            Tensor out = ConvolutionOps.convolveNHWCInto(in, weights, bias, stride, padding,
+                    Tensor.wrap(pool.borrow(outputHeight * outputWidth * outChannels),
+                            outputHeight, outputWidth, outChannels));
+            return ConvolutionOps.toNCHWInto(out, output);
+        }
+        if (algorithm.winogradTileSize() > 0 && stride == 1) {
+            if (winograd == null) {
+                winograd = WinogradFilter.forward(weights, algorithm.winogradTileSize());
+            }
+            return ConvolutionOps.convolve3DWinogradInto(input, winograd, bias, padding, output);
+        }
+        int height = input[0].length, width = input[0][0].length;
+        ConvAlgorithm chosen = algorithm == ConvAlgorithm.AUTO
+                ? ConvolutionOps.selectAlgorithm(inChannels, height, width, outChannels,
+                        kernelSize, kernelSize, stride, padding)
+                : algorithm;
+        if (chosen == ConvAlgorithm.FFT && stride == 1) {
+            int fftSize = ConvolutionOps.fftSize(inChannels, height, width, outChannels, kernelSize, kernelSize);
+            if (fft == null || fft.getFFTSize() != fftSize) {
+                fft = FFTFilter.forward(weights, fftSize);
+            }
+            return ConvolutionOps.convolve3DFFTInto(input, fft, bias, padding, output);
+        }
+        if (chosen != ConvAlgorithm.DIRECT) {
+            return ConvolutionOps.convolve3DInto(input, weights, bias, stride, padding, chosen, output);
+        }
+        return backend.convolve3DInto(input, weights, bias, stride, padding, output);
     }
 
+    /**
+     * 逆伝播（重み・バイアスの勾配を層に保持し、入力に対する勾配を返す。勾配はプールから借りる）
+     * 1枚を大きさ1のバッチとして ConvolutionOps の4D版で求める。Winograd 法を選んでいて3x3・ストライド1なら、
+     * 入力の勾配は変換済みのカーネルを使い回す Winograd 法で求める
+     */
     public double[][][] backward(double[][][] gradOutput, double[][][] input) {
-        // 勾配を計算
-        gradWeights = new double[outChannels][inChannels][kernelSize][kernelSize];
-        gradBias = new double[outChannels];
-
-        // バイアスの勾配
-        for (int oc = 0; oc < outChannels; oc++) {
-            double sum = 0;
-            for (int h = 0; h < gradOutput[oc].length; h++) {
-                for (int w = 0; w < gradOutput[oc][h].length; w++) {
-                    sum += gradOutput[oc][h][w];
-                }
+        BufferPool pool = BufferPool.local();
+        Tensor in = ImprovedCNN.borrowBatch(pool, input);
+        Tensor gradOut = ImprovedCNN.borrowBatch(pool, gradOutput);
+        ConvolutionOps.convolve4DBackwardWeightsInto(in, gradOut, stride, padding, gradWeights, gradBias);
+
+        double[][][] gradInput = ImprovedCNN.borrowLike(pool, input);
+        if (algorithm.winogradTileSize() > 0 && stride == 1 && kernelSize == 3 && padding <= 2) {
+            if (winogradBackward == null) {
+                winogradBackward = WinogradFilter.backwardData(weights, algorithm.winogradTileSize());
             }
-            gradBias[oc] = sum;
+            return ConvolutionOps.convolve3DWinogradBackwardDataInto(gradOutput, winogradBackward, padding, gradInput);
         }
-
-        // 重みの勾配（簡略化版）
-        // TODO: 完全な畳み込みの逆伝播実装
-
-        // 入力に対する勾配を返す（簡略化版）
-        return new double[inChannels][input[0].length][input[0][0].length];
+        Tensor gradIn = Tensor.wrap(pool.borrow(in.getSize()), in.getShape());
+        ConvolutionOps.convolve4DBackwardDataInto(gradOut, weights, stride, padding, gradIn);
+        return Tensor.reshapeInto(gradIn.getData(), gradInput);
     }
 
     public void updateWeights() {
         t++;
+        winograd = null;
+        winogradBackward = null;
+        fft = null;
         double beta1 = 0.9, beta2 = 0.999, epsilon = 1e-8;
 
         // Adam更新
@@ -506,28 +1036,54 @@ class ConvLayer {
         }
     }
 
+    void setBackend(ComputeBackend backend) {
+        this.backend = backend;
+    }
+
+    void setLayout(Layout layout) {
+        if (layout == null) {
+            throw new IllegalArgumentException("Layout must not be null");
+        }
+        this.layout = layout;
+    }
+
+    void setAlgorithm(ConvAlgorithm algorithm) {
+        if (algorithm == null) {
+            throw new IllegalArgumentException("Algorithm must not be null");
+        }
+        this.algorithm = algorithm;
+        this.winograd = null;
+        this.winogradBackward = null;
+        this.fft = null;
+    }
+
     public void setLearningRate(double lr) {
         this.learningRate = lr;
     }
+
+    double[][][][] getWeights() { return weights; }
+    double[] getBias() { return bias; }
 }
 
 /**
  * 全結合層
  */
 class FullyConnectedLayer {
-    private double[][] weights;
+    private final DenseMatrix weights;  // [outputSize][inputSize]
     private double[] bias;
-    private double[][] gradWeights;
+    private DenseMatrix gradWeights;
     private double[] gradBias;
 
     private double learningRate;
     private int inputSize, outputSize;
 
     // Adamオプティマイザー用
-    private double[][] mWeights, vWeights;
+    private final DenseMatrix mWeights, vWeights;
     private double[] mBias, vBias;
     private int t = 0;
 
+    private ComputeBackend backend = Backends.get();
+
     public FullyConnectedLayer(int inputSize, int outputSize, double learningRate) {
         this.inputSize = inputSize;
         this.outputSize = outputSize;
@@ -537,33 +1093,47 @@ class FullyConnectedLayer {
         double scale = Math.sqrt(2.0 / inputSize);
         Random rand = new Random();
 
-        weights = new double[outputSize][inputSize];
+        weights = new DenseMatrix(outputSize, inputSize);
         bias = new double[outputSize];
 
         for (int i = 0; i < outputSize; i++) {
             for (int j = 0; j < inputSize; j++) {
-                weights[i][j] = rand.nextGaussian() * scale;
+                weights.set(i, j, rand.nextGaussian() * scale);
             }
         }
 
         // Adamの初期化
-        mWeights = new double[outputSize][inputSize];
-        vWeights = new double[outputSize][inputSize];
+        mWeights = new DenseMatrix(outputSize, inputSize);
+        vWeights = new DenseMatrix(outputSize, inputSize);
         mBias = new double[outputSize];
         vBias = new double[outputSize];
+
+        gradWeights = new DenseMatrix(outputSize, inputSize);
+        gradBias = new double[outputSize];
     }
 
     public double[] forward(double[] input) {
-        return Matrix.addVec(Matrix.dotMV(weights, input), bias);
+        return forward(input, Activation.IDENTITY, null);
+    }
+
+    /**
+     * 順伝播（積・バイアス加算・活性化を1回の走査で行う）
+     * @param input 入力
+     * @param activation 活性化関数
+     * @param deriv 活性化の導関数の書き込み先 [outputSize]（null なら記録しない）
+     * @return 活性化後の出力
+     */
+    public double[] forward(double[] input, Activation activation, double[] deriv) {
+        return backend.fusedDotMVInto(weights, input, bias, activation, new double[outputSize], deriv);
     }
 
     public double[] backward(double[] gradOutput, double[] input) {
         // 重みとバイアスの勾配
-        gradWeights = Matrix.outer(gradOutput, input);
-        gradBias = gradOutput.clone();
+        backend.outerInto(gradOutput, input, gradWeights);
+        System.arraycopy(gradOutput, 0, gradBias, 0, outputSize);
 
         // 入力に対する勾配
-        return Matrix.dotMV(Matrix.t(weights), gradOutput);
+        return backend.dotTMVInto(weights, gradOutput, new double[inputSize]);
     }
 
     public void updateWeights() {
@@ -578,19 +1148,301 @@ class FullyConnectedLayer {
             double mHat = mBias[i] / (1 - Math.pow(beta1, t));
             double vHat = vBias[i] / (1 - Math.pow(beta2, t));
             bias[i] -= learningRate * mHat / (Math.sqrt(vHat) + epsilon);
+        }
+
+        // 重みの更新（全行列が隙間のない配置なので1本のループで走査）
+        double[] w = weights.getData();
+        double[] g = gradWeights.getData();
+        double[] m = mWeights.getData();
+        double[] v = vWeights.getData();
+        double bc1 = 1 - Math.pow(beta1, t);
+        double bc2 = 1 - Math.pow(beta2, t);
+        for (int k = 0; k < w.length; k++) {
+            m[k] = beta1 * m[k] + (1 - beta1) * g[k];
+            v[k] = beta2 * v[k] + (1 - beta2) * g[k] * g[k];
+            double mHat = m[k] / bc1;
+            double vHat = v[k] / bc2;
+            w[k] -= learningRate * mHat / (Math.sqrt(vHat) + epsilon);
+        }
+    }
+
+    void setBackend(ComputeBackend backend) {
+        this.backend = backend;
+    }
+
+    public void setLearningRate(double lr) {
+        this.learningRate = lr;
+    }
+
+    int getInputSize() { return inputSize; }
+    int getOutputSize() { return outputSize; }
+    DenseMatrix getWeights() { return weights; }
+    double[] getBias() { return bias; }
+}
+
+/**
+ * 畳み込み層（単精度）
+ * 重み・勾配・Adamのモーメントを float で保持する以外は {@link ConvLayer} と同じ
+ */
+class FloatConvLayer {
+    private final float[][][][] weights;  // [outChannels][inChannels][kernelH][kernelW]
+    private final float[] bias;           // [outChannels]
+    private float[][][][] gradWeights;
+    private float[] gradBias;
+
+    private float learningRate;
+    private final int inChannels, outChannels, kernelSize, stride, padding;
+
+    // Adamオプティマイザー用
+    private final float[][][][] mWeights, vWeights;
+    private final float[] mBias, vBias;
+    private int t = 0;
+
+    private ComputeBackend backend = Backends.get();
+
+    public FloatConvLayer(int inChannels, int outChannels, int kernelSize,
+                          int stride, int padding, double learningRate) {
+        this.inChannels = inChannels;
+        this.outChannels = outChannels;
+        this.kernelSize = kernelSize;
+        this.stride = stride;
+        this.padding = padding;
+        this.learningRate = (float) learningRate;
+
+        // Xavierの初期化
+        double scale = Math.sqrt(2.0 / (inChannels * kernelSize * kernelSize));
+        Random rand = new Random();
+
+        weights = new float[outChannels][inChannels][kernelSize][kernelSize];
+        bias = new float[outChannels];
+
+        for (int oc = 0; oc < outChannels; oc++) {
+            for (int ic = 0; ic < inChannels; ic++) {
+                for (int kh = 0; kh < kernelSize; kh++) {
+                    for (int kw = 0; kw < kernelSize; kw++) {
+                        weights[oc][ic][kh][kw] = (float) (rand.nextGaussian() * scale);
+                    }
+                }
+            }
+        }
+
+        // Adamの初期化
+        mWeights = new float[outChannels][inChannels][kernelSize][kernelSize];
+        vWeights = new float[outChannels][inChannels][kernelSize][kernelSize];
+        mBias = new float[outChannels];
+        vBias = new float[outChannels];
+
+        gradWeights = new float[outChannels][inChannels][kernelSize][kernelSize];
+        gradBias = new float[outChannels];
+    }
+
+    /**
+     * 順伝播（出力はプールから借りるので、学習ステップの外へ持ち出さないこと）
+     */
+    public float[][][] forward(float[][][] input) {
+        int outputHeight = ConvolutionOps.outputSize(input[0].length, kernelSize, stride, padding);
+        int outputWidth = ConvolutionOps.outputSize(input[0][0].length, kernelSize, stride, padding);
+        return backend.convolve3DInto(input, weights, bias, stride, padding,
+                BufferPool.local().borrowFloat3D(outChannels, outputHeight, outputWidth));
+    }
+
+    /**
+     * 逆伝播（重み・バイアスの勾配を層に保持し、入力に対する勾配を返す。勾配はプールから借りる）
+     * 1枚を大きさ1のバッチとして ConvolutionOps の単精度の4D版で求める
+     */
+    public float[][][] backward(float[][][] gradOutput, float[][][] input) {
+        float[][][] gradInput = ImprovedCNN.borrowLike(BufferPool.local(), input);
+        float[][][][] gradOutputs = {gradOutput};
+        ConvolutionOps.convolve4DBackwardWeightsInto(new float[][][][] {input}, gradOutputs, stride, padding,
+                gradWeights, gradBias);
+        ConvolutionOps.convolve4DBackwardDataInto(gradOutputs, weights, stride, padding,
+                new float[][][][] {gradInput});
+        return gradInput;
+    }
+
+    public void updateWeights() {
+        t++;
+        float beta1 = 0.9f, beta2 = 0.999f, epsilon = 1e-8f;
+        float bc1 = (float) (1 - Math.pow(beta1, t));
+        float bc2 = (float) (1 - Math.pow(beta2, t));
+
+        // Adam更新
+        for (int oc = 0; oc < outChannels; oc++) {
+            // バイアスの更新
+            mBias[oc] = beta1 * mBias[oc] + (1 - beta1) * gradBias[oc];
+            vBias[oc] = beta2 * vBias[oc] + (1 - beta2) * gradBias[oc] * gradBias[oc];
+            bias[oc] -= learningRate * (mBias[oc] / bc1) / ((float) Math.sqrt(vBias[oc] / bc2) + epsilon);
 
             // 重みの更新
+            for (int ic = 0; ic < inChannels; ic++) {
+                for (int kh = 0; kh < kernelSize; kh++) {
+                    float[] w = weights[oc][ic][kh];
+                    float[] g = gradWeights[oc][ic][kh];
+                    float[] m = mWeights[oc][ic][kh];
+                    float[] v = vWeights[oc][ic][kh];
+                    for (int kw = 0; kw < kernelSize; kw++) {
+                        m[kw] = beta1 * m[kw] + (1 - beta1) * g[kw];
+                        v[kw] = beta2 * v[kw] + (1 - beta2) * g[kw] * g[kw];
+                        w[kw] -= learningRate * (m[kw] / bc1) / ((float) Math.sqrt(v[kw] / bc2) + epsilon);
+                    }
+                }
+            }
+        }
+    }
+
+    void setBackend(ComputeBackend backend) {
+        this.backend = backend;
+    }
+
+    public void setLearningRate(double lr) {
+        this.learningRate = (float) lr;
+    }
+
+    float[][][][] getWeights() { return weights; }
+    float[] getBias() { return bias; }
+}
+
+/**
+ * 全結合層（単精度）
+ * 重み・勾配・Adamのモーメントを float で保持する以外は {@link FullyConnectedLayer} と同じ
+ */
+class FloatFullyConnectedLayer {
+    private final FloatDenseMatrix weights;  // [outputSize][inputSize]
+    private final float[] bias;
+    private FloatDenseMatrix gradWeights;
+    private float[] gradBias;
+
+    private float learningRate;
+    private final int outputSize;
+
+    // Adamオプティマイザー用
+    private final FloatDenseMatrix mWeights, vWeights;
+    private final float[] mBias, vBias;
+    private int t = 0;
+
+    private ComputeBackend backend = Backends.get();
+
+    // 逆伝播まで保持する入力（activationFormat が null なら float のまま保持）
+    private HalfFormat activationFormat;
+    private float[] savedInput;
+    private HalfArray packedInput;
+    private float[] unpackedInput;
+
+    public FloatFullyConnectedLayer(int inputSize, int outputSize, double learningRate) {
+        this.outputSize = outputSize;
+        this.learningRate = (float) learningRate;
+
+        // Xavierの初期化
+        double scale = Math.sqrt(2.0 / inputSize);
+        Random rand = new Random();
+
+        weights = new FloatDenseMatrix(outputSize, inputSize);
+        bias = new float[outputSize];
+
+        for (int i = 0; i < outputSize; i++) {
             for (int j = 0; j < inputSize; j++) {
-                mWeights[i][j] = beta1 * mWeights[i][j] + (1 - beta1) * gradWeights[i][j];
-                vWeights[i][j] = beta2 * vWeights[i][j] + (1 - beta2) * gradWeights[i][j] * gradWeights[i][j];
-                mHat = mWeights[i][j] / (1 - Math.pow(beta1, t));
-                vHat = vWeights[i][j] / (1 - Math.pow(beta2, t));
-                weights[i][j] -= learningRate * mHat / (Math.sqrt(vHat) + epsilon);
+                weights.set(i, j, (float) (rand.nextGaussian() * scale));
             }
         }
+
+        // Adamの初期化
+        mWeights = new FloatDenseMatrix(outputSize, inputSize);
+        vWeights = new FloatDenseMatrix(outputSize, inputSize);
+        mBias = new float[outputSize];
+        vBias = new float[outputSize];
+
+        gradWeights = new FloatDenseMatrix(outputSize, inputSize);
+        gradBias = new float[outputSize];
+    }
+
+    public float[] forward(float[] input) {
+        return forward(input, Activation.IDENTITY, null);
+    }
+
+    /**
+     * 順伝播（積・バイアス加算・活性化を1回の走査で行う）
+     * @param input 入力
+     * @param activation 活性化関数
+     * @param deriv 活性化の導関数の書き込み先 [outputSize]（null なら記録しない）
+     * @return 活性化後の出力
+     */
+    public float[] forward(float[] input, Activation activation, float[] deriv) {
+        return backend.fusedDotMVInto(weights, input, bias, activation, new float[outputSize], deriv);
+    }
+
+    /**
+     * 順伝播を行い、逆伝播で使う入力を保持する
+     */
+    public float[] forwardAndSave(float[] input, Activation activation, float[] deriv) {
+        if (activationFormat == null) {
+            savedInput = input;
+        } else {
+            if (packedInput == null || packedInput.length() != input.length) {
+                packedInput = new HalfArray(input.length, activationFormat);
+                unpackedInput = new float[input.length];
+            }
+            packedInput.packFrom(input);
+        }
+        return forward(input, activation, deriv);
+    }
+
+    /**
+     * 逆伝播（入力は直前の forwardAndSave で保持したものを使う）
+     */
+    public float[] backward(float[] gradOutput) {
+        float[] input = activationFormat == null ? savedInput : packedInput.unpackInto(unpackedInput);
+
+        // 重みとバイアスの勾配
+        backend.outerInto(gradOutput, input, gradWeights);
+        System.arraycopy(gradOutput, 0, gradBias, 0, outputSize);
+
+        // 入力に対する勾配
+        return backend.dotTMVInto(weights, gradOutput, new float[weights.getCols()]);
+    }
+
+    public void updateWeights() {
+        t++;
+        float beta1 = 0.9f, beta2 = 0.999f, epsilon = 1e-8f;
+        float bc1 = (float) (1 - Math.pow(beta1, t));
+        float bc2 = (float) (1 - Math.pow(beta2, t));
+
+        // バイアスの更新
+        for (int i = 0; i < outputSize; i++) {
+            mBias[i] = beta1 * mBias[i] + (1 - beta1) * gradBias[i];
+            vBias[i] = beta2 * vBias[i] + (1 - beta2) * gradBias[i] * gradBias[i];
+            bias[i] -= learningRate * (mBias[i] / bc1) / ((float) Math.sqrt(vBias[i] / bc2) + epsilon);
+        }
+
+        // 重みの更新
+        float[] w = weights.getData();
+        float[] g = gradWeights.getData();
+        float[] m = mWeights.getData();
+        float[] v = vWeights.getData();
+        for (int k = 0; k < w.length; k++) {
+            m[k] = beta1 * m[k] + (1 - beta1) * g[k];
+            v[k] = beta2 * v[k] + (1 - beta2) * g[k] * g[k];
+            w[k] -= learningRate * (m[k] / bc1) / ((float) Math.sqrt(v[k] / bc2) + epsilon);
+        }
+    }
+
+    void setBackend(ComputeBackend backend) {
+        this.backend = backend;
     }
 
     public void setLearningRate(double lr) {
-        this.learningRate = lr;
+        this.learningRate = (float) lr;
+    }
+
+    public void setActivationFormat(HalfFormat format) {
+        if (format != activationFormat) {
+            activationFormat = format;
+            savedInput = null;
+            packedInput = null;
+            unpackedInput = null;
+        }
     }
-}
\ No newline at end of file
+
+    int getOutputSize() { return outputSize; }
+    FloatDenseMatrix getWeights() { return weights; }
+    float[] getBias() { return bias; }
+}
@@ -0,0 +1,170 @@
+package models.cnn;
+
+import alg.ReLU;
+import alg.Softmax;
+import math.Activation;
+import math.ConvolutionOps;
+import math.FloatDenseMatrix;
+import math.Matrix;
+import math.QuantizedMatrix;
+import math.QuantizedTensor;
+import math.Tensor;
+
+/**
+ * 推論専用のCNN（重みと活性値を8ビット整数で保持）
+ * {@link ImprovedCNN#toQuantizedInference(double[][][][])} で学習済みのモデルから作成する。
+ *
+ * 重みは出力チャンネルごとに量子化し（{@link QuantizedMatrix}）、積は32ビット整数で累積する。
+ * 層の間の活性値も8ビット整数のまま渡す。各層の出力の量子化パラメータは、
+ * 作成時に校正用の画像を float で順伝播して記録した値の範囲から決める（静的量子化）。
+ * 最後の全結合層だけは実数に戻し、Softmax は float で計算する。ドロップアウトは行わない。
+ */
+public class QuantizedInferenceCNN {
+
+    // ImprovedCNN と同じ層構成（3x3カーネル、ストライド1、パディング1）
+    private static final int KERNEL_SIZE = 3;
+    private static final int STRIDE = 1;
+    private static final int PADDING = 1;
+
+    private final QuantizedMatrix conv1Weights;
+    private final float[] conv1Bias;
+    private final QuantizedMatrix conv2Weights;
+    private final float[] conv2Bias;
+    private final QuantizedMatrix fc1Weights;
+    private final float[] fc1Bias;
+    private final QuantizedMatrix fc2Weights;
+    private final float[] fc2Bias;
+
+    // 各層の出力の範囲（校正で記録した値）[min, max]
+    private final float[] inputRange;
+    private final float[] conv1Range;
+    private final float[] conv2Range;
+    private final float[] fc1Range;
+
+    private QuantizedInferenceCNN(float[][][][] conv1Weights, float[] conv1Bias,
+                                  float[][][][] conv2Weights, float[] conv2Bias,
+                                  FloatDenseMatrix fc1Weights, float[] fc1Bias,
+                                  FloatDenseMatrix fc2Weights, float[] fc2Bias,
+                                  float[][] ranges) {
+        this.conv1Weights = QuantizedMatrix.ofKernels(conv1Weights);
+        this.conv1Bias = conv1Bias;
+        this.conv2Weights = QuantizedMatrix.ofKernels(conv2Weights);
+        this.conv2Bias = conv2Bias;
+        this.fc1Weights = QuantizedMatrix.of(fc1Weights);
+        this.fc1Bias = fc1Bias;
+        this.fc2Weights = QuantizedMatrix.of(fc2Weights);
+        this.fc2Bias = fc2Bias;
+        this.inputRange = ranges[0];
+        this.conv1Range = ranges[1];
+        this.conv2Range = ranges[2];
+        this.fc1Range = ranges[3];
+    }
+
+    /**
+     * 校正用の画像で各層の出力の範囲を求めて、量子化したモデルを作成
+     * 重みは float で受け取り、校正の順伝播は量子化前の重みで行う
+     * @param calibration 校正用の画像 [n][1][height][width]（学習データの一部でよい）
+     * @return 量子化したモデル
+     */
+    static QuantizedInferenceCNN calibrate(float[][][][] conv1Weights, float[] conv1Bias,
+                                           float[][][][] conv2Weights, float[] conv2Bias,
+                                           FloatDenseMatrix fc1Weights, float[] fc1Bias,
+                                           FloatDenseMatrix fc2Weights, float[] fc2Bias,
+                                           double[][][][] calibration) {
+        if (calibration.length == 0) {
+            throw new IllegalArgumentException("At least one calibration image is required");
+        }
+        // 0 を含む範囲から広げていく
+        float[][] ranges = new float[4][2];
+
+        for (double[][][] image : calibration) {
+            float[][][] x = Tensor.toFloat(image);
+            widen(ranges[0], x);
+
+            // 記録するのは ReLU 後の値（プーリングは範囲を変えない）
+            x = ConvolutionOps.convolve3D(x, conv1Weights, conv1Bias, STRIDE, PADDING);
+            x = ReLU.applyInto(x, x);
+            widen(ranges[1], x);
+            x = ConvolutionOps.maxPool3D(x, 2, 2);
+
+            x = ConvolutionOps.convolve3D(x, conv2Weights, conv2Bias, STRIDE, PADDING);
+            x = ReLU.applyInto(x, x);
+            widen(ranges[2], x);
+            x = ConvolutionOps.maxPool3D(x, 2, 2);
+
+            float[] hidden = fc1Weights.dotMV(Tensor.flatten(x));
+            Matrix.addVecInPlace(hidden, fc1Bias);
+            ReLU.applyInto(hidden, hidden);
+            for (float v : hidden) {
+                ranges[3][0] = Math.min(ranges[3][0], v);
+                ranges[3][1] = Math.max(ranges[3][1], v);
+            }
+        }
+
+        return new QuantizedInferenceCNN(conv1Weights, conv1Bias, conv2Weights, conv2Bias,
+                fc1Weights, fc1Bias, fc2Weights, fc2Bias, ranges);
+    }
+
+    private static void widen(float[] range, float[][][] x) {
+        for (float[][] plane : x) {
+            for (float[] row : plane) {
+                for (float v : row) {
+                    range[0] = Math.min(range[0], v);
+                    range[1] = Math.max(range[1], v);
+                }
+            }
+        }
+    }
+
+    /**
+     * 順伝播
+     * @param input 入力画像 [1][height][width]
+     * @return 各クラスの確率
+     */
+    public double[] forward(double[][][] input) {
+        int height = input[0].length;
+        int width = input[0][0].length;
+        QuantizedTensor x = QuantizedTensor.forRange(inputRange[0], inputRange[1], input.length, height, width)
+                .quantizeFrom(Tensor.toFloat(input));
+
+        // Conv1 -> ReLU -> Pool（ReLU は量子化し直すときに適用する）
+        QuantizedTensor conv1Out = QuantizedTensor.forRange(conv1Range[0], conv1Range[1],
+                conv1Weights.getRows(), height, width);
+        ConvolutionOps.convolve3DInto(x, conv1Weights, KERNEL_SIZE, KERNEL_SIZE, conv1Bias,
+                STRIDE, PADDING, Activation.RELU, conv1Out);
+        x = ConvolutionOps.maxPool3D(conv1Out, 2, 2);
+
+        // Conv2 -> ReLU -> Pool
+        QuantizedTensor conv2Out = QuantizedTensor.forRange(conv2Range[0], conv2Range[1],
+                conv2Weights.getRows(), x.getDim(1), x.getDim(2));
+        ConvolutionOps.convolve3DInto(x, conv2Weights, KERNEL_SIZE, KERNEL_SIZE, conv2Bias,
+                STRIDE, PADDING, Activation.RELU, conv2Out);
+        x = ConvolutionOps.maxPool3D(conv2Out, 2, 2);
+
+        // FC1 -> ReLU（8ビットのまま次の層へ）
+        QuantizedTensor hidden = QuantizedTensor.forRange(fc1Range[0], fc1Range[1], fc1Weights.getRows());
+        fc1Weights.dotMVInto(x.reshape(x.getSize()), fc1Bias, Activation.RELU, hidden);
+
+        // FC2 -> Softmax（実数に戻す）
+        float[] logits = fc2Weights.dotMVInto(hidden, fc2Bias, Activation.IDENTITY,
+                new float[fc2Weights.getRows()]);
+        return Matrix.toDouble(Softmax.applyInto(logits, logits));
+    }
+
+    /**
+     * 予測
+     * @param input 入力画像 [1][height][width]
+     * @return 最も確率の高いクラス
+     */
+    public int predict(double[][][] input) {
+        return Softmax.argmax(forward(input));
+    }
+
+    /**
+     * 全層の重み（量子化パラメータを含む）が占めるバイト数
+     */
+    public long getWeightBytes() {
+        return conv1Weights.getBytes() + conv2Weights.getBytes()
+                + fc1Weights.getBytes() + fc2Weights.getBytes();
+    }
+}
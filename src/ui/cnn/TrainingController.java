@@ -3,6 +3,8 @@ package ui.cnn;
 import main.CNN;
 import models.cnn.ImprovedCNN;
 import datasets.SimpleDigitGenerator;
+import math.OffHeapArena;
+import math.OffHeapTensor;
 import javax.swing.*;
 import java.util.Random;
 import java.util.Arrays;
@@ -21,6 +23,8 @@ public class TrainingController {
     private int batchSize;
     private double learningRate;
     private boolean useDataAugmentation;
+    // 訓練データをヒープ外に置くかどうか（GCの対象から外す）
+    private boolean useOffHeapData = Boolean.getBoolean("jeeplearning.offheap");
 
     // 学習状態
     private volatile boolean isTraining = false;
@@ -62,6 +66,13 @@ public class TrainingController {
         this.listener = listener;
     }
 
+    /**
+     * 訓練データをヒープ外メモリに置くかどうかを設定（次の学習開始から有効）
+     */
+    public void setUseOffHeapData(boolean useOffHeapData) {
+        this.useOffHeapData = useOffHeapData;
+    }
+
     /**
      * モデルを取得
      */
@@ -103,11 +114,9 @@ public class TrainingController {
      * 学習の実行
      */
     private void runTraining() {
-        try {
-            // 訓練データの生成
-            notifyStatus("Generating training data...");
-            TrainingData trainingData = generateTrainingData();
-
+        // 訓練データの生成（ヒープ外に置いた場合は学習の終了時に解放する）
+        notifyStatus("Generating training data...");
+        try (TrainingData trainingData = generateTrainingData()) {
             // データ拡張用のRandom
             Random augmentRand = new Random();
 
@@ -117,7 +126,7 @@ public class TrainingController {
                 notifyProgress((epoch * 100) / epochs);
 
                 // データをシャッフル
-                shuffleData(trainingData.images, trainingData.labels);
+                shuffleData(trainingData.order);
 
                 // ミニバッチ学習
                 double epochLoss = trainEpoch(trainingData, augmentRand, epoch);
@@ -152,13 +161,26 @@ public class TrainingController {
      */
     private TrainingData generateTrainingData() {
         int trainSize = 6000;
-        double[][][][] images = new double[trainSize][1][CNN.IMAGE_SIZE][CNN.IMAGE_SIZE];
         int[] labels = new int[trainSize];
+        double[][][][] images = null;
+        OffHeapArena arena = null;
+        OffHeapTensor offHeapImages = null;
+        if (useOffHeapData) {
+            arena = new OffHeapArena();
+            offHeapImages = arena.allocate(trainSize, 1, CNN.IMAGE_SIZE, CNN.IMAGE_SIZE);
+        } else {
+            images = new double[trainSize][1][CNN.IMAGE_SIZE][CNN.IMAGE_SIZE];
+        }
 
         // 各数字を均等に生成
         for (int i = 0; i < trainSize; i++) {
             int digit = i % 10;
-            images[i][0] = dataGenerator.generateDigit(digit, 0.1);
+            double[][] image = dataGenerator.generateDigit(digit, 0.1);
+            if (offHeapImages != null) {
+                offHeapImages.slice(i).copyFrom(new double[][][]{image});
+            } else {
+                images[i][0] = image;
+            }
             labels[i] = digit;
 
             // 進捗更新
@@ -167,7 +189,9 @@ public class TrainingController {
             }
         }
 
-        return new TrainingData(images, labels);
+        return offHeapImages != null
+                ? new TrainingData(arena, offHeapImages, labels)
+                : new TrainingData(images, labels);
     }
 
     /**
@@ -175,7 +199,7 @@ public class TrainingController {
      */
     private double trainEpoch(TrainingData data, Random augmentRand, int epochIndex) {
         double epochLoss = 0.0;
-        int numBatches = data.images.length / batchSize;
+        int numBatches = data.size() / batchSize;
 
         for (int batch = 0; batch < numBatches && !stopRequested; batch++) {
             double batchLoss = trainBatch(data, batch, augmentRand, epochIndex);
@@ -191,17 +215,17 @@ public class TrainingController {
     private double trainBatch(TrainingData data, int batchIndex, Random augmentRand, int epochIndex) {
         double batchLoss = 0.0;
         int start = batchIndex * batchSize;
-        int end = Math.min(start + batchSize, data.images.length);
+        int end = Math.min(start + batchSize, data.size());
 
         for (int i = start; i < end; i++) {
             // データ拡張
-            double[][][] image = data.images[i];
+            double[][][] image = data.image(i);
             if (useDataAugmentation && epochIndex < epochs - 2) {
                 image = ImprovedCNN.augmentImage(image, augmentRand);
             }
 
             // 学習
-            double loss = model.train(image, data.labels[i]);
+            double loss = model.train(image, data.label(i));
             batchLoss += loss;
         }
 
@@ -290,22 +314,15 @@ public class TrainingController {
     }
 
     /**
-     * データのシャッフル
+     * データのシャッフル（画像とラベルは動かさず、読み出す順番だけを入れ替える）
      */
-    private void shuffleData(double[][][][] images, int[] labels) {
+    private void shuffleData(int[] order) {
         Random rand = new Random();
-        for (int i = images.length - 1; i > 0; i--) {
+        for (int i = order.length - 1; i > 0; i--) {
             int j = rand.nextInt(i + 1);
-
-            // 画像の交換
-            double[][][] tempImage = images[i];
-            images[i] = images[j];
-            images[j] = tempImage;
-
-            // ラベルの交換
-            int tempLabel = labels[i];
-            labels[i] = labels[j];
-            labels[j] = tempLabel;
+            int temp = order[i];
+            order[i] = order[j];
+            order[j] = temp;
         }
     }
 
@@ -347,13 +364,61 @@ public class TrainingController {
     }
 
     // 内部クラス
-    private static class TrainingData {
+    /**
+     * 訓練データ（ヒープ上の配列か、ヒープ外のテンソルのどちらかに画像を持つ）
+     */
+    private static class TrainingData implements AutoCloseable {
         final double[][][][] images;
+        final OffHeapArena arena;
+        final OffHeapTensor offHeapImages;
         final int[] labels;
+        final int[] order;
+        // ヒープ外の画像を読み出す使い回しの配列
+        final double[][][] scratch;
 
         TrainingData(double[][][][] images, int[] labels) {
+            this(images, null, null, labels);
+        }
+
+        TrainingData(OffHeapArena arena, OffHeapTensor offHeapImages, int[] labels) {
+            this(null, arena, offHeapImages, labels);
+        }
+
+        private TrainingData(double[][][][] images, OffHeapArena arena, OffHeapTensor offHeapImages,
+                             int[] labels) {
             this.images = images;
+            this.arena = arena;
+            this.offHeapImages = offHeapImages;
             this.labels = labels;
+            this.order = new int[labels.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            this.scratch = offHeapImages == null ? null
+                    : new double[offHeapImages.getDim(1)][offHeapImages.getDim(2)][offHeapImages.getDim(3)];
+        }
+
+        int size() {
+            return labels.length;
+        }
+
+        /**
+         * シャッフル後の i 番目の画像（ヒープ外の場合は次の呼び出しで上書きされる）
+         */
+        double[][][] image(int i) {
+            int k = order[i];
+            return offHeapImages != null ? offHeapImages.slice(k).copyTo(scratch) : images[k];
+        }
+
+        int label(int i) {
+            return labels[order[i]];
+        }
+
+        @Override
+        public void close() {
+            if (arena != null) {
+                arena.close();
+            }
         }
     }
 